@@ -3,7 +3,6 @@ package main.capacitytracker;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 
 import org.apache.commons.csv.CSVRecord;
 
@@ -142,13 +141,7 @@ class DataStoreRecord {
    * @return route matching number and description
    */
   private Route findRoute(String number, String description) {
-    List<Route> rs = Route.findRouteByNumber(number);
-    for (Route r : rs) {
-      if (r.getDescription().equals(description)) {
-        return r;
-      }
-    }
-    return null;
+    return Route.findRoute(number, description);
   }
 
   /**
@@ -163,7 +156,6 @@ class DataStoreRecord {
     Route r = findRoute(routeNumber, routeDescription);
     Schedule s = Schedule.findSchedule(date);
     System.out.println("Route: " + r);
-    System.out.println(Route.getAllRoutes());
     System.out.println("Schedule: " + s);
     return s.nextDepartureRouteTimetable(time, r.getStops().get(0), r);
   }
@@ -7,11 +7,16 @@ import javax.swing.DefaultComboBoxModel;
 import javax.swing.JComboBox;
 import javax.swing.JTextField;
 
+import main.model.Stop;
+
 /**
  * * @authors Ivo Hendriks, Janus Avbæk Larsen, Helle Hyllested Larsen, Dan Meakin 02-12-2015.
  */
 
 public class ComboListener extends KeyAdapter{
+    /** the greatest number of stops suggested */
+    private static final int MAX_SUGGESTIONS = 30;
+
     @SuppressWarnings("rawtypes")
     JComboBox cbListener;
     @SuppressWarnings("rawtypes")
@@ -34,16 +39,27 @@ public class ComboListener extends KeyAdapter{
         cbListener.showPopup();
     }
 
+    /**
+     * Gets the names of the stops best completing the text typed, using the
+     * index of stop names, or all items where no text has been typed.
+     *
+     * @param text the text typed
+     * @return names of matching stops, best first
+     */
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public Vector getFilteredList(String text)
     {
-
+        if (text.isEmpty())
+        {
+            return new Vector(vector);
+        }
         Vector v = new Vector();
-        for(int a = 0;a<vector.size();a++)
+        for (Stop stop : Stop.findStopsByName(text, MAX_SUGGESTIONS))
         {
-            if(vector.get(a).toString().startsWith(text))
+            // Several stops may share a name
+            if (!v.contains(stop.getName()))
             {
-                v.add(vector.get(a).toString());
+                v.add(stop.getName());
             }
         }
         return v;
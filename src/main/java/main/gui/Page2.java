@@ -1,7 +1,7 @@
 package main.gui;
 
 import main.routeplanner.Itinerary;
-import main.routeplanner.ItineraryFinder;
+import main.routeplanner.JourneyPlanner;
 import main.routeplanner.ItineraryLeg;
 import org.jdesktop.swingx.border.DropShadowBorder;
 
@@ -25,9 +25,9 @@ public class Page2 extends JPanel{
     private final Font h2 = new Font("Roboto", Font.PLAIN, 18);
     private final Font h3 = new Font("Roboto", Font.PLAIN, 14);
 
-    private ItineraryFinder itineraryFinder;
+    private JourneyPlanner itineraryFinder;
 
-    public Page2(ItineraryFinder itineraryFinder){
+    public Page2(JourneyPlanner itineraryFinder){
 
         // Background
         super();
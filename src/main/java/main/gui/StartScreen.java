@@ -18,7 +18,8 @@ import java.net.URL;
 import main.capacitytracker.CapacityCalculator;
 import main.misc.DataLoader;
 import main.model.*;
-import main.routeplanner.ItineraryFinder;
+import main.routeplanner.JourneyPlanner;
+import main.routeplanner.RoutingEngine;
 
 /**
  * * @authors Ivo Hendriks, Janus Avbæk Larsen, Helle Hyllested Larsen, Dan Meakin 02-12-2015.
@@ -46,7 +47,7 @@ public class StartScreen extends JFrame {
     private JXDatePicker datePicker;
     private JTextField timeTextField;
 
-    private ItineraryFinder itineraryFinder;
+    private JourneyPlanner itineraryFinder;
     private DataLoader dataLoader;
 
     public static void main (String args[]){
@@ -400,7 +401,7 @@ public class StartScreen extends JFrame {
 
                 LocalDateTime localDateTime = LocalDateTime.of(localDate, localTime);
 
-                itineraryFinder = new ItineraryFinder(selectedFromStop,selectedDestinationStop,localDateTime);
+                itineraryFinder = RoutingEngine.getDefault().createPlanner(selectedFromStop,selectedDestinationStop,localDateTime);
 
                 // Set filter if selected
                 Enumeration allBusRadioButtons = busFilter.getElements();
@@ -451,7 +452,7 @@ public class StartScreen extends JFrame {
     }
 
 
-    private JPanel getPage2(ItineraryFinder itineraryFinder) {
+    private JPanel getPage2(JourneyPlanner itineraryFinder) {
         JPanel page2 = new Page2(itineraryFinder);
 
         return page2;
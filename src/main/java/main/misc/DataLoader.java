@@ -3,12 +3,21 @@ package main.misc;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.*;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
 
 import org.apache.commons.csv.*;
 
@@ -20,13 +29,99 @@ import main.model.*;
  *
  * As this system is not in use, it is necessary to load mock data to
  * demonstrate the functionality of the system.
+ *
+ * The data may be reloaded while the system is running, to pick up changes
+ * to the data files without a restart. The files are read and checked
+ * before the model is touched, so that a reload of bad data leaves the
+ * model as it was. The stops, routes, buses and schedules created by the
+ * previous load are then replaced with those of the new data in a single
+ * update of the model (see {@link ModelLock}), made to a copy of the model
+ * while queries continue: queries in progress complete against the previous
+ * data, and later queries see only the new data. Should loading the new
+ * data fail, the copy is discarded and the previous data kept. Data derived
+ * from the model, such as the costs table of the route planner, is rebuilt
+ * for the new data when next needed.
+ *
+ * Once loaded, the data may be compiled into a network file (see
+ * {@link #compile()}) within the same folder. While the network file is
+ * current, the data is loaded from it rather than from the data files,
+ * which are then only read to check that they have not changed since it
+ * was compiled.
  */
 public class DataLoader {
 
+  /**
+   * The name of the network file within the data folder
+   */
+  public static final String NETWORK_FILE_NAME = "network.bin";
+
+  /** runs background reloads, one at a time */
+  private static final ExecutorService reloader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "DataLoader reload");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
   private final String dataPath;
   private Schedule weekdaySchedule;
   private Schedule saturdaySchedule;
   private Schedule sundaySchedule;
+  // the hash of the data files from which the current data was loaded
+  private long loadedSourceHash;
+
+  // The stops, routes and buses created by the current load, which are
+  // removed when the data is reloaded
+  private final List<Stop> loadedStops = new ArrayList<>();
+  private final List<Route> loadedRoutes = new ArrayList<>();
+  private final List<Bus> loadedBuses = new ArrayList<>();
+
+  /**
+   * The DataFiles nested class holds the data read from the data files,
+   * before it is loaded into the model: either the records of the data
+   * files, or the network file compiled from them.
+   */
+  private static class DataFiles {
+
+    private final long sourceHash;
+    private final List<CSVRecord> stops;
+    private final List<CSVRecord> routes;
+    private final List<CSVRecord> timings;
+    private final NetworkFile network;
+
+    /**
+     * Creates a DataFiles instance holding the records of the data files.
+     *
+     * @param sourceHash hash of the data files
+     * @param stops      records of the stops file
+     * @param routes     records of the routes file
+     * @param timings    records of the timings file
+     */
+    DataFiles(long sourceHash, List<CSVRecord> stops, List<CSVRecord> routes, List<CSVRecord> timings) {
+      this.sourceHash = sourceHash;
+      this.stops = stops;
+      this.routes = routes;
+      this.timings = timings;
+      this.network = null;
+    }
+
+    /**
+     * Creates a DataFiles instance holding the network file compiled from
+     * the data files.
+     *
+     * @param sourceHash hash of the data files
+     * @param network    network read from the network file
+     */
+    DataFiles(long sourceHash, NetworkFile network) {
+      this.sourceHash = sourceHash;
+      this.stops = null;
+      this.routes = null;
+      this.timings = null;
+      this.network = network;
+    }
+  }
 
   public String getDataPath() {
     return dataPath;
@@ -40,10 +135,274 @@ public class DataLoader {
    */
   public DataLoader(String dataPath) {
     this.dataPath = dataPath;
-    createSchedule();
-    loadStops();
-    loadRoutes();
-    createRouteTimetables();
+    final DataFiles files = readDataFiles();
+    ModelLock.update(new Runnable() {
+      @Override
+      public void run() {
+        load(files);
+      }
+    });
+  }
+
+  /**
+   * Reloads the data files, replacing the data loaded previously.
+   *
+   * The files are read and checked before the model is changed. If they
+   * cannot be read, are inconsistent, or fail to load, an exception is
+   * thrown and the previously loaded data is left in place. Model data not
+   * created by this DataLoader is kept.
+   *
+   * @throws RuntimeException if a data file cannot be read or loaded
+   * @throws IllegalArgumentException if the data files are inconsistent
+   */
+  public synchronized void reload() throws RuntimeException {
+    final DataFiles files = readDataFiles();
+    // Keep the record of the data loaded previously, which remains in the
+    // model should the update fail
+    Schedule[] schedules = {weekdaySchedule, saturdaySchedule, sundaySchedule};
+    List<Stop> stops = new ArrayList<>(loadedStops);
+    List<Route> routes = new ArrayList<>(loadedRoutes);
+    List<Bus> buses = new ArrayList<>(loadedBuses);
+    long sourceHash = loadedSourceHash;
+    try {
+      ModelLock.update(new Runnable() {
+        @Override
+        public void run() {
+          unload();
+          load(files);
+        }
+      });
+    } catch (RuntimeException | Error e) {
+      weekdaySchedule = schedules[0];
+      saturdaySchedule = schedules[1];
+      sundaySchedule = schedules[2];
+      restore(loadedStops, stops);
+      restore(loadedRoutes, routes);
+      restore(loadedBuses, buses);
+      loadedSourceHash = sourceHash;
+      throw e;
+    }
+  }
+
+  /**
+   * Restores the contents of a list of loaded data.
+   *
+   * @param list     the list to restore
+   * @param contents the contents of the list to restore
+   */
+  private static <T> void restore(List<T> list, List<T> contents) {
+    list.clear();
+    list.addAll(contents);
+  }
+
+  /**
+   * Reloads the data files in the background, replacing the data loaded
+   * previously.
+   *
+   * Queries continue while the files are read and loaded, and are never held
+   * back. Background reloads are run one at a time, in the order requested.
+   *
+   * @return future completing once the data has been reloaded, holding any
+   *         exception thrown by {@link #reload()}
+   */
+  public Future<?> reloadInBackground() {
+    return reloader.submit(new Runnable() {
+      @Override
+      public void run() {
+        reload();
+      }
+    });
+  }
+
+  /**
+   * Compiles the data loaded by this DataLoader into a network file within
+   * the data folder, so that it may be loaded without parsing the data
+   * files.
+   *
+   * The network file records a hash of the data files from which the data
+   * was loaded, and is no longer used once they change.
+   *
+   * @return the network file
+   * @throws IOException if the network file cannot be written
+   */
+  public synchronized File compile() throws IOException {
+    File file = networkFile();
+    ModelLock.readLock().lock();
+    try {
+      NetworkFile.save(
+          file,
+          loadedSourceHash,
+          loadedStops,
+          loadedRoutes,
+          loadedBuses,
+          Arrays.asList(weekdaySchedule, saturdaySchedule, sundaySchedule)
+          );
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+    return file;
+  }
+
+  /**
+   * Reads the network file if it is current, or else reads and checks the
+   * records of the data files.
+   *
+   * @return data read from the network file or data files
+   * @throws IllegalArgumentException if the data files are inconsistent
+   */
+  private DataFiles readDataFiles() throws IllegalArgumentException {
+    long sourceHash = 0;
+    try {
+      sourceHash = sourceHash();
+      NetworkFile network = NetworkFile.read(networkFile(), sourceHash);
+      if (network != null) {
+        return new DataFiles(sourceHash, network);
+      }
+    } catch (IOException e) {
+      // The network file is only an optimisation, so read the data files
+      // instead, which reports any data file which cannot be read
+    }
+    DataFiles files = new DataFiles(
+        sourceHash,
+        readRecords(stopsFile()),
+        readRecords(routesFile()),
+        readRecords(timingsFile())
+        );
+    checkDataFiles(files);
+    return files;
+  }
+
+  /**
+   * Calculates a hash of the contents of the data files.
+   *
+   * @return hash of the data files
+   * @throws IOException if a data file cannot be read
+   */
+  private long sourceHash() throws IOException {
+    CRC32 crc = new CRC32();
+    for (File file : new File[] {stopsFile(), routesFile(), timingsFile()}) {
+      byte[] bytes = Files.readAllBytes(file.toPath());
+      crc.update(bytes.length >>> 24);
+      crc.update(bytes.length >>> 16);
+      crc.update(bytes.length >>> 8);
+      crc.update(bytes.length);
+      crc.update(bytes);
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Checks that the records of the data files may be loaded.
+   *
+   * Every number must be well-formed, stop IDs must be unique, routes must
+   * only call at stops within the stops file and have no more timings than
+   * stops, and frequencies must be positive.
+   *
+   * @param files records of the data files
+   * @throws IllegalArgumentException if the data files are inconsistent
+   */
+  private static void checkDataFiles(DataFiles files) throws IllegalArgumentException {
+    Set<Integer> stopIDs = new HashSet<>();
+    for (CSVRecord record : files.stops) {
+      Double.parseDouble(record.get(2));
+      Double.parseDouble(record.get(3));
+      if (!stopIDs.add(Integer.parseInt(record.get(1)))) {
+        throw new IllegalArgumentException("stop with ID #" + record.get(1) + " is defined more than once");
+      }
+    }
+    for (CSVRecord record : files.routes) {
+      String[] stops = record.get(2).split(",");
+      for (String stopID : stops) {
+        if (!stopIDs.contains(Integer.parseInt(stopID))) {
+          throw new IllegalArgumentException("route " + record.get(0) + " calls at unknown stop ID# " + stopID);
+        }
+      }
+      String[] timings = record.get(3).split(",");
+      if (timings.length > stops.length) {
+        throw new IllegalArgumentException("route " + record.get(0) + " has more timings than stops");
+      }
+      for (String timing : timings) {
+        Integer.parseInt(timing);
+      }
+    }
+    for (CSVRecord record : files.timings) {
+      for (int i = 1; i <= 5; i++) {
+        int value = Integer.parseInt(record.get(i));
+        if (i <= 3 && value <= 0) {
+          throw new IllegalArgumentException("route " + record.get(0) + " has a frequency which is not positive");
+        }
+      }
+    }
+  }
+
+  /**
+   * Loads the data read from the data files into the model.
+   *
+   * @param files data read from the data files
+   */
+  private void load(DataFiles files) {
+    if (files.network != null) {
+      loadNetwork(files.network);
+    } else {
+      createSchedule();
+      loadStops(files.stops);
+      loadRoutes(files.routes);
+      createRouteTimetables(files.timings);
+    }
+    loadedSourceHash = files.sourceHash;
+  }
+
+  /**
+   * Loads the network read from the network file into the model.
+   *
+   * @param network network read from the network file
+   */
+  private void loadNetwork(NetworkFile network) {
+    network.load();
+    loadedStops.addAll(network.getStops());
+    loadedRoutes.addAll(network.getRoutes());
+    loadedBuses.addAll(network.getBuses());
+    for (Schedule s : network.getSchedules()) {
+      switch (s.getOperatingDay()) {
+        case WEEKDAYS:
+          weekdaySchedule = s;
+          break;
+        case SATURDAY:
+          saturdaySchedule = s;
+          break;
+        case SUNDAY:
+          sundaySchedule = s;
+          break;
+      }
+      s.indexDepartures();
+    }
+  }
+
+  /**
+   * Removes the stops, routes, buses and schedules created by the current
+   * load from the model, together with the walks to and from the stops.
+   */
+  private void unload() {
+    Schedule.removeSchedule(weekdaySchedule);
+    Schedule.removeSchedule(saturdaySchedule);
+    Schedule.removeSchedule(sundaySchedule);
+    for (Bus b : loadedBuses) {
+      Bus.removeBus(b);
+    }
+    for (Route r : loadedRoutes) {
+      r.remove();
+    }
+    for (Stop s : loadedStops) {
+      for (Path p : Path.findPathsIncludingStop(s)) {
+        if (p instanceof Walk) {
+          p.remove();
+        }
+      }
+      Stop.removeStop(s);
+    }
+    loadedBuses.clear();
+    loadedRoutes.clear();
+    loadedStops.clear();
   }
   
   /**
@@ -64,6 +423,15 @@ public class DataLoader {
     return new File(getDataPath(), "routes.csv");
   }
 
+  /**
+   * Returns network file, which may not exist.
+   *
+   * @return file object for network file
+   */
+  private File networkFile() {
+    return new File(getDataPath(), NETWORK_FILE_NAME);
+  }
+
   /**
    * Opens and returns timings data file.
    *
@@ -74,25 +442,27 @@ public class DataLoader {
   }
 
   /**
-   * Loads stops data from file.
+   * Loads stops data from the records of the stops file.
+   *
+   * @param records records of the stops file
    */
-  private void loadStops() {
-    CSVParser parser = createCSVParser(stopsFile());
-    for (CSVRecord record : parser) {
+  private void loadStops(List<CSVRecord> records) {
+    for (CSVRecord record : records) {
       String name = record.get(0);
       int id = Integer.parseInt(record.get(1));
       double latitude = Double.parseDouble(record.get(2)) / 1_000_000;
       double longitude = Double.parseDouble(record.get(3)) / 1_000_000;
-      new Stop(id, name, latitude, longitude);
+      loadedStops.add(new Stop(id, name, latitude, longitude));
     }
   }
 
   /**
-   * Loads routes data from file.
+   * Loads routes data from the records of the routes file.
+   *
+   * @param records records of the routes file
    */
-  private void loadRoutes() {
-    CSVParser parser = createCSVParser(routesFile());
-    for (CSVRecord record : parser) {
+  private void loadRoutes(List<CSVRecord> records) {
+    for (CSVRecord record : records) {
       String number = record.get(0);
       List<Stop> stops = new ArrayList<>();
       // Create list of stops from comma-separated stop ID#s
@@ -101,6 +471,7 @@ public class DataLoader {
       }
       String description = stops.get(0).getName() + " - " + record.get(1);
       Route thisRoute = new Route(number, description, stops.get(0));
+      loadedRoutes.add(thisRoute);
       // Create list of timings from comma-separated timings, but ignore the
       // first as this relates to first stop, which is added when Route is
       // contructed.
@@ -120,14 +491,16 @@ public class DataLoader {
   }
 
   /**
-   * Creates RouteTimetables from loaded Routes.
+   * Creates RouteTimetables from loaded Routes and the records of the
+   * timings file.
+   *
+   * @param records records of the timings file
    */
-  private void createRouteTimetables() {
+  private void createRouteTimetables(List<CSVRecord> records) {
     BusType genericBusType = new BusType("Generic Manufacturer", "Bus 101", 50, 30);
     Date acquisitionDate = new GregorianCalendar(2015, GregorianCalendar.JANUARY, 1).getTime();
     int counter = 1000;
-    CSVParser parser = createCSVParser(timingsFile());
-    for (CSVRecord record : parser) {
+    for (CSVRecord record : records) {
       String number = record.get(0);
       int weekdayFrequency = Integer.parseInt(record.get(1));
       int saturdayFrequency = Integer.parseInt(record.get(2));
@@ -139,6 +512,7 @@ public class DataLoader {
         while (currentTime <= endTime) {
           RouteTimetable rt = new RouteTimetable(r, weekdaySchedule, currentTime, isRushHour(currentTime));
           Bus bus = new Bus(counter, genericBusType, acquisitionDate);
+          loadedBuses.add(bus);
           weekdaySchedule.allocateBus(rt, bus);
           currentTime += weekdayFrequency;
           counter++;
@@ -147,6 +521,7 @@ public class DataLoader {
         while (currentTime <= endTime) {
           RouteTimetable rt = new RouteTimetable(r, saturdaySchedule, currentTime, false);
           Bus bus = new Bus(counter, genericBusType, acquisitionDate);
+          loadedBuses.add(bus);
           saturdaySchedule.allocateBus(rt, bus);
           currentTime += saturdayFrequency;
           counter++;
@@ -155,12 +530,17 @@ public class DataLoader {
         while (currentTime <= endTime) {
           RouteTimetable rt = new RouteTimetable(r, sundaySchedule, currentTime, false);
           Bus bus = new Bus(counter, genericBusType, acquisitionDate);
+          loadedBuses.add(bus);
           sundaySchedule.allocateBus(rt, bus);
           currentTime += sundayFrequency;
           counter++;
         }
       }
     }
+    // Index departures once all RouteTimetables are loaded
+    weekdaySchedule.indexDepartures();
+    saturdaySchedule.indexDepartures();
+    sundaySchedule.indexDepartures();
   }
 
   /**
@@ -174,6 +554,20 @@ public class DataLoader {
     sundaySchedule = new Schedule(startDate, endDate, Schedule.DayOption.SUNDAY);
   }
 
+  /**
+   * Reads all records of a CSV file.
+   *
+   * @param file the file object from which to read records
+   * @return list of records within file
+   */
+  private List<CSVRecord> readRecords(File file) {
+    try {
+      return createCSVParser(file).getRecords();
+    } catch (IOException e) {
+      throw new RuntimeException("IOException: " + e.getMessage());
+    }
+  }
+
   /**
    * Creates a CSV parse from File object.
    *
@@ -0,0 +1,62 @@
+package main.misc;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+
+import main.model.*;
+import main.routeplanner.*;
+
+public class IsochroneTester {
+
+  public static void main(String[] args) {
+      new DataLoader("data");
+      List<Stop> stops = Stop.getAllStops();
+      System.out.println("Got " + stops.size() + " Stops; got " + Route.getAllRoutes().size() + " Routes; got " + Walk.getAllWalks().size() + " Walks!");
+      LocalDateTime searchTime = LocalDateTime.of(2015, Month.DECEMBER, 1, 10, 0, 0);
+      int minutes = 30;
+      TravelTimeMatrix matrix = new TravelTimeMatrix(searchTime);
+      // Build the timetable and costs table before timing
+      matrix.isochrone(stops.get(0), minutes);
+      new ItineraryFinder(null, null, searchTime);
+
+      long startTime = System.nanoTime();
+      int reached = 0;
+      for (int i = 0; i < 100; i++) {
+        Stop origin = stops.get((int) (Math.random() * stops.size()));
+        reached += matrix.isochrone(origin, minutes).size();
+      }
+      long endTime = System.nanoTime();
+      System.out.println("100 isochrones of " + minutes + " minutes made in " + (endTime - startTime) / 1_000_000 + "ms, reaching " + reached / 100 + " stops on average");
+
+      // The equivalent loop of A* queries requires one query per destination,
+      // so time a sample of destinations from one origin
+      Stop origin = stops.get((int) (Math.random() * stops.size()));
+      Isochrone isochrone = matrix.isochrone(origin, minutes);
+      int queries = 10;
+      int disagreements = 0;
+      startTime = System.nanoTime();
+      for (int i = 0; i < queries; i++) {
+        Stop destination = stops.get((int) (Math.random() * stops.size()));
+        System.out.print("Running Query #" + i + "\r");
+        boolean withinMinutes = false;
+        try {
+          List<Itinerary> itineraries = new ItineraryFinder(origin, destination, searchTime).findBestItineraries(1);
+          if (!itineraries.isEmpty() && !itineraries.get(0).getLegs().isEmpty()) {
+            List<ItineraryLeg> legs = itineraries.get(0).getLegs();
+            withinMinutes = legs.get(legs.size() - 1).getEndTime() - matrix.getTime() <= minutes;
+          }
+        } catch (RuntimeException e) {
+          System.out.println("Query #" + i + " failed: " + e);
+        }
+        if (!destination.equals(origin) && withinMinutes != (isochrone.travelTime(destination) != TravelTimeMatrix.UNREACHABLE)) {
+          disagreements++;
+        }
+      }
+      endTime = System.nanoTime();
+      double perQuery = (endTime - startTime) / 1_000_000.0 / queries;
+      System.out.println(queries + " ItineraryFinder queries took " + perQuery + "ms each; one isochrone would need " + stops.size() + " queries, taking " + perQuery * stops.size() / 1000 + "s");
+      System.out.println("Isochrone membership differed for " + disagreements + " destinations");
+    }
+
+}
@@ -16,7 +16,7 @@ public class ItineraryTester {
       long startTime = System.nanoTime();
       ItineraryFinder itf = new ItineraryFinder(null, null, LocalDateTime.now());
       long endTime = System.nanoTime();
-      System.out.println("Took " + (endTime - startTime) / 1_000_000_000 + "s to run CostEstimator");
+      System.out.println("Took " + (endTime - startTime) / 1_000_000 + "ms to run CostEstimator");
       double counter = 0;
       double max = 0;
       for (int i = 0; i < 100; i++) {
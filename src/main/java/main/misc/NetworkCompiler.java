@@ -0,0 +1,25 @@
+package main.misc;
+
+import java.io.File;
+import java.io.IOException;
+
+import main.model.*;
+
+/**
+ * Compiles the data within a data folder (by default, "data") into a
+ * network file, from which later runs of the system load the data without
+ * parsing the data files.
+ *
+ * @see DataLoader#compile()
+ */
+public class NetworkCompiler {
+
+  public static void main(String[] args) throws IOException {
+    String dataPath = args.length > 0 ? args[0] : "data";
+    long startTime = System.nanoTime();
+    DataLoader loader = new DataLoader(dataPath);
+    File file = loader.compile();
+    long endTime = System.nanoTime();
+    System.out.println("Compiled " + Stop.getAllStops().size() + " Stops, " + Route.getAllRoutes().size() + " Routes and " + Bus.getAllBuses().size() + " Buses into " + file + " (" + file.length() + " bytes) in " + (endTime - startTime) / 1_000_000 + "ms");
+  }
+}
@@ -19,7 +19,7 @@ public class StopPair {
   /**
    * Create a StopPair instance.
    *
-   * StopPairs are used as keys in the CostEstimator HashMap.
+   * StopPairs are used as keys in HashMaps.
    *
    * @param s1 first stop in pair
    * @param s2 second stop in pair
@@ -0,0 +1,75 @@
+package main.misc;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+
+import main.model.*;
+import main.routeplanner.*;
+
+public class TransferPatternTester {
+
+  public static void main(String[] args) {
+      new DataLoader("data");
+      List<Stop> stops = Stop.getAllStops();
+      System.out.println("Got " + stops.size() + " Stops; got " + Route.getAllRoutes().size() + " Routes; got " + Walk.getAllWalks().size() + " Walks!");
+      LocalDateTime searchTime = LocalDateTime.of(2015, Month.DECEMBER, 1, 10, 0, 0);
+
+      // Precompute (or load) the patterns of every schedule
+      long startTime = System.nanoTime();
+      for (Schedule schedule : Schedule.getAllSchedules()) {
+        TransferPatternItineraryFinder.precompute(schedule);
+      }
+      long endTime = System.nanoTime();
+      System.out.println("Transfer patterns of " + Schedule.getAllSchedules().size() + " schedules ready in " + (endTime - startTime) / 1_000_000 + "ms");
+
+      int queries = 1000;
+      Stop[] origins = new Stop[queries];
+      Stop[] destinations = new Stop[queries];
+      for (int i = 0; i < queries; i++) {
+        origins[i] = stops.get((int) (Math.random() * stops.size()));
+        destinations[i] = stops.get((int) (Math.random() * stops.size()));
+      }
+      int[] arrivals = new int[queries];
+      // Warm up both engines before timing
+      for (int i = 0; i < queries; i++) {
+        new TransferPatternItineraryFinder(origins[i], destinations[i], searchTime).findBestItinerary();
+        new RaptorItineraryFinder(origins[i], destinations[i], searchTime).findBestItinerary();
+      }
+      startTime = System.nanoTime();
+      for (int i = 0; i < queries; i++) {
+        arrivals[i] = arrival(new TransferPatternItineraryFinder(origins[i], destinations[i], searchTime).findBestItinerary());
+      }
+      endTime = System.nanoTime();
+      System.out.println(queries + " transfer pattern queries took " + (endTime - startTime) / 1_000.0 / queries + "us each");
+
+      int earlier = 0;
+      int later = 0;
+      startTime = System.nanoTime();
+      for (int i = 0; i < queries; i++) {
+        int arrival = arrival(new RaptorItineraryFinder(origins[i], destinations[i], searchTime).findBestItinerary());
+        if (arrival != arrivals[i]) {
+          if (arrival < 0 || (arrivals[i] >= 0 && arrivals[i] < arrival)) {
+            earlier++;
+          } else {
+            later++;
+          }
+        }
+      }
+      endTime = System.nanoTime();
+      System.out.println(queries + " RAPTOR queries took " + (endTime - startTime) / 1_000.0 / queries + "us each");
+      System.out.println("Transfer patterns arrived earlier for " + earlier + " queries and later for " + later + " queries");
+    }
+
+  /**
+   * Gets the arrival time of an itinerary.
+   */
+  private static int arrival(Itinerary itinerary) {
+    if (itinerary == null) {
+      return -1;
+    }
+    List<ItineraryLeg> legs = itinerary.getLegs();
+    return legs.isEmpty() ? 0 : legs.get(legs.size() - 1).getEndTime();
+  }
+
+}
@@ -29,8 +29,8 @@ public class Bus extends Observable {
   private RouteTimetable route;
   /** the stop associated with this bus */
   private Stop stop;
-  /** a data structure containing all busses */
-  private static List<Bus> allBuses = new ArrayList<>();
+  // The Model holds a list of all buses, and all buses within it by fleet
+  // number
 
   /**
    * Creates a bus and add it to the allBuses list.
@@ -56,7 +56,9 @@ public class Bus extends Observable {
       String msg = "Bus with fleet number " + bus.getFleetNumber() + " already exists";
       throw new IllegalArgumentException(msg);
     }
-    allBuses.add(bus);
+    Model model = ModelLock.model();
+    model.allBuses.add(bus);
+    model.busesByFleetNumber.put(bus.getFleetNumber(), bus);
   }
 
   /**
@@ -65,7 +67,10 @@ public class Bus extends Observable {
    * @param bus the bus object to remove
    */
   public static void removeBus(Bus bus) {
-    allBuses.remove(bus);
+    Model model = ModelLock.model();
+    if (model.allBuses.remove(bus)) {
+      model.busesByFleetNumber.remove(bus.getFleetNumber());
+    }
   }
 
   /**
@@ -74,7 +79,7 @@ public class Bus extends Observable {
    * @return list of all buses within system
    */
   public static List<Bus> getAllBuses() {
-    return allBuses;
+    return ModelLock.model().allBuses;
   }
 
   /**
@@ -85,12 +90,7 @@ public class Bus extends Observable {
    *         argument
    */
   public static Bus findBus(int fleetNumber) {
-    for (Bus b : allBuses) {
-      if (b.getFleetNumber() == fleetNumber) {
-        return b;
-      }
-    }
-    return null;
+    return ModelLock.model().busesByFleetNumber.get(fleetNumber);
   }
 
   /**
@@ -383,7 +383,7 @@ public class Bus extends Observable {
    */
   public static int getNumOfBusesPerType(BusType type){
     HashMap<BusType, List<Bus>> numOfBusesPerType = new HashMap<BusType, List<Bus>>();
-    for(Bus o : allBuses){
+    for(Bus o : getAllBuses()){
       List<Bus> temp = numOfBusesPerType.get(o.getBusType());
       if(temp == null){
         temp = new ArrayList<Bus>();
@@ -411,11 +411,6 @@ public class Bus extends Observable {
    * @return true if Bus already exists, else false.
    */
   private static boolean busExists(Bus bus) {
-    for (Bus b : allBuses) {
-      if (b.equals(bus)) {
-        return true;
-      }
-    }
-    return false;
+    return ModelLock.model().busesByFleetNumber.containsKey(bus.getFleetNumber());
   }
 }
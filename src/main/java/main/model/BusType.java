@@ -1,7 +1,5 @@
 package main.model;
 
-import java.util.*;
-
 /**
  * The BusType class defines bus type objects that hold
  * several characteristics of the type such as make, model,
@@ -16,8 +14,7 @@ public class BusType {
 	private final int seatedCapacity;
 	/** the standing capacity of this bus type  */
 	private final int standingCapacity;
-	/** a data structure wherin all bus type objects are stored  */
-	private static List<BusType> type = new ArrayList<>();
+	// The Model holds a list of all bus types
 
 	/**
 	 * Creates a bus type and add it to the type list.
@@ -32,7 +29,7 @@ public class BusType {
 		this.model = model;
 		this.seatedCapacity = seatedcapacity;
 		this.standingCapacity = standingcapacity;
-		type.add(this);
+		ModelLock.model().busTypes.add(this);
 	}
 
 	/**
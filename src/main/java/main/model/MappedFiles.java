@@ -0,0 +1,169 @@
+package main.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The MappedFiles class holds the file handling shared by the files which
+ * are built from the data and saved between runs of the system, such as the
+ * NetworkFile and the tables precomputed by the route planner.
+ *
+ * A file is saved by writing a temporary file within the same directory,
+ * either through a stream or by mapping it into memory, and then moving it
+ * into place, so other JVMs never see a partially written file. Saved files
+ * are mapped directly into memory when loaded, so are shared through the
+ * page cache between JVMs running on the same host. Each file records a
+ * hash of the data from which it was built, so that a stale file is never
+ * loaded; tables hash the data using the 64-bit FNV-1a hash.
+ *
+ * @see NetworkFile
+ */
+public final class MappedFiles {
+
+  /**
+   * Initial value of an FNV-1a hash, to which values are added
+   */
+  public static final long HASH_BASIS = 0xcbf29ce484222325L;
+
+  private static final long HASH_PRIME = 0x100000001b3L;
+
+  /**
+   * The StreamWriter interface writes the contents of the file being saved
+   * to a stream.
+   */
+  public interface StreamWriter {
+
+    /**
+     * Writes the contents of the file.
+     *
+     * @param out the stream to which to write
+     * @throws IOException if the contents cannot be written
+     */
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  /**
+   * The BufferWriter interface writes the contents of the file being saved
+   * to the buffer into which it is mapped.
+   */
+  public interface BufferWriter {
+
+    /**
+     * Writes the contents of the file.
+     *
+     * @param buffer the buffer to which to write, of the size of the file
+     */
+    void write(MappedByteBuffer buffer);
+  }
+
+  private MappedFiles() {
+  }
+
+  /**
+   * Save a file by writing it to a stream.
+   *
+   * The file is first written to a temporary file within the same
+   * directory, which is then moved into place.
+   *
+   * @param file   the file to which to save
+   * @param writer the writer of the contents of the file
+   * @throws IOException if the file cannot be written
+   */
+  public static void save(File file, StreamWriter writer) throws IOException {
+    File temp = createTempFile(file);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+        writer.write(out);
+      }
+      moveIntoPlace(temp, file);
+    } finally {
+      temp.delete();
+    }
+  }
+
+  /**
+   * Save a file of known size by mapping it into memory.
+   *
+   * The file is first written to a temporary file within the same
+   * directory, which is then moved into place.
+   *
+   * @param file   the file to which to save
+   * @param size   the size of the file in bytes
+   * @param writer the writer of the contents of the file
+   * @throws IOException if the file cannot be written
+   */
+  public static void save(File file, long size, BufferWriter writer) throws IOException {
+    File temp = createTempFile(file);
+    try {
+      try (RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+           FileChannel channel = raf.getChannel()) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        writer.write(buffer);
+        buffer.force();
+      }
+      moveIntoPlace(temp, file);
+    } finally {
+      temp.delete();
+    }
+  }
+
+  /**
+   * Create the temporary file to which a file is written before being moved
+   * into place.
+   */
+  private static File createTempFile(File file) throws IOException {
+    File directory = file.getAbsoluteFile().getParentFile();
+    return File.createTempFile(file.getName(), ".tmp", directory);
+  }
+
+  /**
+   * Atomically replace a file by a temporary file written in its place.
+   */
+  private static void moveIntoPlace(File temp, File file) throws IOException {
+    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Map a saved file into memory.
+   *
+   * The mapping remains valid after the file is closed.
+   *
+   * @param file       the file to map
+   * @param headerSize the size of the header of the file in bytes
+   * @return buffer into which the whole file is mapped, or null if the file
+   *         does not exist or is too short to hold the header
+   * @throws IOException if the file cannot be read
+   */
+  public static MappedByteBuffer map(File file, int headerSize) throws IOException {
+    if (!file.isFile() || file.length() < headerSize) {
+      return null;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel channel = raf.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * Add an int value to an FNV-1a hash.
+   *
+   * @param hash  the hash, starting from HASH_BASIS
+   * @param value the value to add
+   * @return the hash with value added
+   */
+  public static long hash(long hash, int value) {
+    for (int shift = 0; shift < 32; shift += 8) {
+      hash ^= (value >>> shift) & 0xff;
+      hash *= HASH_PRIME;
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,160 @@
+package main.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The Model class holds the lists and indexes of all stops, paths, routes,
+ * buses, bus types and schedules within the system.
+ *
+ * Stop, Path, Route, Bus, BusType and Schedule keep their lists within the
+ * Model found through {@link ModelLock#model()}, rather than in static
+ * fields of their own, so that an update may be made to a copy of the model
+ * which replaces it only once complete (see
+ * {@link ModelLock#update(Runnable)}). The fields of a Model are used by
+ * those classes alone, which maintain them just as they maintained their
+ * static fields.
+ *
+ * Copying a model copies its lists and indexes, but not the objects within
+ * them, which are shared between the copies. A copy must therefore never
+ * change an object it shares, only its own lists of them.
+ */
+final class Model {
+
+  // Stops: see Stop
+  final List<Stop> allStops;
+  final Map<Integer, Stop> stopsById;
+  final SpatialIndex spatialIndex;
+  final StopNameIndex nameIndex;
+  int[] distanceMatrix;
+  Stop[] matrixStops;
+  int numberOfMatrixStops;
+  final Map<Stop, Integer> matrixPositions;
+
+  // Paths: see Path
+  final List<Path> allPaths;
+  final Map<Stop, List<Path.Incidence>> incidences;
+  final List<Path.Incidence> unindexedPaths;
+  final Map<Path, Long> pathSequences;
+  long pathsAdded;
+
+  // Routes: see Route
+  final Map<String, List<Route>> routesByName;
+  final Map<String, List<Route>> routesByNumber;
+
+  // Buses and bus types: see Bus and BusType
+  final List<Bus> allBuses;
+  final Map<Integer, Bus> busesByFleetNumber;
+  final List<BusType> busTypes;
+
+  // Schedules: see Schedule
+  final List<Schedule> allSchedules;
+  final Map<Schedule.DayOption, TreeMap<LocalDate, Schedule>> schedulesByDate;
+
+  // the number of updates made to the model (see ModelLock)
+  long generation;
+  // identifies the state of the model, changing whenever it changes
+  volatile long version;
+
+  /**
+   * Creates an empty model.
+   */
+  Model() {
+    allStops = new ArrayList<>();
+    stopsById = new HashMap<>();
+    spatialIndex = new SpatialIndex();
+    nameIndex = new StopNameIndex();
+    distanceMatrix = new int[0];
+    matrixStops = new Stop[0];
+    numberOfMatrixStops = 0;
+    matrixPositions = new IdentityHashMap<>();
+
+    allPaths = new ArrayList<>();
+    incidences = new IdentityHashMap<>();
+    unindexedPaths = new ArrayList<>();
+    pathSequences = new IdentityHashMap<>();
+    pathsAdded = 0;
+
+    routesByName = new HashMap<>();
+    routesByNumber = new HashMap<>();
+
+    allBuses = new ArrayList<>();
+    busesByFleetNumber = new HashMap<>();
+    busTypes = new ArrayList<>();
+
+    allSchedules = new ArrayList<>();
+    schedulesByDate = new EnumMap<>(Schedule.DayOption.class);
+  }
+
+  /**
+   * Creates a copy of a model, holding the same objects in lists and
+   * indexes of its own.
+   *
+   * @param model the model to copy
+   */
+  Model(Model model) {
+    allStops = new ArrayList<>(model.allStops);
+    stopsById = new HashMap<>(model.stopsById);
+    // Adding the stops in order keeps the order of the results of the
+    // indexes, which is that of the list of all stops
+    spatialIndex = new SpatialIndex();
+    nameIndex = new StopNameIndex();
+    for (Stop s : allStops) {
+      spatialIndex.add(s);
+      nameIndex.add(s);
+    }
+    // Rows of the distance matrix are never changed once written, and each
+    // model only reads the rows of the stops it holds, so the matrix is
+    // shared until either model grows it
+    distanceMatrix = model.distanceMatrix;
+    matrixStops = Arrays.copyOf(model.matrixStops, model.matrixStops.length);
+    numberOfMatrixStops = model.numberOfMatrixStops;
+    matrixPositions = new IdentityHashMap<>(model.matrixPositions);
+
+    allPaths = new ArrayList<>(model.allPaths);
+    incidences = new IdentityHashMap<>();
+    for (Map.Entry<Stop, List<Path.Incidence>> entry : model.incidences.entrySet()) {
+      incidences.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+    }
+    unindexedPaths = new ArrayList<>(model.unindexedPaths);
+    pathSequences = new IdentityHashMap<>(model.pathSequences);
+    pathsAdded = model.pathsAdded;
+
+    routesByName = copyIndex(model.routesByName);
+    routesByNumber = copyIndex(model.routesByNumber);
+
+    allBuses = new ArrayList<>(model.allBuses);
+    busesByFleetNumber = new HashMap<>(model.busesByFleetNumber);
+    busTypes = new ArrayList<>(model.busTypes);
+
+    allSchedules = new ArrayList<>(model.allSchedules);
+    schedulesByDate = new EnumMap<>(Schedule.DayOption.class);
+    for (Map.Entry<Schedule.DayOption, TreeMap<LocalDate, Schedule>> entry : model.schedulesByDate.entrySet()) {
+      schedulesByDate.put(entry.getKey(), new TreeMap<>(entry.getValue()));
+    }
+
+    generation = model.generation;
+    version = model.version;
+  }
+
+  /**
+   * Copies an index of routes, with lists of its own.
+   *
+   * @param index the index to copy
+   * @return copy of index
+   */
+  private static Map<String, List<Route>> copyIndex(Map<String, List<Route>> index) {
+    Map<String, List<Route>> copy = new HashMap<>();
+    for (Map.Entry<String, List<Route>> entry : index.entrySet()) {
+      copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+    }
+    return copy;
+  }
+}
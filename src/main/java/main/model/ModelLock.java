@@ -0,0 +1,206 @@
+package main.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * The ModelLock class guards the lists of all stops, paths, buses and
+ * schedules while they are replaced.
+ *
+ * The lists are held within a {@link Model}, which is not itself
+ * thread-safe. The model is replaced (e.g. when timetable data is reloaded)
+ * by {@link #update(Runnable)}, which makes the update to a copy of the
+ * model, off to one side, and then publishes the copy in place of the model
+ * with a single reference swap. Neither queries nor the update wait for one
+ * another, and an update which fails part way through leaves the model as
+ * it was.
+ *
+ * Code which reads the model while it may be replaced, such as a route
+ * planning query, holds the read lock for the duration. Holding the read
+ * lock never blocks; instead the thread keeps reading the model which was
+ * current when it took the lock until it releases it, however many updates
+ * are published meanwhile, so sees the model either wholly before or wholly
+ * after an update. A query which searches a {@link TransitNetwork} need only
+ * hold the read lock while getting the network, as the network is a
+ * snapshot which an update leaves unchanged.
+ *
+ * Each update advances the generation of the model. Data derived from the
+ * model and cached between queries records the generation from which it was
+ * derived, so that it is rebuilt once the model is replaced.
+ *
+ * The model also has a version, which changes with every change made to the
+ * stops, paths and schedules it holds, whether or not through an update, so
+ * that data compiled from the model (such as a {@link TransitNetwork}) can
+ * tell whether the model has changed since it was compiled.
+ */
+public class ModelLock {
+
+  // the model seen by threads neither holding the read lock nor updating
+  private static volatile Model current = new Model();
+  // the model seen by each thread holding the read lock or updating
+  private static final ThreadLocal<Hold> holds = new ThreadLocal<>();
+  // held while an update is made, so that updates are made one at a time
+  private static final Object updateLock = new Object();
+  // source of versions, so that no two states of any models share one
+  private static final AtomicLong versions = new AtomicLong();
+
+  private static final Lock readLock = new ReadLock();
+
+  /**
+   * The Hold class records the model seen by a thread holding the read lock
+   * or making an update.
+   */
+  private static class Hold {
+
+    private final Model model;
+    private int count = 1;
+
+    /**
+     * Creates a hold on a model.
+     *
+     * @param model the model seen while the hold is kept
+     */
+    Hold(Model model) {
+      this.model = model;
+    }
+  }
+
+  /**
+   * The ReadLock class is the lock held while reading the model. Taking it
+   * keeps the model current at the time for the thread, until the thread
+   * has released it as many times as it took it.
+   */
+  private static class ReadLock implements Lock {
+
+    @Override
+    public void lock() {
+      Hold hold = holds.get();
+      if (hold != null) {
+        hold.count++;
+      } else {
+        holds.set(new Hold(current));
+      }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      lock();
+    }
+
+    @Override
+    public boolean tryLock() {
+      lock();
+      return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+      lockInterruptibly();
+      return true;
+    }
+
+    @Override
+    public void unlock() {
+      Hold hold = holds.get();
+      if (hold == null) {
+        throw new IllegalMonitorStateException("read lock is not held");
+      }
+      if (--hold.count == 0) {
+        holds.remove();
+      }
+    }
+
+    @Override
+    public Condition newCondition() {
+      throw new UnsupportedOperationException("read lock has no conditions");
+    }
+  }
+
+  /**
+   * Gets the lock held while reading the model.
+   *
+   * @return read lock
+   */
+  public static Lock readLock() {
+    return readLock;
+  }
+
+  /**
+   * Gets the model seen by the current thread.
+   *
+   * This is the model held by the read lock or being updated by the thread,
+   * or else the current model.
+   *
+   * @return model seen by the thread
+   */
+  static Model model() {
+    Hold hold = holds.get();
+    return hold != null ? hold.model : current;
+  }
+
+  /**
+   * Gets the generation of the model.
+   *
+   * @return number of updates made to the model
+   */
+  public static long getGeneration() {
+    return model().generation;
+  }
+
+  /**
+   * Gets the version of the model.
+   *
+   * @return number identifying the state of the model, which changes
+   *         whenever a stop, path, schedule or RouteTimetable is added to or
+   *         removed from it
+   */
+  public static long getVersion() {
+    return model().version;
+  }
+
+  /**
+   * Records a change made to the model.
+   */
+  static void modified() {
+    model().version = versions.incrementAndGet();
+  }
+
+  /**
+   * Updates the model, and advances its generation.
+   *
+   * The update is made to a copy of the current model, which is seen by the
+   * calling thread alone until the update is complete, and then replaces the
+   * current model. Other threads therefore continue to read the current
+   * model while the update is made. If the update fails part way through,
+   * the copy is discarded, leaving the current model and its generation as
+   * they were. Updates are made one at a time.
+   *
+   * Changes made to the current model by other threads while the update is
+   * made are lost once it is replaced.
+   *
+   * @param update the update to make
+   */
+  public static void update(Runnable update) {
+    synchronized (updateLock) {
+      Model next = new Model(current);
+      next.generation++;
+      Hold previous = holds.get();
+      holds.set(new Hold(next));
+      try {
+        update.run();
+      } finally {
+        if (previous != null) {
+          holds.set(previous);
+        } else {
+          holds.remove();
+        }
+      }
+      current = next;
+    }
+  }
+}
@@ -0,0 +1,645 @@
+package main.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The NetworkFile class holds a network of stops, routes, buses and
+ * schedules compiled into a compact binary file, so that it may be loaded
+ * without parsing and checking the data from which it was built.
+ *
+ * A network file is written once the network has been built, and records
+ * a hash of the data from which it was built. When loaded, a file is read
+ * in two steps, as by the DataLoader: {@link #read(File, long)} maps the
+ * file into memory and reads it in bulk, without touching the model, and
+ * {@link #load()} then creates the model objects of the network. A file is
+ * only read if its version and hash match the running system, so changes to
+ * the data never result in a stale network being loaded.
+ *
+ * Alongside the objects of the model, the file holds the TransitNetwork of
+ * each schedule. These are installed once the network is loaded, so that
+ * the first query against each schedule need not compile its network.
+ *
+ * The file format consists of the magic number, format version and source
+ * hash, followed by the stops, bus types, buses, routes and schedules, each
+ * preceded by their number, all in big-endian order. Objects refer to one
+ * another by their position within the file. Strings are held as the number
+ * of bytes of their UTF-8 encoding, followed by those bytes, and arrays as
+ * their length followed by their elements.
+ */
+public class NetworkFile {
+
+  /**
+   * Magic number identifying a network file
+   */
+  public static final int MAGIC = 0x4e455457;
+
+  /**
+   * Version of the file format
+   */
+  public static final int VERSION = 1;
+
+  // Size of the header: magic number, version, source hash
+  private static final int HEADER_BYTES = 4 + 4 + 8;
+
+  // Stops
+  private final int[] stopIds;
+  private final String[] stopNames;
+  private final double[] stopLatitudes;
+  private final double[] stopLongitudes;
+
+  // Bus types
+  private final String[] busTypeMakes;
+  private final String[] busTypeModels;
+  private final int[] busTypeSeatedCapacities;
+  private final int[] busTypeStandingCapacities;
+
+  // Buses
+  private final int[] busFleetNumbers;
+  private final int[] busTypes;
+  private final long[] busAcquisitionDates;
+
+  // Routes, with the non-rush hour and rush hour times between stops
+  private final String[] routeNumbers;
+  private final String[] routeDescriptions;
+  private final int[][] routeStops;
+  private final int[][] routeTimings;
+  private final int[][] routeRushHourTimings;
+
+  // Schedules, with the route, start time, rush hour flag and bus of each
+  // route timetable, and the order in which it was created among those of
+  // all schedules
+  private final LocalDate[] scheduleValidFromDates;
+  private final LocalDate[] scheduleValidToDates;
+  private final Schedule.DayOption[] scheduleOperatingDays;
+  private final int[][] tripRoutes;
+  private final int[][] tripStartTimes;
+  private final int[][] tripRushHours;
+  private final int[][] tripBuses;
+  private final int[][] tripOrders;
+  // The TransitNetwork of each schedule, left within the mapped file until
+  // loaded, or null if none was saved
+  private final ByteBuffer[] scheduleNetworks;
+
+  // The model objects created by load
+  private List<Stop> stops;
+  private List<Route> routes;
+  private List<Bus> buses;
+  private List<Schedule> schedules;
+  // The number of TransitNetworks installed by load
+  private int networksInstalled;
+
+  /**
+   * Reads a network file from a buffer positioned after its header.
+   *
+   * @param in the buffer from which to read
+   */
+  private NetworkFile(ByteBuffer in) {
+    int numberOfStops = readCount(in, 4 + 4 + 8 + 8);
+    stopIds = new int[numberOfStops];
+    stopNames = new String[numberOfStops];
+    stopLatitudes = new double[numberOfStops];
+    stopLongitudes = new double[numberOfStops];
+    for (int s = 0; s < numberOfStops; s++) {
+      stopIds[s] = in.getInt();
+      stopNames[s] = readString(in);
+      stopLatitudes[s] = in.getDouble();
+      stopLongitudes[s] = in.getDouble();
+    }
+
+    int numberOfBusTypes = readCount(in, 4 + 4 + 4 + 4);
+    busTypeMakes = new String[numberOfBusTypes];
+    busTypeModels = new String[numberOfBusTypes];
+    busTypeSeatedCapacities = new int[numberOfBusTypes];
+    busTypeStandingCapacities = new int[numberOfBusTypes];
+    for (int t = 0; t < numberOfBusTypes; t++) {
+      busTypeMakes[t] = readString(in);
+      busTypeModels[t] = readString(in);
+      busTypeSeatedCapacities[t] = in.getInt();
+      busTypeStandingCapacities[t] = in.getInt();
+    }
+
+    busFleetNumbers = readInts(in);
+    busTypes = readInts(in);
+    if (busTypes.length != busFleetNumbers.length || in.remaining() / 8 < busFleetNumbers.length) {
+      throw new IllegalArgumentException("buses are malformed");
+    }
+    busAcquisitionDates = new long[busFleetNumbers.length];
+    in.asLongBuffer().get(busAcquisitionDates);
+    in.position(in.position() + 8 * busAcquisitionDates.length);
+    checkIndices(busTypes, numberOfBusTypes);
+
+    int numberOfRoutes = readCount(in, 4 + 4 + 4 + 4 + 4);
+    routeNumbers = new String[numberOfRoutes];
+    routeDescriptions = new String[numberOfRoutes];
+    routeStops = new int[numberOfRoutes][];
+    routeTimings = new int[numberOfRoutes][];
+    routeRushHourTimings = new int[numberOfRoutes][];
+    for (int r = 0; r < numberOfRoutes; r++) {
+      routeNumbers[r] = readString(in);
+      routeDescriptions[r] = readString(in);
+      routeStops[r] = readInts(in);
+      routeTimings[r] = readInts(in);
+      routeRushHourTimings[r] = readInts(in);
+      checkIndices(routeStops[r], numberOfStops);
+      if (routeStops[r].length == 0 ||
+          routeTimings[r].length != routeStops[r].length ||
+          routeRushHourTimings[r].length != routeStops[r].length) {
+        throw new IllegalArgumentException("route " + routeNumbers[r] + " is malformed");
+      }
+    }
+
+    int numberOfSchedules = readCount(in, 8 + 8 + 4 + 4 + 4 + 4 + 4 + 4 + 4);
+    scheduleValidFromDates = new LocalDate[numberOfSchedules];
+    scheduleValidToDates = new LocalDate[numberOfSchedules];
+    scheduleOperatingDays = new Schedule.DayOption[numberOfSchedules];
+    tripRoutes = new int[numberOfSchedules][];
+    tripStartTimes = new int[numberOfSchedules][];
+    tripRushHours = new int[numberOfSchedules][];
+    tripBuses = new int[numberOfSchedules][];
+    tripOrders = new int[numberOfSchedules][];
+    scheduleNetworks = new ByteBuffer[numberOfSchedules];
+    int numberOfTrips = 0;
+    for (int i = 0; i < numberOfSchedules; i++) {
+      scheduleValidFromDates[i] = LocalDate.ofEpochDay(in.getLong());
+      scheduleValidToDates[i] = LocalDate.ofEpochDay(in.getLong());
+      scheduleOperatingDays[i] = Schedule.DayOption.values()[in.getInt()];
+      tripRoutes[i] = readInts(in);
+      tripStartTimes[i] = readInts(in);
+      tripRushHours[i] = readInts(in);
+      tripBuses[i] = readInts(in);
+      tripOrders[i] = readInts(in);
+      checkIndices(tripRoutes[i], numberOfRoutes);
+      for (int bus : tripBuses[i]) {
+        if (bus < -1 || bus >= busFleetNumbers.length) {
+          throw new IllegalArgumentException("route timetable refers to bus " + bus + " of " + busFleetNumbers.length);
+        }
+      }
+      if (tripStartTimes[i].length != tripRoutes[i].length ||
+          tripRushHours[i].length != tripRoutes[i].length ||
+          tripBuses[i].length != tripRoutes[i].length ||
+          tripOrders[i].length != tripRoutes[i].length) {
+        throw new IllegalArgumentException("schedule " + i + " is malformed");
+      }
+      numberOfTrips += tripRoutes[i].length;
+      int networkBytes = in.getInt();
+      if (networkBytes > 0) {
+        ByteBuffer network = in.slice();
+        network.limit(networkBytes);
+        scheduleNetworks[i] = network;
+        in.position(in.position() + networkBytes);
+      }
+    }
+    if (in.hasRemaining()) {
+      throw new IllegalArgumentException("network file has trailing data");
+    }
+
+    // Each route timetable must be created once, and those of a schedule in
+    // the order in which they were saved
+    boolean[] ordered = new boolean[numberOfTrips];
+    for (int i = 0; i < numberOfSchedules; i++) {
+      checkIndices(tripOrders[i], numberOfTrips);
+      for (int t = 0; t < tripOrders[i].length; t++) {
+        if (ordered[tripOrders[i][t]] || (t > 0 && tripOrders[i][t] < tripOrders[i][t - 1])) {
+          throw new IllegalArgumentException("route timetables of schedule " + i + " are misordered");
+        }
+        ordered[tripOrders[i][t]] = true;
+      }
+    }
+  }
+
+  /**
+   * Save a network to a file.
+   *
+   * The network is first written to a temporary file within the same
+   * directory, which is then moved into place. Other JVMs therefore never
+   * see a partially written network.
+   *
+   * Every stop of the routes, every route of the schedules, and every bus
+   * allocated within the schedules must be within the network. The
+   * TransitNetwork of each schedule is compiled and saved alongside it.
+   *
+   * @param file       the file to which to save
+   * @param sourceHash hash of the data from which the network was built
+   * @param stops      stops of the network
+   * @param routes     routes of the network
+   * @param buses      buses of the network
+   * @param schedules  schedules of the network
+   * @throws IOException if the file cannot be written
+   * @throws IllegalArgumentException if the network refers to an object not
+   *                                  within it
+   */
+  public static void save(File file, long sourceHash, List<Stop> stops, List<Route> routes, List<Bus> buses, List<Schedule> schedules) throws IOException, IllegalArgumentException {
+    Map<Stop, Integer> stopPositions = positions(stops);
+    Map<Route, Integer> routePositions = positions(routes);
+    Map<Bus, Integer> busPositions = positions(buses);
+    // Route timetables are numbered in the order in which they are created,
+    // and those numbers are recorded by the datastore, so their order is kept
+    List<RouteTimetable> allTrips = new ArrayList<>();
+    for (Schedule schedule : schedules) {
+      allTrips.addAll(schedule.getRouteTimetables());
+    }
+    Collections.sort(allTrips, new Comparator<RouteTimetable>() {
+      @Override
+      public int compare(RouteTimetable a, RouteTimetable b) {
+        return Integer.compare(a.getID(), b.getID());
+      }
+    });
+    Map<RouteTimetable, Integer> tripOrders = positions(allTrips);
+    Map<BusType, Integer> busTypePositions = new IdentityHashMap<>();
+    List<BusType> busTypes = new ArrayList<>();
+    for (Bus b : buses) {
+      if (!busTypePositions.containsKey(b.getBusType())) {
+        busTypePositions.put(b.getBusType(), busTypes.size());
+        busTypes.add(b.getBusType());
+      }
+    }
+
+    MappedFiles.save(file, new MappedFiles.StreamWriter() {
+      @Override
+      public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sourceHash);
+
+        out.writeInt(stops.size());
+        for (Stop s : stops) {
+          out.writeInt(s.getID());
+          writeString(out, s.getName());
+          out.writeDouble(s.getLatitude());
+          out.writeDouble(s.getLongitude());
+        }
+
+        out.writeInt(busTypes.size());
+        for (BusType t : busTypes) {
+          writeString(out, t.getMake());
+          writeString(out, t.getModel());
+          out.writeInt(t.getSeatedCapacity());
+          out.writeInt(t.getStandingCapacity());
+        }
+
+        int[] fleetNumbers = new int[buses.size()];
+        int[] types = new int[buses.size()];
+        for (int b = 0; b < buses.size(); b++) {
+          fleetNumbers[b] = buses.get(b).getFleetNumber();
+          types[b] = busTypePositions.get(buses.get(b).getBusType());
+        }
+        writeInts(out, fleetNumbers);
+        writeInts(out, types);
+        for (Bus b : buses) {
+          out.writeLong(b.getAcquisitionDate().getTime());
+        }
+
+        out.writeInt(routes.size());
+        for (Route r : routes) {
+          writeString(out, r.getNumber());
+          writeString(out, r.getDescription());
+          List<Stop> routeStops = r.getStops();
+          int[] positions = new int[routeStops.size()];
+          int[] timings = new int[routeStops.size()];
+          int[] rushHourTimings = new int[routeStops.size()];
+          for (int i = 0; i < routeStops.size(); i++) {
+            positions[i] = position(stopPositions, routeStops.get(i));
+            timings[i] = r.cumulativeTime(i, false) - (i > 0 ? r.cumulativeTime(i - 1, false) : 0);
+            rushHourTimings[i] = r.cumulativeTime(i, true) - (i > 0 ? r.cumulativeTime(i - 1, true) : 0);
+          }
+          writeInts(out, positions);
+          writeInts(out, timings);
+          writeInts(out, rushHourTimings);
+        }
+
+        out.writeInt(schedules.size());
+        for (Schedule schedule : schedules) {
+          out.writeLong(schedule.getValidFromDate().toEpochDay());
+          out.writeLong(schedule.getValidToDate().toEpochDay());
+          out.writeInt(schedule.getOperatingDay().ordinal());
+          List<RouteTimetable> trips = schedule.getRouteTimetables();
+          int[] tripRoutes = new int[trips.size()];
+          int[] tripStartTimes = new int[trips.size()];
+          int[] tripRushHours = new int[trips.size()];
+          int[] tripBuses = new int[trips.size()];
+          int[] orders = new int[trips.size()];
+          for (int i = 0; i < trips.size(); i++) {
+            RouteTimetable rt = trips.get(i);
+            Bus bus = schedule.getAllocatedBus(rt);
+            tripRoutes[i] = position(routePositions, rt.getRoute());
+            tripStartTimes[i] = rt.getStartTime();
+            tripRushHours[i] = rt.isRushHour() ? 1 : 0;
+            tripBuses[i] = bus == null ? -1 : position(busPositions, bus);
+            orders[i] = tripOrders.get(rt);
+          }
+          writeInts(out, tripRoutes);
+          writeInts(out, tripStartTimes);
+          writeInts(out, tripRushHours);
+          writeInts(out, tripBuses);
+          writeInts(out, orders);
+          writeNetwork(out, TransitNetwork.compile(schedule), stopPositions, routePositions, positions(trips));
+        }
+      }
+    });
+  }
+
+  /**
+   * Writes the TransitNetwork of a schedule, preceded by its size in bytes,
+   * or a size of 0 if it refers to objects not within the file.
+   */
+  private static void writeNetwork(DataOutputStream out, TransitNetwork network, Map<Stop, Integer> stops, Map<Route, Integer> routes, Map<RouteTimetable, Integer> trips) throws IOException {
+    if (!network.isWithin(stops, routes)) {
+      out.writeInt(0);
+      return;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    network.write(new DataOutputStream(bytes), stops, routes, trips);
+    out.writeInt(bytes.size());
+    bytes.writeTo(out);
+  }
+
+  /**
+   * Read a network file by mapping it into memory.
+   *
+   * The model is not changed until the network is loaded.
+   *
+   * @param file       the file from which to read
+   * @param sourceHash hash of the data from which the network is required
+   *                   to have been built
+   * @return network held within file, or null if the file does not exist or
+   *         does not hold a network of the current version built from the
+   *         data
+   * @throws IOException if the file cannot be read, or is corrupt
+   */
+  public static NetworkFile read(File file, long sourceHash) throws IOException {
+    ByteBuffer buffer = MappedFiles.map(file, HEADER_BYTES);
+    if (buffer == null || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != sourceHash) {
+      return null;
+    }
+    try {
+      return new NetworkFile(buffer);
+    } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+      throw new IOException("network file " + file + " is corrupt", e);
+    }
+  }
+
+  /**
+   * Load the network into the model, creating its stops, routes, buses and
+   * schedules, and installing the TransitNetwork of each schedule.
+   *
+   * Stops are created in the order in which they were saved, so walks
+   * between them are created just as when the network was built. Route
+   * timetables are created in the order in which they were first created,
+   * so their ID numbers follow one another just as before. A saved
+   * TransitNetwork is only installed where the model holds no stops or
+   * routes besides those of the network; otherwise it is compiled when
+   * first needed. This should only be called once, within an update of the
+   * model (see {@link ModelLock#update(Runnable)}).
+   *
+   * @throws IllegalStateException if the network has already been loaded
+   * @throws IllegalArgumentException if the model already holds a stop,
+   *                                  bus or schedule of the network
+   */
+  public void load() throws IllegalStateException, IllegalArgumentException {
+    if (stops != null) {
+      throw new IllegalStateException("network has already been loaded");
+    }
+    Stop[] stopTable = new Stop[stopIds.length];
+    for (int s = 0; s < stopTable.length; s++) {
+      stopTable[s] = new Stop(stopIds[s], stopNames[s], stopLatitudes[s], stopLongitudes[s]);
+    }
+
+    BusType[] busTypeTable = new BusType[busTypeMakes.length];
+    for (int t = 0; t < busTypeTable.length; t++) {
+      busTypeTable[t] = new BusType(busTypeMakes[t], busTypeModels[t], busTypeSeatedCapacities[t], busTypeStandingCapacities[t]);
+    }
+    Bus[] busTable = new Bus[busFleetNumbers.length];
+    for (int b = 0; b < busTable.length; b++) {
+      busTable[b] = new Bus(busFleetNumbers[b], busTypeTable[busTypes[b]], new Date(busAcquisitionDates[b]));
+    }
+
+    Route[] routeTable = new Route[routeNumbers.length];
+    for (int r = 0; r < routeTable.length; r++) {
+      int[] positions = routeStops[r];
+      Route route = new Route(routeNumbers[r], routeDescriptions[r], stopTable[positions[0]]);
+      for (int i = 1; i < positions.length; i++) {
+        route.addStop(stopTable[positions[i]], routeTimings[r][i], routeRushHourTimings[r][i]);
+      }
+      routeTable[r] = route;
+    }
+
+    Schedule[] scheduleTable = new Schedule[scheduleOperatingDays.length];
+    int numberOfTrips = 0;
+    for (int i = 0; i < scheduleTable.length; i++) {
+      scheduleTable[i] = new Schedule(scheduleValidFromDates[i], scheduleValidToDates[i], scheduleOperatingDays[i]);
+      numberOfTrips += tripRoutes[i].length;
+    }
+    // Create route timetables in the order in which they were created when
+    // the network was built, so that they are given the same ID numbers
+    int[] orderSchedules = new int[numberOfTrips];
+    int[] orderTrips = new int[numberOfTrips];
+    for (int i = 0; i < scheduleTable.length; i++) {
+      for (int t = 0; t < tripOrders[i].length; t++) {
+        orderSchedules[tripOrders[i][t]] = i;
+        orderTrips[tripOrders[i][t]] = t;
+      }
+    }
+    for (int o = 0; o < numberOfTrips; o++) {
+      int i = orderSchedules[o];
+      int t = orderTrips[o];
+      Schedule schedule = scheduleTable[i];
+      RouteTimetable rt = new RouteTimetable(routeTable[tripRoutes[i][t]], schedule, tripStartTimes[i][t], tripRushHours[i][t] != 0);
+      if (tripBuses[i][t] >= 0) {
+        schedule.allocateBus(rt, busTable[tripBuses[i][t]]);
+      }
+    }
+
+    stops = Collections.unmodifiableList(Arrays.asList(stopTable));
+    routes = Collections.unmodifiableList(Arrays.asList(routeTable));
+    buses = Collections.unmodifiableList(Arrays.asList(busTable));
+    schedules = Collections.unmodifiableList(Arrays.asList(scheduleTable));
+
+    if (Stop.numberOfStops() == stopTable.length && Route.getAllRoutes().size() == routeTable.length) {
+      for (int i = 0; i < scheduleTable.length; i++) {
+        if (scheduleNetworks[i] != null) {
+          TransitNetwork network = TransitNetwork.read(scheduleNetworks[i].duplicate(), scheduleTable[i], stopTable, routeTable);
+          if (network != null) {
+            TransitNetwork.install(network);
+            networksInstalled++;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the stops created by loading the network.
+   *
+   * @return stops of the network, in the order in which they were saved
+   * @throws IllegalStateException if the network has not been loaded
+   */
+  public List<Stop> getStops() throws IllegalStateException {
+    checkLoaded();
+    return stops;
+  }
+
+  /**
+   * Get the routes created by loading the network.
+   *
+   * @return routes of the network, in the order in which they were saved
+   * @throws IllegalStateException if the network has not been loaded
+   */
+  public List<Route> getRoutes() throws IllegalStateException {
+    checkLoaded();
+    return routes;
+  }
+
+  /**
+   * Get the buses created by loading the network.
+   *
+   * @return buses of the network, in the order in which they were saved
+   * @throws IllegalStateException if the network has not been loaded
+   */
+  public List<Bus> getBuses() throws IllegalStateException {
+    checkLoaded();
+    return buses;
+  }
+
+  /**
+   * Get the schedules created by loading the network.
+   *
+   * @return schedules of the network, in the order in which they were saved
+   * @throws IllegalStateException if the network has not been loaded
+   */
+  public List<Schedule> getSchedules() throws IllegalStateException {
+    checkLoaded();
+    return schedules;
+  }
+
+  /**
+   * Get the number of TransitNetworks installed by loading the network.
+   *
+   * @return number of networks read from the file rather than left to be
+   *         compiled
+   */
+  int numberOfNetworksInstalled() {
+    return networksInstalled;
+  }
+
+  /**
+   * Checks that the network has been loaded.
+   */
+  private void checkLoaded() throws IllegalStateException {
+    if (stops == null) {
+      throw new IllegalStateException("network has not been loaded");
+    }
+  }
+
+  /**
+   * Gets the position of each object within a list, by identity.
+   */
+  private static <T> Map<T, Integer> positions(List<T> objects) {
+    Map<T, Integer> positions = new IdentityHashMap<>();
+    for (int i = 0; i < objects.size(); i++) {
+      positions.put(objects.get(i), i);
+    }
+    return positions;
+  }
+
+  /**
+   * Gets the position of an object within the file.
+   */
+  private static <T> int position(Map<T, Integer> positions, T object) throws IllegalArgumentException {
+    Integer position = positions.get(object);
+    if (position == null) {
+      throw new IllegalArgumentException(object + " is not within the network");
+    }
+    return position;
+  }
+
+  /**
+   * Checks that positions within the file refer to one of a number of
+   * objects.
+   */
+  private static void checkIndices(int[] positions, int numberOfObjects) throws IllegalArgumentException {
+    for (int position : positions) {
+      if (position < 0 || position >= numberOfObjects) {
+        throw new IllegalArgumentException("position " + position + " is not within " + numberOfObjects);
+      }
+    }
+  }
+
+  /**
+   * Reads the number of objects which follow, each taking at least a given
+   * number of bytes.
+   */
+  private static int readCount(ByteBuffer in, int minimumBytes) throws BufferUnderflowException {
+    int count = in.getInt();
+    if (count < 0 || count > in.remaining() / minimumBytes) {
+      throw new BufferUnderflowException();
+    }
+    return count;
+  }
+
+  /**
+   * Writes a string as the length of its UTF-8 encoding followed by the
+   * encoding.
+   */
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a string written by writeString.
+   */
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[readCount(in, 1)];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes an array of ints as its length followed by its elements.
+   *
+   * @param out    the stream to which to write
+   * @param values the array to write
+   * @throws IOException if the array cannot be written
+   */
+  static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  /**
+   * Reads an array of ints written by writeInts, in bulk.
+   *
+   * @param in the buffer from which to read
+   * @return array read
+   * @throws BufferUnderflowException if the buffer does not hold the array
+   */
+  static int[] readInts(ByteBuffer in) throws BufferUnderflowException {
+    int length = in.getInt();
+    if (length < 0 || length > in.remaining() / 4) {
+      throw new BufferUnderflowException();
+    }
+    int[] values = new int[length];
+    in.asIntBuffer().get(values);
+    in.position(in.position() + 4 * length);
+    return values;
+  }
+}
@@ -1,12 +1,19 @@
 package main.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * The Path abstract class represents a path between two or more stops.
  *
  * It is designed to be inherited by bus routes and by walking routes.
+ *
+ * The paths including each stop are indexed as paths are added and removed,
+ * along with the position of the stop on each, so that finding them does
+ * not require a scan of all paths. Paths should therefore only be added to
+ * and removed from the list of all paths through addPath and removePath.
  */
 public abstract class Path {
 
@@ -18,7 +25,94 @@ public abstract class Path {
   public abstract Stop getDestination();
   public abstract List<Stop> getStops();
 
-  public static List<Path> allPaths = new ArrayList<>();
+  // The list of all paths is held within the Model, together with:-
+  //
+  //  * the incidences of indexed paths at each stop, in the order in which
+  //    the paths were added;
+  //  * the paths whose stops are not indexed, in the order in which they
+  //    were added;
+  //  * the order in which each indexed path was added; and
+  //  * the number of paths ever added, used to order incidences.
+
+  /**
+   * The Incidence nested class represents the inclusion of a stop on a path.
+   */
+  public static final class Incidence {
+
+    private final Path path;
+    private final int position;
+    private final long sequence;
+
+    /**
+     * Creates an Incidence.
+     *
+     * @param path     the path including the stop
+     * @param position the position of the stop on the path
+     * @param sequence the order in which the path was added
+     */
+    private Incidence(Path path, int position, long sequence) {
+      this.path = path;
+      this.position = position;
+      this.sequence = sequence;
+    }
+
+    /**
+     * Gets the path including the stop.
+     *
+     * @return path including the stop
+     */
+    public Path getPath() {
+      return path;
+    }
+
+    /**
+     * Gets the position of the stop on the path, as given by stopIndex.
+     *
+     * @return index of the stop on the path
+     */
+    public int getPosition() {
+      return position;
+    }
+  }
+
+  /**
+   * Checks whether the stops of this path are indexed.
+   *
+   * The stops of a path may only be indexed if they are known when it is
+   * added, and if any stops later added are signalled through stopAdded.
+   * Other paths are tested for the inclusion of a stop when searched.
+   *
+   * @return true if the stops of this path are indexed, else false
+   */
+  boolean isIndexed() {
+    return false;
+  }
+
+  /**
+   * Signals to a path that it has been added to the list of all paths.
+   */
+  void added() {
+  }
+
+  /**
+   * Signals to a path that it has been removed from the list of all paths.
+   */
+  void removed() {
+  }
+
+  /**
+   * Gets the paths within the list of all paths which may be equal to this
+   * path, so that checking whether it already exists need not compare it
+   * with every path.
+   *
+   * Indexed paths override this to look up the paths they may equal; paths
+   * whose stops are not indexed are always compared as well.
+   *
+   * @return paths which may be equal to this path
+   */
+  Collection<? extends Path> possiblyEqualPaths() {
+    return getAllPaths();
+  }
 
   /**
    * Add path to list of all paths.
@@ -30,7 +124,20 @@ public abstract class Path {
       String msg = "Path " + p.getDescription() + " already exists";
       throw new IllegalArgumentException(msg);
     }
-    allPaths.add(p);
+    Model model = ModelLock.model();
+    model.allPaths.add(p);
+    long sequence = ++model.pathsAdded;
+    ModelLock.modified();
+    if (p.isIndexed()) {
+      model.pathSequences.put(p, sequence);
+      List<Stop> stops = p.getStops();
+      for (int i = 0; i < stops.size(); i++) {
+        addIncidence(model, p, sequence, stops.get(i), i);
+      }
+    } else {
+      model.unindexedPaths.add(new Incidence(p, -1, sequence));
+    }
+    p.added();
   }
 
   /**
@@ -39,14 +146,101 @@ public abstract class Path {
    * @param p the path object to remove
    */
   public static void removePath(Path p) {
-    allPaths.remove(p);
+    Model model = ModelLock.model();
+    if (!model.allPaths.remove(p)) {
+      return;
+    }
+    ModelLock.modified();
+    if (model.pathSequences.remove(p) != null) {
+      for (Stop stop : p.getStops()) {
+        removeIncidence(model, p, stop);
+      }
+    } else {
+      for (int i = 0; i < model.unindexedPaths.size(); i++) {
+        if (model.unindexedPaths.get(i).path == p) {
+          model.unindexedPaths.remove(i);
+          break;
+        }
+      }
+    }
+    p.removed();
   }
 
   /**
    * Remove path from list of all paths.
    */
   public void remove() {
-    allPaths.remove(this);
+    removePath(this);
+  }
+
+  /**
+   * Signals that a stop has been added to the end of an indexed path, so
+   * that it may be indexed.
+   *
+   * @param p        the path to which the stop was added
+   * @param stop     the stop added
+   * @param position the position of the stop on the path
+   */
+  static void stopAdded(Path p, Stop stop, int position) {
+    ModelLock.modified();
+    Model model = ModelLock.model();
+    Long sequence = model.pathSequences.get(p);
+    if (sequence != null) {
+      addIncidence(model, p, sequence, stop, position);
+    }
+  }
+
+  /**
+   * Indexes the inclusion of a stop on a path, unless the stop is already
+   * indexed on the path (a path may visit a stop more than once).
+   *
+   * @param model    the model holding the index
+   * @param p        the path including the stop
+   * @param sequence the order in which the path was added
+   * @param stop     the stop
+   * @param position the position of the stop on the path
+   */
+  private static void addIncidence(Model model, Path p, long sequence, Stop stop, int position) {
+    List<Incidence> stopIncidences = model.incidences.get(stop);
+    if (stopIncidences == null) {
+      stopIncidences = new ArrayList<>();
+      model.incidences.put(stop, stopIncidences);
+    }
+    // Keep incidences in the order their paths were added; this is almost
+    // always at the end
+    int i = stopIncidences.size();
+    while (i > 0 && stopIncidences.get(i - 1).sequence > sequence) {
+      i--;
+    }
+    for (Incidence incidence : stopIncidences) {
+      if (incidence.path == p) {
+        return;
+      }
+    }
+    stopIncidences.add(i, new Incidence(p, position, sequence));
+  }
+
+  /**
+   * Removes the inclusion of a stop on a path from the index.
+   *
+   * @param model the model holding the index
+   * @param p     the path including the stop
+   * @param stop  the stop
+   */
+  private static void removeIncidence(Model model, Path p, Stop stop) {
+    List<Incidence> stopIncidences = model.incidences.get(stop);
+    if (stopIncidences == null) {
+      return;
+    }
+    for (int i = 0; i < stopIncidences.size(); i++) {
+      if (stopIncidences.get(i).path == p) {
+        stopIncidences.remove(i);
+        break;
+      }
+    }
+    if (stopIncidences.isEmpty()) {
+      model.incidences.remove(stop);
+    }
   }
 
   /**
@@ -55,7 +249,7 @@ public abstract class Path {
    * @return list of all paths within system
    */
   public static List<Path> getAllPaths() {
-    return allPaths;
+    return ModelLock.model().allPaths;
   }
 
   /**
@@ -66,14 +260,44 @@ public abstract class Path {
    */
   public static List<Path> findPathsIncludingStop(Stop s) {
     List<Path> pathsIncludingStop = new ArrayList<>();
-    for (Path p : getAllPaths()) {
-      if (p.includesStop(s)) {
-        pathsIncludingStop.add(p);
-      }
+    for (Incidence incidence : findIncidences(s)) {
+      pathsIncludingStop.add(incidence.getPath());
     }
     return pathsIncludingStop;
   }
 
+  /**
+   * Get the incidences of all paths including a given stop, giving the
+   * position of the stop on each path.
+   *
+   * @param s stop for which to find incidences
+   * @return unmodifiable list of incidences of paths including stop, in the
+   *         order of the list of all paths
+   */
+  public static List<Incidence> findIncidences(Stop s) {
+    Model model = ModelLock.model();
+    List<Incidence> indexed = model.incidences.get(s);
+    if (indexed == null) {
+      indexed = Collections.emptyList();
+    }
+    if (model.unindexedPaths.isEmpty()) {
+      return Collections.unmodifiableList(indexed);
+    }
+    // Merge in any unindexed paths including the stop, in order
+    List<Incidence> merged = new ArrayList<>();
+    int i = 0;
+    for (Incidence unindexed : model.unindexedPaths) {
+      while (i < indexed.size() && indexed.get(i).sequence < unindexed.sequence) {
+        merged.add(indexed.get(i++));
+      }
+      if (unindexed.path.includesStop(s)) {
+        merged.add(new Incidence(unindexed.path, unindexed.path.stopIndex(s), unindexed.sequence));
+      }
+    }
+    merged.addAll(indexed.subList(i, indexed.size()));
+    return Collections.unmodifiableList(merged);
+  }
+
   /**
    * Compare stops to determine which of two stops comes first in path.
    *
@@ -143,11 +367,24 @@ public abstract class Path {
    * @return true if Path already exists, else false.
    */
   private static boolean exists(Path p) {
-    for (Path thisPath : getAllPaths()) {
+    if (!p.isIndexed()) {
+      for (Path thisPath : getAllPaths()) {
+        if (p.equals(thisPath)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    for (Path thisPath : p.possiblyEqualPaths()) {
       if (p.equals(thisPath)) {
         return true;
       }
     }
+    for (Incidence incidence : ModelLock.model().unindexedPaths) {
+      if (p.equals(incidence.path)) {
+        return true;
+      }
+    }
     return false;
   }
 
@@ -1,7 +1,12 @@
 package main.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The Route class defines route type objects that hold
@@ -15,17 +20,23 @@ public class Route extends Path {
   private final String routeNumber;
   // the description of this route
   private final String routeDescription;
-  // a data structure wherin the non-rush hour time between stops for this route are stored
-  private List<Integer> timeBetweenStops = new ArrayList<Integer>();
-  // a data structure wherin the rush hour time between stops for this route are stored
-  private List<Integer> rushHourTimeBetweenStops = new ArrayList<Integer>();
+  // the cumulative non-rush hour time to each stop on this route, of which
+  // the first stops.size() entries are in use
+  private int[] cumulativeTiming = new int[8];
+  // the cumulative rush hour time to each stop on this route
+  private int[] cumulativeRushHourTiming = new int[8];
 
   // a data structure in which all stops associated with this path are stored
   private List<Stop> stops = new ArrayList<Stop>();
+  // the position of the first visit to each stop on this route
+  private final Map<Stop, Integer> stopPositions = new IdentityHashMap<>();
+
+  // The Model holds all added routes by number and description, and by
+  // number, in the order in which they were added
 
   /**
    * Creates a route, add the first stop to list stops and create entries with value 0
-   * in lists timeBetweenStops and rushHourTimeBetweenStops.
+   * in the non-rush hour and rush hour timings.
    *
    * @param routeNumber the route number associated with this route.
    * @param routeDescription the description of this route.
@@ -60,13 +71,21 @@ public class Route extends Path {
    * @return list of all routes matching number
    */
   public static List<Route> findRouteByNumber(String number) {
-    List<Route> routes = new ArrayList<>();
-    for (Route r : getAllRoutes()) {
-      if (r.getNumber().equals(number)) {
-        routes.add(r);
-      }
-    }
-    return routes;
+    List<Route> routes = ModelLock.model().routesByNumber.get(number);
+    return routes != null ? new ArrayList<>(routes) : new ArrayList<Route>();
+  }
+
+  /**
+   * Finds the route matching a number and description.
+   *
+   * @param number      the route number to match against
+   * @param description the route description to match against
+   * @return the first route added matching number and description, or null
+   *         if there is none
+   */
+  public static Route findRoute(String number, String description) {
+    List<Route> routes = ModelLock.model().routesByName.get(nameKey(number, description));
+    return routes != null ? routes.get(0) : null;
   }
 
   /**
@@ -77,9 +96,9 @@ public class Route extends Path {
    */
   public static List<Route> findRoutesIncludingStop(Stop s) {
     List<Route> routesIncludingStop = new ArrayList<>();
-    for (Route r : getAllRoutes()) {
-      if (r.includesStop(s)) {
-        routesIncludingStop.add(r);
+    for (Incidence incidence : findIncidences(s)) {
+      if (incidence.getPath() instanceof Route) {
+        routesIncludingStop.add((Route) incidence.getPath());
       }
     }
     return routesIncludingStop;
@@ -99,13 +118,76 @@ public class Route extends Path {
     String thisOrigin = getDescription().split(" - ")[0];
     String thisDestination = getDescription().split(" - ")[1];
     String reverseRouteName = thisDestination + " - " + thisOrigin;
-    for (Route r : getAllRoutes()) {
-      if (r.getNumber().equals(getNumber()) &&
-          r.getDescription().equals(reverseRouteName)) {
-        return r;
+    List<Route> inverted = ModelLock.model().routesByName.get(nameKey(getNumber(), reverseRouteName));
+    return inverted != null ? inverted.get(0) : null;
+  }
+
+  /**
+   * Gets the key by which routes are indexed by number and description.
+   *
+   * @param number      the route number
+   * @param description the route description
+   * @return key for the route number and description
+   */
+  private static String nameKey(String number, String description) {
+    return number + "\n" + description;
+  }
+
+  @Override
+  boolean isIndexed() {
+    return true;
+  }
+
+  @Override
+  void added() {
+    Model model = ModelLock.model();
+    addToIndex(model.routesByName, nameKey(getNumber(), getDescription()));
+    addToIndex(model.routesByNumber, getNumber());
+  }
+
+  @Override
+  void removed() {
+    Model model = ModelLock.model();
+    removeFromIndex(model.routesByName, nameKey(getNumber(), getDescription()));
+    removeFromIndex(model.routesByNumber, getNumber());
+  }
+
+  @Override
+  Collection<? extends Path> possiblyEqualPaths() {
+    // Equal routes share a number and description
+    List<Route> routes = ModelLock.model().routesByName.get(nameKey(getNumber(), getDescription()));
+    return routes != null ? routes : Collections.<Route>emptyList();
+  }
+
+  /**
+   * Adds this route to the routes held against a key of an index.
+   *
+   * @param index the index of routes
+   * @param key   the key of this route within the index
+   */
+  private void addToIndex(Map<String, List<Route>> index, String key) {
+    List<Route> routes = index.get(key);
+    if (routes == null) {
+      routes = new ArrayList<>();
+      index.put(key, routes);
+    }
+    routes.add(this);
+  }
+
+  /**
+   * Removes this route from the routes held against a key of an index.
+   *
+   * @param index the index of routes
+   * @param key   the key of this route within the index
+   */
+  private void removeFromIndex(Map<String, List<Route>> index, String key) {
+    List<Route> routes = index.get(key);
+    if (routes != null) {
+      routes.remove(this);
+      if (routes.isEmpty()) {
+        index.remove(key);
       }
     }
-    return null;
   }
 
   /**
@@ -116,9 +198,18 @@ public class Route extends Path {
    * @param rushHourTime the rush hour time between the last and this stop
    */
   public void addStop(Stop stop, int time, int rushHourTime) {
+    int position = stops.size();
+    if (position == cumulativeTiming.length) {
+      cumulativeTiming = Arrays.copyOf(cumulativeTiming, position * 2);
+      cumulativeRushHourTiming = Arrays.copyOf(cumulativeRushHourTiming, position * 2);
+    }
+    cumulativeTiming[position] = time + (position > 0 ? cumulativeTiming[position - 1] : 0);
+    cumulativeRushHourTiming[position] = rushHourTime + (position > 0 ? cumulativeRushHourTiming[position - 1] : 0);
     stops.add(stop);
-    timeBetweenStops.add(time);
-    rushHourTimeBetweenStops.add(rushHourTime);
+    if (!stopPositions.containsKey(stop)) {
+      stopPositions.put(stop, position);
+    }
+    stopAdded(this, stop, position);
   }
 
   /**
@@ -176,28 +267,55 @@ public class Route extends Path {
    */
   public List<Integer> getStopTiming(boolean isRushHour, boolean isCumulative) {
     List<Integer> stopTiming = new ArrayList<>();
-    List<Integer> sourceTiming;
-
-    if (isRushHour) {
-      sourceTiming = rushHourTimeBetweenStops;
-    } else {
-      sourceTiming = timeBetweenStops;
-    }
-
-    int accumulator = 0;
     for (int i = 0; i < getStops().size(); i++) {
-      int currentTiming = sourceTiming.get(i);
-      if (isCumulative) {
-        accumulator = accumulator + currentTiming;
-        stopTiming.add(accumulator);
-      } else {
-        stopTiming.add(currentTiming);
+      int currentTiming = cumulativeTime(i, isRushHour);
+      if (!isCumulative && i > 0) {
+        currentTiming -= cumulativeTime(i - 1, isRushHour);
       }
+      stopTiming.add(currentTiming);
     }
-
     return stopTiming;
   }
 
+  /**
+   * Get the cumulative time from the start of the route to a stop.
+   *
+   * @param position   the position of the stop on the route
+   * @param isRushHour use rush hour timings or not
+   * @return cumulative time in minutes to the stop at position
+   * @throws IndexOutOfBoundsException if there is no stop at position
+   */
+  public int cumulativeTime(int position, boolean isRushHour) throws IndexOutOfBoundsException {
+    if (position < 0 || position >= stops.size()) {
+      throw new IndexOutOfBoundsException("no stop at position " + position + " on route");
+    }
+    return isRushHour ? cumulativeRushHourTiming[position] : cumulativeTiming[position];
+  }
+
+  /**
+   * Check whether a stop is included in this route.
+   *
+   * @param stop the stop that checked on inclusion.
+   *
+   * @return true if the stop is included in this route, else return false.
+   */
+  @Override
+  public boolean includesStop(Stop stop) {
+    return stopPositions.containsKey(stop);
+  }
+
+  /**
+   * Find the index of a Stop's first visit on this route.
+   *
+   * @param stop the Stop for which to get index
+   * @return index of the desired stop, or -1 if it is not on this route
+   */
+  @Override
+  public int stopIndex(Stop stop) {
+    Integer position = stopPositions.get(stop);
+    return position != null ? position : -1;
+  }
+
   /**
    * Get the non-rush hour, non cumulative timings for a route.
    *
@@ -255,9 +373,7 @@ public class Route extends Path {
       String msg = "this path does not travel from " + origin + " to " + destination;
       throw new IllegalArgumentException(msg);
     }
-    int originIndex = stopIndex(origin);
-    int destinationIndex = stopIndex(destination);
-    return getStopTiming(isRushHour, true).get(destinationIndex) - getStopTiming(isRushHour, true).get(originIndex);
+    return cumulativeTime(stopIndex(destination), isRushHour) - cumulativeTime(stopIndex(origin), isRushHour);
   }
 
   /**
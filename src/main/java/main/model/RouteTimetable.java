@@ -123,18 +123,36 @@ public class RouteTimetable {
       if (!getRoute().includesStop(stop)) {
         throw new IllegalArgumentException("RouteTimetable does not include stop " + stop);
       }
-      return getStopTimes().get(getStops().indexOf(stop));
+      return timeAtStopIndex(getRoute().stopIndex(stop));
+    }
+
+    /**
+     * Get the timing for the stop at a position on the RouteTimetable.
+     *
+     * The timing is read from the cumulative timings held by the route, which
+     * are shared by all of its route timetables, so no allocation takes place.
+     *
+     * @param position the position of the stop on the route
+     * @return time in minutes from midnight at which a bus running this RT is
+     *  due to arrive at the stop at position
+     * @throws IndexOutOfBoundsException if there is no stop at position
+     */
+    public int timeAtStopIndex(int position) throws IndexOutOfBoundsException {
+      return this.startTime + route.cumulativeTime(position, this.isRushHour);
     }
 
     /**
      * Get the time between stops for a route timetable.
      *
+     * This allocates a new list on each call; timeAtStopIndex should be
+     * preferred where a single timing is required.
+     *
      * @return true if the route timetable uses rush hour timings, else false.
      */
     public List<Integer> getStopTimes(){
         List<Integer> actualTiming = new ArrayList<>();
-        for(int timing : route.getStopTiming(this.isRushHour, true)){
-            actualTiming.add(timing + this.startTime);
+        for (int i = 0; i < getStops().size(); i++) {
+            actualTiming.add(timeAtStopIndex(i));
         }
         return actualTiming;
     }
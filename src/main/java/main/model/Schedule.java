@@ -1,6 +1,7 @@
 package main.model;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.time.LocalDate;
 import java.time.DayOfWeek;
 
@@ -21,8 +22,9 @@ public class Schedule {
     WEEKDAYS, SATURDAY, SUNDAY
   }
 
-  // list containing all Schedules, current, past and prospective
-  private static List<Schedule> allSchedules = new ArrayList<>();
+  // The Model holds a list of all Schedules, current, past and prospective,
+  // and all schedules for each operating day, by the date from which they
+  // are valid; schedules for the same operating day never overlap
 
   // the date from which this schedule is valid
   private LocalDate validFromDate;
@@ -34,6 +36,10 @@ public class Schedule {
   private List<RouteTimetable> routeTimetableList = new ArrayList<>();
   // a data structure which holds all buses associated with this schedule
   private List<Bus> busList = new ArrayList<>();
+  // the position of each routeTimetable within routeTimetableList
+  private final Map<RouteTimetable, Integer> routeTimetablePositions = new IdentityHashMap<>();
+  // the departure indexes of routes, discarded whenever a routeTimetable is added
+  private final Map<Route, DepartureIndex> departureIndexes = new ConcurrentHashMap<>();
 
   /**
    * Creates a schedule.
@@ -59,7 +65,15 @@ public class Schedule {
       String msg = schedule.getOperatingDay() + " Schedule for period is already defined";
       throw new IllegalArgumentException(msg);
     }
-    allSchedules.add(schedule);
+    Model model = ModelLock.model();
+    model.allSchedules.add(schedule);
+    TreeMap<LocalDate, Schedule> schedules = model.schedulesByDate.get(schedule.getOperatingDay());
+    if (schedules == null) {
+      schedules = new TreeMap<>();
+      model.schedulesByDate.put(schedule.getOperatingDay(), schedules);
+    }
+    schedules.put(schedule.getValidFromDate(), schedule);
+    ModelLock.modified();
   }
 
   /**
@@ -68,7 +82,11 @@ public class Schedule {
    * @param schedule the schedule to remove from the list
    */
   public static void removeSchedule(Schedule schedule) {
-    allSchedules.remove(schedule);
+    Model model = ModelLock.model();
+    if (model.allSchedules.remove(schedule)) {
+      model.schedulesByDate.get(schedule.getOperatingDay()).remove(schedule.getValidFromDate());
+      ModelLock.modified();
+    }
   }
 
   /**
@@ -77,26 +95,55 @@ public class Schedule {
    * @return list of all schedules in system
    */
   public static List<Schedule> getAllSchedules() {
-    return allSchedules;
+    return ModelLock.model().allSchedules;
   }
 
   /**
    * Finds the schedule for a desired date and operating day.
    *
+   * Schedules for the same operating day do not overlap, so the only
+   * schedule which may be in operation is the last to become valid on or
+   * before the date.
+   *
    * @param date the date for which a schedule is desired
    * @return schedule in operation for the specified date
    */
   public static Schedule findSchedule (LocalDate date) {
-    for (Schedule s : allSchedules) {
-      if (!date.isBefore(s.getValidFromDate()) &&
-          !date.isAfter(s.getValidToDate()) &&
-          operatingDayForDate(date) == s.getOperatingDay()) {
-        return s;
-      }
+    Schedule s = latestValidFrom(operatingDayForDate(date), date);
+    if (s != null && !date.isAfter(s.getValidToDate())) {
+      return s;
     }
     return null;
   }
 
+  /**
+   * Finds the schedule for an operating day which was the last to become
+   * valid on or before a date.
+   *
+   * @param operatingDay the operating day of the schedule
+   * @param date         the date
+   * @return schedule, or null if no schedule for the operating day became
+   *         valid on or before the date
+   */
+  private static Schedule latestValidFrom(DayOption operatingDay, LocalDate date) {
+    TreeMap<LocalDate, Schedule> schedules = ModelLock.model().schedulesByDate.get(operatingDay);
+    if (schedules == null) {
+      return null;
+    }
+    Map.Entry<LocalDate, Schedule> entry = schedules.floorEntry(date);
+    return entry != null ? entry.getValue() : null;
+  }
+
+  /**
+   * Gets all route timetables associated with this schedule.
+   *
+   * @return unmodifiable list of all route timetables within schedule, in the
+   *         order in which they were added
+   */
+  public List<RouteTimetable> getRouteTimetables() {
+    return Collections.unmodifiableList(routeTimetableList);
+  }
+
   /**
    * Adds a routeTimeTable to the schedule through the routeTimetableList
    * without associating a bus with it.
@@ -124,8 +171,11 @@ public class Schedule {
     if (routeTimetable == null) {
       throw new IllegalArgumentException("cannot add a null RouteTimetable");
     }
+    this.routeTimetablePositions.put(routeTimetable, routeTimetableList.size());
     this.routeTimetableList.add(routeTimetable);
     this.busList.add(bus);
+    departureIndexes.clear();
+    ModelLock.modified();
   }
 
   /**
@@ -142,8 +192,7 @@ public class Schedule {
       String msg = "RouteTimetable " + routeTimetable + "is not within Schedule";
       throw new IllegalArgumentException(msg);
     }
-    int index = this.routeTimetableList.indexOf(routeTimetable);
-    this.busList.set(index, bus);
+    this.busList.set(positionOf(routeTimetable), bus);
   }
 
   /**
@@ -174,6 +223,11 @@ public class Schedule {
    * RouteTimetable representing the next departure of a bus from a given stop
    * after a particular point in time.
    *
+   * Where the stop lies on the route, the departure is found by a binary
+   * search of the departure index of the route (see
+   * {@link #indexDepartures() indexDepartures}), rather than by a scan of
+   * every route timetable within the schedule.
+   *
    * @param time the time from which to get next departure
    * @param stop the stop from which departure is to take place
    * @param route the route on which to travel
@@ -183,13 +237,22 @@ public class Schedule {
    *                                       available for this date
    */
   public RouteTimetable nextDepartureRouteTimetable(int time, Stop stop, Route route) throws IllegalArgumentException {
+    int position = route != null ? route.stopIndex(stop) : -1;
+    if (position >= 0) {
+      RouteTimetable nextDepartureRT = departureIndex(route).nextDeparture(position, time);
+      if (nextDepartureRT == null) {
+        throw new IllegalArgumentException("no next departures available today");
+      }
+      return nextDepartureRT;
+    }
     int nextDepartureTime = 1_000_000; // Set time to initial high value
     RouteTimetable nextDepartureRT = null;
     List<RouteTimetable> rts = getAllocatedRouteTimetables(route);
     for (RouteTimetable thisRT : rts) {
-      if (thisRT.timeAtStop(stop) >= time && thisRT.timeAtStop(stop) < nextDepartureTime) {
+      int departureTime = thisRT.timeAtStop(stop);
+      if (departureTime >= time && departureTime < nextDepartureTime) {
         nextDepartureRT = thisRT;
-        nextDepartureTime = thisRT.timeAtStop(stop);
+        nextDepartureTime = departureTime;
       }
     }
     if (nextDepartureRT == null) {
@@ -198,6 +261,118 @@ public class Schedule {
     return nextDepartureRT;
   }
 
+  /**
+   * Builds the departure index of every route with route timetables
+   * associated with this schedule.
+   *
+   * Departure indexes are otherwise built when first needed, and discarded
+   * whenever a route timetable is added, so this method should be called
+   * once all route timetables have been loaded so that no query waits for
+   * an index to be built.
+   *
+   * The route timetables are grouped by route in a single pass, rather than
+   * searched once for each route.
+   */
+  public void indexDepartures() {
+    Map<Route, List<RouteTimetable>> routeTimetables = new LinkedHashMap<>();
+    for (RouteTimetable rt : routeTimetableList) {
+      List<RouteTimetable> trips = routeTimetables.get(rt.getRoute());
+      if (trips == null) {
+        trips = new ArrayList<>();
+        routeTimetables.put(rt.getRoute(), trips);
+      }
+      trips.add(rt);
+    }
+    for (Map.Entry<Route, List<RouteTimetable>> entry : routeTimetables.entrySet()) {
+      departureIndexes.put(entry.getKey(), new DepartureIndex(entry.getKey(), entry.getValue()));
+    }
+  }
+
+  /**
+   * Gets the departure index of a route, building it if it has not been
+   * built since a route timetable was last added, or if stops have since
+   * been added to the route.
+   *
+   * @param route the route for which to get the departure index
+   * @return departure index of the route
+   * @throws IllegalArgumentException if the route is not found within the
+   *                                  schedule
+   */
+  private DepartureIndex departureIndex(Route route) throws IllegalArgumentException {
+    DepartureIndex index = departureIndexes.get(route);
+    if (index == null || index.numberOfStops != route.getStops().size()) {
+      index = new DepartureIndex(route, getAllocatedRouteTimetables(route));
+      departureIndexes.put(route, index);
+    }
+    return index;
+  }
+
+  /**
+   * The DepartureIndex nested class holds the departures of one route from
+   * each stop along it, in order of departure time.
+   *
+   * For each stop position, the departure times (in minutes since midnight)
+   * are held sorted in an int array, with the RouteTimetable of each
+   * departure held in a parallel array, so the next departure is found by a
+   * binary search without allocation. Departures at the same time are held
+   * in the order their route timetables were added to the schedule.
+   */
+  private static class DepartureIndex {
+
+    private final int numberOfStops;
+    private final int[][] departureTimes;
+    private final RouteTimetable[][] departures;
+
+    /**
+     * Creates the departure index of a route.
+     *
+     * @param route          the route to index
+     * @param routeTimetables all route timetables for the route, in the order
+     *                       in which they were added to the schedule
+     */
+    DepartureIndex(Route route, List<RouteTimetable> routeTimetables) {
+      numberOfStops = route.getStops().size();
+      int numberOfTrips = routeTimetables.size();
+      departureTimes = new int[numberOfStops][numberOfTrips];
+      departures = new RouteTimetable[numberOfStops][numberOfTrips];
+      // Sort by time, then by order of addition, packed into a single key
+      long[] keys = new long[numberOfTrips];
+      for (int position = 0; position < numberOfStops; position++) {
+        for (int i = 0; i < numberOfTrips; i++) {
+          keys[i] = ((long) routeTimetables.get(i).timeAtStopIndex(position) << 32) | i;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < numberOfTrips; i++) {
+          int trip = (int) keys[i];
+          departureTimes[position][i] = (int) (keys[i] >> 32);
+          departures[position][i] = routeTimetables.get(trip);
+        }
+      }
+    }
+
+    /**
+     * Finds the first departure from a stop position at or after a time.
+     *
+     * @param position the position of the stop along the route
+     * @param time     the time from which to get next departure
+     * @return RouteTimetable of the next departure, or null if there is none
+     */
+    RouteTimetable nextDeparture(int position, int time) {
+      int[] times = departureTimes[position];
+      int low = 0;
+      int high = times.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (times[middle] < time) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low < times.length ? departures[position][low] : null;
+    }
+  }
+
   /**
    * Gets the bus associated with a route timetable.
    *
@@ -210,10 +385,9 @@ public class Schedule {
   public Bus getAllocatedBus(RouteTimetable routeTimetable) throws IllegalArgumentException {
     String msg = "RouteTimetable \"" + routeTimetable +
       "\" is not found within Schedule";
-    for (int i = 0; i < routeTimetableList.size(); i++) {
-      if (routeTimetableList.get(i).equals(routeTimetable)) {
-        return busList.get(i);
-      }
+    int position = positionOf(routeTimetable);
+    if (position >= 0) {
+      return busList.get(position);
     }
     throw new IllegalArgumentException(msg);
   }
@@ -279,6 +453,9 @@ public class Schedule {
     if (routeTimetable == null) {
       return false;
     }
+    if (routeTimetablePositions.containsKey(routeTimetable)) {
+      return true;
+    }
     for (RouteTimetable r : routeTimetableList) {
       if (routeTimetable.equals(r)) {
         return true;
@@ -287,6 +464,30 @@ public class Schedule {
     return false;
   }
 
+  /**
+   * Finds the position of a route timetable within the schedule.
+   *
+   * Route timetables added to the schedule are found by lookup; any other
+   * route timetable is compared against every route timetable within the
+   * schedule.
+   *
+   * @param routeTimetable the route timetable to find
+   * @return position of the first route timetable equal to routeTimetable,
+   *         or -1 if there is none
+   */
+  private int positionOf(RouteTimetable routeTimetable) {
+    Integer position = routeTimetablePositions.get(routeTimetable);
+    if (position != null) {
+      return position;
+    }
+    for (int i = 0; i < routeTimetableList.size(); i++) {
+      if (routeTimetableList.get(i).equals(routeTimetable)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   /**
    * Check whether a bus is associated with a schedule.
    *
@@ -371,19 +572,15 @@ public class Schedule {
    *  * It does not end before the other schedule begins, or begin after the
    *    other schedule ends.
    *
+   * As schedules of the same type do not overlap, only the last of them to
+   * begin no later than the schedule ends may overlap it.
+   *
    * @param schedule the schedule object to check for existence
    * @return true if Schedule already exists, else false.
    */
   private static boolean scheduleExists(Schedule schedule) {
-    for (Schedule otherSchedule : allSchedules) {
-      boolean scheduleBeforeOther = schedule.getValidToDate().isBefore(otherSchedule.getValidFromDate());
-      boolean scheduleAfterOther = schedule.getValidFromDate().isAfter(otherSchedule.getValidToDate());
-      boolean sameScheduleType = schedule.getOperatingDay() == otherSchedule.getOperatingDay();
-      boolean withinOtherSchedule = !(scheduleBeforeOther || scheduleAfterOther);
-      if (sameScheduleType && withinOtherSchedule) {
-        return true;
-      }
-    }
-    return false;
+    Schedule otherSchedule = latestValidFrom(schedule.getOperatingDay(), schedule.getValidToDate());
+    return otherSchedule != null &&
+      !schedule.getValidFromDate().isAfter(otherSchedule.getValidToDate());
   }
 }
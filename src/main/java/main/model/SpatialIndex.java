@@ -0,0 +1,314 @@
+package main.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SpatialIndex class indexes stops by their coordinates, to find the
+ * stops within a distance of a point, or nearest to it, without comparing
+ * the point against every stop.
+ *
+ * Stops are held in a uniform grid of cells of CELL_DEGREES degrees of
+ * latitude and longitude. A query only visits the cells overlapping the
+ * bounding box of its radius, and then filters the stops within them by
+ * their exact distance, so its time depends upon the density of stops
+ * around the point rather than upon the number of stops indexed. Stops may
+ * be added and removed at any time.
+ *
+ * Distances are as-the-crow-flies, as calculated by
+ * {@link Stop#getDistanceBetweenPoints(double, double, double, double)}.
+ */
+public class SpatialIndex {
+
+  /** the size of a cell in degrees (about 220m of latitude) */
+  private static final double CELL_DEGREES = 0.002;
+  /** the radius of the Earth in metres, as used in distance calculations */
+  private static final double EARTH_RADIUS = 6_371_000;
+  /** the largest distance between two points on the Earth, in metres */
+  private static final int MAX_DISTANCE = (int) Math.ceil(Math.PI * EARTH_RADIUS);
+
+  /** orders entries by the order in which they were added */
+  private static final Comparator<Entry> ADDITION_ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      return Long.compare(a.sequence, b.sequence);
+    }
+  };
+
+  /** orders entries by distance, then by the order in which they were added */
+  private static final Comparator<Entry> DISTANCE_ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      return a.distance != b.distance ? Integer.compare(a.distance, b.distance) : ADDITION_ORDER.compare(a, b);
+    }
+  };
+
+  /**
+   * The Entry nested class holds an indexed stop, with its coordinates and
+   * the order in which it was added.
+   *
+   * Entries found by a query are copies holding their distance from the
+   * point queried, so that queries do not interfere.
+   */
+  private static class Entry {
+
+    private final Stop stop;
+    private final double latitude;
+    private final double longitude;
+    private final long sequence;
+    private final int distance;
+
+    /**
+     * Creates an Entry.
+     *
+     * @param stop     the stop indexed
+     * @param sequence the order in which the stop was added
+     */
+    Entry(Stop stop, long sequence) {
+      this.stop = stop;
+      this.latitude = stop.getLatitude();
+      this.longitude = stop.getLongitude();
+      this.sequence = sequence;
+      this.distance = 0;
+    }
+
+    /**
+     * Creates a copy of an Entry holding its distance from a point.
+     *
+     * @param entry    the entry to copy
+     * @param distance the distance of the entry from the point in metres
+     */
+    Entry(Entry entry, int distance) {
+      this.stop = entry.stop;
+      this.latitude = entry.latitude;
+      this.longitude = entry.longitude;
+      this.sequence = entry.sequence;
+      this.distance = distance;
+    }
+  }
+
+  // the entries within each occupied cell, keyed by cell
+  private final Map<Long, List<Entry>> cells = new HashMap<>();
+  // the number of stops indexed
+  private int size = 0;
+  // the number of stops ever added, used to order results
+  private long stopsAdded = 0;
+
+  /**
+   * Adds a stop to the index.
+   *
+   * The coordinates of the stop are read when it is added.
+   *
+   * @param stop the stop to add
+   * @throws IllegalArgumentException if stop is null
+   */
+  public void add(Stop stop) throws IllegalArgumentException {
+    if (stop == null) {
+      throw new IllegalArgumentException("cannot add a null stop to a spatial index");
+    }
+    Entry entry = new Entry(stop, ++stopsAdded);
+    long cell = cell(latitudeCell(entry.latitude), longitudeCell(entry.longitude));
+    List<Entry> entries = cells.get(cell);
+    if (entries == null) {
+      entries = new ArrayList<>();
+      cells.put(cell, entries);
+    }
+    entries.add(entry);
+    size++;
+  }
+
+  /**
+   * Removes a stop from the index.
+   *
+   * @param stop the stop to remove
+   * @return true if the stop was indexed, else false
+   */
+  public boolean remove(Stop stop) {
+    if (stop == null) {
+      return false;
+    }
+    long cell = cell(latitudeCell(stop.getLatitude()), longitudeCell(stop.getLongitude()));
+    List<Entry> entries = cells.get(cell);
+    if (entries == null) {
+      return false;
+    }
+    for (int i = 0; i < entries.size(); i++) {
+      if (entries.get(i).stop == stop) {
+        entries.remove(i);
+        if (entries.isEmpty()) {
+          cells.remove(cell);
+        }
+        size--;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the number of stops indexed.
+   *
+   * @return number of stops indexed
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Finds all stops within a distance of a point.
+   *
+   * @param latitude  the latitude of the point
+   * @param longitude the longitude of the point
+   * @param radius    the greatest distance in metres from the point
+   * @return list of stops within radius of the point, in the order in which
+   *         they were added
+   * @throws IllegalArgumentException if radius is negative
+   */
+  public List<Stop> findWithin(double latitude, double longitude, int radius) throws IllegalArgumentException {
+    if (radius < 0) {
+      throw new IllegalArgumentException("radius must not be negative");
+    }
+    List<Entry> found = entriesWithin(latitude, longitude, radius);
+    Collections.sort(found, ADDITION_ORDER);
+    List<Stop> stops = new ArrayList<>(found.size());
+    for (Entry entry : found) {
+      stops.add(entry.stop);
+    }
+    return stops;
+  }
+
+  /**
+   * Finds the stops nearest to a point.
+   *
+   * The search radius is doubled until it holds k stops, so the time taken
+   * depends upon the distance to the k-th nearest stop.
+   *
+   * @param latitude  the latitude of the point
+   * @param longitude the longitude of the point
+   * @param k         the number of stops to find
+   * @return list of the k stops nearest to the point (or all stops, if fewer
+   *         are indexed), nearest first; stops at the same distance are
+   *         given in the order in which they were added
+   * @throws IllegalArgumentException if k is negative
+   */
+  public List<Stop> findNearest(double latitude, double longitude, int k) throws IllegalArgumentException {
+    if (k < 0) {
+      throw new IllegalArgumentException("k must not be negative");
+    }
+    k = Math.min(k, size);
+    int radius = (int) (CELL_DEGREES * Math.PI / 180 * EARTH_RADIUS);
+    List<Entry> found = entriesWithin(latitude, longitude, radius);
+    while (found.size() < k && radius < MAX_DISTANCE) {
+      radius = (int) Math.min(2L * radius, MAX_DISTANCE);
+      found = entriesWithin(latitude, longitude, radius);
+    }
+    Collections.sort(found, DISTANCE_ORDER);
+    List<Stop> stops = new ArrayList<>(k);
+    for (int i = 0; i < k; i++) {
+      stops.add(found.get(i).stop);
+    }
+    return stops;
+  }
+
+  /**
+   * Finds the entries of all stops within a distance of a point.
+   *
+   * The cells searched cover a bounding box which is certain to hold every
+   * point within radius: no point further than radius / R radians of
+   * latitude away can be within it, nor any point further than
+   * 2 asin(sin(radius / 2R) / cos(latitude)) radians of longitude away, at
+   * the largest latitude within the box.
+   *
+   * @param latitude  the latitude of the point
+   * @param longitude the longitude of the point
+   * @param radius    the greatest distance in metres from the point
+   * @return unordered list of copies of the entries within radius of the
+   *         point, holding their distances from it
+   */
+  private List<Entry> entriesWithin(double latitude, double longitude, int radius) {
+    List<Entry> found = new ArrayList<>();
+    // Allow for distances being rounded to the nearest metre
+    double angle = (radius + 1) / EARTH_RADIUS;
+    double latitudeRange = Math.toDegrees(angle);
+    double maxLatitude = Math.min(90, Math.abs(latitude) + latitudeRange);
+    double cosMaxLatitude = Math.cos(Math.toRadians(maxLatitude));
+    double sinHalfAngle = Math.sin(Math.min(angle, Math.PI) / 2);
+    double longitudeRange = 180;
+    if (sinHalfAngle < cosMaxLatitude) {
+      longitudeRange = Math.toDegrees(2 * Math.asin(sinHalfAngle / cosMaxLatitude));
+    }
+
+    long firstLatitudeCell = latitudeCell(latitude - latitudeRange);
+    long lastLatitudeCell = latitudeCell(latitude + latitudeRange);
+    // Longitude cells are not wrapped here, so that the range is contiguous
+    long firstLongitudeCell = (long) Math.floor((longitude - longitudeRange) / CELL_DEGREES);
+    long lastLongitudeCell = (long) Math.floor((longitude + longitudeRange) / CELL_DEGREES);
+    long numberOfCells = (lastLatitudeCell - firstLatitudeCell + 1) * (lastLongitudeCell - firstLongitudeCell + 1);
+    if (longitudeRange >= 180 || numberOfCells > cells.size()) {
+      // Cheaper to test every occupied cell
+      for (List<Entry> entries : cells.values()) {
+        addEntriesWithin(entries, latitude, longitude, radius, found);
+      }
+      return found;
+    }
+    for (long latitudeCell = firstLatitudeCell; latitudeCell <= lastLatitudeCell; latitudeCell++) {
+      for (long longitudeCell = firstLongitudeCell; longitudeCell <= lastLongitudeCell; longitudeCell++) {
+        // Cells beyond the antimeridian wrap around to the other side
+        long wrapped = longitudeCell((longitudeCell + 0.5) * CELL_DEGREES);
+        List<Entry> entries = cells.get(cell(latitudeCell, wrapped));
+        if (entries != null) {
+          addEntriesWithin(entries, latitude, longitude, radius, found);
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Adds those of a list of entries within a distance of a point to a list.
+   */
+  private static void addEntriesWithin(List<Entry> entries, double latitude, double longitude, int radius, List<Entry> found) {
+    for (Entry entry : entries) {
+      int distance = Stop.getDistanceBetweenPoints(latitude, longitude, entry.latitude, entry.longitude);
+      if (distance <= radius) {
+        found.add(new Entry(entry, distance));
+      }
+    }
+  }
+
+  /**
+   * Gets the latitude cell holding a latitude.
+   */
+  private static long latitudeCell(double latitude) {
+    return (long) Math.floor(latitude / CELL_DEGREES);
+  }
+
+  /**
+   * Gets the longitude cell holding a longitude.
+   */
+  private static long longitudeCell(double longitude) {
+    return (long) Math.floor(wrapLongitude(longitude) / CELL_DEGREES);
+  }
+
+  /**
+   * Wraps a longitude into the range [-180, 180).
+   */
+  private static double wrapLongitude(double longitude) {
+    if (longitude >= -180 && longitude < 180) {
+      return longitude;
+    }
+    double wrapped = (longitude + 180) % 360;
+    return (wrapped < 0 ? wrapped + 360 : wrapped) - 180;
+  }
+
+  /**
+   * Gets the key of the cell at a latitude and longitude cell.
+   */
+  private static long cell(long latitudeCell, long longitudeCell) {
+    return latitudeCell << 32 | (longitudeCell & 0xFFFFFFFFL);
+  }
+}
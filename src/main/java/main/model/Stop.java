@@ -2,13 +2,41 @@ package main.model;
 
 import java.util.*;
 
-import main.misc.StopPair;
-
 /**
  * The Stop class defines schedule type objects that hold characteristics
  * of stops such as id, name latutude and longitude.
+ *
+ * Distances between stops are calculated on demand. Where the system
+ * property {@value #DISTANCE_MATRIX_PROPERTY} is set to true, the distances
+ * between all stops in the list of all stops are instead calculated as each
+ * stop is added, and kept in a packed triangular matrix, trading memory
+ * quadratic in the number of stops for lookups without calculation.
  */
 public class Stop {
+
+    /**
+     * The name of the system property which, when set to true, keeps the
+     * distances between stops in a matrix.
+     *
+     * The matrix costs 4 bytes for each pair of stops, i.e. about 2n^2 bytes
+     * for n stops (some 32 MB for 4,000 stops, but 8 GB for 65,000), so it
+     * is limited to MATRIX_BUDGET bytes. The stops first added are held
+     * within the matrix; distances to any further stops are calculated on
+     * demand.
+     */
+    public static final String DISTANCE_MATRIX_PROPERTY = "stopdistancematrix";
+
+    /** the largest number of bytes the distance matrix may occupy */
+    private static final long MATRIX_BUDGET = 32L * 1024 * 1024;
+
+    /**
+     * the largest number of stops the distance matrix may hold within
+     * MATRIX_BUDGET, i.e. the largest n for which n * (n + 1) / 2 distances
+     * fit
+     */
+    private static final int MAX_MATRIX_STOPS =
+      (int) ((Math.sqrt(1 + 8.0 * (MATRIX_BUDGET / Integer.BYTES)) - 1) / 2);
+
     /** the stop id  */
     private final int id;
     /** the stop name  */
@@ -17,13 +45,16 @@ public class Stop {
     private final double latitude;
     /** the longitudal coordinate of the stop */
     private final double longitude;
-    /** a data structure containing all objects of type stop*/
-    private static List<Stop> allStops = new ArrayList<>();
-    
-    /**
-     * Caches as-the-crow-flies distances between Stops.
-     */
-    private static HashMap<StopPair, Integer> stopDistances = new HashMap<>();
+
+    // The list of all stops is held within the Model, together with:-
+    //
+    //  * the stops by id;
+    //  * a SpatialIndex and a StopNameIndex of the stops; and
+    //  * the distance matrix, if enabled, holding as-the-crow-flies
+    //    distances between stops: the distance between the stops at
+    //    positions i and j (where j <= i) is held at i * (i + 1) / 2 + j,
+    //    with the stops held at each position, and the position of each
+    //    stop held.
 
   /**
    * Creates a stop and add it to the stops list.
@@ -79,8 +110,15 @@ public class Stop {
       String msg = "Stop with ID #" + stop.getID() + " already exists";
       throw new IllegalArgumentException(msg);
     }
-		allStops.add(stop);
-    updateDistances(stop);
+    Model model = ModelLock.model();
+		model.allStops.add(stop);
+    model.stopsById.put(stop.getID(), stop);
+    model.spatialIndex.add(stop);
+    model.nameIndex.add(stop);
+    if (Boolean.getBoolean(DISTANCE_MATRIX_PROPERTY)) {
+      addToDistanceMatrix(model, stop);
+    }
+    ModelLock.modified();
     Walk.stopAdded(stop);
 	}
 
@@ -90,11 +128,24 @@ public class Stop {
    * @param stop The stop object to remove
    */
   public static void removeStop(Stop stop) {
-    allStops.remove(stop);
-    // Clear all entries including stop from stopDistances HashMap
-    for (Stop s : getAllStops()) {
-      stopDistances.remove(new StopPair(s, stop));
-      stopDistances.remove(new StopPair(stop, s));
+    Model model = ModelLock.model();
+    if (model.allStops.remove(stop)) {
+      model.stopsById.remove(stop.getID());
+      model.spatialIndex.remove(stop);
+      model.nameIndex.remove(stop);
+      ModelLock.modified();
+    }
+    // The distances of a removed stop remain in the matrix, but are no
+    // longer used; the matrix is discarded once all stops are removed
+    Integer position = model.matrixPositions.remove(stop);
+    if (position != null) {
+      model.matrixStops[position] = null;
+    }
+    if (model.allStops.isEmpty()) {
+      model.distanceMatrix = new int[0];
+      model.matrixStops = new Stop[0];
+      model.numberOfMatrixStops = 0;
+      model.matrixPositions.clear();
     }
   }
 
@@ -106,10 +157,9 @@ public class Stop {
    * @throws IllegalArgumentException if stop with specified ID does not exist
    */
   public static Stop findStop(int id) throws IllegalArgumentException {
-    for (Stop s : getAllStops()) {
-      if (s.getID() == id) {
-        return s;
-      }
+    Stop s = ModelLock.model().stopsById.get(id);
+    if (s != null) {
+      return s;
     }
     String msg = "unable to find stop with ID# " + id;
     throw new IllegalArgumentException(msg);
@@ -118,51 +168,93 @@ public class Stop {
   /**
    * Finds stop by name.
    *
+   * Names are matched ignoring case and accents, as described by
+   * {@link StopNameIndex}.
+   *
    * @param name (partial) name of the desired stop
-   * @return stops matching name
+   * @return stops matching name, in the order of the list of all stops
    */
   public static List<Stop> findStop(String name) {
-    List<Stop> matchingStops = new ArrayList<>();
-    String pattern = "(?i)(.*)" + name + "(.*)";
-    for (Stop s : getAllStops()) {
-      if (s.getName().matches(pattern)) {
-        matchingStops.add(s);
-      }
-    }
-    return matchingStops;
+    return ModelLock.model().nameIndex.findContaining(name);
+  }
+
+  /**
+   * Finds the stops whose names best complete a (partial) name, as typed by
+   * a user.
+   *
+   * Stops whose names begin with the partial name are given first, followed
+   * by those with a word beginning with it, and then those only containing
+   * it. See {@link StopNameIndex#complete(String, int)}.
+   *
+   * @param name  (partial) name of the desired stop
+   * @param limit the greatest number of stops to find
+   * @return list of up to limit stops matching name, best first
+   * @throws IllegalArgumentException if limit is negative
+   */
+  public static List<Stop> findStopsByName(String name, int limit) throws IllegalArgumentException {
+    return ModelLock.model().nameIndex.complete(name, limit);
   }
 
   /**
    * Gets the distance between two stops.
    *
-   * When a Stop is created, the distance from it to every other Stop is
-   * calculated and stored in a HashMap. This method simply undertakes a
-   * lookup of the HashMap and returns the stored distance.
+   * Where both stops are held within the distance matrix, this method simply
+   * looks up the stored distance; otherwise the distance is calculated.
    *
    * @param s1 the origin stop
    * @param s2 the destination stop
    * @return the distance between stops in metres
    */
   public static int getDistanceBetweenStops(Stop s1, Stop s2) {
-    return stopDistances.get(new StopPair(s1, s2));
+    Model model = ModelLock.model();
+    if (model.numberOfMatrixStops != 0) {
+      Integer position1 = model.matrixPositions.get(s1);
+      Integer position2 = model.matrixPositions.get(s2);
+      if (position1 != null && position2 != null) {
+        long i = Math.max(position1, position2);
+        long j = Math.min(position1, position2);
+        return model.distanceMatrix[(int) (i * (i + 1) / 2 + j)];
+      }
+    }
+    return calculateDistanceBetweenStops(s1, s2);
   }
 
   /**
-   * Updates the distances HashMap upon creation of new stop, s.
+   * Adds a new stop to the distance matrix, calculating its distance to
+   * every stop already held.
    *
-   * @param newStop new stop for which to update distances HashMap
+   * Once the matrix holds MAX_MATRIX_STOPS stops, and so occupies its
+   * budget of MATRIX_BUDGET bytes, further stops are not added, and their
+   * distances are calculated on demand.
+   *
+   * @param model   the model holding the distance matrix
+   * @param newStop new stop to add to the distance matrix
    */
-  private static void updateDistances(Stop newStop) {
-    stopDistances.put(new StopPair(newStop, newStop), 0);
-    for (Stop s : getAllStops()) {
-      // Calculate distance both directions, as implementation of
-      // calculateDistancesBetweenStops may change and provide non-mirroring
-      // results.
-      int distanceA = calculateDistanceBetweenStops(s, newStop);
-      int distanceB = calculateDistanceBetweenStops(newStop, s);
-      stopDistances.put(new StopPair(s, newStop), distanceA);
-      stopDistances.put(new StopPair(newStop, s), distanceB);
+  private static void addToDistanceMatrix(Model model, Stop newStop) {
+    if (model.numberOfMatrixStops == MAX_MATRIX_STOPS) {
+      return;
+    }
+    int i = model.numberOfMatrixStops;
+    int rowOffset = (int) ((long) i * (i + 1) / 2);
+    int[] distanceMatrix = model.distanceMatrix;
+    if (rowOffset + i + 1 > distanceMatrix.length) {
+      long capacity = Math.max(16, (long) distanceMatrix.length * 2);
+      capacity = Math.max(capacity, rowOffset + i + 1);
+      distanceMatrix = Arrays.copyOf(distanceMatrix, (int) Math.min(capacity, (long) MAX_MATRIX_STOPS * (MAX_MATRIX_STOPS + 1) / 2));
+      model.distanceMatrix = distanceMatrix;
+    }
+    if (i == model.matrixStops.length) {
+      model.matrixStops = Arrays.copyOf(model.matrixStops, Math.max(16, i * 2));
+    }
+    for (int j = 0; j < i; j++) {
+      // Distances to removed stops are never used
+      Stop s = model.matrixStops[j];
+      distanceMatrix[rowOffset + j] = s != null ? calculateDistanceBetweenStops(s, newStop) : 0;
     }
+    distanceMatrix[rowOffset + i] = 0;
+    model.matrixStops[i] = newStop;
+    model.numberOfMatrixStops++;
+    model.matrixPositions.put(newStop, i);
   }
 
   /**
@@ -192,12 +284,37 @@ public class Stop {
    * @return the distance between both stops to the nearest metre
    */
   private static int calculateDistanceBetweenStops(Stop s1, Stop s2) {
-    int r = 6_371_000;
-    double phi1 = s1.getLatitudeInRadians();
-    double phi2 = s2.getLatitudeInRadians();
-    double lambda1 = s1.getLongitudeInRadians();
-    double lambda2 = s2.getLongitudeInRadians();
+    return calculateDistance(
+        s1.getLatitudeInRadians(), s1.getLongitudeInRadians(),
+        s2.getLatitudeInRadians(), s2.getLongitudeInRadians()
+        );
+  }
+
+  /**
+   * Calculate as-the-crow-flies distance between two points.
+   *
+   * See {@link #calculateDistanceBetweenStops(Stop, Stop)
+   * calculateDistanceBetweenStops} for the formula used.
+   *
+   * @param latitude1  the latitude of the first point, in degrees
+   * @param longitude1 the longitude of the first point, in degrees
+   * @param latitude2  the latitude of the second point, in degrees
+   * @param longitude2 the longitude of the second point, in degrees
+   * @return the distance between both points to the nearest metre
+   */
+  public static int getDistanceBetweenPoints(double latitude1, double longitude1, double latitude2, double longitude2) {
+    return calculateDistance(
+        latitude1 * Math.PI / 180, longitude1 * Math.PI / 180,
+        latitude2 * Math.PI / 180, longitude2 * Math.PI / 180
+        );
+  }
 
+  /**
+   * Calculate as-the-crow-flies distance between two points given in
+   * radians, using the Haversine formula.
+   */
+  private static int calculateDistance(double phi1, double lambda1, double phi2, double lambda2) {
+    int r = 6_371_000;
     double d = 2 * r * Math.asin(Math.sqrt(
           Math.pow(Math.sin((phi2 - phi1) / 2), 2) +
           Math.cos(phi1) * Math.cos(phi2) *
@@ -222,13 +339,38 @@ public class Stop {
     return getDistanceBetweenStops(this, otherStop);
   }
 
+  /**
+   * Finds all stops within a distance of a point.
+   *
+   * @param latitude  the latitude of the point
+   * @param longitude the longitude of the point
+   * @param radius    the greatest distance in metres from the point
+   * @return list of stops within radius of the point, in the order of the
+   *         list of all stops
+   */
+  public static List<Stop> findStopsWithin(double latitude, double longitude, int radius) {
+    return ModelLock.model().spatialIndex.findWithin(latitude, longitude, radius);
+  }
+
+  /**
+   * Finds the stops nearest to a point.
+   *
+   * @param latitude  the latitude of the point
+   * @param longitude the longitude of the point
+   * @param k         the number of stops to find
+   * @return list of the k stops nearest to the point, nearest first
+   */
+  public static List<Stop> findNearestStops(double latitude, double longitude, int k) {
+    return ModelLock.model().spatialIndex.findNearest(latitude, longitude, k);
+  }
+
   /**
    * List all existing stops.
    *
    * @return list of all Stops in system
    */
   public static List<Stop> getAllStops() {
-    return allStops;
+    return ModelLock.model().allStops;
   }
   /**
    * Return the total number of Stops in existence.
@@ -284,12 +426,7 @@ public class Stop {
    * @return true if Stop already exists, else false.
    */
   private static boolean stopExists(Stop stop) {
-    for (Stop s : allStops) {
-      if (s.equals(stop)) {
-        return true;
-      }
-    }
-    return false;
+    return ModelLock.model().stopsById.containsKey(stop.getID());
   }
 
 }
@@ -0,0 +1,321 @@
+package main.model;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The StopNameIndex class indexes stops by their names, to find the stops
+ * whose names contain some text without comparing the text against every
+ * name.
+ *
+ * Names and the text searched for are first normalised, so that searches
+ * ignore case and accents. The Danish letters æ, ø and å are treated as a,
+ * o and a, as are the digraphs ae, oe and aa used for them where they cannot
+ * be typed, so that "Norresundby", "Noerresundby" and "Nørresundby" are the
+ * same.
+ *
+ * Every sequence of up to GRAM_LENGTH characters within each normalised name
+ * is indexed. Text of up to GRAM_LENGTH characters is therefore found by a
+ * single lookup, and longer text by checking only the names holding its
+ * least common sequence.
+ */
+public class StopNameIndex {
+
+  /** the length of the longest sequences of characters indexed */
+  private static final int GRAM_LENGTH = 3;
+
+  // Ranks of matches, best first
+  private static final int EXACT = 0;
+  private static final int PREFIX = 1;
+  private static final int WORD_PREFIX = 2;
+  private static final int SUBSTRING = 3;
+
+  /** orders entries by the order in which they were added */
+  private static final Comparator<Entry> ADDITION_ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      return Long.compare(a.sequence, b.sequence);
+    }
+  };
+
+  /**
+   * The Entry nested class holds an indexed stop, with its normalised name
+   * and the order in which it was added.
+   */
+  private static class Entry {
+
+    private final Stop stop;
+    private final String name;
+    private final long sequence;
+
+    /**
+     * Creates an Entry.
+     *
+     * @param stop     the stop indexed
+     * @param sequence the order in which the stop was added
+     */
+    Entry(Stop stop, long sequence) {
+      this.stop = stop;
+      this.name = normalise(stop.getName() == null ? "" : stop.getName());
+      this.sequence = sequence;
+    }
+  }
+
+  /**
+   * The Match nested class holds an entry found by a search, with the rank
+   * of the match.
+   */
+  private static class Match {
+
+    private final Entry entry;
+    private final int rank;
+
+    /**
+     * Creates a Match.
+     *
+     * @param entry the entry found
+     * @param rank  the rank of the match
+     */
+    Match(Entry entry, int rank) {
+      this.entry = entry;
+      this.rank = rank;
+    }
+  }
+
+  /** orders matches by rank, then by name length, then by addition order */
+  private static final Comparator<Match> RANK_ORDER = new Comparator<Match>() {
+    @Override
+    public int compare(Match a, Match b) {
+      if (a.rank != b.rank) {
+        return Integer.compare(a.rank, b.rank);
+      }
+      if (a.entry.name.length() != b.entry.name.length()) {
+        return Integer.compare(a.entry.name.length(), b.entry.name.length());
+      }
+      return ADDITION_ORDER.compare(a.entry, b.entry);
+    }
+  };
+
+  // the entries holding each sequence of characters, in the order in which
+  // they were added
+  private final Map<String, List<Entry>> grams = new HashMap<>();
+  // the entries of all stops, in the order in which they were added
+  private final List<Entry> entries = new ArrayList<>();
+  // the number of stops ever added, used to order results
+  private long stopsAdded = 0;
+
+  /**
+   * Normalises text for searching.
+   *
+   * Text is converted to lower case and accents are removed. The letters æ
+   * and ø become a and o, and an a or e following an a, or an e following an
+   * o, is dropped, so that the digraphs aa, ae and oe become a, a and o.
+   *
+   * The normalised form of the start of some text is always the start of
+   * the normalised form of the text.
+   *
+   * @param text the text to normalise
+   * @return normalised text
+   */
+  public static String normalise(String text) {
+    String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+    StringBuilder normalised = new StringBuilder(decomposed.length());
+    for (int i = 0; i < decomposed.length(); i++) {
+      char c = decomposed.charAt(i);
+      if (Character.getType(c) == Character.NON_SPACING_MARK) {
+        continue;
+      }
+      if (c == '\u00e6') {
+        c = 'a';
+      } else if (c == '\u00f8') {
+        c = 'o';
+      }
+      int last = normalised.length() - 1;
+      if (last >= 0 && normalised.charAt(last) == 'a' && (c == 'a' || c == 'e')) {
+        continue;
+      }
+      if (last >= 0 && normalised.charAt(last) == 'o' && c == 'e') {
+        continue;
+      }
+      normalised.append(c);
+    }
+    return normalised.toString();
+  }
+
+  /**
+   * Adds a stop to the index.
+   *
+   * The name of the stop is read when it is added.
+   *
+   * @param stop the stop to add
+   * @throws IllegalArgumentException if stop is null
+   */
+  public void add(Stop stop) throws IllegalArgumentException {
+    if (stop == null) {
+      throw new IllegalArgumentException("cannot add a null stop to a stop name index");
+    }
+    Entry entry = new Entry(stop, ++stopsAdded);
+    entries.add(entry);
+    for (String gram : gramsOf(entry.name)) {
+      List<Entry> holding = grams.get(gram);
+      if (holding == null) {
+        holding = new ArrayList<>();
+        grams.put(gram, holding);
+      }
+      holding.add(entry);
+    }
+  }
+
+  /**
+   * Removes a stop from the index.
+   *
+   * @param stop the stop to remove
+   * @return true if the stop was indexed, else false
+   */
+  public boolean remove(Stop stop) {
+    for (int i = 0; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      if (entry.stop == stop) {
+        entries.remove(i);
+        for (String gram : gramsOf(entry.name)) {
+          List<Entry> holding = grams.get(gram);
+          holding.remove(entry);
+          if (holding.isEmpty()) {
+            grams.remove(gram);
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the number of stops indexed.
+   *
+   * @return number of stops indexed
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Finds all stops whose names contain some text.
+   *
+   * @param text the text to find
+   * @return list of stops whose normalised names contain the normalised
+   *         text, in the order in which they were added
+   */
+  public List<Stop> findContaining(String text) {
+    String query = normalise(text);
+    List<Stop> stops = new ArrayList<>();
+    for (Entry entry : candidates(query)) {
+      if (entry.name.contains(query)) {
+        stops.add(entry.stop);
+      }
+    }
+    return stops;
+  }
+
+  /**
+   * Finds the stops whose names best complete some text, as typed by a
+   * user.
+   *
+   * Stops are ranked by whether their name is the text, begins with the
+   * text, has a word beginning with the text, or only contains the text.
+   * Stops of the same rank are ordered by the length of their names, and
+   * then by the order in which they were added.
+   *
+   * @param text  the text to complete
+   * @param limit the greatest number of stops to find
+   * @return list of up to limit stops whose normalised names contain the
+   *         normalised text, best first
+   * @throws IllegalArgumentException if limit is negative
+   */
+  public List<Stop> complete(String text, int limit) throws IllegalArgumentException {
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit must not be negative");
+    }
+    String query = normalise(text);
+    List<Match> matches = new ArrayList<>();
+    for (Entry entry : candidates(query)) {
+      int position = entry.name.indexOf(query);
+      if (position >= 0) {
+        matches.add(new Match(entry, rank(entry.name, query, position)));
+      }
+    }
+    Collections.sort(matches, RANK_ORDER);
+    List<Stop> stops = new ArrayList<>(Math.min(limit, matches.size()));
+    for (int i = 0; i < matches.size() && i < limit; i++) {
+      stops.add(matches.get(i).entry.stop);
+    }
+    return stops;
+  }
+
+  /**
+   * Gets the entries which may contain normalised text, in the order in
+   * which they were added.
+   *
+   * Text no longer than GRAM_LENGTH is looked up directly, so every entry
+   * returned contains it. For longer text, the entries holding its least
+   * common sequence of GRAM_LENGTH characters are returned.
+   */
+  private List<Entry> candidates(String query) {
+    if (query.isEmpty()) {
+      return entries;
+    }
+    if (query.length() <= GRAM_LENGTH) {
+      List<Entry> holding = grams.get(query);
+      return holding == null ? Collections.<Entry>emptyList() : holding;
+    }
+    List<Entry> fewest = null;
+    for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+      List<Entry> holding = grams.get(query.substring(i, i + GRAM_LENGTH));
+      if (holding == null) {
+        return Collections.emptyList();
+      }
+      if (fewest == null || holding.size() < fewest.size()) {
+        fewest = holding;
+      }
+    }
+    return fewest;
+  }
+
+  /**
+   * Ranks a match of normalised text within a normalised name.
+   */
+  private static int rank(String name, String query, int position) {
+    if (position == 0) {
+      return name.length() == query.length() ? EXACT : PREFIX;
+    }
+    do {
+      if (!Character.isLetterOrDigit(name.charAt(position - 1))) {
+        return WORD_PREFIX;
+      }
+      position = name.indexOf(query, position + 1);
+    } while (position >= 0);
+    return SUBSTRING;
+  }
+
+  /**
+   * Gets every distinct sequence of up to GRAM_LENGTH characters within a
+   * normalised name.
+   */
+  private static Set<String> gramsOf(String name) {
+    Set<String> nameGrams = new LinkedHashSet<>();
+    for (int i = 0; i < name.length(); i++) {
+      for (int length = 1; length <= GRAM_LENGTH && i + length <= name.length(); length++) {
+        nameGrams.add(name.substring(i, i + length));
+      }
+    }
+    return nameGrams;
+  }
+}
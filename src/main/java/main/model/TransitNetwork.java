@@ -0,0 +1,915 @@
+package main.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The TransitNetwork class is an immutable snapshot of the network operating
+ * under a Schedule, compiled from the model into primitive arrays.
+ *
+ * The stops, paths and RouteTimetables of the model are mutable objects held
+ * in static lists, which suit the loading and editing of data but not the
+ * inner loops of route planning and capacity calculation. A TransitNetwork
+ * gives every stop, pattern and trip a dense index, and holds their data in
+ * parallel arrays:-
+ *
+ *  * stops, with their IDs and coordinates;
+ *  * patterns - the RouteTimetables of each Route are grouped into patterns
+ *    of trips which share the same stop timings (i.e. the rush hour and
+ *    non-rush hour trips of a Route form separate patterns), with the stops
+ *    of each pattern;
+ *  * trips, sorted by departure time within their pattern, with the time at
+ *    which each trip calls at each stop of its pattern. As trips within a
+ *    pattern cannot overtake one another, the earliest trip from any stop can
+ *    be found by binary search; and
+ *  * adjacency lists, in compressed sparse row form, of the patterns serving
+ *    each stop and of the footpaths (walks) from each stop.
+ *
+ * Each index maps back to the domain object it was compiled from, for use in
+ * results. A TransitNetwork never changes once compiled, so may be shared
+ * between threads without locking; changes to the model are only seen by
+ * compiling a new snapshot.
+ *
+ * Once the model is replaced by an update through {@link ModelLock} (e.g.
+ * when timetable data is reloaded), the snapshots of the schedules it
+ * replaced are never recompiled, so that queries begun against a replaced
+ * schedule keep the network they started with.
+ *
+ * A TransitNetwork may also be saved within a {@link NetworkFile}, and read
+ * back with the rest of the network rather than compiled afresh.
+ *
+ * Once a query holds the TransitNetwork of its schedule, it may search the
+ * network without holding the read lock of the ModelLock, as nothing it
+ * reads from the network is changed by an update of the model.
+ */
+public class TransitNetwork {
+
+  // Network of each schedule, compiled at most once for each state of the
+  // model. Access is synchronized on the map itself.
+  private static final Map<Schedule, CompileTask> networks = new WeakHashMap<>();
+
+  private final Schedule schedule;
+  private final long modelVersion;
+
+  // Stops
+  private final Stop[] stops;
+  private final Map<Stop, Integer> stopIndices;
+  private final int[] stopIds;
+  private final double[] stopLatitudes;
+  private final double[] stopLongitudes;
+
+  // Patterns: stops of pattern p are patternStops[patternStopOffsets[p] ..
+  // patternStopOffsets[p+1]-1]
+  private final Route[] patternRoutes;
+  private final boolean[] patternRushHour;
+  private final int[] patternStopOffsets;
+  private final int[] patternStops;
+
+  // Trips: trips of pattern p are patternTripOffsets[p] ..
+  // patternTripOffsets[p+1]-1. Times of trip t are held in tripTimes from
+  // tripTimeOffsets[t], one entry per stop on pattern.
+  private final int[] patternTripOffsets;
+  private final int[] tripPatterns;
+  private final int[] tripTimeOffsets;
+  private final int[] tripTimes;
+  private final RouteTimetable[] tripRouteTimetables;
+
+  // Patterns serving each stop, with the position of the stop on the pattern
+  private final int[] stopPatternOffsets;
+  private final int[] stopPatterns;
+  private final int[] stopPatternPositions;
+
+  // Footpaths from each stop
+  private final int[] footpathOffsets;
+  private final int[] footpathTargets;
+  private final int[] footpathDurations;
+  private final Walk[] footpathWalks;
+
+  /**
+   * Gets the TransitNetwork for a Schedule.
+   *
+   * A cached TransitNetwork is returned if one exists for the Schedule and
+   * the model has not changed since it was compiled, or if the
+   * Schedule is no longer within the system; otherwise the Schedule is
+   * compiled afresh.
+   *
+   * Compiling a network is carried out by the first caller for the state of
+   * the model, while other callers for the same Schedule wait for its
+   * result, and callers for other schedules are not held back. Callers hold
+   * the read lock of the ModelLock while getting the network.
+   *
+   * @param schedule the schedule for which to get the network
+   * @return network operating under schedule
+   */
+  public static TransitNetwork forSchedule(Schedule schedule) {
+    CompileTask task;
+    boolean created = false;
+    synchronized (networks) {
+      task = networks.get(schedule);
+      if (task == null || (!task.isCurrent() && Schedule.getAllSchedules().contains(schedule))) {
+        task = new CompileTask(schedule);
+        networks.put(schedule, task);
+        created = true;
+      }
+    }
+    if (created) {
+      task.run();
+    }
+    try {
+      return task.getUninterruptibly();
+    } catch (RuntimeException | Error e) {
+      synchronized (networks) {
+        // Allow a later call to try again
+        if (networks.get(schedule) == task) {
+          networks.remove(schedule);
+        }
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Caches a TransitNetwork read from a network file for its Schedule, in
+   * place of any network already compiled.
+   *
+   * @param network the network to cache
+   */
+  static void install(TransitNetwork network) {
+    CompileTask task = new CompileTask(network);
+    synchronized (networks) {
+      networks.put(network.schedule, task);
+    }
+  }
+
+  /**
+   * Compiles a new TransitNetwork from a Schedule and the stops and paths of
+   * the system, without caching it.
+   *
+   * @param schedule the schedule from which to compile the network
+   * @return network operating under schedule
+   */
+  public static TransitNetwork compile(Schedule schedule) {
+    return new TransitNetwork(schedule);
+  }
+
+  /**
+   * Compiles a TransitNetwork from a Schedule.
+   *
+   * Compilation requires one pass over the Schedule, the stops and the
+   * paths of the system.
+   *
+   * @param schedule the schedule from which to compile the network
+   */
+  private TransitNetwork(Schedule schedule) {
+    this.schedule = schedule;
+    this.modelVersion = ModelLock.getVersion();
+    List<RouteTimetable> routeTimetables = schedule.getRouteTimetables();
+
+    // Group route timetables into patterns of the same route and timings
+    Map<Route, List<RouteTimetable>> nonRushHour = new LinkedHashMap<>();
+    Map<Route, List<RouteTimetable>> rushHour = new LinkedHashMap<>();
+    for (RouteTimetable rt : routeTimetables) {
+      Map<Route, List<RouteTimetable>> group = rt.isRushHour() ? rushHour : nonRushHour;
+      List<RouteTimetable> trips = group.get(rt.getRoute());
+      if (trips == null) {
+        trips = new ArrayList<>();
+        group.put(rt.getRoute(), trips);
+      }
+      trips.add(rt);
+    }
+    List<List<RouteTimetable>> patterns = new ArrayList<>(nonRushHour.values());
+    patterns.addAll(rushHour.values());
+
+    // Index stops, including those of routes no longer within the system
+    stopIndices = new HashMap<>();
+    List<Stop> stopList = new ArrayList<>();
+    for (Stop s : Stop.getAllStops()) {
+      indexStop(s, stopList);
+    }
+    for (Path p : Path.getAllPaths()) {
+      for (Stop s : p.getStops()) {
+        indexStop(s, stopList);
+      }
+    }
+    for (List<RouteTimetable> trips : patterns) {
+      for (Stop s : trips.get(0).getStops()) {
+        indexStop(s, stopList);
+      }
+    }
+    stops = stopList.toArray(new Stop[stopList.size()]);
+    stopIds = new int[stops.length];
+    stopLatitudes = new double[stops.length];
+    stopLongitudes = new double[stops.length];
+    for (int s = 0; s < stops.length; s++) {
+      stopIds[s] = stops[s].getID();
+      stopLatitudes[s] = stops[s].getLatitude();
+      stopLongitudes[s] = stops[s].getLongitude();
+    }
+
+    int numPatterns = patterns.size();
+    patternRoutes = new Route[numPatterns];
+    patternRushHour = new boolean[numPatterns];
+    patternStopOffsets = new int[numPatterns + 1];
+    patternTripOffsets = new int[numPatterns + 1];
+    int totalPatternStops = 0;
+    int totalTrips = 0;
+    int totalTripTimes = 0;
+    for (int p = 0; p < numPatterns; p++) {
+      int numStops = patterns.get(p).get(0).getStops().size();
+      totalPatternStops += numStops;
+      totalTrips += patterns.get(p).size();
+      totalTripTimes += numStops * patterns.get(p).size();
+    }
+    patternStops = new int[totalPatternStops];
+    tripPatterns = new int[totalTrips];
+    tripTimeOffsets = new int[totalTrips];
+    tripTimes = new int[totalTripTimes];
+    tripRouteTimetables = new RouteTimetable[totalTrips];
+
+    int[] stopPatternCounts = new int[stops.length];
+    int stopOffset = 0;
+    int tripIndex = 0;
+    int timeOffset = 0;
+    for (int p = 0; p < numPatterns; p++) {
+      List<RouteTimetable> trips = patterns.get(p);
+      trips.sort(Comparator.comparingInt(RouteTimetable::getStartTime));
+      List<Stop> routeStops = trips.get(0).getStops();
+      patternRoutes[p] = trips.get(0).getRoute();
+      patternRushHour[p] = trips.get(0).isRushHour();
+      patternStopOffsets[p] = stopOffset;
+      for (Stop s : routeStops) {
+        int stopIndex = stopIndices.get(s);
+        patternStops[stopOffset++] = stopIndex;
+        stopPatternCounts[stopIndex]++;
+      }
+      patternTripOffsets[p] = tripIndex;
+      for (RouteTimetable rt : trips) {
+        tripPatterns[tripIndex] = p;
+        tripTimeOffsets[tripIndex] = timeOffset;
+        tripRouteTimetables[tripIndex] = rt;
+        for (int i = 0; i < routeStops.size(); i++) {
+          tripTimes[timeOffset++] = rt.timeAtStopIndex(i);
+        }
+        tripIndex++;
+      }
+    }
+    patternStopOffsets[numPatterns] = stopOffset;
+    patternTripOffsets[numPatterns] = tripIndex;
+
+    // Build patterns-by-stop lookup
+    stopPatternOffsets = new int[stops.length + 1];
+    for (int s = 0; s < stops.length; s++) {
+      stopPatternOffsets[s + 1] = stopPatternOffsets[s] + stopPatternCounts[s];
+    }
+    stopPatterns = new int[stopPatternOffsets[stops.length]];
+    stopPatternPositions = new int[stopPatternOffsets[stops.length]];
+    int[] fill = Arrays.copyOf(stopPatternOffsets, stops.length);
+    for (int p = 0; p < numPatterns; p++) {
+      for (int pos = 0; pos < patternLength(p); pos++) {
+        int s = patternStop(p, pos);
+        stopPatterns[fill[s]] = p;
+        stopPatternPositions[fill[s]] = pos;
+        fill[s]++;
+      }
+    }
+
+    // Build footpaths from walks
+    List<Walk> walks = Walk.getAllWalks();
+    int[] footpathCounts = new int[stops.length];
+    for (Walk w : walks) {
+      footpathCounts[stopIndices.get(w.getOrigin())]++;
+    }
+    footpathOffsets = new int[stops.length + 1];
+    for (int s = 0; s < stops.length; s++) {
+      footpathOffsets[s + 1] = footpathOffsets[s] + footpathCounts[s];
+    }
+    footpathTargets = new int[walks.size()];
+    footpathDurations = new int[walks.size()];
+    footpathWalks = new Walk[walks.size()];
+    fill = Arrays.copyOf(footpathOffsets, stops.length);
+    for (Walk w : walks) {
+      int s = stopIndices.get(w.getOrigin());
+      footpathTargets[fill[s]] = stopIndices.get(w.getDestination());
+      footpathDurations[fill[s]] = w.walkingTime();
+      footpathWalks[fill[s]] = w;
+      fill[s]++;
+    }
+  }
+
+  /**
+   * Allocates a dense index to a stop if it does not already have one.
+   */
+  private void indexStop(Stop s, List<Stop> stopList) {
+    if (s != null && !stopIndices.containsKey(s)) {
+      stopIndices.put(s, stopList.size());
+      stopList.add(s);
+    }
+  }
+
+  /**
+   * Reads a TransitNetwork written by {@link #write write}.
+   *
+   * The stops, routes and route timetables to which the network refers are
+   * given by their positions within the network file, and the walks of its
+   * footpaths are found within the system.
+   *
+   * @param in        the buffer from which to read the network
+   * @param schedule  the schedule of the network
+   * @param stopTable the stops of the network file, by position
+   * @param routes    the routes of the network file, by position
+   * @return network read, or null if the walks of the system are not those
+   *         from which the network was compiled
+   * @throws IllegalArgumentException if the network is malformed
+   */
+  static TransitNetwork read(ByteBuffer in, Schedule schedule, Stop[] stopTable, Route[] routes) throws IllegalArgumentException {
+    TransitNetwork network = new TransitNetwork(in, schedule, stopTable, routes);
+    if (network.footpathWalks.length != Walk.getAllWalks().size()) {
+      return null;
+    }
+    for (Walk w : network.footpathWalks) {
+      if (w == null) {
+        return null;
+      }
+    }
+    return network;
+  }
+
+  /**
+   * Reads a TransitNetwork, leaving the walk of any footpath not found
+   * within the system null.
+   */
+  private TransitNetwork(ByteBuffer in, Schedule schedule, Stop[] stopTable, Route[] routes) throws IllegalArgumentException {
+    this.schedule = schedule;
+    this.modelVersion = ModelLock.getVersion();
+    List<RouteTimetable> routeTimetables = schedule.getRouteTimetables();
+
+    int[] stopPositions = readIndices(in, stopTable.length);
+    stops = new Stop[stopPositions.length];
+    stopIndices = new HashMap<>();
+    stopIds = new int[stops.length];
+    stopLatitudes = new double[stops.length];
+    stopLongitudes = new double[stops.length];
+    for (int s = 0; s < stops.length; s++) {
+      stops[s] = stopTable[stopPositions[s]];
+      stopIndices.put(stops[s], s);
+      stopIds[s] = stops[s].getID();
+      stopLatitudes[s] = stops[s].getLatitude();
+      stopLongitudes[s] = stops[s].getLongitude();
+    }
+
+    int[] routePositions = readIndices(in, routes.length);
+    int numPatterns = routePositions.length;
+    patternRoutes = new Route[numPatterns];
+    for (int p = 0; p < numPatterns; p++) {
+      patternRoutes[p] = routes[routePositions[p]];
+    }
+    int[] rushHour = readIndices(in, 2);
+    patternRushHour = new boolean[rushHour.length];
+    for (int p = 0; p < rushHour.length; p++) {
+      patternRushHour[p] = rushHour[p] != 0;
+    }
+    patternStopOffsets = readOffsets(in, numPatterns);
+    patternStops = readIndices(in, stops.length);
+    patternTripOffsets = readOffsets(in, numPatterns);
+    tripPatterns = readIndices(in, numPatterns);
+    tripTimeOffsets = NetworkFile.readInts(in);
+    tripTimes = NetworkFile.readInts(in);
+    int[] tripPositions = readIndices(in, routeTimetables.size());
+    tripRouteTimetables = new RouteTimetable[tripPositions.length];
+    for (int t = 0; t < tripPositions.length; t++) {
+      tripRouteTimetables[t] = routeTimetables.get(tripPositions[t]);
+    }
+    stopPatternOffsets = readOffsets(in, stops.length);
+    stopPatterns = readIndices(in, numPatterns);
+    stopPatternPositions = NetworkFile.readInts(in);
+    footpathOffsets = readOffsets(in, stops.length);
+    footpathTargets = readIndices(in, stops.length);
+    footpathDurations = NetworkFile.readInts(in);
+    if (rushHour.length != numPatterns ||
+        patternStopOffsets[numPatterns] != patternStops.length ||
+        patternTripOffsets[numPatterns] != tripPatterns.length ||
+        tripTimeOffsets.length != tripPatterns.length ||
+        tripRouteTimetables.length != tripPatterns.length ||
+        stopPatternOffsets[stops.length] != stopPatterns.length ||
+        stopPatternPositions.length != stopPatterns.length ||
+        footpathOffsets[stops.length] != footpathTargets.length ||
+        footpathDurations.length != footpathTargets.length) {
+      throw new IllegalArgumentException("transit network is malformed");
+    }
+    for (int t = 0; t < tripPatterns.length; t++) {
+      int p = tripPatterns[t];
+      if (tripTimeOffsets[t] < 0 || tripTimeOffsets[t] > tripTimes.length - patternLength(p)) {
+        throw new IllegalArgumentException("trip " + t + " is malformed");
+      }
+    }
+
+    // Find the walk of each footpath within the system
+    Map<Stop, List<Walk>> walks = new IdentityHashMap<>();
+    for (Walk w : Walk.getAllWalks()) {
+      List<Walk> from = walks.get(w.getOrigin());
+      if (from == null) {
+        from = new ArrayList<>();
+        walks.put(w.getOrigin(), from);
+      }
+      from.add(w);
+    }
+    footpathWalks = new Walk[footpathTargets.length];
+    for (int s = 0; s < stops.length; s++) {
+      List<Walk> from = walks.get(stops[s]);
+      for (int f = footpathOffsets[s]; from != null && f < footpathOffsets[s + 1]; f++) {
+        for (Walk w : from) {
+          if (w.getDestination() == stops[footpathTargets[f]]) {
+            footpathWalks[f] = w;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads an array of indices, each less than a bound.
+   */
+  private static int[] readIndices(ByteBuffer in, int bound) throws IllegalArgumentException {
+    int[] indices = NetworkFile.readInts(in);
+    for (int index : indices) {
+      if (index < 0 || index >= bound) {
+        throw new IllegalArgumentException("index " + index + " is not within " + bound);
+      }
+    }
+    return indices;
+  }
+
+  /**
+   * Reads the offsets of a compressed sparse row array of rows, which must
+   * begin at 0 and never decrease.
+   */
+  private static int[] readOffsets(ByteBuffer in, int rows) throws IllegalArgumentException {
+    int[] offsets = NetworkFile.readInts(in);
+    if (offsets.length != rows + 1 || offsets[0] != 0) {
+      throw new IllegalArgumentException("offsets of " + rows + " rows are malformed");
+    }
+    for (int i = 1; i < offsets.length; i++) {
+      if (offsets[i] < offsets[i - 1]) {
+        throw new IllegalArgumentException("offsets of " + rows + " rows are malformed");
+      }
+    }
+    return offsets;
+  }
+
+  /**
+   * Determines whether every stop and route of this network is within the
+   * given positions, so that the network may be written.
+   *
+   * @param stopPositions  positions of stops within the network file
+   * @param routePositions positions of routes within the network file
+   * @return true if all stops and routes have positions, else false
+   */
+  boolean isWithin(Map<Stop, Integer> stopPositions, Map<Route, Integer> routePositions) {
+    for (Stop s : stops) {
+      if (!stopPositions.containsKey(s)) {
+        return false;
+      }
+    }
+    for (Route r : patternRoutes) {
+      if (!routePositions.containsKey(r)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes this network, referring to its stops, routes and route
+   * timetables by their positions within a network file.
+   *
+   * @param out            the stream to which to write
+   * @param stopPositions  positions of stops within the network file
+   * @param routePositions positions of routes within the network file
+   * @param tripPositions  positions of route timetables within the schedule
+   * @throws IOException if the network cannot be written
+   */
+  void write(DataOutputStream out, Map<Stop, Integer> stopPositions, Map<Route, Integer> routePositions, Map<RouteTimetable, Integer> tripPositions) throws IOException {
+    int[] positions = new int[stops.length];
+    for (int s = 0; s < stops.length; s++) {
+      positions[s] = stopPositions.get(stops[s]);
+    }
+    NetworkFile.writeInts(out, positions);
+    positions = new int[patternRoutes.length];
+    int[] rushHour = new int[patternRoutes.length];
+    for (int p = 0; p < patternRoutes.length; p++) {
+      positions[p] = routePositions.get(patternRoutes[p]);
+      rushHour[p] = patternRushHour[p] ? 1 : 0;
+    }
+    NetworkFile.writeInts(out, positions);
+    NetworkFile.writeInts(out, rushHour);
+    NetworkFile.writeInts(out, patternStopOffsets);
+    NetworkFile.writeInts(out, patternStops);
+    NetworkFile.writeInts(out, patternTripOffsets);
+    NetworkFile.writeInts(out, tripPatterns);
+    NetworkFile.writeInts(out, tripTimeOffsets);
+    NetworkFile.writeInts(out, tripTimes);
+    positions = new int[tripRouteTimetables.length];
+    for (int t = 0; t < tripRouteTimetables.length; t++) {
+      positions[t] = tripPositions.get(tripRouteTimetables[t]);
+    }
+    NetworkFile.writeInts(out, positions);
+    NetworkFile.writeInts(out, stopPatternOffsets);
+    NetworkFile.writeInts(out, stopPatterns);
+    NetworkFile.writeInts(out, stopPatternPositions);
+    NetworkFile.writeInts(out, footpathOffsets);
+    NetworkFile.writeInts(out, footpathTargets);
+    NetworkFile.writeInts(out, footpathDurations);
+  }
+
+  /**
+   * Gets the Schedule from which this network was compiled.
+   *
+   * @return schedule of network
+   */
+  public Schedule getSchedule() {
+    return schedule;
+  }
+
+  /**
+   * Gets the number of stops.
+   *
+   * @return number of stops
+   */
+  public int numberOfStops() {
+    return stops.length;
+  }
+
+  /**
+   * Gets the dense index of a stop.
+   *
+   * @param s the stop for which to get index
+   * @return index of stop, or -1 if the stop is not within the network
+   */
+  public int stopIndex(Stop s) {
+    Integer index = stopIndices.get(s);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Gets the stop with a dense index.
+   *
+   * @param stop the stop index
+   * @return stop with index
+   */
+  public Stop stop(int stop) {
+    return stops[stop];
+  }
+
+  /**
+   * Gets the ID of a stop.
+   *
+   * @param stop the stop index
+   * @return ID of stop
+   */
+  public int stopId(int stop) {
+    return stopIds[stop];
+  }
+
+  /**
+   * Gets the latitude of a stop.
+   *
+   * @param stop the stop index
+   * @return latitude of stop
+   */
+  public double stopLatitude(int stop) {
+    return stopLatitudes[stop];
+  }
+
+  /**
+   * Gets the longitude of a stop.
+   *
+   * @param stop the stop index
+   * @return longitude of stop
+   */
+  public double stopLongitude(int stop) {
+    return stopLongitudes[stop];
+  }
+
+  /**
+   * Gets the number of trip patterns.
+   *
+   * @return number of patterns
+   */
+  public int numberOfPatterns() {
+    return patternRoutes.length;
+  }
+
+  /**
+   * Gets the number of stops on a pattern.
+   *
+   * @param pattern the pattern index
+   * @return number of stops on pattern
+   */
+  public int patternLength(int pattern) {
+    return patternStopOffsets[pattern + 1] - patternStopOffsets[pattern];
+  }
+
+  /**
+   * Gets the stop at a position on a pattern.
+   *
+   * @param pattern  the pattern index
+   * @param position the position of the stop on the pattern
+   * @return stop index
+   */
+  public int patternStop(int pattern, int position) {
+    return patternStops[patternStopOffsets[pattern] + position];
+  }
+
+  /**
+   * Gets the route which a pattern runs.
+   *
+   * @param pattern the pattern index
+   * @return route of pattern
+   */
+  public Route patternRoute(int pattern) {
+    return patternRoutes[pattern];
+  }
+
+  /**
+   * Determines whether the trips of a pattern run to rush hour timings.
+   *
+   * @param pattern the pattern index
+   * @return true if the pattern runs to rush hour timings
+   */
+  public boolean isRushHourPattern(int pattern) {
+    return patternRushHour[pattern];
+  }
+
+  /**
+   * Gets the index of the first trip on a pattern.
+   *
+   * @param pattern the pattern index
+   * @return index of first trip
+   */
+  public int firstTrip(int pattern) {
+    return patternTripOffsets[pattern];
+  }
+
+  /**
+   * Gets the index one beyond the last trip on a pattern.
+   *
+   * @param pattern the pattern index
+   * @return index one beyond last trip
+   */
+  public int endTrip(int pattern) {
+    return patternTripOffsets[pattern + 1];
+  }
+
+  /**
+   * Gets the total number of trips.
+   *
+   * @return number of trips
+   */
+  public int numberOfTrips() {
+    return tripRouteTimetables.length;
+  }
+
+  /**
+   * Gets the pattern on which a trip runs.
+   *
+   * @param trip the trip index
+   * @return pattern index
+   */
+  public int tripPattern(int trip) {
+    return tripPatterns[trip];
+  }
+
+  /**
+   * Gets the time of a trip at a position on its pattern.
+   *
+   * @param trip     the trip index
+   * @param position the position on the trip's pattern
+   * @return time (in minutes since midnight) of trip at position
+   */
+  public int tripTime(int trip, int position) {
+    return tripTimes[tripTimeOffsets[trip] + position];
+  }
+
+  /**
+   * Gets the RouteTimetable which a trip represents.
+   *
+   * @param trip the trip index
+   * @return RouteTimetable for trip
+   */
+  public RouteTimetable tripRouteTimetable(int trip) {
+    return tripRouteTimetables[trip];
+  }
+
+  /**
+   * Finds the earliest trip on a pattern departing a position at or after a
+   * given time.
+   *
+   * @param pattern  the pattern index
+   * @param position the position on the pattern from which to depart
+   * @param time     the earliest acceptable departure time
+   * @return index of the earliest such trip, or -1 if there is none
+   */
+  public int earliestTrip(int pattern, int position, int time) {
+    int low = firstTrip(pattern);
+    int high = endTrip(pattern);
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (tripTime(mid, position) < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low < endTrip(pattern) ? low : -1;
+  }
+
+  /**
+   * Gets the index of the first pattern entry for a stop.
+   *
+   * Entries from this index up to {@link #endStopPatterns(int)} describe the
+   * patterns serving the stop.
+   *
+   * @param stop the stop index
+   * @return index of first entry
+   */
+  public int firstStopPattern(int stop) {
+    return stopPatternOffsets[stop];
+  }
+
+  /**
+   * Gets the index one beyond the last pattern entry for a stop.
+   *
+   * @param stop the stop index
+   * @return index one beyond last entry
+   */
+  public int endStopPatterns(int stop) {
+    return stopPatternOffsets[stop + 1];
+  }
+
+  /**
+   * Gets the pattern for a stop pattern entry.
+   *
+   * @param entry the entry index
+   * @return pattern index
+   */
+  public int stopPattern(int entry) {
+    return stopPatterns[entry];
+  }
+
+  /**
+   * Gets the position of the stop on the pattern for a stop pattern entry.
+   *
+   * @param entry the entry index
+   * @return position of stop on pattern
+   */
+  public int stopPatternPosition(int entry) {
+    return stopPatternPositions[entry];
+  }
+
+  /**
+   * Gets the index of the first footpath from a stop.
+   *
+   * @param stop the stop index
+   * @return index of first footpath
+   */
+  public int firstFootpath(int stop) {
+    return footpathOffsets[stop];
+  }
+
+  /**
+   * Gets the index one beyond the last footpath from a stop.
+   *
+   * @param stop the stop index
+   * @return index one beyond last footpath
+   */
+  public int endFootpaths(int stop) {
+    return footpathOffsets[stop + 1];
+  }
+
+  /**
+   * Gets the stop at which a footpath ends.
+   *
+   * @param footpath the footpath index
+   * @return stop index
+   */
+  public int footpathTarget(int footpath) {
+    return footpathTargets[footpath];
+  }
+
+  /**
+   * Gets the walking time of a footpath.
+   *
+   * @param footpath the footpath index
+   * @return walking time in minutes
+   */
+  public int footpathDuration(int footpath) {
+    return footpathDurations[footpath];
+  }
+
+  /**
+   * Gets the Walk which a footpath represents.
+   *
+   * @param footpath the footpath index
+   * @return walk for footpath
+   */
+  public Walk footpathWalk(int footpath) {
+    return footpathWalks[footpath];
+  }
+
+  /**
+   * The CompileTask class compiles the network of a Schedule once, for every
+   * caller requiring it.
+   */
+  private static class CompileTask extends FutureTask<TransitNetwork> {
+
+    private final long modelVersion;
+
+    /**
+     * Creates a task compiling the network of a Schedule from the model in
+     * its current state.
+     *
+     * @param schedule the schedule for which to compile the network
+     */
+    CompileTask(final Schedule schedule) {
+      super(new Callable<TransitNetwork>() {
+        @Override
+        public TransitNetwork call() {
+          return compile(schedule);
+        }
+      });
+      this.modelVersion = ModelLock.getVersion();
+    }
+
+    /**
+     * Creates a task holding a network already compiled.
+     *
+     * @param network the network
+     */
+    CompileTask(TransitNetwork network) {
+      super(new Callable<TransitNetwork>() {
+        @Override
+        public TransitNetwork call() {
+          return null;
+        }
+      });
+      this.modelVersion = network.modelVersion;
+      set(network);
+    }
+
+    /**
+     * Determines whether the network reflects the model, i.e. that the model
+     * has not changed since the network was compiled.
+     *
+     * @return true if the model is unchanged
+     */
+    boolean isCurrent() {
+      return ModelLock.getVersion() == modelVersion;
+    }
+
+    /**
+     * Waits for the network, without giving up if the thread is
+     * interrupted. The interrupt is kept for the caller to act upon.
+     *
+     * @return the network
+     * @throws RuntimeException if the network could not be compiled
+     */
+    TransitNetwork getUninterruptibly() throws RuntimeException {
+      boolean interrupted = false;
+      try {
+        while (true) {
+          try {
+            return get();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+              throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+              throw (Error) cause;
+            }
+            throw new IllegalStateException("network could not be compiled", cause);
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
@@ -2,6 +2,7 @@ package main.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -51,18 +52,38 @@ public class Walk extends Path {
     addPath(this); // Must complete by storing Walk in list of all Paths
   }
 
+  /**
+   * Creates a Walk instance, optionally without storing it in the list of
+   * all paths.
+   *
+   * Walks which are not stored are used for walking to and from points which
+   * are not stops, and are never found when searching the list of all paths.
+   *
+   * @param walkStart the stop from which this walk begins
+   * @param walkEnd   the stop at which this walk ends
+   * @param addToList tells if the walk should be added to list
+   */
+  public Walk(Stop walkStart, Stop walkEnd, boolean addToList) {
+    this.walkStart = walkStart;
+    this.walkEnd = walkEnd;
+    if (addToList) {
+      addPath(this);
+    }
+  }
+
   /**
    * Signals to the Walk class that a new stop has been created, and creates
    * new Walks if appropriate.
    *
    * Walk instances should be created when a new Stop is created if this stop
    * is within walking distance of another stop. This method carries out
-   * the creation of these Walks if required.
+   * the creation of these Walks if required, considering only the stops
+   * found nearby within the spatial index of stops.
    *
    * @param newStop the newly created Stop
    */
   public static void stopAdded(Stop newStop) {
-    for (Stop s : Stop.getAllStops()) {
+    for (Stop s : Stop.findStopsWithin(newStop.getLatitude(), newStop.getLongitude(), getWalkingDistance())) {
       if (!newStop.equals(s) && newStop.distanceTo(s) <= getWalkingDistance()) {
         new Walk(newStop, s);
         new Walk(s, newStop);
@@ -110,15 +131,33 @@ public class Walk extends Path {
   */
   @Override
   public Walk findInverted() {
-    for (Walk w : getAllWalks()) {
-      if (w.getOrigin() == getDestination() &&
-          w.getDestination() == getOrigin()) {
-        return w;
+    for (Incidence incidence : findIncidences(getDestination())) {
+      if (incidence.getPath() instanceof Walk) {
+        Walk w = (Walk) incidence.getPath();
+        if (w.getOrigin() == getDestination() &&
+            w.getDestination() == getOrigin()) {
+          return w;
+        }
       }
-    }   
+    }
     return null;
   }
 
+  @Override
+  boolean isIndexed() {
+    return true;
+  }
+
+  @Override
+  Collection<? extends Path> possiblyEqualPaths() {
+    // Equal walks share an origin, so include it
+    List<Path> paths = new ArrayList<>();
+    for (Incidence incidence : findIncidences(getOrigin())) {
+      paths.add(incidence.getPath());
+    }
+    return paths;
+  }
+
   /**
    * Get list of all existing walks.
    *
@@ -0,0 +1,319 @@
+package main.routeplanner;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import main.model.*;
+
+/**
+ * This class is used to find itineraries between two stops using the
+ * Connection Scan algorithm.
+ *
+ * It is an alternative to the ItineraryFinder and RaptorItineraryFinder. All
+ * trips within the Schedule for the desired date are broken down into
+ * elementary connections between consecutive stops, sorted by departure time.
+ * An earliest arrival query is then a single scan over the connections
+ * departing after the search time, with no priority queue and no per-query
+ * set-up beyond the label arrays. This makes it well suited to workloads with
+ * a large number of queries.
+ *
+ * As with the other route planners, at most one walk may be taken after each
+ * bus trip (or from the starting stop). Trips more crowded than the filter
+ * are not boarded.
+ *
+ * Functionality is based on the algorithm described within the paper
+ * Dibbelt, J., Pajor, T., Strasser, B., Wagner, D. (2013). Intriguingly
+ * Simple and Fast Transit Routing. Proceedings of the 12th International
+ * Symposium on Experimental Algorithms (SEA'13).
+ *
+ * @see ItineraryFinder
+ * @see RaptorItineraryFinder
+ */
+public class ConnectionScanItineraryFinder extends TimetableJourneyPlanner {
+
+  private static final int UNREACHABLE = RaptorItineraryFinder.UNREACHABLE;
+  private static final int NONE = -1;
+
+  /**
+   * Creates an instance of ConnectionScanItineraryFinder.
+   *
+   * @param startingStop the stop from which the desired journey is to begin
+   * @param endingStop   the stop at which the desired journey is to end
+   * @param searchTime   the date and time of departure for the desired journey
+   */
+  public ConnectionScanItineraryFinder(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
+    super(startingStop, endingStop, searchTime);
+  }
+
+  /**
+   * Finds the legs of the earliest arriving itinerary which departs the
+   * starting stop at or after a given time, by scanning the connections of
+   * the schedule.
+   *
+   * @param departureTime the earliest time at which to depart (in minutes
+   *                      since midnight)
+   * @return legs of the earliest arriving itinerary, or null if the ending
+   *         stop cannot be reached
+   */
+  @Override
+  List<ItineraryLeg> findEarliestArrival(int departureTime) {
+    ConnectionTimetable connections;
+    ModelLock.readLock().lock();
+    try {
+      connections = ConnectionTimetable.forSchedule(getSchedule());
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+    return new Scan(connections, departureTime).run();
+  }
+
+  /**
+   * The Scan inner class holds the labels for one run of the Connection Scan
+   * algorithm from the starting stop at a given departure time.
+   *
+   * Each stop holds two labels: the earliest arrival by bus, from which a
+   * walk may be taken, and the earliest arrival by walking. Labels refer back
+   * to the connection on which the previous bus trip was left, and each trip
+   * records the labels in force when it was boarded. As a connection can only
+   * refer back to connections scanned before it, the itinerary can always be
+   * reconstructed, even where stops are reached by several trips departing
+   * in the same minute.
+   */
+  private class Scan {
+
+    private final ConnectionTimetable connections;
+    private final TransitNetwork timetable;
+    private final int departureTime;
+    private final int origin;
+    private final int target;
+
+    // Labels for each stop
+    private final int[] arrival;
+    private final int[] busArrival;
+    private final int[] busConnection;
+    private final int[] walkArrival;
+    private final int[] walkFootpath;
+    private final int[] walkConnection;
+
+    // Boarding details for each trip
+    private final int[] tripBoarded;
+    private final int[] tripBoardedFootpath;
+    private final int[] tripBoardedConnection;
+
+    /**
+     * Creates a scan.
+     *
+     * @param connections   the connections over which to scan
+     * @param departureTime the time from which to depart the starting stop
+     */
+    Scan(ConnectionTimetable connections, int departureTime) {
+      this.connections = connections;
+      this.timetable = connections.getNetwork();
+      this.departureTime = departureTime;
+      this.origin = timetable.stopIndex(getStartingStop());
+      this.target = timetable.stopIndex(getEndingStop());
+      int n = timetable.numberOfStops();
+      arrival = new int[n];
+      busArrival = new int[n];
+      busConnection = new int[n];
+      walkArrival = new int[n];
+      walkFootpath = new int[n];
+      walkConnection = new int[n];
+      tripBoarded = new int[timetable.numberOfTrips()];
+      tripBoardedFootpath = new int[timetable.numberOfTrips()];
+      tripBoardedConnection = new int[timetable.numberOfTrips()];
+      Arrays.fill(arrival, UNREACHABLE);
+      Arrays.fill(busArrival, UNREACHABLE);
+      Arrays.fill(walkArrival, UNREACHABLE);
+      Arrays.fill(tripBoarded, NONE);
+    }
+
+    /**
+     * Runs the scan and reconstructs the earliest arriving itinerary.
+     *
+     * @return legs of the earliest arriving itinerary, or null if the ending
+     *         stop cannot be reached
+     */
+    List<ItineraryLeg> run() {
+      if (origin < 0 || target < 0) {
+        return null;
+      }
+      arrival[origin] = departureTime;
+      relaxFootpaths(origin, departureTime, NONE);
+
+      int c = connections.firstConnectionFrom(departureTime);
+      while (c < connections.numberOfConnections()) {
+        int minute = connections.departureTime(c);
+        if (minute >= arrival[target]) {
+          break;
+        }
+        int end = c;
+        while (end < connections.numberOfConnections() && connections.departureTime(end) == minute) {
+          end++;
+        }
+        // Connections taking no time may reach stops from which other
+        // connections depart in the same minute, so the connections
+        // departing in each minute are scanned until no such stop is reached
+        boolean reachedWithinMinute = true;
+        while (reachedWithinMinute) {
+          reachedWithinMinute = scanConnections(c, end, minute);
+        }
+        c = end;
+      }
+
+      if (arrival[target] == UNREACHABLE) {
+        return null;
+      }
+      return reconstruct();
+    }
+
+    /**
+     * Scans a block of connections departing in the same minute.
+     *
+     * @param first  the first connection to scan
+     * @param end    the connection after the last to scan
+     * @param minute the departure time of the connections
+     * @return true if any stop was reached within minute, else false
+     */
+    private boolean scanConnections(int first, int end, int minute) {
+      boolean reachedWithinMinute = false;
+      for (int c = first; c < end; c++) {
+        int trip = connections.trip(c);
+        if (tripBoarded[trip] == NONE && !board(trip, c)) {
+          continue;
+        }
+        int s = connections.arrivalStop(c);
+        if (s == connections.departureStop(tripBoarded[trip])) {
+          // Trip has returned to the stop at which it was boarded
+          continue;
+        }
+        int connectionArrival = connections.arrivalTime(c);
+        if (connectionArrival < busArrival[s]) {
+          busArrival[s] = connectionArrival;
+          busConnection[s] = c;
+          arrival[s] = Math.min(arrival[s], connectionArrival);
+          boolean walkedWithinMinute = relaxFootpaths(s, connectionArrival, c) <= minute;
+          reachedWithinMinute |= connectionArrival <= minute || walkedWithinMinute;
+        }
+      }
+      return reachedWithinMinute;
+    }
+
+    /**
+     * Boards a trip at a connection, if the departure stop of the connection
+     * has been reached in time and the trip is not too crowded to board
+     * there.
+     *
+     * The label by which the stop was reached is recorded against the trip.
+     * Reaching the stop by bus (or starting there) is preferred to walking.
+     *
+     * @param trip the trip to board
+     * @param c    the connection at which to board
+     * @return true if the trip was boarded, else false
+     */
+    private boolean board(int trip, int c) {
+      int s = connections.departureStop(c);
+      int connectionDeparture = connections.departureTime(c);
+      int footpath;
+      int previousConnection;
+      if (s == origin) {
+        footpath = NONE;
+        previousConnection = NONE;
+      } else if (busArrival[s] <= connectionDeparture) {
+        footpath = NONE;
+        previousConnection = busConnection[s];
+      } else if (walkArrival[s] <= connectionDeparture) {
+        footpath = walkFootpath[s];
+        previousConnection = walkConnection[s];
+      } else {
+        return false;
+      }
+      if (!isAcceptable(timetable.tripRouteTimetable(trip), timetable.stop(s))) {
+        return false;
+      }
+      tripBoarded[trip] = c;
+      tripBoardedFootpath[trip] = footpath;
+      tripBoardedConnection[trip] = previousConnection;
+      return true;
+    }
+
+    /**
+     * Relaxes the footpaths from a stop.
+     *
+     * @param s         the stop from which to walk
+     * @param startTime the time at which walking begins
+     * @param c         the connection by which the stop was reached, or NONE
+     *                  if walking from the starting stop
+     * @return earliest time at which a stop was reached by walking, or
+     *         UNREACHABLE if no stop was reached earlier than before
+     */
+    private int relaxFootpaths(int s, int startTime, int c) {
+      int earliest = UNREACHABLE;
+      for (int f = timetable.firstFootpath(s); f < timetable.endFootpaths(s); f++) {
+        int walkTarget = timetable.footpathTarget(f);
+        int walkEnd = startTime + timetable.footpathDuration(f);
+        if (walkEnd < walkArrival[walkTarget]) {
+          walkArrival[walkTarget] = walkEnd;
+          walkFootpath[walkTarget] = f;
+          walkConnection[walkTarget] = c;
+          arrival[walkTarget] = Math.min(arrival[walkTarget], walkEnd);
+          earliest = Math.min(earliest, walkEnd);
+        }
+      }
+      return earliest;
+    }
+
+    /**
+     * Reconstructs the itinerary reaching the ending stop from the labels
+     * recorded during the scan.
+     *
+     * Where the ending stop is reached equally early by bus and by walking,
+     * the bus label is followed.
+     *
+     * @return legs of the itinerary
+     */
+    private List<ItineraryLeg> reconstruct() {
+      LinkedList<ItineraryLeg> legs = new LinkedList<>();
+      if (target == origin) {
+        return legs;
+      }
+      int c;
+      if (busArrival[target] <= arrival[target]) {
+        c = busConnection[target];
+      } else {
+        c = walkConnection[target];
+        addWalkLeg(legs, walkFootpath[target], c);
+      }
+      while (c != NONE) {
+        int trip = connections.trip(c);
+        int boarded = tripBoarded[trip];
+        legs.addFirst(new ItineraryLeg(
+              getDate(),
+              timetable.tripRouteTimetable(trip),
+              timetable.stop(connections.departureStop(boarded)),
+              timetable.stop(connections.arrivalStop(c))
+              ));
+        c = tripBoardedConnection[trip];
+        if (tripBoardedFootpath[trip] != NONE) {
+          addWalkLeg(legs, tripBoardedFootpath[trip], c);
+        }
+      }
+      return legs;
+    }
+
+    /**
+     * Adds a walk leg to the start of an itinerary.
+     *
+     * @param legs     the legs of the itinerary
+     * @param footpath the footpath walked
+     * @param c        the connection after which walking begins, or NONE if
+     *                 walking from the starting stop
+     */
+    private void addWalkLeg(LinkedList<ItineraryLeg> legs, int footpath, int c) {
+      int startTime = c == NONE ? departureTime : connections.arrivalTime(c);
+      legs.addFirst(new ItineraryLeg(getDate(), timetable.footpathWalk(footpath), startTime));
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package main.routeplanner;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import main.model.*;
+
+/**
+ * The ConnectionTimetable class lays out the RouteTimetables of a Schedule as
+ * the array of elementary connections used by the Connection Scan algorithm.
+ *
+ * Each connection represents a single trip travelling between two
+ * consecutive stops on its route, without stopping. Connections are held in
+ * primitive arrays sorted by departure time (and then by arrival time), so
+ * that an earliest arrival query is a single linear scan over the arrays.
+ *
+ * The ConnectionTimetable is built from the trips of the TransitNetwork for
+ * the same Schedule, and shares its stop indices, trip indices and
+ * footpaths. Instances are cached for each Schedule, and rebuilt whenever the
+ * underlying TransitNetwork is recompiled.
+ */
+class ConnectionTimetable {
+
+  // Access is synchronized on the cache itself
+  private static final Map<Schedule, ConnectionTimetable> cache = new WeakHashMap<>();
+
+  private final TransitNetwork network;
+
+  private final int[] departureStops;
+  private final int[] arrivalStops;
+  private final int[] departureTimes;
+  private final int[] arrivalTimes;
+  private final int[] trips;
+
+  /**
+   * Gets the ConnectionTimetable for a Schedule.
+   *
+   * Callers hold the read lock of the ModelLock while getting the timetable.
+   *
+   * @param schedule the schedule for which to get the timetable
+   * @return connection timetable representing schedule
+   */
+  static ConnectionTimetable forSchedule(Schedule schedule) {
+    TransitNetwork network = TransitNetwork.forSchedule(schedule);
+    ConnectionTimetable connections;
+    synchronized (cache) {
+      connections = cache.get(schedule);
+    }
+    if (connections == null || connections.network != network) {
+      // Built outside the lock; callers racing to build the same timetable
+      // each build an equal one
+      connections = new ConnectionTimetable(network);
+      synchronized (cache) {
+        cache.put(schedule, connections);
+      }
+    }
+    return connections;
+  }
+
+  /**
+   * Builds a ConnectionTimetable from the trips of a TransitNetwork.
+   *
+   * @param network the network from which to build connections
+   */
+  ConnectionTimetable(TransitNetwork network) {
+    this.network = network;
+
+    int numConnections = 0;
+    for (int p = 0; p < network.numberOfPatterns(); p++) {
+      int tripsOnPattern = network.endTrip(p) - network.firstTrip(p);
+      numConnections += tripsOnPattern * Math.max(0, network.patternLength(p) - 1);
+    }
+    int[] unsortedDepartureStops = new int[numConnections];
+    int[] unsortedArrivalStops = new int[numConnections];
+    int[] unsortedDepartureTimes = new int[numConnections];
+    int[] unsortedArrivalTimes = new int[numConnections];
+    int[] unsortedTrips = new int[numConnections];
+
+    // Sort keys hold departure time, arrival time and connection index, in
+    // that order of significance
+    long[] keys = new long[numConnections];
+    int c = 0;
+    for (int p = 0; p < network.numberOfPatterns(); p++) {
+      for (int trip = network.firstTrip(p); trip < network.endTrip(p); trip++) {
+        for (int pos = 0; pos + 1 < network.patternLength(p); pos++) {
+          unsortedDepartureStops[c] = network.patternStop(p, pos);
+          unsortedArrivalStops[c] = network.patternStop(p, pos + 1);
+          unsortedDepartureTimes[c] = network.tripTime(trip, pos);
+          unsortedArrivalTimes[c] = network.tripTime(trip, pos + 1);
+          unsortedTrips[c] = trip;
+          keys[c] = ((long) (unsortedDepartureTimes[c] & 0xFFFF) << 48) |
+                    ((long) (unsortedArrivalTimes[c] & 0xFFFF) << 32) |
+                    c;
+          c++;
+        }
+      }
+    }
+    Arrays.sort(keys);
+
+    departureStops = new int[numConnections];
+    arrivalStops = new int[numConnections];
+    departureTimes = new int[numConnections];
+    arrivalTimes = new int[numConnections];
+    trips = new int[numConnections];
+    for (int i = 0; i < numConnections; i++) {
+      int from = (int) keys[i];
+      departureStops[i] = unsortedDepartureStops[from];
+      arrivalStops[i] = unsortedArrivalStops[from];
+      departureTimes[i] = unsortedDepartureTimes[from];
+      arrivalTimes[i] = unsortedArrivalTimes[from];
+      trips[i] = unsortedTrips[from];
+    }
+  }
+
+  /**
+   * Gets the TransitNetwork from which this was built.
+   *
+   * Stop indices, trip indices and footpaths are those of the TransitNetwork.
+   *
+   * @return underlying network
+   */
+  TransitNetwork getNetwork() {
+    return network;
+  }
+
+  /**
+   * Gets the number of connections.
+   *
+   * @return number of connections
+   */
+  int numberOfConnections() {
+    return trips.length;
+  }
+
+  /**
+   * Finds the first connection departing at or after a given time.
+   *
+   * @param time the earliest acceptable departure time
+   * @return index of the first such connection, or the number of connections
+   *         if there is none
+   */
+  int firstConnectionFrom(int time) {
+    int low = 0;
+    int high = departureTimes.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (departureTimes[mid] < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Gets the stop from which a connection departs.
+   *
+   * @param connection the connection index
+   * @return stop index
+   */
+  int departureStop(int connection) {
+    return departureStops[connection];
+  }
+
+  /**
+   * Gets the stop at which a connection arrives.
+   *
+   * @param connection the connection index
+   * @return stop index
+   */
+  int arrivalStop(int connection) {
+    return arrivalStops[connection];
+  }
+
+  /**
+   * Gets the departure time of a connection.
+   *
+   * @param connection the connection index
+   * @return departure time (in minutes since midnight)
+   */
+  int departureTime(int connection) {
+    return departureTimes[connection];
+  }
+
+  /**
+   * Gets the arrival time of a connection.
+   *
+   * @param connection the connection index
+   * @return arrival time (in minutes since midnight)
+   */
+  int arrivalTime(int connection) {
+    return arrivalTimes[connection];
+  }
+
+  /**
+   * Gets the trip to which a connection belongs.
+   *
+   * @param connection the connection index
+   * @return trip index within the TransitNetwork
+   */
+  int trip(int connection) {
+    return trips[connection];
+  }
+}
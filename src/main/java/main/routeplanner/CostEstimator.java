@@ -1,9 +1,14 @@
 package main.routeplanner;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import main.model.*;
-import main.misc.StopPair;
 
 /**
  * The CostEstimator class is used to generate and query a static costs table
@@ -13,22 +18,65 @@ import main.misc.StopPair;
  * consists of a large number of calculations which may take some time. The
  * methods provided within the class are not useable until after completion
  * of the generation of the table.
+ *
+ * The costs table is held as a flat array over dense stop indices, with the
+ * cost from the stop with index i to the stop with index j held at position
+ * i * n + j. The all-to-all shortest paths are calculated using a blocked
+ * Floyd-Warshall algorithm, which works on tiles of the table small enough
+ * to fit within the processor cache, and updates independent tiles in
+ * parallel.
+ *
+ * Once generated, the table is saved to a file within the directory named by
+ * the system property {@value #COSTS_DIRECTORY_PROPERTY} (by default, the
+ * temporary directory). Later runs of the system against the same network
+ * map the saved table instead of generating it again.
+ *
+ * Where the costs table would be too large, the LANDMARKS heuristic may be
+ * chosen instead. This estimates costs using lower bounds from a small
+ * number of landmark stops, and the costs table is then never generated.
+ *
+ * The costs table and landmarks are generated again for the new network
+ * once the model is replaced by an update through ModelLock (e.g. when
+ * timetable data is reloaded).
+ *
+ * @see CostsTable
+ * @see Landmarks
+ * @see CostHeuristic
  */
 class CostEstimator {
 
   private final Stop endNode;
+  private final CostHeuristic heuristic;
+  private final CostsTable table;
 
   /**
    * Value to be used for stops not connected on one single Route
    */
   public static final int UNCONNECTED = 1_000_000;
 
-  private static HashMap<StopPair, Integer> costsTable = new HashMap<StopPair, Integer>();
+  /**
+   * Number of stops along each side of a tile of the costs table
+   */
+  static final int BLOCK_SIZE = 64;
+
+  /**
+   * Name of the system property used to choose the directory in which costs
+   * tables are saved
+   */
+  public static final String COSTS_DIRECTORY_PROPERTY = "costsdirectory";
+
+  private static volatile CostsTable costsTable;
+  private static Landmarks landmarks;
+
+  // Generations of the model from which the costs table and landmarks were
+  // generated
+  private static long costsTableGeneration;
+  private static long landmarksGeneration;
 
   // Flag whether costs table has been initalized, and whether it has been
   // fully populated.
-  private static boolean costsTableInitialized = false; 
-  private static boolean costsTablePopulated = false;
+  private static volatile boolean costsTableInitialized = false; 
+  private static volatile boolean costsTablePopulated = false;
 
   /**
    * Create a new CostEstimator instance.
@@ -38,15 +86,57 @@ class CostEstimator {
    * the overall cost value of a trip between a starting point and the given
    * endNode.
    *
+   * The default heuristic is used.
+   *
    * @param endNode the ending node used for determining h'(ni)
+   * @see CostHeuristic#getDefault()
    */
   public CostEstimator(Stop endNode) {
+    this(endNode, CostHeuristic.getDefault());
+  }
+
+  /**
+   * Create a new CostEstimator instance using a given heuristic.
+   *
+   * The costs table or landmarks required by the heuristic are generated
+   * when first needed.
+   *
+   * @param endNode   the ending node used for determining h'(ni)
+   * @param heuristic the heuristic used for determining h'(ni)
+   */
+  public CostEstimator(Stop endNode, CostHeuristic heuristic) {
     this.endNode = endNode;
-    if (!isCostsTableInitialized()) {
-      generateCostsTable();  
+    this.heuristic = heuristic;
+    generate(heuristic);
+    this.table = costsTable;
+  }
+
+  /**
+   * Generate the costs table or landmarks required by a heuristic, if not
+   * already generated for the current model.
+   *
+   * This allows the table to be generated ahead of the first query, without
+   * creating an estimator for any particular ending node.
+   *
+   * @param heuristic the heuristic for which to generate
+   */
+  static void generate(CostHeuristic heuristic) {
+    if (heuristic == CostHeuristic.LANDMARKS) {
+      generateLandmarks();
+    } else {
+      generateCostsTable();
     }
   }
 
+  /**
+   * Get the heuristic used by this.
+   *
+   * @return heuristic used for determining h'(ni)
+   */
+  public CostHeuristic getHeuristic() {
+    return heuristic;
+  }
+
   /**
    * Determine the value of h'(ni).
    *
@@ -57,11 +147,14 @@ class CostEstimator {
    * @return value of h'(ni)
    */
   public int hPrime(Stop ni) throws UnsupportedOperationException {
+    if (heuristic == CostHeuristic.LANDMARKS) {
+      return landmarks.lowerBound(ni, endNode);
+    }
     if (!isCostsTablePopulated()) {
       String msg = "costs table is not yet populated; please wait";
       throw new UnsupportedOperationException(msg);
     }
-    return getH(ni, endNode);
+    return table.cost(ni, endNode);
   }
 
   /**
@@ -105,41 +198,98 @@ class CostEstimator {
   }
 
   /**
-   * Retrieve the H value for stops s1 & s2.
+   * Allocate dense indices to all stops, and to any further stops found on
+   * paths.
    *
-   * @return H value for path between s1 & s2
+   * Stops are indexed by ID, so that equal stops share an index.
+   *
+   * @return dense index for each stop ID
    */
-  private static int getH(Stop s1, Stop s2) {
-    StopPair pair = new StopPair(s1, s2);
-    if (costsTable.get(pair) == null) {
-      return UNCONNECTED;
-    } else {
-      return costsTable.get(pair);
+  static HashMap<Integer, Integer> indexStops() {
+    HashMap<Integer, Integer> indices = new HashMap<Integer, Integer>();
+    for (Stop s : Stop.getAllStops()) {
+      indexStop(indices, s);
     }
+    for (Path p : Path.getAllPaths()) {
+      for (Stop s : p.getStops()) {
+        indexStop(indices, s);
+      }
+    }
+    return indices;
   }
 
   /**
-   * Set the H value for stops s1 & s2.
+   * Allocate a dense index to a stop, if it does not already have one.
    */
-  private static void setH(Stop s1, Stop s2, int cost) {
-    StopPair key = new StopPair(s1, s2);
-    costsTable.put(key, cost);
+  private static void indexStop(HashMap<Integer, Integer> indices, Stop s) {
+    if (!indices.containsKey(s.getID())) {
+      indices.put(s.getID(), indices.size());
+    }
+  }
+
+  /**
+   * Get the file in which the costs table for a network is saved.
+   *
+   * @param networkHash hash of the network
+   * @return costs table file
+   */
+  static File costsTableFile(long networkHash) {
+    String directory = System.getProperty(COSTS_DIRECTORY_PROPERTY, System.getProperty("java.io.tmpdir"));
+    return new File(directory, "costs-" + Long.toHexString(networkHash) + ".bin");
   }
 
   /**
    * Generate costs table for journeys between stops.
    *
-   * The calculation iterates through each available Route and determines the
-   * time it takes to travel from one stop to the next. Where no single-route
-   * path connects two stops, the value assigned to the estimated time for that
-   * journey is set to the value of UNCONNECTED.
+   * Where a costs table has already been saved for the network, it is loaded
+   * instead. Otherwise, the calculation iterates through each available
+   * Route and determines the time it takes to travel from one stop to the
+   * next. Where no single-route path connects two stops, the value assigned
+   * to the estimated time for that journey is set to the value of
+   * UNCONNECTED. The resulting table is then saved for later runs.
+   *
+   * Nothing is done if a table has already been generated for the current
+   * model. A table generated again once the model has been replaced only
+   * takes the place of the previous one once complete, so that estimators
+   * created in the meantime wait for it rather than finding no table.
    */
-  private static void generateCostsTable() {
+  private static synchronized void generateCostsTable() {
+    if (isCostsTableInitialized() && costsTableGeneration == ModelLock.getGeneration()) {
+      return;
+    }
     setCostsTableInitialized();
+    costsTableGeneration = ModelLock.getGeneration();
+    HashMap<Integer, Integer> indices = indexStops();
+    int n = indices.size();
+    int[] stopIDs = new int[n];
+    for (Integer id : indices.keySet()) {
+      stopIDs[indices.get(id)] = id;
+    }
+
+    long networkHash = CostsTable.networkHash(stopIDs, Path.getAllPaths());
+    File file = costsTableFile(networkHash);
+    CostsTable loaded;
+    try {
+      loaded = CostsTable.load(file, networkHash);
+    } catch (IOException e) {
+      // A saved table is only an optimisation, so generate the table instead
+      loaded = null;
+    }
+    if (loaded != null) {
+      costsTable = loaded;
+      setCostsTablePopulated();
+      return;
+    }
+
+    int[] costs = new int[n * n];
+    Arrays.fill(costs, UNCONNECTED);
+
     // Initialize SUSPT network
     for (Path p : Path.getAllPaths()) {
       for (Stop s1 : p.getStops()) {
+        int i = indices.get(s1.getID());
         for (Stop s2 : p.getStops()) {
+          int j = indices.get(s2.getID());
           int t = 0;
           try {
             if (!s1.equals(s2)) {
@@ -150,24 +300,157 @@ class CostEstimator {
             t = UNCONNECTED;
           }
           // Only set new value if lower than existing
-          if (t < getH(s1, s2)) {
-            setH(s1, s2, t);
+          if (t < costs[i * n + j]) {
+            costs[i * n + j] = t;
           }
         }
       }
     }
 
     // Calculate costs of all-to-all shortest paths
-    for (Stop sK : Stop.getAllStops()) {
-      for (Stop sI : Stop.getAllStops()) {
-        for (Stop sJ : Stop.getAllStops()) {
-          if (!sI.equals(sJ) && getH(sI, sJ) > getH(sI, sK) + getH(sK, sJ)) {
-            setH(sI, sJ, getH(sI, sK) + getH(sK, sJ));
+    shortestPaths(costs, n);
+    CostsTable generated = new CostsTable(networkHash, stopIDs, IntBuffer.wrap(costs));
+    costsTable = generated;
+    setCostsTablePopulated();
+    try {
+      generated.save(file);
+    } catch (IOException e) {
+      // Table will be generated again by the next run
+    }
+  }
+
+  /**
+   * Generate landmarks for estimating the costs of journeys between stops,
+   * if not already generated for the current model.
+   */
+  private static synchronized void generateLandmarks() {
+    if (landmarks == null || landmarksGeneration != ModelLock.getGeneration()) {
+      landmarksGeneration = ModelLock.getGeneration();
+      landmarks = Landmarks.build(Landmarks.DEFAULT_LANDMARKS);
+    }
+  }
+
+  /**
+   * Calculate the all-to-all shortest paths within a costs table.
+   *
+   * The table is divided into tiles of BLOCK_SIZE by BLOCK_SIZE stops. For
+   * each tile along the diagonal in turn, the diagonal tile is first updated
+   * alone, then the tiles sharing its row or column, and finally all other
+   * tiles. Tiles within the second and third phases depend only upon tiles
+   * already updated, so are updated in parallel.
+   *
+   * Costs of UNCONNECTED or more are treated as unconnected, and are never
+   * used as part of a shorter path.
+   *
+   * @param costs costs table, with the cost from i to j at i * n + j
+   * @param n     number of stops
+   */
+  static void shortestPaths(int[] costs, int n) {
+    int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    for (int kb = 0; kb < blocks; kb++) {
+      updateBlock(costs, n, kb, kb, kb);
+      pool.invoke(new BlockUpdate(costs, n, kb, 0, blocks, false));
+      pool.invoke(new BlockUpdate(costs, n, kb, 0, blocks, true));
+    }
+  }
+
+  /**
+   * Update one tile of the costs table using paths via the stops of another.
+   *
+   * @param costs costs table, with the cost from i to j at i * n + j
+   * @param n     number of stops
+   * @param ib    tile index of the starting stops
+   * @param jb    tile index of the ending stops
+   * @param kb    tile index of the intermediate stops
+   */
+  private static void updateBlock(int[] costs, int n, int ib, int jb, int kb) {
+    int iEnd = Math.min(n, (ib + 1) * BLOCK_SIZE);
+    int jStart = jb * BLOCK_SIZE;
+    int jEnd = Math.min(n, jStart + BLOCK_SIZE);
+    int kEnd = Math.min(n, (kb + 1) * BLOCK_SIZE);
+    for (int k = kb * BLOCK_SIZE; k < kEnd; k++) {
+      int kRow = k * n;
+      for (int i = ib * BLOCK_SIZE; i < iEnd; i++) {
+        int iRow = i * n;
+        int ik = costs[iRow + k];
+        if (ik >= UNCONNECTED) {
+          continue;
+        }
+        for (int j = jStart; j < jEnd; j++) {
+          int ikj = ik + costs[kRow + j];
+          if (ikj < costs[iRow + j]) {
+            costs[iRow + j] = ikj;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * The BlockUpdate inner class updates a range of rows of tiles within the
+   * costs table, for one tile along the diagonal.
+   *
+   * Ranges of more than one row are split in two and updated in parallel.
+   */
+  private static class BlockUpdate extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] costs;
+    private final int n;
+    private final int kb;
+    private final int from;
+    private final int to;
+    private final boolean remainingTiles;
+
+    /**
+     * Create a BlockUpdate instance.
+     *
+     * @param costs          costs table, with the cost from i to j at i * n + j
+     * @param n              number of stops
+     * @param kb             tile index along the diagonal
+     * @param from           first row of tiles to update
+     * @param to             row of tiles after the last to update
+     * @param remainingTiles false to update the tiles sharing a row or column
+     *                       with the diagonal tile, true to update all others
+     */
+    BlockUpdate(int[] costs, int n, int kb, int from, int to, boolean remainingTiles) {
+      this.costs = costs;
+      this.n = n;
+      this.kb = kb;
+      this.from = from;
+      this.to = to;
+      this.remainingTiles = remainingTiles;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll(
+            new BlockUpdate(costs, n, kb, from, mid, remainingTiles),
+            new BlockUpdate(costs, n, kb, mid, to, remainingTiles)
+            );
+        return;
+      }
+      int b = from;
+      if (b == kb) {
+        return;
+      }
+      if (!remainingTiles) {
+        // Tile in the same row as the diagonal tile, then in the same column
+        updateBlock(costs, n, kb, b, kb);
+        updateBlock(costs, n, b, kb, kb);
+      } else {
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int jb = 0; jb < blocks; jb++) {
+          if (jb != kb) {
+            updateBlock(costs, n, b, jb, kb);
           }
         }
       }
     }
-    setCostsTablePopulated();
   }
 
 }
@@ -0,0 +1,69 @@
+package main.routeplanner;
+
+/**
+ * The CostHeuristic enum lists the heuristics available to the
+ * ItineraryFinder for estimating the cost of travelling to the ending stop.
+ *
+ * The heuristic used by default may be chosen for each deployment by setting
+ * the system property {@value #HEURISTIC_PROPERTY} to the name of a
+ * heuristic, e.g. <code>-Dcostheuristic=LANDMARKS</code>, or by calling
+ * {@link #setDefault(CostHeuristic)}. Where no heuristic is chosen, the
+ * COSTS_TABLE heuristic is used.
+ *
+ * @see CostEstimator
+ */
+public enum CostHeuristic {
+
+  /**
+   * Exact costs from the all-to-all costs table. This gives the best
+   * estimates, but requires memory growing with the square of the number of
+   * stops.
+   */
+  COSTS_TABLE,
+
+  /**
+   * Lower bounds from travel times to and from a small number of landmark
+   * stops. Memory required grows only with the number of stops.
+   */
+  LANDMARKS;
+
+  /**
+   * Name of the system property used to choose the default heuristic.
+   */
+  public static final String HEURISTIC_PROPERTY = "costheuristic";
+
+  private static final EnumProperty<CostHeuristic> defaultHeuristic =
+      new EnumProperty<>(CostHeuristic.class, HEURISTIC_PROPERTY, COSTS_TABLE, "cost heuristic");
+
+  /**
+   * Gets the default heuristic, as for {@link RoutingEngine#getDefault()}.
+   *
+   * @return the default heuristic
+   * @throws IllegalArgumentException if the system property does not name a
+   *                                  heuristic
+   */
+  public static CostHeuristic getDefault() throws IllegalArgumentException {
+    return defaultHeuristic.get();
+  }
+
+  /**
+   * Sets the default heuristic, or null to read it again from the system
+   * property.
+   *
+   * @param heuristic the heuristic to use by default
+   */
+  public static void setDefault(CostHeuristic heuristic) {
+    defaultHeuristic.set(heuristic);
+  }
+
+  /**
+   * Finds the heuristic with a name, which is not case sensitive.
+   *
+   * @param name the name of the heuristic
+   * @return the heuristic with name
+   * @throws IllegalArgumentException if no heuristic has the name
+   */
+  public static CostHeuristic fromName(String name) throws IllegalArgumentException {
+    return defaultHeuristic.fromName(name);
+  }
+}
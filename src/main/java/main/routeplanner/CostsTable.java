@@ -0,0 +1,188 @@
+package main.routeplanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+
+import main.model.*;
+
+/**
+ * The CostsTable class holds the all-to-all costs table generated by the
+ * CostEstimator, and persists it between runs of the system.
+ *
+ * Costs are held as a flat buffer over dense stop indices, with the cost from
+ * the stop with index i to the stop with index j held at position i * n + j.
+ * The buffer is either held in memory or mapped directly from a file, so that
+ * a table saved by one JVM is available instantly to the next, and shared
+ * through the page cache between JVMs running on the same host.
+ *
+ * Saved tables are versioned, and record a hash of the network from which
+ * they were generated. A table is only loaded if the version and hash match
+ * the running system, so changes to the timetable data never result in a
+ * stale table being used.
+ *
+ * The file format consists of the magic number, format version, network
+ * hash and number of stops, followed by the ID of the stop at each index and
+ * then the costs themselves, all in big-endian order.
+ */
+class CostsTable {
+
+  /**
+   * Magic number identifying a costs table file
+   */
+  static final int MAGIC = 0x434f5354;
+
+  /**
+   * Version of the file format
+   */
+  static final int VERSION = 1;
+
+  // Size of the header: magic number, version, network hash, number of stops
+  private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+
+  private final long networkHash;
+  private final int numberOfStops;
+  private final int[] stopIDs;
+  private final HashMap<Integer, Integer> stopIndices;
+  private final IntBuffer costs;
+
+  /**
+   * Create a CostsTable instance.
+   *
+   * @param networkHash hash of the network from which costs were generated
+   * @param stopIDs     ID of the stop at each dense index
+   * @param costs       costs table, with the cost from i to j at i * n + j
+   * @throws IllegalArgumentException if costs is not of the size required for
+   *                                  the number of stops
+   */
+  CostsTable(long networkHash, int[] stopIDs, IntBuffer costs) throws IllegalArgumentException {
+    if (costs.remaining() != (long) stopIDs.length * stopIDs.length) {
+      String msg = "costs table must hold " + stopIDs.length + " x " + stopIDs.length + " costs";
+      throw new IllegalArgumentException(msg);
+    }
+    this.networkHash = networkHash;
+    this.numberOfStops = stopIDs.length;
+    this.stopIDs = stopIDs;
+    this.stopIndices = new HashMap<Integer, Integer>();
+    for (int i = 0; i < stopIDs.length; i++) {
+      stopIndices.put(stopIDs[i], i);
+    }
+    this.costs = costs;
+  }
+
+  /**
+   * Get the cost of travelling between two stops.
+   *
+   * @param s1 the stop from which to travel
+   * @param s2 the stop to which to travel
+   * @return cost from s1 to s2, or CostEstimator.UNCONNECTED if either stop
+   *         is not within the table
+   */
+  int cost(Stop s1, Stop s2) {
+    Integer i = stopIndices.get(s1.getID());
+    Integer j = stopIndices.get(s2.getID());
+    if (i == null || j == null) {
+      return CostEstimator.UNCONNECTED;
+    }
+    return costs.get(i * numberOfStops + j);
+  }
+
+  /**
+   * Get the hash of the network from which the costs were generated.
+   *
+   * @return network hash
+   */
+  long getNetworkHash() {
+    return networkHash;
+  }
+
+  /**
+   * Save this table to a file.
+   *
+   * The table is first written to a temporary file within the same
+   * directory, which is then moved into place. Other JVMs therefore never
+   * see a partially written table.
+   *
+   * @param file the file to which to save
+   * @throws IOException if the file cannot be written
+   */
+  void save(File file) throws IOException {
+    long size = HEADER_BYTES + 4L * numberOfStops + 4L * numberOfStops * numberOfStops;
+    MappedFiles.save(file, size, new MappedFiles.BufferWriter() {
+      @Override
+      public void write(MappedByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(networkHash);
+        buffer.putInt(numberOfStops);
+        buffer.asIntBuffer().put(stopIDs);
+        buffer.position(buffer.position() + 4 * numberOfStops);
+        IntBuffer source = costs.duplicate();
+        source.rewind();
+        buffer.asIntBuffer().put(source);
+      }
+    });
+  }
+
+  /**
+   * Load a table from a file by mapping it into memory.
+   *
+   * @param file        the file from which to load
+   * @param networkHash hash of the network for which costs are required
+   * @return table held within file, or null if the file does not exist or
+   *         does not hold a table of the current version for the network
+   * @throws IOException if the file cannot be read
+   */
+  static CostsTable load(File file, long networkHash) throws IOException {
+    MappedByteBuffer buffer = MappedFiles.map(file, HEADER_BYTES);
+    if (buffer == null || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != networkHash) {
+      return null;
+    }
+    int n = buffer.getInt();
+    if (n < 0 || buffer.capacity() != HEADER_BYTES + 4L * n + 4L * n * n) {
+      return null;
+    }
+    int[] stopIDs = new int[n];
+    buffer.asIntBuffer().get(stopIDs);
+    buffer.position(buffer.position() + 4 * n);
+    return new CostsTable(networkHash, stopIDs, buffer.slice().asIntBuffer());
+  }
+
+  /**
+   * Calculate a hash of the network of stops and paths.
+   *
+   * The hash covers the stops indexed within the table, and the stops and
+   * non-rush hour journey times of each path, which together determine the
+   * costs generated.
+   *
+   * @param stopIDs ID of the stop at each dense index
+   * @param paths   all paths within the network
+   * @return network hash
+   */
+  static long networkHash(int[] stopIDs, List<Path> paths) {
+    long hash = MappedFiles.hash(MappedFiles.HASH_BASIS, stopIDs.length);
+    for (int id : stopIDs) {
+      hash = MappedFiles.hash(hash, id);
+    }
+    hash = MappedFiles.hash(hash, paths.size());
+    for (Path p : paths) {
+      List<Stop> stops = p.getStops();
+      hash = MappedFiles.hash(hash, stops.size());
+      for (Stop s : stops) {
+        hash = MappedFiles.hash(hash, s.getID());
+      }
+      if (p instanceof Route) {
+        for (int timing : ((Route) p).getStopTiming(false, true)) {
+          hash = MappedFiles.hash(hash, timing);
+        }
+      } else {
+        hash = MappedFiles.hash(hash, p.journeyTimeBetweenStops(p.getOrigin(), p.getDestination(), false));
+      }
+    }
+    return hash;
+  }
+}
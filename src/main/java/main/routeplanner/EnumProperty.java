@@ -0,0 +1,81 @@
+package main.routeplanner;
+
+/**
+ * The EnumProperty class holds the default value of an enum which may be
+ * chosen for each deployment by setting a system property.
+ *
+ * The default value is read from the system property when first needed,
+ * unless it has already been set using {@link #set(Enum)}. Where the system
+ * property is not set, a fallback value is used. Values are named without
+ * regard to case.
+ *
+ * @param <E> type of the enum
+ * @see RoutingEngine
+ * @see CostHeuristic
+ */
+class EnumProperty<E extends Enum<E>> {
+
+  private final Class<E> type;
+  private final String property;
+  private final E fallback;
+  private final String description;
+  private E value;
+
+  /**
+   * Create an EnumProperty instance.
+   *
+   * @param type        type of the enum
+   * @param property    name of the system property choosing the default value
+   * @param fallback    default value where the system property is not set
+   * @param description description of the values used within error
+   *                    messages, e.g. "routing engine"
+   */
+  EnumProperty(Class<E> type, String property, E fallback, String description) {
+    this.type = type;
+    this.property = property;
+    this.fallback = fallback;
+    this.description = description;
+  }
+
+  /**
+   * Gets the default value.
+   *
+   * @return the default value
+   * @throws IllegalArgumentException if the system property does not name a
+   *                                  value
+   */
+  synchronized E get() throws IllegalArgumentException {
+    if (value == null) {
+      value = fromName(System.getProperty(property, fallback.name()));
+    }
+    return value;
+  }
+
+  /**
+   * Sets the default value.
+   *
+   * Passing null causes the default value to be read again from the system
+   * property.
+   *
+   * @param value the value to use by default
+   */
+  synchronized void set(E value) {
+    this.value = value;
+  }
+
+  /**
+   * Finds the value with a name.
+   *
+   * @param name the name of the value, which is not case sensitive
+   * @return the value with name
+   * @throws IllegalArgumentException if no value has the name
+   */
+  E fromName(String name) throws IllegalArgumentException {
+    for (E constant : type.getEnumConstants()) {
+      if (constant.name().equalsIgnoreCase(name.trim())) {
+        return constant;
+      }
+    }
+    throw new IllegalArgumentException("unknown " + description + " " + name);
+  }
+}
@@ -0,0 +1,240 @@
+package main.routeplanner;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * The IndexedMinHeap class is a binary min-heap of dense integer node indices
+ * keyed by integer priorities.
+ *
+ * It is used by the ItineraryFinder to hold the open node list. Each node may
+ * appear within the heap at most once, and its position within the heap is
+ * tracked so that the priority of a node already in the heap can be lowered
+ * in logarithmic time (decrease-key).
+ *
+ * Where two nodes share the same priority, the node which was inserted first
+ * is returned first. This mirrors the behaviour of scanning an insertion
+ * ordered list for the first node with the minimum value.
+ */
+class IndexedMinHeap {
+
+  /** Value stored in positions for nodes not currently in the heap */
+  private static final int ABSENT = -1;
+
+  // Node indices held in heap order
+  private int[] heap;
+  // Position of each node within heap, or ABSENT
+  private int[] positions;
+  // Priority of each node
+  private int[] keys;
+  // Insertion sequence of each node, used to break ties between priorities
+  private long[] sequences;
+  private int size;
+  private long nextSequence;
+
+  /**
+   * Creates an empty heap.
+   *
+   * @param initialCapacity the number of node indices for which to initially
+   *                        allocate space; the heap grows as required
+   */
+  public IndexedMinHeap(int initialCapacity) {
+    int capacity = Math.max(initialCapacity, 16);
+    heap = new int[capacity];
+    positions = new int[capacity];
+    keys = new int[capacity];
+    sequences = new long[capacity];
+    Arrays.fill(positions, ABSENT);
+  }
+
+  /**
+   * Removes all nodes from the heap.
+   *
+   * The allocated arrays are retained so that the heap may be reused.
+   */
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      positions[heap[i]] = ABSENT;
+    }
+    size = 0;
+    nextSequence = 0;
+  }
+
+  /**
+   * Checks whether the heap is empty.
+   *
+   * @return true if there are no nodes in the heap, else false
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Gets the number of nodes in the heap.
+   *
+   * @return number of nodes in the heap
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks whether a node is currently in the heap.
+   *
+   * @param node index of the node to check
+   * @return true if the node is in the heap, else false
+   */
+  public boolean contains(int node) {
+    return node < positions.length && positions[node] != ABSENT;
+  }
+
+  /**
+   * Gets the current priority of a node in the heap.
+   *
+   * @param node index of the node
+   * @return priority of the node
+   * @throws IllegalArgumentException if the node is not in the heap
+   */
+  public int getKey(int node) throws IllegalArgumentException {
+    if (!contains(node)) {
+      throw new IllegalArgumentException("node " + node + " is not in heap");
+    }
+    return keys[node];
+  }
+
+  /**
+   * Inserts a node into the heap.
+   *
+   * @param node index of the node to insert
+   * @param key  priority of the node
+   * @throws IllegalArgumentException if the node is already in the heap
+   */
+  public void insert(int node, int key) throws IllegalArgumentException {
+    if (contains(node)) {
+      throw new IllegalArgumentException("node " + node + " is already in heap");
+    }
+    ensureCapacity(node + 1);
+    keys[node] = key;
+    sequences[node] = nextSequence++;
+    heap[size] = node;
+    positions[node] = size;
+    size++;
+    siftUp(size - 1);
+  }
+
+  /**
+   * Lowers the priority of a node already in the heap.
+   *
+   * If the new priority is not lower than the current priority, the heap is
+   * left unchanged.
+   *
+   * @param node index of the node
+   * @param key  new priority of the node
+   * @throws IllegalArgumentException if the node is not in the heap
+   */
+  public void decreaseKey(int node, int key) throws IllegalArgumentException {
+    if (!contains(node)) {
+      throw new IllegalArgumentException("node " + node + " is not in heap");
+    }
+    if (key < keys[node]) {
+      keys[node] = key;
+      siftUp(positions[node]);
+    }
+  }
+
+  /**
+   * Removes and returns the node with the lowest priority.
+   *
+   * @return index of the node with the lowest priority
+   * @throws NoSuchElementException if the heap is empty
+   */
+  public int pollMin() {
+    if (isEmpty()) {
+      throw new NoSuchElementException("cannot poll an empty heap");
+    }
+    int min = heap[0];
+    size--;
+    if (size > 0) {
+      move(heap[size], 0);
+      siftDown(0);
+    }
+    positions[min] = ABSENT;
+    return min;
+  }
+
+  /**
+   * Moves the node at position i up the heap until heap order is restored.
+   *
+   * @param i position of the node to move
+   */
+  private void siftUp(int i) {
+    int node = heap[i];
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (!lessThan(node, heap[parent])) {
+        break;
+      }
+      move(heap[parent], i);
+      i = parent;
+    }
+    move(node, i);
+  }
+
+  /**
+   * Moves the node at position i down the heap until heap order is restored.
+   *
+   * @param i position of the node to move
+   */
+  private void siftDown(int i) {
+    int node = heap[i];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && lessThan(heap[child + 1], heap[child])) {
+        child++;
+      }
+      if (!lessThan(heap[child], node)) {
+        break;
+      }
+      move(heap[child], i);
+      i = child;
+    }
+    move(node, i);
+  }
+
+  /**
+   * Places a node at a position within the heap.
+   */
+  private void move(int node, int position) {
+    heap[position] = node;
+    positions[node] = position;
+  }
+
+  /**
+   * Determines whether node a takes precedence over node b.
+   */
+  private boolean lessThan(int a, int b) {
+    if (keys[a] != keys[b]) {
+      return keys[a] < keys[b];
+    }
+    return sequences[a] < sequences[b];
+  }
+
+  /**
+   * Grows the backing arrays to hold at least the specified number of nodes.
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity <= positions.length) {
+      return;
+    }
+    int newCapacity = Math.max(capacity, positions.length * 2);
+    int oldCapacity = positions.length;
+    heap = Arrays.copyOf(heap, newCapacity);
+    positions = Arrays.copyOf(positions, newCapacity);
+    keys = Arrays.copyOf(keys, newCapacity);
+    sequences = Arrays.copyOf(sequences, newCapacity);
+    Arrays.fill(positions, oldCapacity, newCapacity, ABSENT);
+  }
+}
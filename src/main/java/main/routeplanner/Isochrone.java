@@ -0,0 +1,153 @@
+package main.routeplanner;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import main.model.Stop;
+
+/**
+ * The Isochrone class holds the stops which can be reached from an origin
+ * within a number of minutes of a departure time, with the earliest arrival
+ * at each.
+ *
+ * Stops are held in order of arrival, beginning with the origin itself, in
+ * parallel arrays of stops and arrival times so that large numbers of
+ * isochrones may be held and compared cheaply.
+ *
+ * @see TravelTimeMatrix#isochrone(Stop, int)
+ */
+public class Isochrone {
+
+  private final Stop origin;
+  private final LocalDate date;
+  private final int departureTime;
+  private final int minutes;
+  private final Stop[] stops;
+  private final int[] arrivalTimes;
+
+  /**
+   * Creates an instance of Isochrone.
+   *
+   * @param origin        the stop from which travel begins
+   * @param date          the date of travel
+   * @param departureTime the time at which travel begins (in minutes since
+   *                      midnight)
+   * @param minutes       the greatest acceptable travel time
+   * @param stops         the stops reached, in order of arrival
+   * @param arrivalTimes  the earliest arrival time at each stop (in minutes
+   *                      since midnight)
+   */
+  Isochrone(Stop origin, LocalDate date, int departureTime, int minutes, Stop[] stops, int[] arrivalTimes) {
+    this.origin = origin;
+    this.date = date;
+    this.departureTime = departureTime;
+    this.minutes = minutes;
+    this.stops = stops;
+    this.arrivalTimes = arrivalTimes;
+  }
+
+  /**
+   * Gets the origin.
+   *
+   * @return the stop from which travel begins
+   */
+  public Stop getOrigin() {
+    return origin;
+  }
+
+  /**
+   * Get date value.
+   *
+   * @return date of travel
+   */
+  public LocalDate getDate() {
+    return date;
+  }
+
+  /**
+   * Gets the departure time.
+   *
+   * @return time at which travel begins (in minutes since midnight)
+   */
+  public int getDepartureTime() {
+    return departureTime;
+  }
+
+  /**
+   * Gets the greatest acceptable travel time.
+   *
+   * @return travel time in minutes
+   */
+  public int getMinutes() {
+    return minutes;
+  }
+
+  /**
+   * Gets the number of stops reached.
+   *
+   * @return number of stops, including the origin
+   */
+  public int size() {
+    return stops.length;
+  }
+
+  /**
+   * Gets a stop reached.
+   *
+   * @param i the position of the stop, in order of arrival
+   * @return the stop at position i
+   * @throws IndexOutOfBoundsException if there is no stop at position i
+   */
+  public Stop getStop(int i) throws IndexOutOfBoundsException {
+    return stops[i];
+  }
+
+  /**
+   * Gets the earliest arrival time at a stop reached.
+   *
+   * @param i the position of the stop, in order of arrival
+   * @return arrival time (in minutes since midnight)
+   * @throws IndexOutOfBoundsException if there is no stop at position i
+   */
+  public int getArrivalTime(int i) throws IndexOutOfBoundsException {
+    return arrivalTimes[i];
+  }
+
+  /**
+   * Gets the IDs of all stops reached.
+   *
+   * @return stop IDs, in order of arrival
+   */
+  public int[] getStopIDs() {
+    int[] stopIDs = new int[stops.length];
+    for (int i = 0; i < stops.length; i++) {
+      stopIDs[i] = stops[i].getID();
+    }
+    return stopIDs;
+  }
+
+  /**
+   * Gets the earliest arrival times at all stops reached.
+   *
+   * @return arrival times (in minutes since midnight), in order of arrival
+   */
+  public int[] getArrivalTimes() {
+    return Arrays.copyOf(arrivalTimes, arrivalTimes.length);
+  }
+
+  /**
+   * Gets the travel time to a stop.
+   *
+   * @param stop the stop to which to travel
+   * @return travel time in minutes, or TravelTimeMatrix.UNREACHABLE if stop
+   *         cannot be reached within the isochrone
+   */
+  public int travelTime(Stop stop) {
+    for (int i = 0; i < stops.length; i++) {
+      if (stops[i].equals(stop)) {
+        return arrivalTimes[i] - departureTime;
+      }
+    }
+    return TravelTimeMatrix.UNREACHABLE;
+  }
+}
@@ -5,7 +5,8 @@ import main.model.*;
 
 import java.time.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -15,26 +16,42 @@ import java.util.List;
  * The ItineraryFinder uses a starting and ending bus stop and determines which
  * routes travel between these points. It then finds RouteTimetables for the
  * desired time and returns buses which can be taken between the desired stops.
+ *
+ * The journey is described by an immutable JourneyQuery. No state is recorded
+ * to an ItineraryFinder during a search: the scratch state of each search is
+ * held by a SearchState belonging to the searching thread, which is cleared
+ * and reused by every later search on that thread. One ItineraryFinder may
+ * therefore be used by many threads at once, and repeated searches allocate
+ * very little. Changes made using setFilter or setCostHeuristic apply to
+ * searches begun afterwards.
+ *
+ * Finding the next departure of a route from a stop requires a scan of the
+ * Schedule, and the same departure is needed by every t-arc leaving a node
+ * on the same route. Departures are therefore resolved at most once per
+ * query, through a DepartureCache held by the SearchState, and each t-arc
+ * keeps the departure it resolved.
+ *
+ * The crowdedness filter is applied while searching rather than to the
+ * itineraries found: a t-arc is only relaxed if the trip it boards is no
+ * more crowded at its starting node than the filter permits. Crowdedness is
+ * estimated by a TripCrowdedness held by the SearchState for one query, and
+ * only for t-arcs which would otherwise improve g'(n), as each estimate
+ * requires the capacity calculator datastore to be read.
+ *
+ * @see JourneyQuery
  */
-public class ItineraryFinder {
-
-  private Stop startingStop;
-  private Stop endingStop;
-  private Schedule schedule;
-  private LocalDate date;
-  private int time;
-  
-  private boolean walkedLastLeg;
-
-  public CostEstimator costEstimator;
-  private CapacityCalculator.CrowdednessIndicator filter;
-
-  // Fields for the calculation of least time itinerary
-  private List<Stop> openNodes;
-  private List<Stop> closedNodes;
-  private List<Path> usedPaths; // List stores paths already traversed
-  private HashMap<Stop, Integer> gs;
-  private HashMap<Stop, TArc> pres;
+public class ItineraryFinder implements JourneyPlanner {
+
+  // Scratch state for the searches made by each thread
+  private static final ThreadLocal<SearchState> SEARCH_STATES = new ThreadLocal<SearchState>() {
+    @Override
+    protected SearchState initialValue() {
+      return new SearchState();
+    }
+  };
+
+  private final Schedule schedule;
+  private volatile JourneyQuery query;
 
   /** 
    * Creates an instance of ItineraryFinder.
@@ -49,14 +66,35 @@ public class ItineraryFinder {
    * @param searchTime   the date and time of departure for the desired journey
    */
   public ItineraryFinder(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
-    setStartingStop(startingStop);
-    setEndingStop(endingStop);
-    setDate(searchTime);
-    setTime(searchTime);
-    setSchedule(); 
-    // Set filter to RED, i.e. do not filter anything
-    setFilter(CapacityCalculator.CrowdednessIndicator.RED);
-    costEstimator = new CostEstimator(endingStop);
+    this(new JourneyQuery(startingStop, endingStop, searchTime));
+  }
+
+  /**
+   * Creates an instance of ItineraryFinder for a query.
+   *
+   * The costs table or landmarks required by the cost heuristic of the query
+   * are generated now, rather than during the first search.
+   *
+   * @param query the journey for which to find itineraries
+   */
+  public ItineraryFinder(JourneyQuery query) {
+    ModelLock.readLock().lock();
+    try {
+      this.query = query;
+      this.schedule = Schedule.findSchedule(query.getDate());
+      CostEstimator.generate(query.getCostHeuristic());
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the query describing the journey.
+   *
+   * @return current query, including the current filter and cost heuristic
+   */
+  public JourneyQuery getQuery() {
+    return query;
   }
 
   /**
@@ -70,10 +108,13 @@ public class ItineraryFinder {
    * ORANGE will only return green and orange; and
    * RED will return all itineraries.
    *
+   * Trips more crowded than the filter permits are never boarded during a
+   * search, so the itineraries returned are the best of those acceptable.
+   *
    * @param filter the best acceptable crowdedness level to return
    */
   public void setFilter(CapacityCalculator.CrowdednessIndicator filter) {
-    this.filter = filter;
+    query = query.withFilter(filter);
   }
 
   /**
@@ -84,7 +125,34 @@ public class ItineraryFinder {
    * @return current best acceptable crowdedness level filter
    */
   public CapacityCalculator.CrowdednessIndicator getFilter() {
-    return filter;
+    return query.getFilter();
+  }
+
+  /**
+   * Sets the heuristic used to estimate the cost of reaching the ending stop.
+   *
+   * By default, the heuristic given by CostHeuristic.getDefault() is used.
+   *
+   * @param heuristic the heuristic to use
+   * @see CostHeuristic
+   */
+  public void setCostHeuristic(CostHeuristic heuristic) {
+    ModelLock.readLock().lock();
+    try {
+      CostEstimator.generate(heuristic);
+      query = query.withCostHeuristic(heuristic);
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the heuristic used to estimate the cost of reaching the ending stop.
+   *
+   * @return current heuristic
+   */
+  public CostHeuristic getCostHeuristic() {
+    return query.getCostHeuristic();
   }
 
   /**
@@ -113,15 +181,23 @@ public class ItineraryFinder {
    *         a walk from an origin to a destination
    */ 
   public List<Itinerary> findBestItineraries(int n) {
-    List<Itinerary> bestItineraries = new ArrayList<>();
-    List<List<TArc>> bestPaths = calculateKLeastTimePaths(n);
-    for (List<TArc> path : bestPaths) {
-      Itinerary itinerary = convertTArcsToItinerary(path);
-      if (!itinerary.crowdedness().moreCrowdedThan(getFilter())) {
-        bestItineraries.add(itinerary);
+    ModelLock.readLock().lock();
+    try {
+      JourneyQuery query = getQuery();
+      List<Itinerary> bestItineraries = new ArrayList<>();
+      if (schedule == null) {
+        // No services operate on the date of the query
+        return bestItineraries;
+      }
+      TransitNetwork network = TransitNetwork.forSchedule(schedule);
+      List<List<TArc>> bestPaths = calculateKLeastTimePaths(network, query, n);
+      for (List<TArc> path : bestPaths) {
+        bestItineraries.add(convertTArcsToItinerary(path));
       }
+      return bestItineraries;
+    } finally {
+      ModelLock.readLock().unlock();
     }
-    return bestItineraries;
   }
 
   /**
@@ -148,18 +224,7 @@ public class ItineraryFinder {
    * @return the stop from which journey is to begin
    */
   public Stop getStartingStop() {
-    return startingStop;
-  }
-
-  /**
-   * Set startingStop.
-   *
-   * This method sets the value of the stop from which the journey is to begin.
-   *
-   * @param startingStop the Stop instance to set as the startingStop
-   */
-  private void setStartingStop(Stop startingStop) {
-    this.startingStop = startingStop;
+    return query.getStartingStop();
   }
 
   /**
@@ -168,18 +233,7 @@ public class ItineraryFinder {
    * @return the stop at which journey is to end
    */
   public Stop getEndingStop() {
-    return endingStop;
-  }
-
- /**
-   * Set endingStop.
-   *
-   * This method sets the value of the stop at which the journey is to end.
-   *
-   * @param endingStop the Stop instance to set as the endingStop
-   */
-  private void setEndingStop(Stop endingStop) {
-    this.endingStop = endingStop;
+    return query.getEndingStop();
   }
 
   /**
@@ -193,29 +247,7 @@ public class ItineraryFinder {
    *  midnight)
    */
   public int getTime() {
-    return time;
-  }
-
-  /**
-   * Set time field on ItineraryFinder.
-   *
-   * As time is simply stored as an integer representing the number of minutes
-   * since midnight, this method accepts a LocalDateTime object and converts
-   * the time element only.
-   *
-   * @param time the desired time from which to search for journeys
-   */
-  private void setTime(LocalDateTime time) {
-    setTime(time.getHour() * 60 + time.getMinute());
-  }
-
-  /**
-   * Set time field on ItineraryFinder.
-   *
-   * @param time the desired time (in minutes after midnight)
-   */
-  private void setTime(int time) {
-    this.time = time;
+    return query.getTime();
   }
 
   /**
@@ -225,199 +257,60 @@ public class ItineraryFinder {
    *  the value of time
    */
   public LocalDate getDate() {
-    return date;
+    return query.getDate();
   }
 
   /**
-   * Set date field on ItineraryFinder.
-   *
-   * Converts a LocalDateTime object to a LocalDate and saved this into the
-   * date field on a ItineraryFinder instance.
+   * Get priority of node n within the open node heap.
    *
-   * @param date the date on which to search for journeys
-   */
-  private void setDate(LocalDateTime date) {
-    this.date = date.toLocalDate();
-  }
-
-  /**
-   * Get list of open nodes.
+   * The priority is the value of f'(n). If n is the ending node, then a
+   * weighting is applied in favour of selecting this node.
    *
-   * @return list of open nodes
+   * @param state the state of the current search
+   * @param n     index of node for which to get priority
+   * @return priority of n
    */
-  private List<Stop> getOpenNodes() {
-    return openNodes;
+  private int openPriority(SearchState state, int n) {
+    int weighting = 0;
+    // If one service can go direct to endNode, then create a weighting
+    // in favour of selecting this node.
+    if (n == state.endingNode) {
+      weighting = 2;
+    }
+    return fPrime(state, n) - weighting;
   }
 
   /**
    * Change state of new node to open.
    *
-   * This method simply adds a node/stop to the list of open nodes.
-   *
-   * @param n node to add to list of open stops
-   */
-  private void setOpenNode(Stop n) {
-    openNodes.add(n);
-  }
-
-  /**
-   * Determine whether node n is open.
-   *
-   * @param n node to test whether open
-   * @return true if open, else false
-   */
-  private boolean isOpen(Stop n) {
-    return getOpenNodes().contains(n);
-  }
-
-  /**
-   * Get list of closed nodes.
-   *
-   * @return list of closed nodes
-   */
-  private List<Stop> getClosedNodes() {
-    return closedNodes;
-  }
-
-  /**
-   * change state of open node to closed.
-   *
-   * This method moves a node/stop from the list of open nodes to the list
-   * of closed nodes.
+   * This method adds a node/stop to the open node heap using its current
+   * value of f'(n).
    *
-   * @param n node to move from open to closed list
+   * @param state the state of the current search
+   * @param n     index of node to add to heap of open stops
    */
-  private void changeOpenToClosed(Stop n) {
-    openNodes.remove(n);
-    closedNodes.add(n);
+  private void setOpenNode(SearchState state, int n) {
+    state.openNodes.insert(n, openPriority(state, n));
   }
 
   /**
-   * Determine whether node n is closed.
+   * Update position of open node n following a reduction in g'(n).
    *
-   * @param n node to test whether closed
-   * @return true if closed, else false
+   * @param state the state of the current search
+   * @param n     index of open node for which g'(n) has been reduced
    */
-  private boolean isClosed(Stop n) {
-    return getClosedNodes().contains(n);
-  }
-
-  /**
-   * Determine whether node n is new.
-   *
-   * A node is new if it is on neither the open nor the closed list.
-   *
-   * @param n node to test whether new
-   * @return true if new, else false
-   */
-  private boolean isNew(Stop n) {
-    return !(isOpen(n) || isClosed(n));
-  }
-
-  /**
-   * Set value of pre(n).
-   *
-   * @param n the node for which to set value of pre
-   * @param t the t-arc to store in value of pre
-   */
-  private void setPre(Stop n, TArc t) {
-    pres.put(n, t);
-  }
-
-  /**
-   * Get value of pre(n).
-   *
-   * @param n the node for which to get value of pre
-   * @return t-arc value of pre(n)
-   */
-  private TArc getPre(Stop n) {
-    return pres.get(n);
-  }
-
-  /**
-   * Determine whether path has already been traversed.
-   *
-   * For the purposes of the itinerary finder, certain calculations are made
-   * based on whether a path has already been taken. In particular, the 
-   * algorithm assumes that a traveller will not be taking the same path or
-   * its inverse more than once.
-   *
-   * @param p path to test whether already traversed
-   * @return true if r has already been traversed, else false
-   */
-  private boolean pathAlreadyTraversed(Path p) {
-    return (p != null && usedPaths.contains(p)); 
-  }
-
-  /**
-   * Add path to list of already traversed paths.
-   *
-   * @param p path to add to list of already traversed paths.
-   */
-  private void setAlreadyTraversed(Path p) {
-    usedPaths.add(p);
-  }
-
-  /**
-   * Determine if the immediately previous leg was walked.
-   *
-   * @return true if immediately previous leg was walked, else false
-   */
-  private boolean getWalkedLastLeg() {
-    return walkedLastLeg;
-  }
-
-  public void setWalkedLastLeg(boolean walkedLastLeg) {
-    this.walkedLastLeg = walkedLastLeg;
-  }
-
-  /**
-   * Find and set schedule based on instance's date.
-   */
-  private void setSchedule() {
-    this.schedule = Schedule.findSchedule(getDate());
+  private void updateOpenNode(SearchState state, int n) {
+    state.openNodes.decreaseKey(n, openPriority(state, n));
   }
 
   /**
    * Get value of f'(ni).
    *
-   * @param ni node for which to get value of f'
+   * @param state the state of the current search
+   * @param ni    index of node for which to get value of f'
    */
-  private int fPrime(Stop ni) {
-    return gPrime(ni) + hPrime(ni);
-  }
-
-  /**
-   * Get value of g'(ni).
-   *
-   * @param ni node for which to get value of g'
-   */
-  private int gPrime(Stop ni) {
-    Integer g = gs.get(ni);
-    if (g == null) {
-      return CostEstimator.UNCONNECTED;
-    } else {
-      return g;
-    }
-  }
-
-  /**
-   * Set value of g'(ni).
-   *
-   * @param ni node for which to set value of g'
-   * @param value value to set for g'
-   */
-  private void setGPrime(Stop ni, int value) {
-    gs.put(ni, value);
-  }
-
-  /**
-   * Get value of h'(ni).
-   *
-   * @param ni node for which to get value of h'
-   */
-  private int hPrime(Stop ni) {
-    return costEstimator.hPrime(ni);
+  private int fPrime(SearchState state, int ni) {
+    return state.gPrime(ni) + state.costEstimator.hPrime(state.network.stop(ni));
   }
 
   /**
@@ -426,16 +319,31 @@ public class ItineraryFinder {
    * A number of variables must be initialized, and some pre-calculations
    * undertaken before the itinerary finder can be used to calculate optimal
    * routes. This method ensures these actions are undertaken when called.
+   *
+   * @param state         the state to use for the search
+   * @param network       the network within which to search
+   * @param query         the journey for which to search
+   * @param costEstimator the estimator used for determining h'(ni)
+   * @param time          the time from which to search (in minutes since
+   *                      midnight)
+   * @return true if both the starting and ending stops are within the
+   *         network, else false
    */
-  private void initializeFinder() {
-    openNodes = new ArrayList<>();
-    closedNodes = new ArrayList<>();
-    usedPaths = new ArrayList<>();
-    gs = new HashMap<>();
-    pres = new HashMap<>();
-
-    setOpenNode(getStartingStop());
-    setGPrime(getStartingStop(), 0);
+  private boolean initializeFinder(SearchState state, TransitNetwork network, JourneyQuery query, CostEstimator costEstimator, int time) {
+    state.clear();
+    state.prepare(network);
+    int startingNode = network.stopIndex(query.getStartingStop());
+    state.endingNode = network.stopIndex(query.getEndingStop());
+    state.costEstimator = costEstimator;
+    state.time = time;
+    state.filter = query.getFilter();
+    if (startingNode < 0 || state.endingNode < 0) {
+      return false;
+    }
+
+    state.setGPrime(startingNode, 0);
+    setOpenNode(state, startingNode);
+    return true;
   }
 
   /**
@@ -444,62 +352,88 @@ public class ItineraryFinder {
    * This method augments the procedure in the calculateLeastTimePath method
    * by iteratively excluding individual t-arcs from the least time path to
    * obtain a second-, third-, ... k-th least time path.
-   * 
-   * Due to the way in which this method is implemented, where two itineraries 
+   *
+   * Due to the way in which this method is implemented, where two itineraries
    * will arrive at the same time, the shortest route (by travelling time) will
-   * be selected. The next route to be selected will be the shortest route 
-   * departing after this route. As a result, any route departing before the 
-   * previous route is disregarded by this algorithm, even if such a route 
+   * be selected. The next route to be selected will be the shortest route
+   * departing after this route. As a result, any route departing before the
+   * previous route is disregarded by this algorithm, even if such a route
    * would arrive before the route actually returned as the next best route.
    *
-   * @param k number of paths to obtain
+   * @param network the network within which to search
+   * @param query   the journey for which to search
+   * @param k       number of paths to obtain
    * @return a nested list of a list of nodes each containing legs of the k-th
    *         least time path {@see ItineraryFinder#calculateLeastTimePath()}
    */
-  private List<List<TArc>> calculateKLeastTimePaths(int k) {
+  private List<List<TArc>> calculateKLeastTimePaths(TransitNetwork network, JourneyQuery query, int k) {
+    CostEstimator costEstimator = new CostEstimator(query.getEndingStop(), query.getCostHeuristic());
     List<List<TArc>> leastTimePaths = new ArrayList<>();
-    // First, add the overall least time path
-    leastTimePaths.add(calculateLeastTimePath());
-
-    // If no result found, return null
-    if (leastTimePaths.isEmpty()) {
-      return null;
-    }
-
-    // Once the overall least time path has been found, increment starting
-    // time and find the next LTP. Repeat until k paths are obtained.
-    while (leastTimePaths.size() < k) {
-      List<TArc> previousLTP = leastTimePaths.get(leastTimePaths.size()-1);
-      // If previous LTP is empty, then break, remove empty path, and return
-      if (previousLTP.isEmpty()) {
-        leastTimePaths.remove(leastTimePaths.size()-1);
-        break;
+    // Departures and crowdedness estimates made by one search are reused by
+    // the next
+    SearchState state = SEARCH_STATES.get();
+    state.tripCrowdedness = createTripCrowdedness(query.getDate());
+    state.candidate = new TArc(null, null, null, 0, state.departures);
+    try {
+      // First, add the overall least time path
+      leastTimePaths.add(calculateLeastTimePath(network, query, costEstimator, query.getTime()));
+
+      // If no result found, return null
+      if (leastTimePaths.isEmpty()) {
+        return null;
       }
-      int previousLTPDeparture = previousLTP.get(0).departureTime();
-      setTime(previousLTPDeparture + 1);
-      leastTimePaths.add(calculateLeastTimePath());
+
+      // Once the overall least time path has been found, increment starting
+      // time and find the next LTP. Repeat until k paths are obtained.
+      while (leastTimePaths.size() < k) {
+        List<TArc> previousLTP = leastTimePaths.get(leastTimePaths.size()-1);
+        // If previous LTP is empty, then break, remove empty path, and return
+        if (previousLTP.isEmpty()) {
+          leastTimePaths.remove(leastTimePaths.size()-1);
+          break;
+        }
+        int previousLTPDeparture = previousLTP.get(0).departureTime();
+        leastTimePaths.add(calculateLeastTimePath(network, query, costEstimator, previousLTPDeparture + 1));
+      }
+      return leastTimePaths;
+    } finally {
+      state.departures.clear();
+      state.tripCrowdedness = null;
+      state.candidate = null;
     }
-    return leastTimePaths;
   }
 
   /**
    * Calculates the Least Time path for the desired route.
    *
    * This implementation uses the pre-defined Stop and RouteTimetable classes
-   * and attributes thereon.
+   * and attributes thereon. The search uses the SearchState of the current
+   * thread, which is cleared once the path has been reconstructed.
    *
+   * @param network       the network within which to search
+   * @param query         the journey for which to search
+   * @param costEstimator the estimator used for determining h'(ni)
+   * @param time          the time from which to search (in minutes since
+   *                      midnight)
    * @return a list of nodes defining each point within an itinerary where the
    *         trip begins, ends or an exchange of buses occurs
    */
-  private List<TArc> calculateLeastTimePath() {
-    initializeFinder();
-    Stop ni = null;
-    while (!getOpenNodes().isEmpty()) {
-      // Select open node with minimum value for f'(ni)
-      ni = selectMinimumOpenNode();
-      calculateConnectionsFromCurrentNode(ni);
-    }
-    return reconstructItinerary();
+  private List<TArc> calculateLeastTimePath(TransitNetwork network, JourneyQuery query, CostEstimator costEstimator, int time) {
+    SearchState state = SEARCH_STATES.get();
+    try {
+      if (!initializeFinder(state, network, query, costEstimator, time)) {
+        return new ArrayList<>();
+      }
+      while (!state.openNodes.isEmpty()) {
+        // Select open node with minimum value for f'(ni)
+        int ni = selectMinimumOpenNode(state);
+        calculateConnectionsFromCurrentNode(state, ni);
+      }
+      return reconstructItinerary(state);
+    } finally {
+      // Release references to the network held by the state
+      state.clear();
+    }
   }
 
   /**
@@ -508,87 +442,137 @@ public class ItineraryFinder {
    *
    * This method carries out a number of calculations and checks to determine
    * which nodes are suitable candidates for consideration as the next node.
-   * The process requires this method to record state to this ItineraryFinder.
+   * The process requires this method to record state to the SearchState.
    *
    * It records that the path leading to ni has already been traversed; it
    * sets the current time for initiating the next t-arc; it sets ni to closed
    * to ensure that it will not be returned to in further legs/t-arcs; and it
    * then ascertains all node candidates for the next leg/t-arc.
    *
-   * @param ni the current node from which to determine next node
+   * @param state the state of the current search
+   * @param ni    index of the current node from which to determine next node
    */
-  private void calculateConnectionsFromCurrentNode(Stop ni) {
+  private void calculateConnectionsFromCurrentNode(SearchState state, int ni) {
     // Set the route leading to this node to already traversed, and set ni
     // to the value of initial time plus the value of g'(ni)
-    if (getPre(ni) != null) {
-      setAlreadyTraversed(getPre(ni).getService());
-      setWalkedLastLeg(getPre(ni).getService() instanceof Walk);
+    Path preService = state.getPreService(ni);
+    if (preService != null) {
+      state.setAlreadyTraversed(preService);
+      state.walkedLastLeg = preService instanceof Walk;
     }
-    int currentTi = getTime() + gPrime(ni); 
+    int currentTi = state.time + state.gPrime(ni);
 
     // If this node is equal to the ending node, then we are finished and need
     // simply to reconstruct the itinerary from node list. Otherwise move node
     // from open to closed list, and carry out next step.
-    changeOpenToClosed(ni);
-    if (ni.equals(getEndingStop())) {
+    state.changeOpenToClosed(ni);
+    if (ni == state.endingNode) {
       return;
-    } 
+    }
 
     // Get all paths from node ni to all other connected nodes
-    for (Path p : Path.findPathsIncludingStop(ni)) {
-      if (p instanceof Walk && getWalkedLastLeg()) {
+    Stop niStop = state.network.stop(ni);
+    for (Path.Incidence incidence : Path.findIncidences(niStop)) {
+      Path p = incidence.getPath();
+      if (p instanceof Walk && state.walkedLastLeg) {
         continue;
       }
 
-      if (pathAlreadyTraversed(p) || pathAlreadyTraversed(p.findInverted())) {
+      if (state.pathAlreadyTraversed(p) || state.pathAlreadyTraversed(p.findInverted())) {
         continue;
       }
 
-      // Get all ni+ nodes - called ni2 here
-      for (Stop ni2 : p.getStops()) {
-        // Check that stop ni2 comes after stop ni - if not, this does not
-        // represent a t-arc - there is no connection between s and ni on this
-        // route.
-        if (p.compareStops(ni, ni2) >= 0) {
+      // Get all ni+ nodes - called ni2 here. Only stops after ni on this
+      // route represent t-arcs; there is no connection to stops before it.
+      List<Stop> stops = p.getStops();
+      int position = incidence.getPosition();
+      for (int i = position + 1; i < stops.size(); i++) {
+        Stop ni2Stop = stops.get(i);
+        // A stop visited more than once comes where it is first visited
+        if (p.stopIndex(ni2Stop) <= position) {
           continue;
         }
+        int ni2 = state.network.stopIndex(ni2Stop);
 
         // Create t-arc and then skip this iteration if the second node is
         // closed (we don't return to closed nodes), if the route has already
         // been traversed, or its inverse (a passenger will not go back over
         // the same route twice), or if this t-arc is excluded from
-        // consideration - this will be the case when trying to determine 
-        // additional itinerary options.
-        TArc tArc = new TArc(ni, ni2, p, currentTi);
-        if (isClosed(ni2)) {
+        // consideration - this will be the case when trying to determine
+        // additional itinerary options. The candidate t-arc of the search is
+        // reused for each t-arc considered.
+        if (ni2 < 0 || state.isClosed(ni2)) {
           continue;
         }
+        TArc tArc = state.candidate;
+        tArc.set(niStop, ni2Stop, p, currentTi);
         int pi = tArc.pi(); // Calculate pi value
-        if (gPrime(ni) + pi >= gPrime(ni2)) {
+        if (state.gPrime(ni) + pi >= state.gPrime(ni2) || !isAcceptable(state, tArc)) {
           continue;
-        } else if (isNew(ni2)) {
-          setOpenNode(ni2);
         }
-        setGPrime(ni2, gPrime(ni) + pi);
-        setPre(ni2, tArc);
+        boolean isNewNode = state.isNew(ni2);
+        state.setGPrime(ni2, state.gPrime(ni) + pi);
+        state.setPre(ni2, ni, tArc);
+        if (isNewNode) {
+          setOpenNode(state, ni2);
+        } else {
+          updateOpenNode(state, ni2);
+        }
       }
     }
   }
 
+  /**
+   * Determines whether a t-arc may be taken without breaching the
+   * crowdedness filter of the search.
+   *
+   * Walks are always acceptable, as is every t-arc where the filter is RED.
+   * A bus t-arc is acceptable if its departure is no more crowded when
+   * boarded at its starting node than the filter permits, as estimated for
+   * the ItineraryLeg later built from the t-arc.
+   *
+   * @param state the state of the current search
+   * @param tArc  the t-arc to test
+   * @return true if the t-arc may be taken, else false
+   */
+  private boolean isAcceptable(SearchState state, TArc tArc) {
+    if (state.filter == CapacityCalculator.CrowdednessIndicator.RED || !(tArc.getService() instanceof Route)) {
+      return true;
+    }
+    RouteTimetable rt = tArc.departure();
+    return rt == null || !state.tripCrowdedness.crowdedness(rt, tArc.getStartNode()).moreCrowdedThan(state.filter);
+  }
+
+  /**
+   * Creates the estimates of trip crowdedness used while answering one
+   * query.
+   *
+   * @param date the date on which trips are to be taken
+   * @return trip crowdedness estimates for date
+   */
+  TripCrowdedness createTripCrowdedness(LocalDate date) {
+    return new TripCrowdedness(date);
+  }
+
   /**
    * Reconstructs least time itinerary.
    *
    * This method reconstructs the least time itinerary by looping through
-   * pre(ni) where ni = nd, nd-, ..., no+.
+   * pre(ni) where ni = nd, nd-, ..., no+. A t-arc is only allocated for each
+   * leg of the itinerary, holding the departure resolved during the search.
    *
+   * @param state the state of the current search
    * @return least time itinerary for trip between origin and destination stops
    */
-  private List<TArc> reconstructItinerary() {
+  private List<TArc> reconstructItinerary(SearchState state) {
     List<TArc> itinerary = new ArrayList<>();
-    TArc thisPre = getPre(getEndingStop());
-    while (thisPre != null) {
+    int n = state.endingNode;
+    while (state.getPreService(n) != null) {
+      int start = state.preStarts[n];
+      TArc thisPre = new TArc(state.network.stop(start), state.network.stop(n), state.preServices[n], state.preTimes[n]);
+      thisPre.setDeparture(state.preDepartures[n]);
       itinerary.add(0, thisPre);
-      thisPre = getPre(thisPre.getStartNode());
+      n = start;
     }
     return itinerary;
   }
@@ -598,25 +582,365 @@ public class ItineraryFinder {
    *
    * This method forms part of the calculateLeastTimePath method, and is used
    * to select the most promising node at the beginning of each iteration.
+   * The selected node is removed from the open node heap.
+   *
+   * @param state the state of the current search
+   * @return index of the open node with minimum f'(n) value
+   */
+  private int selectMinimumOpenNode(SearchState state) {
+    return state.openNodes.pollMin();
+  }
+
+  /**
+   * The SearchState nested class holds the scratch state of one least time
+   * path search.
+   *
+   * Nodes are keyed by their dense stop index within the TransitNetwork of
+   * the schedule, so the open node heap, the closed node set and the values
+   * of g'(n) and pre(n) are all held in arrays, and no map is consulted or
+   * value boxed as nodes are relaxed. Each t-arc considered is evaluated
+   * within the single candidate t-arc of the query, and pre(n) is held as
+   * the fields of the t-arc accepted for n, so no t-arc is allocated as
+   * nodes are relaxed. The nodes reached by a search are
+   * listed, so that clearing the state does not require a pass over every
+   * node of the network.
    *
-   * @return the open node with minimum f'(n) value
+   * Each thread has a single SearchState, which is cleared before and after
+   * each search made on that thread. The arrays within retain their capacity
+   * when cleared, so once they have grown to the size of the network further
+   * searches allocate very little. The departures resolved and the trip
+   * crowdedness estimated are kept across the searches made for one query,
+   * and cleared once it is answered.
    */
-  private Stop selectMinimumOpenNode() {
-    int min = 1_000_000_000; // Set initial min to high value
-    Stop minNode = null;
-    for (Stop s : getOpenNodes()) {
-      int weighting = 0;
-      // If one service can go direct to endNode, then create a weighting
-      // in favour of selecting this node.
-      if (s.equals(getEndingStop())) {
-        weighting = 2;
-      } 
-      if (fPrime(s) - weighting < min) {
-        minNode = s;
-        min = fPrime(s);
+  private static class SearchState {
+
+    private final IndexedMinHeap openNodes;
+    private final BitSet closedNodes;
+    private final List<Path> usedPaths; // List stores paths already traversed
+    private final DepartureCache departures;
+    private int[] gs;
+    // pre(n): the starting node, service, starting time and departure of the
+    // t-arc by which each node was reached
+    private int[] preStarts;
+    private Path[] preServices;
+    private int[] preTimes;
+    private RouteTimetable[] preDepartures;
+    private int[] reachedNodes; // Nodes for which g' has been set
+    private int numberOfReachedNodes;
+
+    private TransitNetwork network;
+    private int endingNode;
+    private CostEstimator costEstimator;
+    private int time;
+    private boolean walkedLastLeg;
+    private CapacityCalculator.CrowdednessIndicator filter;
+    private TripCrowdedness tripCrowdedness;
+    private TArc candidate;
+
+    /**
+     * Creates an empty SearchState.
+     */
+    SearchState() {
+      openNodes = new IndexedMinHeap(Stop.numberOfStops());
+      closedNodes = new BitSet(Stop.numberOfStops());
+      usedPaths = new ArrayList<>();
+      departures = new DepartureCache();
+      gs = new int[0];
+      preStarts = new int[0];
+      preServices = new Path[0];
+      preTimes = new int[0];
+      preDepartures = new RouteTimetable[0];
+      reachedNodes = new int[0];
+    }
+
+    /**
+     * Prepares the state for a search within a network, growing the arrays
+     * keyed by node to the number of stops within the network.
+     *
+     * @param network the network within which to search
+     */
+    void prepare(TransitNetwork network) {
+      this.network = network;
+      int size = network.numberOfStops();
+      if (gs.length < size) {
+        gs = new int[size];
+        Arrays.fill(gs, CostEstimator.UNCONNECTED);
+        preStarts = new int[size];
+        preServices = new Path[size];
+        preTimes = new int[size];
+        preDepartures = new RouteTimetable[size];
+        reachedNodes = new int[size];
       }
     }
-    return minNode;
+
+    /**
+     * Clears all state, retaining the capacity of each collection.
+     */
+    void clear() {
+      openNodes.clear();
+      closedNodes.clear();
+      usedPaths.clear();
+      for (int i = 0; i < numberOfReachedNodes; i++) {
+        gs[reachedNodes[i]] = CostEstimator.UNCONNECTED;
+        preServices[reachedNodes[i]] = null;
+        preDepartures[reachedNodes[i]] = null;
+      }
+      numberOfReachedNodes = 0;
+      network = null;
+      endingNode = -1;
+      costEstimator = null;
+      time = 0;
+      walkedLastLeg = false;
+      filter = null;
+    }
+
+    /**
+     * Determine whether node n is open.
+     *
+     * @param n index of node to test whether open
+     * @return true if open, else false
+     */
+    boolean isOpen(int n) {
+      return openNodes.contains(n);
+    }
+
+    /**
+     * change state of open node to closed.
+     *
+     * The node will already have been removed from the open node heap when it
+     * was selected, so this method simply records the node as closed.
+     *
+     * @param n index of node to record as closed
+     */
+    void changeOpenToClosed(int n) {
+      closedNodes.set(n);
+    }
+
+    /**
+     * Determine whether node n is closed.
+     *
+     * @param n index of node to test whether closed
+     * @return true if closed, else false
+     */
+    boolean isClosed(int n) {
+      return closedNodes.get(n);
+    }
+
+    /**
+     * Determine whether node n is new.
+     *
+     * A node is new if it is on neither the open nor the closed list.
+     *
+     * @param n index of node to test whether new
+     * @return true if new, else false
+     */
+    boolean isNew(int n) {
+      return !(isOpen(n) || isClosed(n));
+    }
+
+    /**
+     * Set value of pre(n).
+     *
+     * The fields of the t-arc are copied, so the t-arc may be reused once
+     * this returns.
+     *
+     * @param n     index of the node for which to set value of pre
+     * @param start index of the starting node of t
+     * @param t     the t-arc to store in value of pre
+     */
+    void setPre(int n, int start, TArc t) {
+      preStarts[n] = start;
+      preServices[n] = t.getService();
+      preTimes[n] = t.getTime();
+      preDepartures[n] = t.getService() instanceof Route ? t.departure() : null;
+    }
+
+    /**
+     * Get the service of the t-arc held as pre(n).
+     *
+     * @param n index of the node for which to get value of pre
+     * @return service of pre(n), or null if no value of pre has been set
+     */
+    Path getPreService(int n) {
+      return preServices[n];
+    }
+
+    /**
+     * Determine whether path has already been traversed.
+     *
+     * For the purposes of the itinerary finder, certain calculations are made
+     * based on whether a path has already been taken. In particular, the
+     * algorithm assumes that a traveller will not be taking the same path or
+     * its inverse more than once.
+     *
+     * @param p path to test whether already traversed
+     * @return true if r has already been traversed, else false
+     */
+    boolean pathAlreadyTraversed(Path p) {
+      return (p != null && usedPaths.contains(p));
+    }
+
+    /**
+     * Add path to list of already traversed paths.
+     *
+     * @param p path to add to list of already traversed paths.
+     */
+    void setAlreadyTraversed(Path p) {
+      usedPaths.add(p);
+    }
+
+    /**
+     * Get value of g'(ni).
+     *
+     * @param ni index of node for which to get value of g'
+     */
+    int gPrime(int ni) {
+      return gs[ni];
+    }
+
+    /**
+     * Set value of g'(ni).
+     *
+     * @param ni    index of node for which to set value of g'
+     * @param value value to set for g'
+     */
+    void setGPrime(int ni, int value) {
+      if (gs[ni] == CostEstimator.UNCONNECTED) {
+        reachedNodes[numberOfReachedNodes++] = ni;
+      }
+      gs[ni] = value;
+    }
+  }
+
+  /**
+   * The DepartureCache nested class memoises the next departures of routes
+   * from stops during the searches for one query.
+   *
+   * Entries are keyed by route, stop and time, and held in parallel arrays
+   * with open addressing, so that no key object is allocated for a lookup.
+   * Routes and stops are compared by identity, as each is held once within
+   * the system registries. The absence of a departure is cached too.
+   */
+  static class DepartureCache {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private Route[] routes;
+    private Stop[] stops;
+    private int[] times;
+    private RouteTimetable[] departures;
+    private int size;
+
+    /**
+     * Creates an empty DepartureCache.
+     */
+    DepartureCache() {
+      allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Finds the next departure of a route from a stop, resolving it from the
+     * schedule only if it has not already been resolved.
+     *
+     * @param schedule the schedule in operation
+     * @param route    the route on which to travel
+     * @param stop     the stop from which departure is to take place
+     * @param time     the time from which to get next departure
+     * @return RouteTimetable of the next departure, or null if there is none
+     */
+    RouteTimetable nextDeparture(Schedule schedule, Route route, Stop stop, int time) {
+      int mask = routes.length - 1;
+      int slot = hash(route, stop, time) & mask;
+      while (routes[slot] != null) {
+        if (routes[slot] == route && stops[slot] == stop && times[slot] == time) {
+          return departures[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      RouteTimetable departure = resolve(schedule, route, stop, time);
+      routes[slot] = route;
+      stops[slot] = stop;
+      times[slot] = time;
+      departures[slot] = departure;
+      if (++size * 2 > routes.length) {
+        grow();
+      }
+      return departure;
+    }
+
+    /**
+     * Finds the next departure of a route from a stop within the schedule.
+     *
+     * @param schedule the schedule in operation
+     * @param route    the route on which to travel
+     * @param stop     the stop from which departure is to take place
+     * @param time     the time from which to get next departure
+     * @return RouteTimetable of the next departure, or null if there is none
+     */
+    static RouteTimetable resolve(Schedule schedule, Route route, Stop stop, int time) {
+      try {
+        return schedule.nextDepartureRouteTimetable(time, stop, route);
+      } catch (IllegalArgumentException e) {
+        // No next departure time info available
+        return null;
+      }
+    }
+
+    /**
+     * Clears all entries, retaining capacity.
+     */
+    void clear() {
+      Arrays.fill(routes, null);
+      Arrays.fill(stops, null);
+      Arrays.fill(departures, null);
+      size = 0;
+    }
+
+    /**
+     * Doubles the capacity, rehashing all entries.
+     */
+    private void grow() {
+      Route[] oldRoutes = routes;
+      Stop[] oldStops = stops;
+      int[] oldTimes = times;
+      RouteTimetable[] oldDepartures = departures;
+      allocate(oldRoutes.length * 2);
+      int mask = routes.length - 1;
+      for (int i = 0; i < oldRoutes.length; i++) {
+        if (oldRoutes[i] == null) {
+          continue;
+        }
+        int slot = hash(oldRoutes[i], oldStops[i], oldTimes[i]) & mask;
+        while (routes[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        routes[slot] = oldRoutes[i];
+        stops[slot] = oldStops[i];
+        times[slot] = oldTimes[i];
+        departures[slot] = oldDepartures[i];
+      }
+    }
+
+    /**
+     * Allocates empty arrays of a capacity, which must be a power of two.
+     */
+    private void allocate(int capacity) {
+      routes = new Route[capacity];
+      stops = new Stop[capacity];
+      times = new int[capacity];
+      departures = new RouteTimetable[capacity];
+    }
+
+    /**
+     * Hashes a key.
+     */
+    private static int hash(Route route, Stop stop, int time) {
+      int h = System.identityHashCode(route);
+      h = 31 * h + System.identityHashCode(stop);
+      h = 31 * h + time;
+      // Spread the high bits, as only the low bits select a slot
+      return h ^ (h >>> 16);
+    }
   }
 
   /** 
@@ -627,10 +951,13 @@ public class ItineraryFinder {
    */
   class TArc {
     
-    private final Stop startNode;
-    private final Stop endNode;
-    private final Path service;
-    private final int time;
+    private Stop startNode;
+    private Stop endNode;
+    private Path service;
+    private int time;
+    private final DepartureCache departures;
+    private boolean departureResolved;
+    private RouteTimetable departure;
 
     /**
      * TArc constructor.
@@ -647,10 +974,73 @@ public class ItineraryFinder {
      *             calculated from the value of time)
      */
     public TArc(Stop ni, Stop nj, Path si, int time) {
+      this(ni, nj, si, time, null);
+    }
+
+    /**
+     * TArc constructor, resolving the next departure through a cache shared
+     * by the t-arcs of a query.
+     *
+     * @param ni         starting node
+     * @param nj         ending node
+     * @param si         service between nodes - can be a bus route or a walk
+     * @param time       starting time for journey from t-arc
+     * @param departures cache of next departures, or null to resolve the
+     *                   departure from the schedule
+     */
+    TArc(Stop ni, Stop nj, Path si, int time, DepartureCache departures) {
+      this.startNode = ni;
+      this.endNode = nj;
+      this.service = si;
+      this.time = time;
+      this.departures = departures;
+    }
+
+    /**
+     * Sets the nodes, service and time of this t-arc, so that one t-arc may
+     * be reused to evaluate many.
+     *
+     * @param ni   starting node
+     * @param nj   ending node
+     * @param si   service between nodes - can be a bus route or a walk
+     * @param time starting time for journey from t-arc
+     */
+    void set(Stop ni, Stop nj, Path si, int time) {
       this.startNode = ni;
       this.endNode = nj;
       this.service = si;
       this.time = time;
+      this.departureResolved = false;
+      this.departure = null;
+    }
+
+    /**
+     * Sets the RouteTimetable of the next departure of the route of this
+     * t-arc from startNode, where already resolved.
+     *
+     * @param departure RouteTimetable of the next departure, or null if there
+     *                  is none
+     */
+    void setDeparture(RouteTimetable departure) {
+      this.departure = departure;
+      this.departureResolved = true;
+    }
+
+    /**
+     * Gets the RouteTimetable of the next departure of the route of this
+     * t-arc from startNode, resolving it on first use.
+     *
+     * @return RouteTimetable of the next departure, or null if there is none
+     */
+    private RouteTimetable departure() {
+      if (!departureResolved) {
+        Route route = (Route) getService();
+        departure = departures != null
+          ? departures.nextDeparture(schedule, route, getStartNode(), getTime())
+          : DepartureCache.resolve(schedule, route, getStartNode(), getTime());
+        departureResolved = true;
+      }
+      return departure;
     }
 
     /**
@@ -693,9 +1083,13 @@ public class ItineraryFinder {
             getTime()
             );
       } else {
+        RouteTimetable rt = departure();
+        if (rt == null) {
+          throw new IllegalArgumentException("no next departures available today");
+        }
         return new ItineraryLeg(
             getDate(),
-            schedule.nextDepartureRouteTimetable(getTime(), getStartNode(), (Route) getService()),
+            rt,
             getStartNode(),
             getEndNode()
             );
@@ -741,18 +1135,14 @@ public class ItineraryFinder {
       if (getService() instanceof Walk) {
         return getTime();
       } else {
-        try {
-          int nextDepartureTime = schedule.nextDepartureTime(
-              getTime(), 
-              getStartNode(), (Route) getService()
-              );
-          return nextDepartureTime;
-        } catch (IllegalArgumentException e) {
-          // If this is caught, it means there is no next departure time info
-          // available. This should return a very large value for the purpose
-          // of route planning calculations.
+        RouteTimetable rt = departure();
+        if (rt == null) {
+          // There is no next departure time info available. This should
+          // return a very large value for the purpose of route planning
+          // calculations.
           return CostEstimator.UNCONNECTED;
         }
+        return rt.timeAtStop(getStartNode());
       }
     }
 
@@ -763,9 +1153,15 @@ public class ItineraryFinder {
      */
     public int journeyTime() {
       try {
-        boolean isRushHour = 
-          getService() instanceof Route && 
-          schedule.nextDepartureRouteTimetable(getTime(), getStartNode(), (Route) getService()).isRushHour();
+        boolean isRushHour = false;
+        if (getService() instanceof Route) {
+          RouteTimetable rt = departure();
+          if (rt == null) {
+            // There is no next departure time info available
+            return CostEstimator.UNCONNECTED;
+          }
+          isRushHour = rt.isRushHour();
+        }
         return getService().journeyTimeBetweenStops(getStartNode(), getEndNode(), isRushHour);
       } catch (IllegalArgumentException e) {
         // If this is caught, it means there is no next departure time info
@@ -0,0 +1,85 @@
+package main.routeplanner;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import main.capacitytracker.CapacityCalculator;
+import main.model.Stop;
+
+/**
+ * The JourneyPlanner interface is implemented by each of the route planning
+ * engines within the system.
+ *
+ * A JourneyPlanner is created for a single journey, from a starting stop to
+ * an ending stop at a given date and time, and is used to find the best
+ * itineraries for that journey. Instances are normally created through a
+ * {@link RoutingEngine}, so that the engine used may be chosen for each
+ * deployment of the system.
+ *
+ * @see RoutingEngine
+ */
+public interface JourneyPlanner {
+
+  /**
+   * Get startingStop object.
+   *
+   * @return the stop from which journey is to begin
+   */
+  public Stop getStartingStop();
+
+  /**
+   * Get endingStop object.
+   *
+   * @return the stop at which journey is to end
+   */
+  public Stop getEndingStop();
+
+  /**
+   * Get date value.
+   *
+   * @return date for which to determine suitable journeys
+   */
+  public LocalDate getDate();
+
+  /**
+   * Get time value.
+   *
+   * @return time for which to determine suitable journeys (in minutes since
+   *  midnight)
+   */
+  public int getTime();
+
+  /**
+   * Sets a filter for acceptable itineraries.
+   *
+   * GREEN will only return green itineraries;
+   * ORANGE will only return green and orange; and
+   * RED will return all itineraries.
+   *
+   * @param filter the best acceptable crowdedness level to return
+   */
+  public void setFilter(CapacityCalculator.CrowdednessIndicator filter);
+
+  /**
+   * Gets current filter set on this.
+   *
+   * @return current best acceptable crowdedness level filter
+   */
+  public CapacityCalculator.CrowdednessIndicator getFilter();
+
+  /**
+   * Find the best itinerary for this journey.
+   *
+   * @return the best itinerary for this journey
+   */
+  public Itinerary findBestItinerary();
+
+  /**
+   * Finds the best itineraries for this journey.
+   *
+   * @param n the number of itineraries to get
+   * @return up to n best itineraries for this journey which satisfy the
+   *         crowdedness filter
+   */
+  public List<Itinerary> findBestItineraries(int n);
+}
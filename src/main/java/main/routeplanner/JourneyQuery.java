@@ -0,0 +1,163 @@
+package main.routeplanner;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import main.capacitytracker.CapacityCalculator;
+import main.model.Stop;
+
+/**
+ * The JourneyQuery class describes a single journey for which itineraries are
+ * to be found.
+ *
+ * A query holds the starting and ending stops, the date and time of
+ * departure, the crowdedness filter and the cost heuristic to be used.
+ * Queries are immutable: methods which change a value return a new query,
+ * leaving the original unchanged. A query may therefore be shared freely
+ * between threads, and an ItineraryFinder created for a query may be used by
+ * many threads at once.
+ *
+ * @see ItineraryFinder#ItineraryFinder(JourneyQuery)
+ */
+public final class JourneyQuery {
+
+  private final Stop startingStop;
+  private final Stop endingStop;
+  private final LocalDate date;
+  private final int time;
+  private final CapacityCalculator.CrowdednessIndicator filter;
+  private final CostHeuristic costHeuristic;
+
+  /**
+   * Creates an instance of JourneyQuery.
+   *
+   * The query does not filter itineraries by crowdedness, and uses the
+   * default cost heuristic.
+   *
+   * @param startingStop the stop from which the desired journey is to begin
+   * @param endingStop   the stop at which the desired journey is to end
+   * @param searchTime   the date and time of departure for the desired journey
+   * @see CostHeuristic#getDefault()
+   */
+  public JourneyQuery(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
+    this(
+        startingStop,
+        endingStop,
+        searchTime.toLocalDate(),
+        searchTime.getHour() * 60 + searchTime.getMinute(),
+        CapacityCalculator.CrowdednessIndicator.RED,
+        CostHeuristic.getDefault()
+        );
+  }
+
+  /**
+   * Creates an instance of JourneyQuery.
+   *
+   * @param startingStop  the stop from which the desired journey is to begin
+   * @param endingStop    the stop at which the desired journey is to end
+   * @param date          the date of departure for the desired journey
+   * @param time          the time of departure for the desired journey (in
+   *                      minutes since midnight)
+   * @param filter        the best acceptable crowdedness level to return
+   * @param costHeuristic the heuristic used to estimate the cost of reaching
+   *                      the ending stop
+   */
+  public JourneyQuery(Stop startingStop, Stop endingStop, LocalDate date, int time,
+      CapacityCalculator.CrowdednessIndicator filter, CostHeuristic costHeuristic) {
+    this.startingStop = startingStop;
+    this.endingStop = endingStop;
+    this.date = date;
+    this.time = time;
+    this.filter = filter;
+    this.costHeuristic = costHeuristic;
+  }
+
+  /**
+   * Get startingStop object.
+   *
+   * @return the stop from which journey is to begin
+   */
+  public Stop getStartingStop() {
+    return startingStop;
+  }
+
+  /**
+   * Get endingStop object.
+   *
+   * @return the stop at which journey is to end
+   */
+  public Stop getEndingStop() {
+    return endingStop;
+  }
+
+  /**
+   * Get date value.
+   *
+   * @return date for which to determine suitable journeys
+   */
+  public LocalDate getDate() {
+    return date;
+  }
+
+  /**
+   * Get time value.
+   *
+   * @return time for which to determine suitable journeys (in minutes since
+   *  midnight)
+   */
+  public int getTime() {
+    return time;
+  }
+
+  /**
+   * Gets the filter for acceptable itineraries.
+   *
+   * @return best acceptable crowdedness level
+   */
+  public CapacityCalculator.CrowdednessIndicator getFilter() {
+    return filter;
+  }
+
+  /**
+   * Gets the heuristic used to estimate the cost of reaching the ending stop.
+   *
+   * @return cost heuristic
+   */
+  public CostHeuristic getCostHeuristic() {
+    return costHeuristic;
+  }
+
+  /**
+   * Creates a copy of this query departing at a different time.
+   *
+   * @param time the time of departure (in minutes since midnight)
+   * @return query for the same journey departing at time
+   */
+  public JourneyQuery withTime(int time) {
+    return new JourneyQuery(startingStop, endingStop, date, time, filter, costHeuristic);
+  }
+
+  /**
+   * Creates a copy of this query with a different filter.
+   *
+   * GREEN will only return green itineraries;
+   * ORANGE will only return green and orange; and
+   * RED will return all itineraries.
+   *
+   * @param filter the best acceptable crowdedness level to return
+   * @return query for the same journey using filter
+   */
+  public JourneyQuery withFilter(CapacityCalculator.CrowdednessIndicator filter) {
+    return new JourneyQuery(startingStop, endingStop, date, time, filter, costHeuristic);
+  }
+
+  /**
+   * Creates a copy of this query with a different cost heuristic.
+   *
+   * @param costHeuristic the heuristic to use
+   * @return query for the same journey using costHeuristic
+   */
+  public JourneyQuery withCostHeuristic(CostHeuristic costHeuristic) {
+    return new JourneyQuery(startingStop, endingStop, date, time, filter, costHeuristic);
+  }
+}
@@ -0,0 +1,324 @@
+package main.routeplanner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import main.model.*;
+
+/**
+ * The Landmarks class provides lower bounds on the cost of travelling between
+ * two stops, using the ALT (A*, landmarks and triangle inequality) technique.
+ *
+ * A small number of landmark stops are chosen, and the shortest travel time
+ * to and from each landmark is calculated for every stop. For any landmark L,
+ * the triangle inequality gives d(v, t) &gt;= d(L, t) - d(L, v) and
+ * d(v, t) &gt;= d(v, L) - d(t, L), and the largest of these bounds is used.
+ * Memory required grows with the number of landmarks multiplied by the number
+ * of stops, rather than with the square of the number of stops as for the
+ * costs table.
+ *
+ * Travel times are those of the same network used for the costs table: each
+ * path is a series of edges between consecutive stops, weighted by the
+ * non-rush hour journey time, with no time spent waiting. The bounds are
+ * therefore never greater than the costs held in the costs table.
+ *
+ * Landmarks are chosen by repeatedly picking the stop furthest from those
+ * already chosen, which places them around the edges of the network where
+ * they give the tightest bounds.
+ *
+ * Functionality is based on the technique described within the paper
+ * Goldberg, A. V., Harrelson, C. (2005). Computing the Shortest Path: A*
+ * Search Meets Graph Theory. Proceedings of the 16th Annual ACM-SIAM
+ * Symposium on Discrete Algorithms (SODA'05).
+ *
+ * @see CostEstimator
+ */
+class Landmarks {
+
+  /**
+   * Number of landmarks chosen by default
+   */
+  static final int DEFAULT_LANDMARKS = 16;
+
+  private static final int INFINITY = Integer.MAX_VALUE;
+
+  private final HashMap<Integer, Integer> stopIndices;
+  private final int numberOfStops;
+  private final int[] landmarks;
+
+  // Travel times from and to each landmark, with the time for landmark l
+  // and stop v held at l * n + v
+  private final int[] fromLandmark;
+  private final int[] toLandmark;
+
+  /**
+   * Choose landmarks within the current network and calculate travel times
+   * to and from them.
+   *
+   * @param count the number of landmarks to choose
+   * @return landmarks for the current network
+   * @throws IllegalArgumentException if count is negative
+   */
+  static Landmarks build(int count) throws IllegalArgumentException {
+    return new Landmarks(CostEstimator.indexStops(), Path.getAllPaths(), count);
+  }
+
+  /**
+   * Create a Landmarks instance.
+   *
+   * @param stopIndices dense index for each stop ID
+   * @param paths       all paths within the network
+   * @param count       the number of landmarks to choose
+   * @throws IllegalArgumentException if count is negative
+   */
+  Landmarks(HashMap<Integer, Integer> stopIndices, List<Path> paths, int count) throws IllegalArgumentException {
+    if (count < 0) {
+      throw new IllegalArgumentException("number of landmarks cannot be negative");
+    }
+    this.stopIndices = stopIndices;
+    this.numberOfStops = stopIndices.size();
+    Graph forward = new Graph(stopIndices, paths, false);
+    Graph backward = new Graph(stopIndices, paths, true);
+
+    boolean[] connected = new boolean[numberOfStops];
+    for (int v = 0; v < numberOfStops; v++) {
+      connected[v] = forward.hasEdges(v) || backward.hasEdges(v);
+    }
+
+    count = Math.min(count, numberOfStops);
+    int[] chosen = new int[count];
+    int[] from = new int[count * numberOfStops];
+    int[] to = new int[count * numberOfStops];
+    // Travel time between each stop and its nearest landmark, initially
+    // from an arbitrary stop
+    int[] nearest = new int[numberOfStops];
+    Arrays.fill(nearest, INFINITY);
+    int start = furthest(nearest, connected, chosen, 0);
+    if (start >= 0) {
+      nearest = forward.shortestPaths(start);
+    }
+
+    int chosenCount = 0;
+    while (chosenCount < count) {
+      int landmark = furthest(nearest, connected, chosen, chosenCount);
+      if (landmark < 0) {
+        break;
+      }
+      int[] fromChosen = forward.shortestPaths(landmark);
+      int[] toChosen = backward.shortestPaths(landmark);
+      System.arraycopy(fromChosen, 0, from, chosenCount * numberOfStops, numberOfStops);
+      System.arraycopy(toChosen, 0, to, chosenCount * numberOfStops, numberOfStops);
+      chosen[chosenCount++] = landmark;
+      for (int v = 0; v < numberOfStops; v++) {
+        int distance = chosenCount == 1 ? INFINITY : nearest[v];
+        nearest[v] = Math.min(distance, Math.min(fromChosen[v], toChosen[v]));
+      }
+    }
+
+    this.landmarks = Arrays.copyOf(chosen, chosenCount);
+    this.fromLandmark = Arrays.copyOf(from, chosenCount * numberOfStops);
+    this.toLandmark = Arrays.copyOf(to, chosenCount * numberOfStops);
+  }
+
+  /**
+   * Find the stop furthest from those already chosen as landmarks.
+   *
+   * Stops not reached from or to any landmark are furthest of all, so that
+   * each part of a disconnected network receives a landmark. Stops with no
+   * paths are never chosen.
+   *
+   * @param nearest     travel time between each stop and its nearest
+   *                    landmark
+   * @param connected   whether each stop has any paths
+   * @param chosen      landmarks already chosen
+   * @param chosenCount number of landmarks already chosen
+   * @return index of the furthest stop, or -1 if there is none
+   */
+  private int furthest(int[] nearest, boolean[] connected, int[] chosen, int chosenCount) {
+    int furthest = -1;
+    for (int v = 0; v < numberOfStops; v++) {
+      if (connected[v] && !isChosen(v, chosen, chosenCount) &&
+          (furthest < 0 || nearest[v] > nearest[furthest])) {
+        furthest = v;
+      }
+    }
+    return furthest;
+  }
+
+  /**
+   * Determine whether a stop has already been chosen as a landmark.
+   */
+  private static boolean isChosen(int v, int[] chosen, int chosenCount) {
+    for (int i = 0; i < chosenCount; i++) {
+      if (chosen[i] == v) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Get the number of landmarks chosen.
+   *
+   * Fewer landmarks than requested are chosen where the network has fewer
+   * stops with paths.
+   *
+   * @return number of landmarks
+   */
+  int numberOfLandmarks() {
+    return landmarks.length;
+  }
+
+  /**
+   * Get a lower bound on the cost of travelling between two stops.
+   *
+   * Where the landmarks show that there is no way of travelling between the
+   * stops, CostEstimator.UNCONNECTED is returned, as for the costs table.
+   *
+   * @param s1 the stop from which to travel
+   * @param s2 the stop to which to travel
+   * @return lower bound on the cost from s1 to s2
+   */
+  int lowerBound(Stop s1, Stop s2) {
+    Integer v = stopIndices.get(s1.getID());
+    Integer t = stopIndices.get(s2.getID());
+    if (v == null || t == null) {
+      return CostEstimator.UNCONNECTED;
+    }
+    if (v.equals(t)) {
+      return 0;
+    }
+    int bound = 0;
+    for (int l = 0; l < landmarks.length; l++) {
+      int offset = l * numberOfStops;
+      int landmarkToV = fromLandmark[offset + v];
+      int landmarkToT = fromLandmark[offset + t];
+      int vToLandmark = toLandmark[offset + v];
+      int tToLandmark = toLandmark[offset + t];
+      // If s2 could be reached from s1, anywhere reachable from s2 would
+      // also be reachable from s1, and anything reaching s1 would reach s2
+      if ((vToLandmark == INFINITY && tToLandmark != INFINITY) ||
+          (landmarkToT == INFINITY && landmarkToV != INFINITY)) {
+        return CostEstimator.UNCONNECTED;
+      }
+      if (landmarkToT != INFINITY && landmarkToV != INFINITY) {
+        bound = Math.max(bound, landmarkToT - landmarkToV);
+      }
+      if (vToLandmark != INFINITY && tToLandmark != INFINITY) {
+        bound = Math.max(bound, vToLandmark - tToLandmark);
+      }
+    }
+    return Math.min(bound, CostEstimator.UNCONNECTED);
+  }
+
+  /**
+   * The Graph inner class holds the network of stops and paths as adjacency
+   * arrays, either in the direction of travel or reversed.
+   */
+  private static class Graph {
+
+    private final int[] firstEdge;
+    private final int[] edgeTarget;
+    private final int[] edgeCost;
+
+    /**
+     * Create a Graph instance.
+     *
+     * Each path contributes an edge between each pair of consecutive stops.
+     * Negative journey times, which can only result from errors within the
+     * timetable data, are treated as zero.
+     *
+     * @param stopIndices dense index for each stop ID
+     * @param paths       all paths within the network
+     * @param reversed    true to reverse the direction of every edge
+     */
+    Graph(HashMap<Integer, Integer> stopIndices, List<Path> paths, boolean reversed) {
+      int n = stopIndices.size();
+      int numEdges = 0;
+      for (Path p : paths) {
+        numEdges += Math.max(0, p.getStops().size() - 1);
+      }
+      int[] sources = new int[numEdges];
+      int[] targets = new int[numEdges];
+      int[] costs = new int[numEdges];
+      int e = 0;
+      for (Path p : paths) {
+        List<Stop> stops = p.getStops();
+        List<Integer> timing = p instanceof Route ? ((Route) p).getStopTiming(false, false) : null;
+        for (int i = 0; i + 1 < stops.size(); i++) {
+          int a = stopIndices.get(stops.get(i).getID());
+          int b = stopIndices.get(stops.get(i + 1).getID());
+          int cost = timing != null ? timing.get(i + 1)
+                                    : p.journeyTimeBetweenStops(stops.get(i), stops.get(i + 1), false);
+          sources[e] = reversed ? b : a;
+          targets[e] = reversed ? a : b;
+          costs[e] = Math.max(0, cost);
+          e++;
+        }
+      }
+
+      // Lay out edges by source stop
+      firstEdge = new int[n + 1];
+      for (int i = 0; i < numEdges; i++) {
+        firstEdge[sources[i] + 1]++;
+      }
+      for (int v = 0; v < n; v++) {
+        firstEdge[v + 1] += firstEdge[v];
+      }
+      edgeTarget = new int[numEdges];
+      edgeCost = new int[numEdges];
+      int[] next = Arrays.copyOf(firstEdge, n);
+      for (int i = 0; i < numEdges; i++) {
+        int position = next[sources[i]]++;
+        edgeTarget[position] = targets[i];
+        edgeCost[position] = costs[i];
+      }
+    }
+
+    /**
+     * Determine whether any edge leaves a stop.
+     *
+     * @param v the stop index
+     * @return true if the stop has an edge, else false
+     */
+    boolean hasEdges(int v) {
+      return firstEdge[v + 1] > firstEdge[v];
+    }
+
+    /**
+     * Calculate the shortest travel time from a stop to every other stop,
+     * using Dijkstra's algorithm.
+     *
+     * @param source the stop index from which to travel
+     * @return travel time to each stop, or INFINITY where unreachable
+     */
+    int[] shortestPaths(int source) {
+      int n = firstEdge.length - 1;
+      int[] distances = new int[n];
+      Arrays.fill(distances, INFINITY);
+      if (n == 0) {
+        return distances;
+      }
+      IndexedMinHeap heap = new IndexedMinHeap(n);
+      distances[source] = 0;
+      heap.insert(source, 0);
+      while (!heap.isEmpty()) {
+        int v = heap.pollMin();
+        for (int e = firstEdge[v]; e < firstEdge[v + 1]; e++) {
+          int w = edgeTarget[e];
+          int distance = distances[v] + edgeCost[e];
+          if (distance < distances[w]) {
+            if (heap.contains(w)) {
+              heap.decreaseKey(w, distance);
+            } else {
+              heap.insert(w, distance);
+            }
+            distances[w] = distance;
+          }
+        }
+      }
+      return distances;
+    }
+  }
+}
@@ -0,0 +1,1225 @@
+package main.routeplanner;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import main.capacitytracker.CapacityCalculator;
+import main.model.*;
+
+/**
+ * This class is used to find itineraries between two stops using the
+ * round-based RAPTOR algorithm.
+ *
+ * It is an alternative to the ItineraryFinder. Rather than running a
+ * goal-directed search over t-arcs using a heuristic costs table, the
+ * RaptorItineraryFinder works directly on the trips within the Schedule for
+ * the desired date. Each round of the algorithm extends journeys by one
+ * further bus trip (followed by an optional walk), so that after round k the
+ * earliest arrival at every stop using at most k trips is known.
+ *
+ * Functionality is based on the algorithm described within the paper
+ * Delling, D., Pajor, T., Werneck, R. F. (2012). Round-Based Public Transit
+ * Routing. Proceedings of the 14th Meeting on Algorithm Engineering and
+ * Experiments (ALENEX'12).
+ *
+ * Trips more crowded than the filter are pruned while labels are propagated,
+ * rather than being removed from the itineraries found. Crowdedness may also
+ * be used as a search criterion in its own right, returning every itinerary
+ * which is Pareto-optimal over arrival time, crowdedness and transfers.
+ *
+ * Journeys may also be planned between two points given by their latitude
+ * and longitude. The stops within the access distance of each point (or the
+ * nearest stop, if there are none) are found using the spatial index of
+ * stops, and a single search is run from all of the stops near the starting
+ * point at once, each reached by walking from it, until the earliest arrival
+ * at the ending point by walking from any of the stops near it is known.
+ *
+ * @see ItineraryFinder
+ */
+public class RaptorItineraryFinder extends TimetableJourneyPlanner {
+
+  /**
+   * Default maximum number of transfers between buses within an itinerary.
+   */
+  public static final int DEFAULT_MAX_TRANSFERS = 4;
+
+  /**
+   * Default greatest distance in metres walked between a point and a stop,
+   * for journeys between points.
+   */
+  public static final int DEFAULT_ACCESS_DISTANCE = 500;
+
+  // Label types recorded against each stop in each round
+  private static final byte NONE = 0;
+  private static final byte ORIGIN = 1;
+  private static final byte BUS = 2;
+  private static final byte WALK = 3;
+
+  /**
+   * Value used for unreachable stops and missing trips by the searches over
+   * a TransitNetwork.
+   */
+  static final int UNREACHABLE = Integer.MAX_VALUE;
+
+  private final boolean betweenPoints;
+  private int maxTransfers;
+  private int accessDistance;
+
+  /**
+   * Creates an instance of RaptorItineraryFinder.
+   *
+   * @param startingStop the stop from which the desired journey is to begin
+   * @param endingStop   the stop at which the desired journey is to end
+   * @param searchTime   the date and time of departure for the desired journey
+   */
+  public RaptorItineraryFinder(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
+    this(startingStop, endingStop, searchTime, false);
+  }
+
+  /**
+   * Creates an instance of RaptorItineraryFinder for a journey between two
+   * points.
+   *
+   * The starting and ending stops of the journey are stops at the points,
+   * which are not added to the list of all stops. Itineraries found begin
+   * and end with walks between these points and stops near them.
+   *
+   * @param startingLatitude  the latitude of the point from which the
+   *                          desired journey is to begin
+   * @param startingLongitude the longitude of the point from which the
+   *                          desired journey is to begin
+   * @param endingLatitude    the latitude of the point at which the desired
+   *                          journey is to end
+   * @param endingLongitude   the longitude of the point at which the desired
+   *                          journey is to end
+   * @param searchTime        the date and time of departure for the desired
+   *                          journey
+   */
+  public RaptorItineraryFinder(double startingLatitude, double startingLongitude,
+      double endingLatitude, double endingLongitude, LocalDateTime searchTime) {
+    this(new Stop(0, "Starting point", startingLatitude, startingLongitude, false),
+        new Stop(0, "Ending point", endingLatitude, endingLongitude, false),
+        searchTime, true);
+  }
+
+  /**
+   * Creates an instance of RaptorItineraryFinder.
+   *
+   * @param startingStop  the stop from which the desired journey is to begin
+   * @param endingStop    the stop at which the desired journey is to end
+   * @param searchTime    the date and time of departure for the desired
+   *                      journey
+   * @param betweenPoints true if the starting and ending stops are points
+   *                      from and to which stops must be walked, else false
+   */
+  private RaptorItineraryFinder(Stop startingStop, Stop endingStop, LocalDateTime searchTime, boolean betweenPoints) {
+    super(startingStop, endingStop, searchTime);
+    this.betweenPoints = betweenPoints;
+    setMaxTransfers(DEFAULT_MAX_TRANSFERS);
+    setAccessDistance(DEFAULT_ACCESS_DISTANCE);
+  }
+
+  /**
+   * Sets the maximum number of transfers between buses.
+   *
+   * Each round of the RAPTOR algorithm permits one further transfer, so this
+   * value bounds the number of rounds carried out.
+   *
+   * @param maxTransfers the maximum number of transfers within an itinerary
+   * @throws IllegalArgumentException if maxTransfers is negative
+   */
+  public void setMaxTransfers(int maxTransfers) throws IllegalArgumentException {
+    if (maxTransfers < 0) {
+      throw new IllegalArgumentException("maximum number of transfers cannot be negative");
+    }
+    this.maxTransfers = maxTransfers;
+  }
+
+  /**
+   * Gets the maximum number of transfers between buses.
+   *
+   * @return maximum number of transfers within an itinerary
+   */
+  public int getMaxTransfers() {
+    return maxTransfers;
+  }
+
+  /**
+   * Sets the greatest distance walked between a point and a stop, for
+   * journeys between points.
+   *
+   * Where no stop is within this distance of a point, the nearest stop is
+   * walked to or from instead.
+   *
+   * @param accessDistance the greatest distance in metres
+   * @throws IllegalArgumentException if accessDistance is negative
+   */
+  public void setAccessDistance(int accessDistance) throws IllegalArgumentException {
+    if (accessDistance < 0) {
+      throw new IllegalArgumentException("access distance cannot be negative");
+    }
+    this.accessDistance = accessDistance;
+  }
+
+  /**
+   * Gets the greatest distance walked between a point and a stop, for
+   * journeys between points.
+   *
+   * @return greatest distance in metres
+   */
+  public int getAccessDistance() {
+    return accessDistance;
+  }
+
+  /**
+   * Determines whether this journey is between two points rather than two
+   * stops.
+   *
+   * @return true if the journey is between points, else false
+   */
+  public boolean isBetweenPoints() {
+    return betweenPoints;
+  }
+
+  /**
+   * Finds the legs of the earliest arriving itinerary which departs the
+   * starting stop at or after a given time, by running the RAPTOR algorithm
+   * over the timetable for the schedule.
+   *
+   * @param departureTime the earliest time at which to depart (in minutes
+   *                      since midnight)
+   * @return legs of the earliest arriving itinerary, or null if the ending
+   *         stop cannot be reached
+   */
+  @Override
+  List<ItineraryLeg> findEarliestArrival(int departureTime) {
+    Search search = createSearch(false);
+    return search.run(departureTime) ? search.reconstruct(getDate()) : null;
+  }
+
+  /**
+   * Finds all Pareto-optimal itineraries departing within a window.
+   *
+   * The window begins at the search time and ends at latestDeparture. An
+   * itinerary is Pareto-optimal if no other itinerary both departs the
+   * starting stop later and arrives at the ending stop no later. This is
+   * therefore the set of itineraries a traveller would choose from when
+   * asking for "the next departures".
+   *
+   * All itineraries are found in a single profile search, based on the
+   * rRAPTOR variant of the algorithm. The RAPTOR algorithm is run once for
+   * each time at which a bus can be caught from the starting stop within the
+   * window, latest first, and the labels of each run are reused by the next.
+   * Each run therefore need only explore journeys which improve upon those
+   * departing later.
+   *
+   * Itineraries made only by walking can begin at any time, so are returned
+   * at most once, departing at the start of the window. Itineraries which
+   * would arrive no earlier than walking, or than an itinerary departing
+   * after the window, are not returned.
+   *
+   * @param latestDeparture the latest time at which to depart
+   * @return Pareto-optimal itineraries, boarding no trip more crowded than
+   *         the filter, ordered by departure time
+   * @throws IllegalArgumentException if latestDeparture is before the search
+   *                                  time
+   */
+  public List<Itinerary> findProfileItineraries(LocalTime latestDeparture) throws IllegalArgumentException {
+    int windowEnd = latestDeparture.getHour() * 60 + latestDeparture.getMinute();
+    if (windowEnd < getTime()) {
+      throw new IllegalArgumentException("latest departure cannot be before search time");
+    }
+    LinkedList<Itinerary> itineraries = new LinkedList<>();
+    if (getSchedule() == null) {
+      return itineraries;
+    }
+    Search search = createSearch(false);
+    int walkingTime = search.walkingTimeToTarget();
+    int laterArrival = UNREACHABLE;
+    for (int departureTime : search.departureTimes(getTime(), windowEnd)) {
+      if (!search.run(departureTime) || search.targetArrival() >= laterArrival) {
+        continue;
+      }
+      laterArrival = search.targetArrival();
+      List<ItineraryLeg> legs = search.reconstruct(getDate());
+      int itineraryDeparture = latestDepartureTime(legs);
+      if (itineraryDeparture == Integer.MIN_VALUE) {
+        if (departureTime != getTime()) {
+          continue;
+        }
+      } else if (itineraryDeparture > windowEnd) {
+        continue;
+      } else if (walkingTime != UNREACHABLE && laterArrival >= itineraryDeparture + walkingTime) {
+        continue;
+      }
+      itineraries.addFirst(new Itinerary(getDate(), legs));
+    }
+    return itineraries;
+  }
+
+  /**
+   * Finds all Pareto-optimal itineraries over arrival time, crowdedness and
+   * number of transfers, departing at or after the search time.
+   *
+   * An itinerary is Pareto-optimal if no other itinerary arrives no later,
+   * is no more crowded and uses no more transfers. The crowdedness of an
+   * itinerary is that of its most crowded bus leg. Trips more crowded than
+   * the filter are never boarded, so every itinerary returned satisfies the
+   * filter.
+   *
+   * All itineraries are found in a single multi-criteria search, in which
+   * each label carries the crowdedness level of the journey it represents.
+   *
+   * @return Pareto-optimal itineraries, ordered by number of transfers and
+   *         then by crowdedness
+   */
+  public List<Itinerary> findParetoItineraries() {
+    List<Itinerary> itineraries = new ArrayList<>();
+    if (getSchedule() == null) {
+      return itineraries;
+    }
+    Search search = createSearch(true);
+    if (search.run(getTime())) {
+      for (List<ItineraryLeg> legs : search.reconstructParetoSet(getDate())) {
+        itineraries.add(new Itinerary(getDate(), legs));
+      }
+    }
+    return itineraries;
+  }
+
+  /**
+   * Creates a search from the starting stop to the ending stop over the
+   * timetable for the schedule.
+   *
+   * Trips more crowded than the filter are never boarded. A multi-criteria
+   * search additionally keeps separate labels for each crowdedness level up
+   * to the filter.
+   *
+   * The read lock of the ModelLock is held while the search is created, but
+   * the search may be run without it.
+   *
+   * @param multiCriteria true to keep labels for each crowdedness level,
+   *                      false to keep only the earliest arrivals
+   * @return search, yet to be run
+   */
+  private Search createSearch(final boolean multiCriteria) {
+    Search.TripLevels tripLevels = null;
+    if (multiCriteria || getFilter() != CapacityCalculator.CrowdednessIndicator.RED) {
+      tripLevels = new Search.TripLevels() {
+        @Override
+        public int level(RouteTimetable rt, Stop stop) {
+          if (!multiCriteria) {
+            return isAcceptable(rt, stop) ? 0 : -1;
+          }
+          CapacityCalculator.CrowdednessIndicator crowdedness = getTripCrowdedness().crowdedness(rt, stop);
+          return crowdedness.moreCrowdedThan(getFilter()) ? -1 : crowdedness.ordinal();
+        }
+      };
+    }
+    ModelLock.readLock().lock();
+    try {
+      TransitNetwork timetable = TransitNetwork.forSchedule(getSchedule());
+      int levels = multiCriteria ? getFilter().ordinal() + 1 : 1;
+      Search search = new Search(timetable, getMaxTransfers(), levels, tripLevels);
+      addEndpoints(search, timetable, getStartingStop(), true);
+      addEndpoints(search, timetable, getEndingStop(), false);
+      return search;
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds the stops at which the journey may begin or end to a search, with
+   * the time taken to walk between each and the starting or ending point.
+   *
+   * For a journey between stops this is the starting or ending stop alone.
+   * For a journey between points it is every stop within the access
+   * distance of the point, or the nearest stop if there are none.
+   *
+   * @param search    the search to which to add stops
+   * @param timetable the timetable over which the search is made
+   * @param stop      the starting or ending stop of the journey
+   * @param access    true for the starting stop, false for the ending stop
+   */
+  private void addEndpoints(Search search, TransitNetwork timetable, Stop stop, boolean access) {
+    if (!betweenPoints) {
+      int s = timetable.stopIndex(stop);
+      if (s >= 0) {
+        if (access) {
+          search.addOrigin(s, 0, null);
+        } else {
+          search.addTarget(s, 0, null);
+        }
+      }
+      return;
+    }
+    List<Stop> nearby = Stop.findStopsWithin(stop.getLatitude(), stop.getLongitude(), accessDistance);
+    if (nearby.isEmpty()) {
+      nearby = Stop.findNearestStops(stop.getLatitude(), stop.getLongitude(), 1);
+    }
+    for (Stop near : nearby) {
+      int s = timetable.stopIndex(near);
+      if (s < 0) {
+        continue;
+      }
+      if (access) {
+        Walk walk = new Walk(stop, near, false);
+        search.addOrigin(s, walk.walkingTime(), walk);
+      } else {
+        Walk walk = new Walk(near, stop, false);
+        search.addTarget(s, walk.walkingTime(), walk);
+      }
+    }
+  }
+
+  /**
+   * The Search class holds the labels for runs of the RAPTOR algorithm over
+   * a timetable.
+   *
+   * Labels are kept between runs, so that a Search may be run for a series
+   * of decreasing departure times with each run improving upon the labels of
+   * the last. Each label remains a valid journey, as a traveller departing
+   * earlier can always wait for a later journey.
+   *
+   * Trips may be given a crowdedness level at each stop, with trips too
+   * crowded never boarded. A multi-criteria search keeps separate labels for
+   * each level, where the level of a label is that of the most crowded trip
+   * taken to reach it. A label is only kept where no label of the same or a
+   * lower level, in the same or an earlier round, arrives as early, so that
+   * the labels at the ending stop form a Pareto set over arrival time,
+   * crowdedness and transfers.
+   *
+   * A search may begin at several stops and end at several stops, each with
+   * a walking time between it and the starting or ending point. A journey
+   * between stops begins and ends only at those stops, with no walking time.
+   * A search with no stops at which to end finds the earliest arrival at
+   * every stop, as used by the TravelTimeMatrix. The TransferPatterns are
+   * precomputed from such searches, pruning labels by round and listening
+   * for each label recorded.
+   *
+   * @see TravelTimeMatrix
+   * @see TransferPatterns
+   */
+  static class Search {
+
+    /**
+     * The TripLevels interface gives the crowdedness level at which a trip
+     * is boarded at a stop.
+     */
+    interface TripLevels {
+
+      /**
+       * Determines the crowdedness level at which a trip is boarded at a
+       * stop.
+       *
+       * @param rt   the RouteTimetable of the trip
+       * @param stop the stop at which to board
+       * @return crowdedness level of the trip, or -1 if the trip is too
+       *         crowded to board
+       */
+      int level(RouteTimetable rt, Stop stop);
+    }
+
+    /**
+     * The LabelListener interface is told of each label recorded by a search
+     * at a stop reached by bus or on foot.
+     */
+    interface LabelListener {
+
+      /**
+       * Called when a label is recorded.
+       *
+       * @param level the crowdedness level of the label
+       * @param k     the round of the label
+       * @param s     the stop labelled
+       */
+      void labelled(int level, int k, int s);
+    }
+
+    /**
+     * The LegVisitor interface is given the legs of a journey traced back
+     * from a label, last leg first.
+     */
+    interface LegVisitor {
+
+      /**
+       * Visits a leg made by bus.
+       *
+       * @param trip       the trip taken
+       * @param boardStop  the stop at which the trip is boarded
+       * @param alightStop the stop at which the trip is left
+       */
+      void busLeg(int trip, int boardStop, int alightStop);
+
+      /**
+       * Visits a leg made on foot.
+       *
+       * @param footpath  the footpath walked
+       * @param startTime the time at which walking begins
+       */
+      void walkLeg(int footpath, int startTime);
+    }
+
+    private final TransitNetwork timetable;
+    private final TripLevels tripLevels;
+    private final int levels;
+    private final int rounds;
+    // Stops at which the journey may begin and end
+    private int[] origins = new int[0];
+    private int[] targets = new int[0];
+    // Walking times from the starting point to each stop, and from each stop
+    // to the ending point, or UNREACHABLE where a stop is not walked to or from
+    private final int[] accessTime;
+    private final int[] egressTime;
+    // Walks between the points and each stop, for journeys between points
+    private final Walk[] accessWalk;
+    private final Walk[] egressWalk;
+
+    // Labels for each crowdedness level, round and stop
+    private final int[][] bestArrival;
+    private final int[] bestTargetArrival;
+    private final int[][][] arrival;
+    private final byte[][][] labelType;
+    private final int[][][] busArrival;
+    private final int[][][] busTrip;
+    private final int[][][] busBoardStop;
+    private final int[][][] busBoardLevel;
+    private final int[][][] walkFrom;
+    private final int[][][] walkFootpath;
+    private final boolean[] marked;
+    private final boolean[] byBus;
+    // Earliest arrivals by bus in each round, kept only when pruning by round
+    private int[][][] bestBusArrival;
+
+    private int departureTime = UNREACHABLE;
+    private int latestArrival = Integer.MAX_VALUE;
+    private LabelListener labelListener;
+
+    /**
+     * Creates a search, with no stops at which to begin or end.
+     *
+     * @param timetable    the timetable over which to search
+     * @param maxTransfers the maximum number of transfers between buses
+     * @param levels       the number of crowdedness levels for which to keep
+     *                     labels, or 1 to keep only the earliest arrivals
+     * @param tripLevels   the crowdedness level of each trip, or null to
+     *                     board every trip at the lowest level
+     */
+    Search(TransitNetwork timetable, int maxTransfers, int levels, TripLevels tripLevels) {
+      this.timetable = timetable;
+      this.tripLevels = tripLevels;
+      this.levels = levels;
+      this.rounds = maxTransfers + 1;
+      int n = timetable.numberOfStops();
+      accessTime = new int[n];
+      egressTime = new int[n];
+      accessWalk = new Walk[n];
+      egressWalk = new Walk[n];
+      Arrays.fill(accessTime, UNREACHABLE);
+      Arrays.fill(egressTime, UNREACHABLE);
+      bestArrival = new int[levels][n];
+      bestTargetArrival = new int[levels];
+      Arrays.fill(bestTargetArrival, UNREACHABLE);
+      arrival = new int[levels][rounds + 1][n];
+      labelType = new byte[levels][rounds + 1][n];
+      busArrival = new int[levels][rounds + 1][n];
+      busTrip = new int[levels][rounds + 1][n];
+      busBoardStop = new int[levels][rounds + 1][n];
+      busBoardLevel = new int[levels][rounds + 1][n];
+      walkFrom = new int[levels][rounds + 1][n];
+      walkFootpath = new int[levels][rounds + 1][n];
+      marked = new boolean[n];
+      byBus = new boolean[n];
+      for (int level = 0; level < levels; level++) {
+        Arrays.fill(bestArrival[level], UNREACHABLE);
+        for (int[] roundArrival : arrival[level]) {
+          Arrays.fill(roundArrival, UNREACHABLE);
+        }
+      }
+    }
+
+    /**
+     * Adds a stop at which the journey may begin.
+     *
+     * @param s           the index of the stop within the timetable
+     * @param walkingTime the time taken to walk from the starting point to
+     *                    the stop
+     * @param walk        the walk from the starting point to the stop, or
+     *                    null for a journey between stops
+     */
+    void addOrigin(int s, int walkingTime, Walk walk) {
+      origins = Arrays.copyOf(origins, origins.length + 1);
+      origins[origins.length - 1] = s;
+      accessTime[s] = walkingTime;
+      accessWalk[s] = walk;
+    }
+
+    /**
+     * Adds a stop at which the journey may end.
+     *
+     * @param s           the index of the stop within the timetable
+     * @param walkingTime the time taken to walk from the stop to the ending
+     *                    point
+     * @param walk        the walk from the stop to the ending point, or null
+     *                    for a journey between stops
+     */
+    void addTarget(int s, int walkingTime, Walk walk) {
+      targets = Arrays.copyOf(targets, targets.length + 1);
+      targets[targets.length - 1] = s;
+      egressTime[s] = walkingTime;
+      egressWalk[s] = walk;
+    }
+
+    /**
+     * Sets the latest arrival time to record.
+     *
+     * Later arrivals are discarded, so that journeys are only extended while
+     * they may still arrive in time.
+     *
+     * @param latestArrival the latest arrival time (in minutes since midnight)
+     */
+    void setLatestArrival(int latestArrival) {
+      this.latestArrival = latestArrival;
+    }
+
+    /**
+     * Prunes labels only by the labels of the same or earlier rounds, rather
+     * than by the earliest arrival over all rounds, and arrivals by bus only
+     * by earlier arrivals by bus.
+     *
+     * Where a search is run for a series of departure times, a journey may
+     * need its remaining rounds to reach a stop even where a later run
+     * reached the stop earlier using more trips. Footpaths are not
+     * transitively closed, so a stop reached early on foot may still need to
+     * be reached by bus in order to walk on from it. Every label which is
+     * optimal for some departure time and number of rounds is therefore only
+     * found when pruning by round. Every round is then carried out, even once
+     * no stop is improved, as the labels of each round are reused by the next
+     * run. This must be set before the search is first run, and is only
+     * supported by searches keeping a single crowdedness level.
+     */
+    void setRoundPruning() {
+      bestBusArrival = new int[levels][rounds + 1][timetable.numberOfStops()];
+      for (int[][] levelArrival : bestBusArrival) {
+        for (int[] roundArrival : levelArrival) {
+          Arrays.fill(roundArrival, UNREACHABLE);
+        }
+      }
+    }
+
+    /**
+     * Sets the listener told of each label recorded at a stop reached by bus
+     * or on foot.
+     *
+     * @param labelListener the listener, or null for none
+     */
+    void setLabelListener(LabelListener labelListener) {
+      this.labelListener = labelListener;
+    }
+
+    /**
+     * Gets the times at which a bus can be caught from the starting stop, or
+     * from a stop within walking distance of it, within a window.
+     *
+     * For stops within walking distance, the time given is that at which
+     * walking must begin.
+     *
+     * @param windowStart the earliest time at which to depart
+     * @param windowEnd   the latest time at which to depart
+     * @return departure times within the window, latest first, always
+     *         including windowStart
+     */
+    SortedSet<Integer> departureTimes(int windowStart, int windowEnd) {
+      SortedSet<Integer> times = new TreeSet<>(Collections.reverseOrder());
+      times.add(windowStart);
+      for (int origin : origins) {
+        addDepartureTimes(times, origin, accessTime[origin], windowStart, windowEnd);
+        for (int f = timetable.firstFootpath(origin); f < timetable.endFootpaths(origin); f++) {
+          int walkingTime = accessTime[origin] + timetable.footpathDuration(f);
+          addDepartureTimes(times, timetable.footpathTarget(f), walkingTime, windowStart, windowEnd);
+        }
+      }
+      return times;
+    }
+
+    /**
+     * Adds the times at which trips depart a stop to a set of departure
+     * times.
+     *
+     * @param times       the set of departure times
+     * @param s           the stop from which trips depart
+     * @param walkingTime the time taken to walk to the stop
+     * @param windowStart the earliest time at which to depart
+     * @param windowEnd   the latest time at which to depart
+     */
+    private void addDepartureTimes(Set<Integer> times, int s, int walkingTime, int windowStart, int windowEnd) {
+      for (int e = timetable.firstStopPattern(s); e < timetable.endStopPatterns(s); e++) {
+        int pattern = timetable.stopPattern(e);
+        int position = timetable.stopPatternPosition(e);
+        for (int trip = timetable.firstTrip(pattern); trip < timetable.endTrip(pattern); trip++) {
+          int time = timetable.tripTime(trip, position) - walkingTime;
+          if (time >= windowStart && time <= windowEnd) {
+            times.add(time);
+          }
+        }
+      }
+    }
+
+    /**
+     * Gets the time taken to walk directly from the starting stop to the
+     * ending stop.
+     *
+     * For a journey between points, this includes walking via a stop near
+     * both points.
+     *
+     * @return walking time in minutes, or UNREACHABLE if there is no walk
+     */
+    int walkingTimeToTarget() {
+      int walkingTime = UNREACHABLE;
+      for (int origin : origins) {
+        if (accessWalk[origin] != null && egressWalk[origin] != null) {
+          walkingTime = Math.min(walkingTime, accessTime[origin] + egressTime[origin]);
+        }
+        for (int f = timetable.firstFootpath(origin); f < timetable.endFootpaths(origin); f++) {
+          int walkTarget = timetable.footpathTarget(f);
+          if (egressTime[walkTarget] != UNREACHABLE) {
+            walkingTime = Math.min(walkingTime,
+                accessTime[origin] + timetable.footpathDuration(f) + egressTime[walkTarget]);
+          }
+        }
+      }
+      return walkingTime;
+    }
+
+    /**
+     * Gets the earliest arrival time at the ending stop found so far.
+     *
+     * @return earliest arrival time, or UNREACHABLE
+     */
+    int targetArrival() {
+      return bestArrival(levels - 1, bestTargetArrival);
+    }
+
+    /**
+     * Gets the earliest arrival time at a stop found so far, by journeys of
+     * any crowdedness level.
+     *
+     * @param s the index of the stop within the timetable
+     * @return earliest arrival time, or UNREACHABLE
+     */
+    int earliestArrival(int s) {
+      return bestArrival(levels - 1, s);
+    }
+
+    /**
+     * Records an arrival time at a stop as the earliest found so far, and
+     * the resulting arrival time at the ending stop if the journey may end
+     * at the stop.
+     *
+     * @param level the crowdedness level of the arrival
+     * @param s     the stop
+     * @param time  the arrival time
+     */
+    private void recordArrival(int level, int s, int time) {
+      bestArrival[level][s] = Math.min(bestArrival[level][s], time);
+      if (egressTime[s] != UNREACHABLE) {
+        bestTargetArrival[level] = Math.min(bestTargetArrival[level], time + egressTime[s]);
+      }
+    }
+
+    /**
+     * Gets the earliest arrival time at a stop found so far, over all rounds,
+     * by journeys no more crowded than a level.
+     *
+     * @param level the crowdedness level
+     * @param s     the stop
+     * @return earliest arrival time, or UNREACHABLE
+     */
+    private int bestArrival(int level, int s) {
+      int best = bestArrival[0][s];
+      for (int l = 1; l <= level; l++) {
+        best = Math.min(best, bestArrival[l][s]);
+      }
+      return best;
+    }
+
+    /**
+     * Finds the level of the earliest label at a stop in a round, among
+     * labels no more crowded than a level.
+     *
+     * @param level the most crowded level to consider
+     * @param k     the round
+     * @param s     the stop
+     * @return level of the earliest label (the least crowded where several
+     *         arrive equally early), or -1 if the stop was not reached
+     */
+    private int earliestLevel(int level, int k, int s) {
+      int earliest = arrival[0][k][s] == UNREACHABLE ? -1 : 0;
+      for (int l = 1; l <= level; l++) {
+        if (arrival[l][k][s] != UNREACHABLE &&
+            (earliest < 0 || arrival[l][k][s] < arrival[earliest][k][s])) {
+          earliest = l;
+        }
+      }
+      return earliest;
+    }
+
+    /**
+     * Determines the crowdedness level at which a trip is boarded at a stop.
+     *
+     * @param trip the trip to board
+     * @param s    the stop at which to board
+     * @return crowdedness level of the trip, or -1 if the trip is too
+     *         crowded to board
+     */
+    private int tripLevel(int trip, int s) {
+      if (tripLevels == null) {
+        return 0;
+      }
+      return tripLevels.level(timetable.tripRouteTimetable(trip), timetable.stop(s));
+    }
+
+    /**
+     * Runs the search from a departure time.
+     *
+     * Where the search has been run before, departureTime must be earlier
+     * than that of the previous run.
+     *
+     * All of the stops at which the journey may begin are labelled at once,
+     * at the time at which they are reached by walking from the starting
+     * point, so that a single run finds the earliest arrival over all of
+     * them.
+     *
+     * @param departureTime the time from which to depart the starting stop
+     * @return true if the ending stop can be reached, else false
+     */
+    boolean run(int departureTime) {
+      if (origins.length == 0) {
+        return false;
+      }
+      this.departureTime = departureTime;
+      Arrays.fill(marked, false);
+      List<Integer> reached = new ArrayList<>();
+      for (int origin : origins) {
+        int originArrival = departureTime + accessTime[origin];
+        if (originArrival >= arrival[0][0][origin]) {
+          // Already reached as early by walking from another stop
+          continue;
+        }
+        // No trip has been taken at the origin, so it is at the lowest level
+        arrival[0][0][origin] = originArrival;
+        recordArrival(0, origin, originArrival);
+        labelType[0][0][origin] = ORIGIN;
+        marked[origin] = true;
+        reached.add(origin);
+      }
+      relaxFootpaths(0, reached);
+
+      for (int k = 1; k <= rounds; k++) {
+        inheritArrivals(k);
+        int[] patternStarts = collectPatterns();
+        List<Integer> improved = scanPatterns(k, patternStarts);
+        if (improved.isEmpty() && bestBusArrival == null) {
+          break;
+        }
+        relaxFootpaths(k, improved);
+      }
+
+      return targetArrival() != UNREACHABLE;
+    }
+
+    /**
+     * Carries arrival times forward from the previous round where they are
+     * earlier than those already held for this round.
+     *
+     * Any journey made with k - 1 trips may also be used in round k. Labels
+     * carried forward are recorded as NONE, so that reconstruction of the
+     * itinerary moves back to the previous round.
+     *
+     * @param k the current round
+     */
+    private void inheritArrivals(int k) {
+      for (int level = 0; level < levels; level++) {
+        for (int s = 0; s < arrival[level][k].length; s++) {
+          if (arrival[level][k - 1][s] < arrival[level][k][s]) {
+            arrival[level][k][s] = arrival[level][k - 1][s];
+            labelType[level][k][s] = NONE;
+          }
+          if (bestBusArrival != null) {
+            bestBusArrival[level][k][s] = Math.min(bestBusArrival[level][k][s], bestBusArrival[level][k - 1][s]);
+          }
+        }
+      }
+    }
+
+    /**
+     * Collects the patterns serving marked stops, and the earliest position
+     * on each pattern at which a marked stop appears. All stops are then
+     * unmarked.
+     *
+     * @return earliest marked position for each pattern, or -1 if the
+     *         pattern serves no marked stop
+     */
+    private int[] collectPatterns() {
+      int[] patternStarts = new int[timetable.numberOfPatterns()];
+      Arrays.fill(patternStarts, -1);
+      for (int s = 0; s < marked.length; s++) {
+        if (!marked[s]) {
+          continue;
+        }
+        marked[s] = false;
+        for (int e = timetable.firstStopPattern(s); e < timetable.endStopPatterns(s); e++) {
+          int pattern = timetable.stopPattern(e);
+          int position = timetable.stopPatternPosition(e);
+          if (patternStarts[pattern] < 0 || position < patternStarts[pattern]) {
+            patternStarts[pattern] = position;
+          }
+        }
+      }
+      return patternStarts;
+    }
+
+    /**
+     * Traverses each collected pattern once for each crowdedness level,
+     * boarding the earliest trip possible no more crowded than the level and
+     * recording improved arrival times.
+     *
+     * Labels are recorded at the level of the most crowded trip actually
+     * taken, which may be lower than the level of the traversal. When pruning
+     * by round, an arrival by bus is kept for walking on from even where the
+     * stop was reached earlier on foot.
+     *
+     * @param k             the current round
+     * @param patternStarts earliest marked position for each pattern
+     * @return stops whose arrival time by bus was improved in this round
+     */
+    private List<Integer> scanPatterns(int k, int[] patternStarts) {
+      List<Integer> improved = new ArrayList<>();
+      for (int pattern = 0; pattern < patternStarts.length; pattern++) {
+        if (patternStarts[pattern] < 0) {
+          continue;
+        }
+        for (int level = 0; level < levels; level++) {
+          int trip = -1;
+          int boardStop = -1;
+          int boardLevel = -1;
+          int labelLevel = -1;
+          for (int pos = patternStarts[pattern]; pos < timetable.patternLength(pattern); pos++) {
+            int s = timetable.patternStop(pattern, pos);
+            if (trip >= 0) {
+              int tripArrival = timetable.tripTime(trip, pos);
+              if (tripArrival < busArrivalBound(labelLevel, k, s) && tripArrival <= latestArrival) {
+                if (bestBusArrival != null) {
+                  bestBusArrival[labelLevel][k][s] = tripArrival;
+                }
+                busArrival[labelLevel][k][s] = tripArrival;
+                busTrip[labelLevel][k][s] = trip;
+                busBoardStop[labelLevel][k][s] = boardStop;
+                busBoardLevel[labelLevel][k][s] = boardLevel;
+                if (!byBus[s]) {
+                  byBus[s] = true;
+                  improved.add(s);
+                }
+                if (tripArrival < arrival[labelLevel][k][s]) {
+                  recordLabel(labelLevel, k, s, tripArrival, BUS);
+                }
+              }
+            }
+            // Determine whether an earlier trip can be caught at this stop
+            int previousLevel = earliestLevel(level, k - 1, s);
+            if (previousLevel < 0) {
+              continue;
+            }
+            int previousArrival = arrival[previousLevel][k - 1][s];
+            if (trip >= 0 && previousArrival > timetable.tripTime(trip, pos)) {
+              continue;
+            }
+            for (int earlierTrip = timetable.earliestTrip(pattern, pos, previousArrival);
+                 earlierTrip >= 0 && earlierTrip < timetable.endTrip(pattern) &&
+                 (trip < 0 || timetable.tripTime(earlierTrip, pos) < timetable.tripTime(trip, pos));
+                 earlierTrip++) {
+              // Pass over trips too crowded to board at this stop
+              int tripLevel = tripLevel(earlierTrip, s);
+              if (tripLevel >= 0 && tripLevel <= level) {
+                trip = earlierTrip;
+                boardStop = s;
+                boardLevel = previousLevel;
+                labelLevel = Math.max(previousLevel, tripLevel);
+                break;
+              }
+            }
+          }
+        }
+      }
+      return improved;
+    }
+
+    /**
+     * Gets the time before which an arrival by bus at a stop must be made to
+     * be kept.
+     *
+     * @param level the crowdedness level of the arrival
+     * @param k     the current round
+     * @param s     the stop
+     * @return the earliest arrival by bus in this or an earlier round when
+     *         pruning by round, else the earliest arrival at the stop or at
+     *         the ending stop
+     */
+    private int busArrivalBound(int level, int k, int s) {
+      if (bestBusArrival != null) {
+        return bestBusArrival[level][k][s];
+      }
+      return Math.min(bestArrival(level, s), bestArrival(level, bestTargetArrival));
+    }
+
+    /**
+     * Gets the time before which an arrival on foot at a stop must be made
+     * to be kept.
+     *
+     * @param level the crowdedness level of the arrival
+     * @param k     the current round
+     * @param s     the stop
+     * @return the earliest arrival in this or an earlier round when pruning
+     *         by round, else the earliest arrival at the stop or at the
+     *         ending stop
+     */
+    private int walkArrivalBound(int level, int k, int s) {
+      if (bestBusArrival != null) {
+        return arrival[level][k][s];
+      }
+      return Math.min(bestArrival(level, s), bestArrival(level, bestTargetArrival));
+    }
+
+    /**
+     * Records a label at a stop reached by bus or on foot, marking the stop
+     * and telling the label listener.
+     *
+     * @param level the crowdedness level of the label
+     * @param k     the round of the label
+     * @param s     the stop
+     * @param time  the arrival time
+     * @param type  BUS or WALK
+     */
+    private void recordLabel(int level, int k, int s, int time, byte type) {
+      arrival[level][k][s] = time;
+      recordArrival(level, s, time);
+      labelType[level][k][s] = type;
+      marked[s] = true;
+      if (labelListener != null) {
+        labelListener.labelled(level, k, s);
+      }
+    }
+
+    /**
+     * Relaxes footpaths from stops reached in a round.
+     *
+     * Only one walk is permitted after each bus trip, so footpaths are
+     * relaxed only from stops reached by bus (or from the origin in the
+     * first round). Walking does not change the crowdedness level.
+     *
+     * @param k       the current round
+     * @param reached stops reached in this round
+     */
+    private void relaxFootpaths(int k, List<Integer> reached) {
+      for (int s : reached) {
+        byBus[s] = false;
+        for (int level = 0; level < levels; level++) {
+          if (k == 0 ? labelType[level][k][s] != ORIGIN : bestBusArrival == null && labelType[level][k][s] != BUS) {
+            // The stop has since been reached earlier on foot
+            continue;
+          }
+          int startTime = k == 0 ? departureTime + accessTime[s] : busArrival[level][k][s];
+          for (int f = timetable.firstFootpath(s); f < timetable.endFootpaths(s); f++) {
+            int walkTarget = timetable.footpathTarget(f);
+            int walkArrival = startTime + timetable.footpathDuration(f);
+            if (walkArrival < walkArrivalBound(level, k, walkTarget) && walkArrival <= latestArrival) {
+              walkFrom[level][k][walkTarget] = s;
+              walkFootpath[level][k][walkTarget] = f;
+              recordLabel(level, k, walkTarget, walkArrival, WALK);
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Reconstructs the itinerary reaching the ending stop from the labels
+     * recorded during the search.
+     *
+     * The itinerary using the fewest rounds among those arriving earliest
+     * is reconstructed.
+     *
+     * @param date the date on which the itinerary is made
+     * @return legs of the itinerary
+     */
+    List<ItineraryLeg> reconstruct(LocalDate date) {
+      int best = targetArrival();
+      for (int k = 0; k <= rounds; k++) {
+        for (int level = 0; level < levels; level++) {
+          int t = earliestTarget(level, k);
+          if (t >= 0 && arrival[level][k][t] + egressTime[t] == best) {
+            return reconstruct(date, level, k, t);
+          }
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Finds the stop at which the journey may end from which the ending stop
+     * is reached earliest, by the labels of a crowdedness level and round.
+     *
+     * @param level the crowdedness level
+     * @param k     the round
+     * @return the stop, or -1 if no stop at which the journey may end was
+     *         reached
+     */
+    private int earliestTarget(int level, int k) {
+      int earliest = -1;
+      for (int t : targets) {
+        if (arrival[level][k][t] != UNREACHABLE && (earliest < 0 ||
+            arrival[level][k][t] + egressTime[t] < arrival[level][k][earliest] + egressTime[earliest])) {
+          earliest = t;
+        }
+      }
+      return earliest;
+    }
+
+    /**
+     * Reconstructs the itineraries at the ending stop which are Pareto-optimal
+     * over arrival time, crowdedness and number of transfers.
+     *
+     * @param date the date on which the itineraries are made
+     * @return legs of each itinerary, ordered by number of transfers and then
+     *         by crowdedness
+     */
+    List<List<ItineraryLeg>> reconstructParetoSet(LocalDate date) {
+      List<List<ItineraryLeg>> paretoSet = new ArrayList<>();
+      // Earliest arrival at each level using no more rounds than the current
+      int[] earliest = new int[levels];
+      Arrays.fill(earliest, UNREACHABLE);
+      for (int k = 0; k <= rounds; k++) {
+        for (int level = 0; level < levels; level++) {
+          int t = earliestTarget(level, k);
+          int targetArrival = t < 0 ? UNREACHABLE : arrival[level][k][t] + egressTime[t];
+          if (targetArrival < earliest[level] && targetArrival < bestArrival(level - 1, earliest)) {
+            paretoSet.add(reconstruct(date, level, k, t));
+          }
+          earliest[level] = Math.min(earliest[level], targetArrival);
+        }
+      }
+      return paretoSet;
+    }
+
+    /**
+     * Gets the earliest of a set of arrival times, up to a level.
+     *
+     * @param level    the highest level to consider, or -1 for none
+     * @param arrivals arrival times for each level
+     * @return earliest arrival time, or UNREACHABLE
+     */
+    private int bestArrival(int level, int[] arrivals) {
+      int best = UNREACHABLE;
+      for (int l = 0; l <= level; l++) {
+        best = Math.min(best, arrivals[l]);
+      }
+      return best;
+    }
+
+    /**
+     * Reconstructs the itinerary reaching the ending stop from a label.
+     *
+     * For a journey between points, the itinerary begins with a walk from the
+     * starting point and ends with a walk to the ending point.
+     *
+     * @param date  the date on which the itinerary is made
+     * @param level the crowdedness level of the label at the ending stop
+     * @param k     the round of the label at the ending stop
+     * @param t     the stop at which the journey ends
+     * @return legs of the itinerary
+     */
+    private List<ItineraryLeg> reconstruct(final LocalDate date, int level, int k, int t) {
+      final LinkedList<ItineraryLeg> legs = new LinkedList<>();
+      if (egressWalk[t] != null) {
+        legs.add(new ItineraryLeg(date, egressWalk[t], arrival[level][k][t]));
+      }
+      int s = trace(level, k, t, new LegVisitor() {
+        @Override
+        public void busLeg(int trip, int boardStop, int alightStop) {
+          legs.addFirst(new ItineraryLeg(
+                date,
+                timetable.tripRouteTimetable(trip),
+                timetable.stop(boardStop),
+                timetable.stop(alightStop)
+                ));
+        }
+
+        @Override
+        public void walkLeg(int footpath, int startTime) {
+          legs.addFirst(new ItineraryLeg(date, timetable.footpathWalk(footpath), startTime));
+        }
+      });
+      if (accessWalk[s] != null) {
+        legs.addFirst(new ItineraryLeg(date, accessWalk[s], departureTime));
+      }
+      return legs;
+    }
+
+    /**
+     * Traces the journey reaching a stop back from a label, giving each leg
+     * to a visitor, last leg first.
+     *
+     * @param level   the crowdedness level of the label
+     * @param k       the round of the label
+     * @param s       the stop labelled
+     * @param visitor the visitor to which to give each leg
+     * @return the stop at which the journey begins
+     */
+    int trace(int level, int k, int s, LegVisitor visitor) {
+      boolean afterWalk = false;
+      while (true) {
+        byte type;
+        if (afterWalk) {
+          // A walk always follows a bus trip within the same round
+          type = BUS;
+          afterWalk = false;
+        } else {
+          while (k > 0 && labelType[level][k][s] == NONE) {
+            k--;
+          }
+          type = labelType[level][k][s];
+        }
+        if (type == BUS) {
+          int boardStop = busBoardStop[level][k][s];
+          visitor.busLeg(busTrip[level][k][s], boardStop, s);
+          level = busBoardLevel[level][k][s];
+          s = boardStop;
+          k--;
+        } else if (type == WALK) {
+          int from = walkFrom[level][k][s];
+          int startTime = k == 0 ? departureTime + accessTime[from] : busArrival[level][k][from];
+          visitor.walkLeg(walkFootpath[level][k][s], startTime);
+          s = from;
+          if (k == 0) {
+            // Walks in the first round are only made from an origin, whose
+            // label may since have been replaced by a walk from another
+            return s;
+          }
+          afterWalk = true;
+        } else {
+          return s;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package main.routeplanner;
+
+import java.time.LocalDateTime;
+
+import main.model.Stop;
+
+/**
+ * The RoutingEngine enum lists the route planning engines available within
+ * the system.
+ *
+ * Each engine creates JourneyPlanners which find itineraries in a different
+ * manner, but which return the same types of results. The engine used by
+ * default may be chosen for each deployment by setting the system property
+ * {@value #ENGINE_PROPERTY} to the name of an engine, e.g.
+ * <code>-Droutingengine=CONNECTION_SCAN</code>, or by calling
+ * {@link #setDefault(RoutingEngine)}. Where no engine is chosen, the
+ * FLOYD_A_STAR engine is used.
+ */
+public enum RoutingEngine {
+
+  /**
+   * The Floyd-A* engine, using the ItineraryFinder.
+   */
+  FLOYD_A_STAR {
+    @Override
+    public JourneyPlanner createPlanner(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
+      return new ItineraryFinder(startingStop, endingStop, searchTime);
+    }
+  },
+
+  /**
+   * The round-based RAPTOR engine, using the RaptorItineraryFinder.
+   */
+  RAPTOR {
+    @Override
+    public JourneyPlanner createPlanner(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
+      return new RaptorItineraryFinder(startingStop, endingStop, searchTime);
+    }
+  },
+
+  /**
+   * The Connection Scan engine, using the ConnectionScanItineraryFinder.
+   */
+  CONNECTION_SCAN {
+    @Override
+    public JourneyPlanner createPlanner(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
+      return new ConnectionScanItineraryFinder(startingStop, endingStop, searchTime);
+    }
+  },
+
+  /**
+   * The transfer patterns engine, using the TransferPatternItineraryFinder.
+   */
+  TRANSFER_PATTERNS {
+    @Override
+    public JourneyPlanner createPlanner(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
+      return new TransferPatternItineraryFinder(startingStop, endingStop, searchTime);
+    }
+  };
+
+  /**
+   * Name of the system property used to choose the default engine.
+   */
+  public static final String ENGINE_PROPERTY = "routingengine";
+
+  private static final EnumProperty<RoutingEngine> defaultEngine =
+      new EnumProperty<>(RoutingEngine.class, ENGINE_PROPERTY, FLOYD_A_STAR, "routing engine");
+
+  /**
+   * Creates a JourneyPlanner using this engine.
+   *
+   * @param startingStop the stop from which the desired journey is to begin
+   * @param endingStop   the stop at which the desired journey is to end
+   * @param searchTime   the date and time of departure for the desired journey
+   * @return journey planner for the desired journey
+   */
+  public abstract JourneyPlanner createPlanner(Stop startingStop, Stop endingStop, LocalDateTime searchTime);
+
+  /**
+   * Gets the default engine.
+   *
+   * Unless set using setDefault, the default engine is read from the system
+   * property {@value #ENGINE_PROPERTY}.
+   *
+   * @return the default engine
+   * @throws IllegalArgumentException if the system property does not name an
+   *                                  engine
+   */
+  public static RoutingEngine getDefault() throws IllegalArgumentException {
+    return defaultEngine.get();
+  }
+
+  /**
+   * Sets the default engine.
+   *
+   * Passing null causes the default engine to be read again from the system
+   * property {@value #ENGINE_PROPERTY}.
+   *
+   * @param engine the engine to use by default
+   */
+  public static void setDefault(RoutingEngine engine) {
+    defaultEngine.set(engine);
+  }
+
+  /**
+   * Finds the engine with a name.
+   *
+   * Names are not case sensitive.
+   *
+   * @param name the name of the engine
+   * @return the engine with name
+   * @throws IllegalArgumentException if no engine has the name
+   */
+  public static RoutingEngine fromName(String name) throws IllegalArgumentException {
+    return defaultEngine.fromName(name);
+  }
+}
@@ -0,0 +1,251 @@
+package main.routeplanner;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import main.capacitytracker.CapacityCalculator;
+import main.model.*;
+
+/**
+ * The TimetableJourneyPlanner class holds the functionality common to the
+ * route planning engines which work directly on the trips within a Schedule.
+ *
+ * Subclasses need only find the earliest arriving itinerary departing the
+ * starting stop at or after a given time. Alternative itineraries are found
+ * by repeating this search from successively later departure times.
+ *
+ * The crowdedness filter is applied while searching rather than to the
+ * itineraries found: subclasses must not board any trip which is more
+ * crowded than the filter permits, as determined by isAcceptable. A search
+ * for n GREEN itineraries therefore returns n itineraries whenever they
+ * exist.
+ */
+abstract class TimetableJourneyPlanner implements JourneyPlanner {
+
+  private final Stop startingStop;
+  private final Stop endingStop;
+  private final LocalDate date;
+  private final int time;
+  private final Schedule schedule;
+
+  private CapacityCalculator.CrowdednessIndicator filter;
+  private TripCrowdedness tripCrowdedness;
+
+  /**
+   * Creates an instance of TimetableJourneyPlanner.
+   *
+   * @param startingStop the stop from which the desired journey is to begin
+   * @param endingStop   the stop at which the desired journey is to end
+   * @param searchTime   the date and time of departure for the desired journey
+   */
+  TimetableJourneyPlanner(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
+    this.startingStop = startingStop;
+    this.endingStop = endingStop;
+    this.date = searchTime.toLocalDate();
+    this.time = searchTime.getHour() * 60 + searchTime.getMinute();
+    ModelLock.readLock().lock();
+    try {
+      this.schedule = Schedule.findSchedule(date);
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+    this.tripCrowdedness = new TripCrowdedness(date);
+    // Set filter to RED, i.e. do not filter anything
+    setFilter(CapacityCalculator.CrowdednessIndicator.RED);
+  }
+
+  /**
+   * Finds the legs of the earliest arriving itinerary which departs the
+   * starting stop at or after a given time.
+   *
+   * Implementations hold the read lock of the ModelLock only while reading
+   * the model, e.g. while getting the network of the schedule, and search
+   * the network without it.
+   *
+   * @param departureTime the earliest time at which to depart (in minutes
+   *                      since midnight)
+   * @return legs of the earliest arriving itinerary, or null if the ending
+   *         stop cannot be reached
+   */
+  abstract List<ItineraryLeg> findEarliestArrival(int departureTime);
+
+  /**
+   * Sets a filter for acceptable itineraries.
+   *
+   * GREEN will only return green itineraries;
+   * ORANGE will only return green and orange; and
+   * RED will return all itineraries.
+   *
+   * @param filter the best acceptable crowdedness level to return
+   */
+  @Override
+  public void setFilter(CapacityCalculator.CrowdednessIndicator filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Gets current filter set on this.
+   *
+   * @return current best acceptable crowdedness level filter
+   */
+  @Override
+  public CapacityCalculator.CrowdednessIndicator getFilter() {
+    return filter;
+  }
+
+  /**
+   * Get startingStop object.
+   *
+   * @return the stop from which journey is to begin
+   */
+  @Override
+  public Stop getStartingStop() {
+    return startingStop;
+  }
+
+  /**
+   * Get endingStop object.
+   *
+   * @return the stop at which journey is to end
+   */
+  @Override
+  public Stop getEndingStop() {
+    return endingStop;
+  }
+
+  /**
+   * Get date value.
+   *
+   * @return date for which to determine suitable journeys
+   */
+  @Override
+  public LocalDate getDate() {
+    return date;
+  }
+
+  /**
+   * Get time value.
+   *
+   * @return time for which to determine suitable journeys (in minutes since
+   *  midnight)
+   */
+  @Override
+  public int getTime() {
+    return time;
+  }
+
+  /**
+   * Gets the schedule in operation on the date of this journey.
+   *
+   * @return schedule for date, or null if no schedule is in operation
+   */
+  Schedule getSchedule() {
+    return schedule;
+  }
+
+  /**
+   * Gets the estimates of trip crowdedness used while searching.
+   *
+   * @return trip crowdedness estimates for the date of this journey
+   */
+  TripCrowdedness getTripCrowdedness() {
+    return tripCrowdedness;
+  }
+
+  /**
+   * Sets the estimates of trip crowdedness used while searching.
+   *
+   * @param tripCrowdedness trip crowdedness estimates for the date of this
+   *                        journey
+   */
+  void setTripCrowdedness(TripCrowdedness tripCrowdedness) {
+    this.tripCrowdedness = tripCrowdedness;
+  }
+
+  /**
+   * Determines whether a trip may be boarded at a stop without breaching the
+   * crowdedness filter.
+   *
+   * No estimate is made where the filter is RED, as every trip is acceptable.
+   *
+   * @param rt   the RouteTimetable of the trip
+   * @param stop the stop at which the trip is boarded
+   * @return true if the trip may be boarded, else false
+   */
+  boolean isAcceptable(RouteTimetable rt, Stop stop) {
+    if (filter == CapacityCalculator.CrowdednessIndicator.RED) {
+      return true;
+    }
+    return !tripCrowdedness.crowdedness(rt, stop).moreCrowdedThan(filter);
+  }
+
+  /**
+   * Find the best itinerary for this journey.
+   *
+   * @return the earliest arriving itinerary for this journey, or null if the
+   *         ending stop cannot be reached
+   */
+  @Override
+  public Itinerary findBestItinerary() {
+    List<Itinerary> itineraries = findBestItineraries(1);
+    return itineraries.isEmpty() ? null : itineraries.get(0);
+  }
+
+  /**
+   * Finds the best itineraries for this journey.
+   *
+   * The first itinerary is the earliest arriving itinerary departing at or
+   * after the search time. Each subsequent itinerary is the earliest arriving
+   * itinerary departing after the previous one. Trips more crowded than the
+   * filter are never boarded, so every itinerary found satisfies the filter.
+   *
+   * @param n the number of itineraries to get
+   * @return up to n best itineraries for this journey which satisfy the
+   *         crowdedness filter
+   */
+  @Override
+  public List<Itinerary> findBestItineraries(int n) {
+    List<Itinerary> bestItineraries = new ArrayList<>();
+    if (schedule == null) {
+      return bestItineraries;
+    }
+    int departureTime = getTime();
+    for (int i = 0; i < n; i++) {
+      List<ItineraryLeg> legs = findEarliestArrival(departureTime);
+      if (legs == null) {
+        break;
+      }
+      bestItineraries.add(new Itinerary(getDate(), legs));
+      int nextDepartureTime = latestDepartureTime(legs) + 1;
+      if (nextDepartureTime <= departureTime) {
+        break;
+      }
+      departureTime = nextDepartureTime;
+    }
+    return bestItineraries;
+  }
+
+  /**
+   * Determines the latest time at which a traveller can leave the starting
+   * stop to make an itinerary.
+   *
+   * This is the start time of the first bus leg, less the time spent walking
+   * to it. Itineraries consisting only of walks can be started at any time,
+   * so for these the lowest possible time is returned.
+   *
+   * @param legs the legs of the itinerary
+   * @return latest departure time (in minutes since midnight)
+   */
+  static int latestDepartureTime(List<ItineraryLeg> legs) {
+    int walkingTime = 0;
+    for (ItineraryLeg leg : legs) {
+      if (leg.isBus()) {
+        return leg.getStartTime() - walkingTime;
+      }
+      walkingTime += leg.getEndTime() - leg.getStartTime();
+    }
+    return Integer.MIN_VALUE;
+  }
+}
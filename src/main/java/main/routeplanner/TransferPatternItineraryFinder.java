@@ -0,0 +1,87 @@
+package main.routeplanner;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import main.capacitytracker.CapacityCalculator;
+import main.model.*;
+
+/**
+ * This class is used to find itineraries between two stops using
+ * precomputed transfer patterns.
+ *
+ * It is an alternative to the RaptorItineraryFinder, returning itineraries
+ * which arrive at least as early. (The patterns also hold journeys which
+ * walk on from a stop first reached on foot, which the RAPTOR algorithm may
+ * prune, so occasionally arrive earlier.) Rather than searching the network,
+ * each query evaluates only the few transfer patterns held for its pair of
+ * stops, looking up the earliest direct connection along each leg, so takes
+ * a tiny fraction of the time. The patterns of a Schedule are computed once,
+ * in advance, and saved for later runs of the system.
+ *
+ * Patterns hold no estimates of crowdedness, so where the filter is not RED,
+ * or more transfers are permitted than the patterns were computed for, the
+ * search falls back to the RAPTOR algorithm. Profile and Pareto searches
+ * always use the RAPTOR algorithm.
+ *
+ * @see TransferPatterns
+ */
+public class TransferPatternItineraryFinder extends RaptorItineraryFinder {
+
+  /**
+   * Creates an instance of TransferPatternItineraryFinder.
+   *
+   * @param startingStop the stop from which the desired journey is to begin
+   * @param endingStop   the stop at which the desired journey is to end
+   * @param searchTime   the date and time of departure for the desired journey
+   */
+  public TransferPatternItineraryFinder(Stop startingStop, Stop endingStop, LocalDateTime searchTime) {
+    super(startingStop, endingStop, searchTime);
+  }
+
+  /**
+   * Computes and saves the transfer patterns of a Schedule, if they have not
+   * already been saved.
+   *
+   * This is the offline step of the engine, and may be run as part of a
+   * deployment so that no query waits for the patterns to be computed.
+   *
+   * @param schedule the schedule for which to compute patterns
+   */
+  public static void precompute(Schedule schedule) {
+    ModelLock.readLock().lock();
+    try {
+      TransferPatterns.forSchedule(schedule);
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the legs of the earliest arriving itinerary which departs the
+   * starting stop at or after a given time, by evaluating the transfer
+   * patterns between the starting and ending stops.
+   *
+   * @param departureTime the earliest time at which to depart (in minutes
+   *                      since midnight)
+   * @return legs of the earliest arriving itinerary, or null if the ending
+   *         stop cannot be reached
+   */
+  @Override
+  List<ItineraryLeg> findEarliestArrival(int departureTime) {
+    if (getFilter() != CapacityCalculator.CrowdednessIndicator.RED) {
+      return super.findEarliestArrival(departureTime);
+    }
+    TransferPatterns patterns;
+    ModelLock.readLock().lock();
+    try {
+      patterns = TransferPatterns.forSchedule(getSchedule());
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+    if (getMaxTransfers() > patterns.getMaxTransfers()) {
+      return super.findEarliestArrival(departureTime);
+    }
+    return patterns.findEarliestArrival(getStartingStop(), getEndingStop(), getDate(), departureTime, getMaxTransfers());
+  }
+}
@@ -0,0 +1,951 @@
+package main.routeplanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+
+import main.model.*;
+
+/**
+ * The TransferPatterns class holds the transfer patterns of a Schedule, from
+ * which earliest arrival queries may be answered without searching the
+ * network.
+ *
+ * A transfer pattern is the sequence of stops at which an optimal journey
+ * between two stops boards, alights or walks, with the type of each leg
+ * between them. Although very many journeys are made over a day, they
+ * follow only a handful of distinct patterns for each pair of stops. Once
+ * the patterns are known, a query need only evaluate each pattern for the
+ * pair from the departure time, looking up the earliest direct connection
+ * along each leg, and choose the earliest arrival. Direct connections are
+ * indexed by the stops at either end, so each lookup is a binary search
+ * followed by a binary search of the trips of each pattern found. The
+ * patterns of a pair are held in lexicographic order, so that legs shared
+ * between patterns are evaluated only once, and evaluation of a pattern
+ * stops as soon as it cannot arrive earliest.
+ *
+ * Functionality is based on the method described within the paper Bast, H.,
+ * Carlsson, E., Eigenwillig, A., Geisberger, R., Harrelson, C., Raychev, V.,
+ * Viger, F. (2010). Fast Routing in Very Large Public Transportation
+ * Networks using Transfer Patterns. Proceedings of the 18th Annual European
+ * Symposium on Algorithms (ESA'10).
+ *
+ * Patterns are precomputed by a profile search from every stop over the
+ * whole day, based on the rRAPTOR variant of the RAPTOR algorithm, recording
+ * the pattern of every journey which is optimal for some departure time and
+ * number of transfers. Origins are independent of one another, so are
+ * searched in parallel. As RAPTOR allows no walk directly after another,
+ * neither do the patterns.
+ *
+ * Precomputation takes far longer than a query, so the patterns are saved
+ * to a file within the directory named by the system property
+ * {@value #DIRECTORY_PROPERTY} (by default, the temporary directory), next to
+ * the costs table. Saved patterns are versioned and record a hash of the
+ * timetable from which they were computed, so are only loaded while the
+ * timetable is unchanged.
+ *
+ * The file format consists of the magic number, format version, timetable
+ * hash, maximum number of transfers, number of stops, number of patterns and
+ * number of legs, followed by the pattern offsets of each pair of stops, the
+ * leg offsets of each pattern and then the legs themselves, all in
+ * big-endian order.
+ *
+ * @see TransferPatternItineraryFinder
+ */
+class TransferPatterns {
+
+  /**
+   * Magic number identifying a transfer patterns file
+   */
+  static final int MAGIC = 0x54504154;
+
+  /**
+   * Version of the file format
+   */
+  static final int VERSION = 1;
+
+  /**
+   * Name of the system property used to choose the directory in which
+   * transfer patterns are saved
+   */
+  public static final String DIRECTORY_PROPERTY = "transferpatternsdirectory";
+
+  // Size of the header: magic number, version, timetable hash, maximum
+  // number of transfers, number of stops, patterns and legs
+  private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4 + 4;
+
+  // Flag set on legs made by walking
+  private static final int WALK_LEG = 1;
+
+  private static final int UNREACHABLE = RaptorItineraryFinder.UNREACHABLE;
+
+  // Patterns of each schedule, computed or loaded at most once for each
+  // timetable. Access is synchronized on the cache itself.
+  private static final Map<Schedule, PatternsTask> cache = new WeakHashMap<>();
+
+  private final TransitNetwork timetable;
+  private final long timetableHash;
+  private final int maxTransfers;
+  private final int numberOfStops;
+
+  // Patterns from stop i to stop j are pairPatternOffsets[i * n + j] ..
+  // pairPatternOffsets[i * n + j + 1] - 1. Legs of pattern p are held in
+  // patternLegs from patternLegOffsets[p] to patternLegOffsets[p + 1] - 1,
+  // each as the index of the stop at which the leg ends shifted left by one,
+  // with WALK_LEG set if the leg is walked.
+  private final int[] pairPatternOffsets;
+  private final int[] patternLegOffsets;
+  private final int[] patternLegs;
+
+  // Direct connections from stop i are held from directConnectionOffsets[i]
+  // to directConnectionOffsets[i + 1] - 1, ordered by the stop to which they
+  // travel, each as a pattern with the positions at which to board and
+  // alight
+  private final int[] directConnectionOffsets;
+  private final int[] directConnectionTargets;
+  private final int[] directConnectionPatterns;
+  private final int[] directConnectionBoardPositions;
+  private final int[] directConnectionAlightPositions;
+
+  /**
+   * Creates an instance of TransferPatterns.
+   *
+   * @param timetable          the timetable from which patterns were computed
+   * @param timetableHash      hash of timetable
+   * @param maxTransfers       the maximum number of transfers within a pattern
+   * @param pairPatternOffsets first pattern of each pair of stops
+   * @param patternLegOffsets  first leg of each pattern
+   * @param patternLegs        legs of all patterns
+   * @throws IllegalArgumentException if the offsets do not match the number
+   *                                  of stops, patterns and legs
+   */
+  TransferPatterns(TransitNetwork timetable, long timetableHash, int maxTransfers,
+      int[] pairPatternOffsets, int[] patternLegOffsets, int[] patternLegs) throws IllegalArgumentException {
+    int n = timetable.numberOfStops();
+    if (pairPatternOffsets.length != n * n + 1 ||
+        pairPatternOffsets[n * n] != patternLegOffsets.length - 1 ||
+        patternLegOffsets[patternLegOffsets.length - 1] != patternLegs.length) {
+      throw new IllegalArgumentException("transfer patterns do not match timetable");
+    }
+    this.timetable = timetable;
+    this.timetableHash = timetableHash;
+    this.maxTransfers = maxTransfers;
+    this.numberOfStops = n;
+    this.pairPatternOffsets = pairPatternOffsets;
+    this.patternLegOffsets = patternLegOffsets;
+    this.patternLegs = patternLegs;
+
+    // Index the direct connections from each stop, taking only the first
+    // position at which each later stop is served by each boarding
+    List<int[]> connections = new ArrayList<>();
+    directConnectionOffsets = new int[n + 1];
+    int[] served = new int[n];
+    Arrays.fill(served, -1);
+    int boarding = 0;
+    for (int s = 0; s < n; s++) {
+      directConnectionOffsets[s] = connections.size();
+      int first = connections.size();
+      for (int e = timetable.firstStopPattern(s); e < timetable.endStopPatterns(s); e++, boarding++) {
+        int pattern = timetable.stopPattern(e);
+        int boardPosition = timetable.stopPatternPosition(e);
+        for (int pos = boardPosition + 1; pos < timetable.patternLength(pattern); pos++) {
+          int target = timetable.patternStop(pattern, pos);
+          if (served[target] != boarding) {
+            served[target] = boarding;
+            connections.add(new int[] {target, pattern, boardPosition, pos});
+          }
+        }
+      }
+      Collections.sort(connections.subList(first, connections.size()), new Comparator<int[]>() {
+        @Override
+        public int compare(int[] c1, int[] c2) {
+          return Integer.compare(c1[0], c2[0]);
+        }
+      });
+    }
+    directConnectionOffsets[n] = connections.size();
+    directConnectionTargets = new int[connections.size()];
+    directConnectionPatterns = new int[connections.size()];
+    directConnectionBoardPositions = new int[connections.size()];
+    directConnectionAlightPositions = new int[connections.size()];
+    for (int c = 0; c < connections.size(); c++) {
+      directConnectionTargets[c] = connections.get(c)[0];
+      directConnectionPatterns[c] = connections.get(c)[1];
+      directConnectionBoardPositions[c] = connections.get(c)[2];
+      directConnectionAlightPositions[c] = connections.get(c)[3];
+    }
+  }
+
+  /**
+   * Gets the TransferPatterns for a Schedule.
+   *
+   * Cached patterns are returned if they were computed from the current
+   * timetable for the Schedule. Otherwise, patterns saved for the timetable
+   * are loaded, or failing that are computed and saved for later runs.
+   *
+   * Computing the patterns may take tens of seconds. It is carried out by
+   * the first caller for the timetable, while other callers for the same
+   * timetable wait for its result, and callers for other schedules are not
+   * held back. Callers hold the read lock of the ModelLock throughout, so
+   * the patterns are computed from the model as it was when the lock was
+   * taken, even if it is replaced meanwhile. Patterns may be computed ahead
+   * of any query by
+   * {@link TransferPatternItineraryFinder#precompute(Schedule)}.
+   *
+   * @param schedule the schedule for which to get patterns
+   * @return transfer patterns of schedule
+   */
+  static TransferPatterns forSchedule(Schedule schedule) {
+    TransitNetwork timetable = TransitNetwork.forSchedule(schedule);
+    PatternsTask task;
+    boolean created = false;
+    synchronized (cache) {
+      task = cache.get(schedule);
+      if (task == null || task.timetable != timetable) {
+        task = new PatternsTask(timetable);
+        cache.put(schedule, task);
+        created = true;
+      }
+    }
+    if (created) {
+      task.run();
+    }
+    try {
+      return task.getUninterruptibly();
+    } catch (RuntimeException | Error e) {
+      synchronized (cache) {
+        // Allow a later call to try again
+        if (cache.get(schedule) == task) {
+          cache.remove(schedule);
+        }
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Loads the patterns saved for a timetable, or failing that computes them
+   * and saves them for later runs.
+   *
+   * @param timetable the timetable for which to get patterns
+   * @return transfer patterns of timetable
+   */
+  private static TransferPatterns loadOrCompute(TransitNetwork timetable) {
+    TransferPatterns patterns;
+    long timetableHash = timetableHash(timetable);
+    File file = patternsFile(timetableHash);
+    try {
+      patterns = load(file, timetable, timetableHash);
+    } catch (IOException e) {
+      // Saved patterns are only an optimisation, so compute them instead
+      patterns = null;
+    }
+    if (patterns == null) {
+      patterns = compute(timetable, RaptorItineraryFinder.DEFAULT_MAX_TRANSFERS);
+      try {
+        patterns.save(file);
+      } catch (IOException e) {
+        // Patterns will be computed again by the next run
+      }
+    }
+    return patterns;
+  }
+
+  /**
+   * Get the file in which the transfer patterns of a timetable are saved.
+   *
+   * @param timetableHash hash of the timetable
+   * @return transfer patterns file
+   */
+  static File patternsFile(long timetableHash) {
+    String directory = System.getProperty(DIRECTORY_PROPERTY, System.getProperty("java.io.tmpdir"));
+    return new File(directory, "transferpatterns-" + Long.toHexString(timetableHash) + ".bin");
+  }
+
+  /**
+   * Gets the maximum number of transfers within a pattern.
+   *
+   * @return maximum number of transfers for which patterns were computed
+   */
+  int getMaxTransfers() {
+    return maxTransfers;
+  }
+
+  /**
+   * Gets the hash of the timetable from which the patterns were computed.
+   *
+   * @return timetable hash
+   */
+  long getTimetableHash() {
+    return timetableHash;
+  }
+
+  /**
+   * Gets the number of patterns held between two stops.
+   *
+   * @param from the index of the stop from which to travel
+   * @param to   the index of the stop to which to travel
+   * @return number of patterns
+   */
+  int numberOfPatterns(int from, int to) {
+    int pair = from * numberOfStops + to;
+    return pairPatternOffsets[pair + 1] - pairPatternOffsets[pair];
+  }
+
+  /**
+   * Gets the total number of patterns held.
+   *
+   * @return number of patterns
+   */
+  int numberOfPatterns() {
+    return patternLegOffsets.length - 1;
+  }
+
+  /**
+   * Finds the legs of the earliest arriving journey between two stops.
+   *
+   * Each pattern between the stops using no more than maxTransfers transfers
+   * is evaluated from the departure time. Where several patterns arrive
+   * equally early, that with the fewest bus legs is chosen.
+   *
+   * @param startingStop  the stop from which to travel
+   * @param endingStop    the stop to which to travel
+   * @param date          the date of travel
+   * @param departureTime the earliest time at which to depart (in minutes
+   *                      since midnight)
+   * @param maxTransfers  the maximum number of transfers between buses
+   * @return legs of the earliest arriving journey, or null if the ending
+   *         stop cannot be reached
+   * @throws IllegalArgumentException if maxTransfers exceeds that for which
+   *                                  the patterns were computed
+   */
+  List<ItineraryLeg> findEarliestArrival(Stop startingStop, Stop endingStop, LocalDate date,
+      int departureTime, int maxTransfers) throws IllegalArgumentException {
+    if (maxTransfers > this.maxTransfers) {
+      String msg = "transfer patterns only hold " + this.maxTransfers + " transfers";
+      throw new IllegalArgumentException(msg);
+    }
+    int origin = timetable.stopIndex(startingStop);
+    int target = timetable.stopIndex(endingStop);
+    if (origin < 0 || target < 0) {
+      return null;
+    }
+    if (origin == target) {
+      return new LinkedList<>();
+    }
+    int pair = origin * numberOfStops + target;
+    int bestPattern = -1;
+    int bestArrival = UNREACHABLE;
+    int bestBusLegs = Integer.MAX_VALUE;
+    // Patterns are held in lexicographic order, so the arrival times of the
+    // legs each pattern shares with the previous one are reused
+    int[] times = new int[2 * (this.maxTransfers + 1) + 1];
+    int previous = -1;
+    int evaluated = 0;
+    for (int p = pairPatternOffsets[pair]; p < pairPatternOffsets[pair + 1]; p++) {
+      int busLegs = busLegs(p);
+      if (busLegs > maxTransfers + 1) {
+        continue;
+      }
+      int shared = previous < 0 ? 0 : Math.min(evaluated, sharedLegs(previous, p));
+      evaluated = evaluate(origin, p, departureTime, shared, bestArrival, times, null);
+      previous = p;
+      if (evaluated < legs(p)) {
+        continue;
+      }
+      int arrival = times[evaluated - 1];
+      if (arrival < bestArrival || (arrival == bestArrival && busLegs < bestBusLegs)) {
+        bestPattern = p;
+        bestArrival = arrival;
+        bestBusLegs = busLegs;
+      }
+    }
+    if (bestPattern < 0) {
+      return null;
+    }
+
+    // Evaluate the best pattern again, recording the connection taken on
+    // each leg
+    int[] connections = new int[legs(bestPattern)];
+    evaluate(origin, bestPattern, departureTime, 0, bestArrival, times, connections);
+    LinkedList<ItineraryLeg> legs = new LinkedList<>();
+    int from = origin;
+    for (int i = 0; i < connections.length; i++) {
+      int leg = patternLegs[patternLegOffsets[bestPattern] + i];
+      int to = leg >>> 1;
+      if ((leg & WALK_LEG) != 0) {
+        int startTime = i == 0 ? departureTime : times[i - 1];
+        legs.add(new ItineraryLeg(date, timetable.footpathWalk(connections[i]), startTime));
+      } else {
+        legs.add(new ItineraryLeg(date, timetable.tripRouteTimetable(connections[i]), timetable.stop(from), timetable.stop(to)));
+      }
+      from = to;
+    }
+    return legs;
+  }
+
+  /**
+   * Counts the legs of a pattern.
+   *
+   * @param p the pattern
+   * @return number of legs
+   */
+  private int legs(int p) {
+    return patternLegOffsets[p + 1] - patternLegOffsets[p];
+  }
+
+  /**
+   * Counts the bus legs of a pattern.
+   *
+   * @param p the pattern
+   * @return number of legs not made by walking
+   */
+  private int busLegs(int p) {
+    int busLegs = 0;
+    for (int i = patternLegOffsets[p]; i < patternLegOffsets[p + 1]; i++) {
+      if ((patternLegs[i] & WALK_LEG) == 0) {
+        busLegs++;
+      }
+    }
+    return busLegs;
+  }
+
+  /**
+   * Counts the legs with which two patterns begin in common.
+   *
+   * @param p1 the first pattern
+   * @param p2 the second pattern
+   * @return number of legs shared
+   */
+  private int sharedLegs(int p1, int p2) {
+    int shared = 0;
+    int length = Math.min(legs(p1), legs(p2));
+    while (shared < length &&
+        patternLegs[patternLegOffsets[p1] + shared] == patternLegs[patternLegOffsets[p2] + shared]) {
+      shared++;
+    }
+    return shared;
+  }
+
+  /**
+   * Evaluates a pattern from a departure time, taking the earliest direct
+   * connection along each leg.
+   *
+   * Evaluation may begin part way along the pattern, where the arrival
+   * times of the earlier legs are already known.
+   *
+   * @param origin        the index of the stop at which the pattern begins
+   * @param p             the pattern
+   * @param departureTime the time from which to depart the origin
+   * @param first         the first leg to evaluate
+   * @param bound         the latest acceptable arrival time, after which
+   *                      evaluation is abandoned
+   * @param times         holds the arrival time after each leg before first,
+   *                      and receives the arrival time after each leg
+   *                      evaluated
+   * @param connections   if not null, receives the trip taken on each bus
+   *                      leg and the footpath taken on each walked leg
+   * @return number of legs for which arrival times are held in times; fewer
+   *         than the legs of the pattern if a leg has no connection or the
+   *         bound is passed before the last leg
+   */
+  private int evaluate(int origin, int p, int departureTime, int first, int bound, int[] times, int[] connections) {
+    int offset = patternLegOffsets[p];
+    int from = first == 0 ? origin : patternLegs[offset + first - 1] >>> 1;
+    int time = first == 0 ? departureTime : times[first - 1];
+    for (int i = first; i < legs(p); i++) {
+      int to = patternLegs[offset + i] >>> 1;
+      int connection;
+      if ((patternLegs[offset + i] & WALK_LEG) != 0) {
+        connection = footpath(from, to);
+        if (connection < 0) {
+          return i;
+        }
+        time += timetable.footpathDuration(connection);
+      } else {
+        connection = -1;
+        int arrival = UNREACHABLE;
+        for (int c = firstDirectConnection(from, to);
+             c < directConnectionOffsets[from + 1] && directConnectionTargets[c] == to;
+             c++) {
+          int pattern = directConnectionPatterns[c];
+          int trip = timetable.earliestTrip(pattern, directConnectionBoardPositions[c], time);
+          if (trip >= 0 && timetable.tripTime(trip, directConnectionAlightPositions[c]) < arrival) {
+            arrival = timetable.tripTime(trip, directConnectionAlightPositions[c]);
+            connection = trip;
+          }
+        }
+        if (connection < 0) {
+          return i;
+        }
+        time = arrival;
+      }
+      times[i] = time;
+      if (connections != null) {
+        connections[i] = connection;
+      }
+      if (time > bound && i + 1 < legs(p)) {
+        // Later legs can only arrive later still
+        return i + 1;
+      }
+      from = to;
+    }
+    return legs(p);
+  }
+
+  /**
+   * Finds the first direct connection between two stops.
+   *
+   * @param from the index of the stop at which to board
+   * @param to   the index of the stop at which to alight
+   * @return index of the first direct connection from from to to, or of the
+   *         first connection to a later stop if there is none
+   */
+  private int firstDirectConnection(int from, int to) {
+    int low = directConnectionOffsets[from];
+    int high = directConnectionOffsets[from + 1];
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (directConnectionTargets[mid] < to) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Finds the shortest footpath between two stops.
+   *
+   * @param from the index of the stop from which to walk
+   * @param to   the index of the stop to which to walk
+   * @return index of the footpath, or -1 if there is none
+   */
+  private int footpath(int from, int to) {
+    int footpath = -1;
+    for (int f = timetable.firstFootpath(from); f < timetable.endFootpaths(from); f++) {
+      if (timetable.footpathTarget(f) == to &&
+          (footpath < 0 || timetable.footpathDuration(f) < timetable.footpathDuration(footpath))) {
+        footpath = f;
+      }
+    }
+    return footpath;
+  }
+
+  /**
+   * Computes the transfer patterns of a timetable.
+   *
+   * A profile search is run from each stop in parallel, and the patterns
+   * found are then laid out in the order of their stops.
+   *
+   * @param timetable    the timetable from which to compute patterns
+   * @param maxTransfers the maximum number of transfers within a pattern
+   * @return transfer patterns of timetable
+   */
+  static TransferPatterns compute(TransitNetwork timetable, int maxTransfers) {
+    int n = timetable.numberOfStops();
+    List<List<int[]>> originPatterns = new ArrayList<>();
+    for (int origin = 0; origin < n; origin++) {
+      originPatterns.add(null);
+    }
+    ForkJoinPool.commonPool().invoke(new PatternSearchAction(timetable, maxTransfers, originPatterns, 0, n));
+
+    // Lay out patterns in order of origin, then destination
+    int numberOfPatterns = 0;
+    int numberOfLegs = 0;
+    for (List<int[]> patterns : originPatterns) {
+      numberOfPatterns += patterns.size();
+      for (int[] pattern : patterns) {
+        numberOfLegs += pattern.length - 1;
+      }
+    }
+    int[] pairPatternOffsets = new int[n * n + 1];
+    int[] patternLegOffsets = new int[numberOfPatterns + 1];
+    int[] patternLegs = new int[numberOfLegs];
+    int p = 0;
+    int l = 0;
+    for (int origin = 0; origin < n; origin++) {
+      for (int[] pattern : originPatterns.get(origin)) {
+        // The destination of each pattern precedes its legs
+        pairPatternOffsets[origin * n + pattern[0] + 1]++;
+        patternLegOffsets[p++] = l;
+        System.arraycopy(pattern, 1, patternLegs, l, pattern.length - 1);
+        l += pattern.length - 1;
+      }
+    }
+    patternLegOffsets[p] = l;
+    for (int pair = 0; pair < n * n; pair++) {
+      pairPatternOffsets[pair + 1] += pairPatternOffsets[pair];
+    }
+    return new TransferPatterns(timetable, timetableHash(timetable), maxTransfers,
+        pairPatternOffsets, patternLegOffsets, patternLegs);
+  }
+
+  /**
+   * Save these patterns to a file.
+   *
+   * The patterns are first written to a temporary file within the same
+   * directory, which is then moved into place. Other JVMs therefore never
+   * see partially written patterns.
+   *
+   * @param file the file to which to save
+   * @throws IOException if the file cannot be written
+   */
+  void save(File file) throws IOException {
+    long size = HEADER_BYTES + 4L * (pairPatternOffsets.length + patternLegOffsets.length + patternLegs.length);
+    MappedFiles.save(file, size, new MappedFiles.BufferWriter() {
+      @Override
+      public void write(MappedByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(timetableHash);
+        buffer.putInt(maxTransfers);
+        buffer.putInt(numberOfStops);
+        buffer.putInt(numberOfPatterns());
+        buffer.putInt(patternLegs.length);
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(pairPatternOffsets);
+        ints.put(patternLegOffsets);
+        ints.put(patternLegs);
+      }
+    });
+  }
+
+  /**
+   * Load patterns from a file.
+   *
+   * @param file          the file from which to load
+   * @param timetable     the timetable for which patterns are required
+   * @param timetableHash hash of timetable
+   * @return patterns held within file, or null if the file does not exist or
+   *         does not hold patterns of the current version for the timetable
+   * @throws IOException if the file cannot be read
+   */
+  static TransferPatterns load(File file, TransitNetwork timetable, long timetableHash) throws IOException {
+    MappedByteBuffer buffer = MappedFiles.map(file, HEADER_BYTES);
+    if (buffer == null || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != timetableHash) {
+      return null;
+    }
+    int maxTransfers = buffer.getInt();
+    int n = buffer.getInt();
+    int numberOfPatterns = buffer.getInt();
+    int numberOfLegs = buffer.getInt();
+    if (n != timetable.numberOfStops() || numberOfPatterns < 0 || numberOfLegs < 0 ||
+        buffer.capacity() != HEADER_BYTES + 4L * ((long) n * n + 1 + numberOfPatterns + 1 + numberOfLegs)) {
+      return null;
+    }
+    int[] pairPatternOffsets = new int[n * n + 1];
+    int[] patternLegOffsets = new int[numberOfPatterns + 1];
+    int[] patternLegs = new int[numberOfLegs];
+    IntBuffer ints = buffer.asIntBuffer();
+    ints.get(pairPatternOffsets);
+    ints.get(patternLegOffsets);
+    ints.get(patternLegs);
+    return new TransferPatterns(timetable, timetableHash, maxTransfers,
+        pairPatternOffsets, patternLegOffsets, patternLegs);
+  }
+
+  /**
+   * Calculate a hash of a timetable.
+   *
+   * The hash covers the stop at each index, the stops and trip times of each
+   * pattern and the footpaths from each stop, which together determine the
+   * patterns computed.
+   *
+   * @param timetable the timetable
+   * @return timetable hash
+   */
+  static long timetableHash(TransitNetwork timetable) {
+    long hash = MappedFiles.hash(MappedFiles.HASH_BASIS, timetable.numberOfStops());
+    for (int s = 0; s < timetable.numberOfStops(); s++) {
+      hash = MappedFiles.hash(hash, timetable.stop(s).getID());
+      for (int f = timetable.firstFootpath(s); f < timetable.endFootpaths(s); f++) {
+        hash = MappedFiles.hash(hash, timetable.footpathTarget(f));
+        hash = MappedFiles.hash(hash, timetable.footpathDuration(f));
+      }
+    }
+    hash = MappedFiles.hash(hash, timetable.numberOfPatterns());
+    for (int pattern = 0; pattern < timetable.numberOfPatterns(); pattern++) {
+      int length = timetable.patternLength(pattern);
+      hash = MappedFiles.hash(hash, length);
+      for (int pos = 0; pos < length; pos++) {
+        hash = MappedFiles.hash(hash, timetable.patternStop(pattern, pos));
+      }
+      hash = MappedFiles.hash(hash, timetable.endTrip(pattern) - timetable.firstTrip(pattern));
+      for (int trip = timetable.firstTrip(pattern); trip < timetable.endTrip(pattern); trip++) {
+        for (int pos = 0; pos < length; pos++) {
+          hash = MappedFiles.hash(hash, timetable.tripTime(trip, pos));
+        }
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * The PatternsTask class loads or computes the patterns of a timetable
+   * once, for every caller requiring them.
+   */
+  private static class PatternsTask extends FutureTask<TransferPatterns> {
+
+    private final TransitNetwork timetable;
+
+    /**
+     * Creates a task getting the patterns of a timetable.
+     *
+     * @param timetable the timetable for which to get patterns
+     */
+    PatternsTask(final TransitNetwork timetable) {
+      super(new Callable<TransferPatterns>() {
+        @Override
+        public TransferPatterns call() {
+          return loadOrCompute(timetable);
+        }
+      });
+      this.timetable = timetable;
+    }
+
+    /**
+     * Waits for the patterns, without giving up if the thread is
+     * interrupted. The interrupt is kept for the caller to act upon.
+     *
+     * @return transfer patterns of the timetable
+     * @throws RuntimeException if the patterns could not be computed
+     */
+    TransferPatterns getUninterruptibly() throws RuntimeException {
+      boolean interrupted = false;
+      try {
+        while (true) {
+          try {
+            return get();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+              throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+              throw (Error) cause;
+            }
+            throw new IllegalStateException("transfer patterns could not be computed", cause);
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * The PatternSearchAction class searches for the patterns of a range of
+   * origins, splitting the range in half until it is small enough to search
+   * directly.
+   */
+  private static class PatternSearchAction extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int THRESHOLD = 4;
+
+    private final TransitNetwork timetable;
+    private final int maxTransfers;
+    private final List<List<int[]>> originPatterns;
+    private final int from;
+    private final int to;
+
+    /**
+     * Creates an action to search for the patterns of origins from (inclusive)
+     * to to (exclusive).
+     */
+    PatternSearchAction(TransitNetwork timetable, int maxTransfers, List<List<int[]>> originPatterns, int from, int to) {
+      this.timetable = timetable;
+      this.maxTransfers = maxTransfers;
+      this.originPatterns = originPatterns;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= THRESHOLD) {
+        for (int origin = from; origin < to; origin++) {
+          originPatterns.set(origin, new PatternSearch(timetable, maxTransfers, origin).run());
+        }
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new PatternSearchAction(timetable, maxTransfers, originPatterns, from, mid),
+          new PatternSearchAction(timetable, maxTransfers, originPatterns, mid, to));
+    }
+  }
+
+  /**
+   * The PatternSearch class finds the transfer patterns from one origin.
+   *
+   * The search of the RaptorItineraryFinder is run once for each time at
+   * which a bus can be caught from the origin, or from a stop within walking
+   * distance of it, latest first, with the labels of each run reused by the
+   * next. After each run, the pattern of every label improved by the run is
+   * recorded. Since every journey optimal for some departure time and number
+   * of rounds is improved by some run, the patterns of all such journeys are
+   * recorded. To ensure this, labels are pruned only by earlier labels of the
+   * same or earlier rounds.
+   */
+  private static class PatternSearch {
+
+    // Orders patterns leg by leg, so that patterns beginning with the same
+    // legs are held together
+    private static final Comparator<List<Integer>> LEXICOGRAPHIC_ORDER = new Comparator<List<Integer>>() {
+      @Override
+      public int compare(List<Integer> p1, List<Integer> p2) {
+        for (int i = 0; i < p1.size() && i < p2.size(); i++) {
+          int c = Integer.compare(p1.get(i), p2.get(i));
+          if (c != 0) {
+            return c;
+          }
+        }
+        return Integer.compare(p1.size(), p2.size());
+      }
+    };
+
+    private final TransitNetwork timetable;
+    private final int rounds;
+    private final int origin;
+    private final RaptorItineraryFinder.Search search;
+    private final int[][] improvedRun;
+
+    // Patterns found to each destination, each as the destination followed
+    // by its legs, in lexicographic order
+    private final List<Set<List<Integer>>> destinationPatterns;
+
+    private int run;
+
+    /**
+     * Creates a search.
+     *
+     * @param timetable    the timetable over which to search
+     * @param maxTransfers the maximum number of transfers within a pattern
+     * @param origin       the index of the stop from which to search
+     */
+    PatternSearch(TransitNetwork timetable, int maxTransfers, int origin) {
+      this.timetable = timetable;
+      this.rounds = maxTransfers + 1;
+      this.origin = origin;
+      int n = timetable.numberOfStops();
+      improvedRun = new int[rounds + 1][n];
+      destinationPatterns = new ArrayList<>();
+      for (int k = 0; k <= rounds; k++) {
+        Arrays.fill(improvedRun[k], -1);
+      }
+      for (int s = 0; s < n; s++) {
+        destinationPatterns.add(null);
+      }
+      search = new RaptorItineraryFinder.Search(timetable, maxTransfers, 1, null);
+      search.addOrigin(origin, 0, null);
+      search.setRoundPruning();
+      search.setLabelListener(new RaptorItineraryFinder.Search.LabelListener() {
+        @Override
+        public void labelled(int level, int k, int s) {
+          improvedRun[k][s] = run;
+        }
+      });
+    }
+
+    /**
+     * Runs the search for every departure time over the day.
+     *
+     * Midnight is always included among the departure times, so that
+     * journeys made only by walking are found even where no bus can be
+     * caught.
+     *
+     * @return patterns from the origin, ordered by destination and then
+     *         lexicographically, each as the destination followed by its
+     *         legs
+     */
+    List<int[]> run() {
+      for (int departureTime : search.departureTimes(0, Integer.MAX_VALUE)) {
+        search.run(departureTime);
+        recordPatterns();
+        run++;
+      }
+      List<int[]> patterns = new ArrayList<>();
+      for (Set<List<Integer>> destination : destinationPatterns) {
+        if (destination == null) {
+          continue;
+        }
+        for (List<Integer> pattern : destination) {
+          int[] legs = new int[pattern.size()];
+          for (int i = 0; i < legs.length; i++) {
+            legs[i] = pattern.get(i);
+          }
+          patterns.add(legs);
+        }
+      }
+      return patterns;
+    }
+
+    /**
+     * Records the pattern of every label improved by the current run.
+     */
+    private void recordPatterns() {
+      for (int k = 0; k <= rounds; k++) {
+        for (int s = 0; s < improvedRun[k].length; s++) {
+          if (s == origin || improvedRun[k][s] != run) {
+            continue;
+          }
+          List<Integer> pattern = pattern(k, s);
+          Set<List<Integer>> patterns = destinationPatterns.get(s);
+          if (patterns == null) {
+            patterns = new TreeSet<>(LEXICOGRAPHIC_ORDER);
+            destinationPatterns.set(s, patterns);
+          }
+          patterns.add(pattern);
+        }
+      }
+    }
+
+    /**
+     * Reconstructs the pattern of the journey reaching a stop from a label.
+     *
+     * @param k           the round of the label
+     * @param destination the stop reached
+     * @return the destination, followed by the legs of the pattern
+     */
+    private List<Integer> pattern(int k, int destination) {
+      final LinkedList<Integer> pattern = new LinkedList<>();
+      search.trace(0, k, destination, new RaptorItineraryFinder.Search.LegVisitor() {
+        @Override
+        public void busLeg(int trip, int boardStop, int alightStop) {
+          pattern.addFirst(alightStop << 1);
+        }
+
+        @Override
+        public void walkLeg(int footpath, int startTime) {
+          pattern.addFirst(timetable.footpathTarget(footpath) << 1 | WALK_LEG);
+        }
+      });
+      pattern.addFirst(destination);
+      return pattern;
+    }
+  }
+}
@@ -0,0 +1,359 @@
+package main.routeplanner;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import main.model.*;
+
+/**
+ * The TravelTimeMatrix class calculates travel times from one stop to many
+ * stops, or between two sets of stops, departing at a given date and time.
+ *
+ * Rather than finding an itinerary for each pair of stops, a single search
+ * is made from each origin which finds the earliest arrival at every stop in
+ * the network. The search is the round-based RAPTOR search of the
+ * RaptorItineraryFinder, run without an ending stop towards which to prune,
+ * and so gives the same travel times as that engine. Searches from different
+ * origins are independent, and are run in parallel on the common ForkJoinPool.
+ *
+ * Travel times are the number of minutes between the departure time and the
+ * earliest arrival, and include any time spent waiting for the first bus.
+ * The crowdedness of trips is not considered.
+ *
+ * The same search also gives isochrones: the stops which can be reached from
+ * an origin within a number of minutes. The search is then bounded by the
+ * latest acceptable arrival time, so that it ends once no further stop can
+ * be reached in time.
+ *
+ * @see RaptorItineraryFinder
+ * @see Isochrone
+ */
+public class TravelTimeMatrix {
+
+  /**
+   * Travel time given for stops which cannot be reached
+   */
+  public static final int UNREACHABLE = -1;
+
+  private static final int INFINITY = RaptorItineraryFinder.UNREACHABLE;
+
+  private final LocalDate date;
+  private final int time;
+  private final Schedule schedule;
+  private int maxTransfers;
+
+  /**
+   * Creates an instance of TravelTimeMatrix.
+   *
+   * @param searchTime the date and time of departure from each origin
+   */
+  public TravelTimeMatrix(LocalDateTime searchTime) {
+    this.date = searchTime.toLocalDate();
+    this.time = searchTime.getHour() * 60 + searchTime.getMinute();
+    ModelLock.readLock().lock();
+    try {
+      this.schedule = Schedule.findSchedule(date);
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+    setMaxTransfers(RaptorItineraryFinder.DEFAULT_MAX_TRANSFERS);
+  }
+
+  /**
+   * Sets the maximum number of transfers between buses.
+   *
+   * @param maxTransfers the maximum number of transfers within a journey
+   * @throws IllegalArgumentException if maxTransfers is negative
+   */
+  public void setMaxTransfers(int maxTransfers) throws IllegalArgumentException {
+    if (maxTransfers < 0) {
+      throw new IllegalArgumentException("maximum number of transfers cannot be negative");
+    }
+    this.maxTransfers = maxTransfers;
+  }
+
+  /**
+   * Gets the maximum number of transfers between buses.
+   *
+   * @return maximum number of transfers within a journey
+   */
+  public int getMaxTransfers() {
+    return maxTransfers;
+  }
+
+  /**
+   * Get date value.
+   *
+   * @return date on which journeys depart
+   */
+  public LocalDate getDate() {
+    return date;
+  }
+
+  /**
+   * Get time value.
+   *
+   * @return time at which journeys depart (in minutes since midnight)
+   */
+  public int getTime() {
+    return time;
+  }
+
+  /**
+   * Calculates travel times from one stop to many stops.
+   *
+   * @param origin       the stop from which to travel
+   * @param destinations the stops to which to travel
+   * @return travel time to each destination in minutes, or UNREACHABLE
+   */
+  public int[] travelTimes(Stop origin, List<Stop> destinations) {
+    return travelTimes(Collections.singletonList(origin), destinations)[0];
+  }
+
+  /**
+   * Calculates travel times between each of a set of origins and each of a
+   * set of destinations.
+   *
+   * One search is made from each origin, with searches run in parallel.
+   *
+   * @param origins      the stops from which to travel
+   * @param destinations the stops to which to travel
+   * @return travel time in minutes from origins[i] to destinations[j] held
+   *         at [i][j], or UNREACHABLE
+   */
+  public int[][] travelTimes(List<Stop> origins, List<Stop> destinations) {
+    int[][] travelTimes = new int[origins.size()][destinations.size()];
+    for (int[] row : travelTimes) {
+      Arrays.fill(row, UNREACHABLE);
+    }
+    if (schedule != null && !origins.isEmpty()) {
+      TransitNetwork timetable = network();
+      Stop[] originStops = origins.toArray(new Stop[origins.size()]);
+      int[] destinationIndices = new int[destinations.size()];
+      for (int j = 0; j < destinationIndices.length; j++) {
+        destinationIndices[j] = timetable.stopIndex(destinations.get(j));
+      }
+      ForkJoinPool.commonPool().invoke(
+          new OriginSearch(timetable, originStops, INFINITY, 0, destinationIndices, travelTimes, null, 0, originStops.length)
+          );
+    }
+    // A stop can always be reached from itself without travelling
+    for (int i = 0; i < origins.size(); i++) {
+      for (int j = 0; j < destinations.size(); j++) {
+        if (origins.get(i).equals(destinations.get(j))) {
+          travelTimes[i][j] = 0;
+        }
+      }
+    }
+    return travelTimes;
+  }
+
+  /**
+   * Finds the stops which can be reached from an origin within a number of
+   * minutes.
+   *
+   * @param origin  the stop from which to travel
+   * @param minutes the greatest acceptable travel time
+   * @return stops reached within minutes, including the origin itself
+   * @throws IllegalArgumentException if minutes is negative
+   */
+  public Isochrone isochrone(Stop origin, int minutes) throws IllegalArgumentException {
+    return isochrones(Collections.singletonList(origin), minutes).get(0);
+  }
+
+  /**
+   * Finds the stops which can be reached from each of a set of origins
+   * within a number of minutes.
+   *
+   * One search is made from each origin, with searches run in parallel.
+   *
+   * @param origins the stops from which to travel
+   * @param minutes the greatest acceptable travel time
+   * @return isochrone for each origin, in the same order as origins
+   * @throws IllegalArgumentException if minutes is negative
+   */
+  public List<Isochrone> isochrones(List<Stop> origins, int minutes) throws IllegalArgumentException {
+    if (minutes < 0) {
+      throw new IllegalArgumentException("minutes cannot be negative");
+    }
+    Isochrone[] isochrones = new Isochrone[origins.size()];
+    Stop[] originStops = origins.toArray(new Stop[origins.size()]);
+    if (schedule != null && originStops.length > 0) {
+      TransitNetwork timetable = network();
+      int latestArrival = (int) Math.min((long) time + minutes, INFINITY - 1);
+      ForkJoinPool.commonPool().invoke(
+          new OriginSearch(timetable, originStops, latestArrival, minutes, null, null, isochrones, 0, originStops.length)
+          );
+    }
+    for (int i = 0; i < isochrones.length; i++) {
+      if (isochrones[i] == null) {
+        // The origin is not served on this date, so only it can be reached
+        isochrones[i] = new Isochrone(originStops[i], date, time, minutes, new Stop[] {originStops[i]}, new int[] {time});
+      }
+    }
+    return Arrays.asList(isochrones);
+  }
+
+  /**
+   * Gets the network of the schedule, holding the read lock of the
+   * ModelLock only while doing so; searches are then made over the network
+   * without it.
+   *
+   * @return network operating under the schedule
+   */
+  private TransitNetwork network() {
+    ModelLock.readLock().lock();
+    try {
+      return TransitNetwork.forSchedule(schedule);
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Creates the isochrone for an origin from the arrival times found by a
+   * search.
+   *
+   * Stops are ordered by arrival time, and then by index within the
+   * timetable.
+   *
+   * @param timetable the timetable which was searched
+   * @param origin    the stop from which the search was made
+   * @param minutes   the greatest acceptable travel time
+   * @param arrivals  earliest arrival time at each stop, or INFINITY
+   * @return isochrone for origin
+   */
+  private Isochrone createIsochrone(TransitNetwork timetable, Stop origin, int minutes, int[] arrivals) {
+    int reached = 0;
+    for (int arrival : arrivals) {
+      if (arrival != INFINITY) {
+        reached++;
+      }
+    }
+    // Sort stops by arrival time, then index, packed into a single key
+    long[] keys = new long[reached];
+    int k = 0;
+    for (int s = 0; s < arrivals.length; s++) {
+      if (arrivals[s] != INFINITY) {
+        keys[k++] = ((long) (arrivals[s] - time) << 32) | s;
+      }
+    }
+    Arrays.sort(keys);
+    Stop[] stops = new Stop[reached];
+    int[] arrivalTimes = new int[reached];
+    for (int i = 0; i < reached; i++) {
+      int s = (int) keys[i];
+      stops[i] = timetable.stop(s);
+      arrivalTimes[i] = arrivals[s];
+    }
+    return new Isochrone(origin, date, time, minutes, stops, arrivalTimes);
+  }
+
+  /**
+   * Finds the earliest arrival at every stop from an origin, by running the
+   * RAPTOR search of the RaptorItineraryFinder with no stop at which to end.
+   *
+   * Arrivals after latestArrival are discarded, so that journeys are only
+   * extended while they may still arrive in time.
+   *
+   * @param timetable     the timetable over which to search
+   * @param origin        the index of the stop from which to depart
+   * @param latestArrival the latest arrival time to record
+   * @return earliest arrival time at each stop, or INFINITY
+   */
+  private int[] earliestArrivals(TransitNetwork timetable, int origin, int latestArrival) {
+    RaptorItineraryFinder.Search search = new RaptorItineraryFinder.Search(timetable, maxTransfers, 1, null);
+    search.addOrigin(origin, 0, null);
+    search.setLatestArrival(latestArrival);
+    search.run(time);
+    int[] arrivals = new int[timetable.numberOfStops()];
+    for (int s = 0; s < arrivals.length; s++) {
+      arrivals[s] = search.earliestArrival(s);
+    }
+    return arrivals;
+  }
+
+  /**
+   * The OriginSearch inner class runs the searches for a range of origins,
+   * recording either travel times to each destination or an isochrone for
+   * each origin.
+   *
+   * Ranges of more than one origin are split in two and searched in
+   * parallel.
+   */
+  private class OriginSearch extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TransitNetwork timetable;
+    private final Stop[] origins;
+    private final int latestArrival;
+    private final int minutes;
+    private final int[] destinations;
+    private final int[][] travelTimes;
+    private final Isochrone[] isochrones;
+    private final int from;
+    private final int to;
+
+    /**
+     * Create an OriginSearch instance.
+     *
+     * @param timetable     the timetable over which to search
+     * @param origins       all origins
+     * @param latestArrival the latest arrival time to record
+     * @param minutes       the greatest acceptable travel time, for
+     *                      isochrones
+     * @param destinations  index of each destination within timetable, or -1
+     * @param travelTimes   travel times from each origin to each destination,
+     *                      or null if isochrones are to be recorded
+     * @param isochrones    isochrone for each origin, or null if travel times
+     *                      are to be recorded
+     * @param from          first origin to search from
+     * @param to            origin after the last to search from
+     */
+    OriginSearch(TransitNetwork timetable, Stop[] origins, int latestArrival, int minutes,
+        int[] destinations, int[][] travelTimes, Isochrone[] isochrones, int from, int to) {
+      this.timetable = timetable;
+      this.origins = origins;
+      this.latestArrival = latestArrival;
+      this.minutes = minutes;
+      this.destinations = destinations;
+      this.travelTimes = travelTimes;
+      this.isochrones = isochrones;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll(
+            new OriginSearch(timetable, origins, latestArrival, minutes, destinations, travelTimes, isochrones, from, mid),
+            new OriginSearch(timetable, origins, latestArrival, minutes, destinations, travelTimes, isochrones, mid, to)
+            );
+        return;
+      }
+      int origin = timetable.stopIndex(origins[from]);
+      if (origin < 0) {
+        return;
+      }
+      int[] arrivals = earliestArrivals(timetable, origin, latestArrival);
+      if (isochrones != null) {
+        isochrones[from] = createIsochrone(timetable, origins[from], minutes, arrivals);
+        return;
+      }
+      for (int j = 0; j < destinations.length; j++) {
+        int d = destinations[j];
+        if (d >= 0 && arrivals[d] != INFINITY) {
+          travelTimes[from][j] = arrivals[d] - time;
+        }
+      }
+    }
+  }
+}
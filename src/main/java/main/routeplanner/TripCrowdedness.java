@@ -0,0 +1,67 @@
+package main.routeplanner;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import main.capacitytracker.CapacityCalculator;
+import main.model.*;
+
+/**
+ * The TripCrowdedness class estimates how crowded trips are when boarded at
+ * each stop, so that crowdedness may be used as a criterion while searching
+ * for itineraries.
+ *
+ * Estimates are made using the CapacityCalculator in the same manner as for
+ * the legs of an Itinerary, so that a trip accepted during a search has the
+ * same crowdedness as the leg later built from it. Each estimate requires the
+ * datastore to be read, so estimates are cached for each trip and stop.
+ *
+ * @see ItineraryLeg#crowdedness()
+ */
+class TripCrowdedness {
+
+  private final LocalDate date;
+  private final Map<RouteTimetable, Map<Stop, CapacityCalculator.CrowdednessIndicator>> estimates;
+
+  /**
+   * Creates an instance of TripCrowdedness.
+   *
+   * @param date the date on which trips are to be taken
+   */
+  TripCrowdedness(LocalDate date) {
+    this.date = date;
+    this.estimates = new HashMap<>();
+  }
+
+  /**
+   * Gets the estimated crowdedness of a trip when boarded at a stop.
+   *
+   * @param rt   the RouteTimetable of the trip
+   * @param stop the stop at which the trip is boarded
+   * @return enum value of GREEN, ORANGE or RED depending on the capacity of
+   *         the bus at stop
+   * @throws RuntimeException if capacity calculator datastore cannot be accessed
+   */
+  CapacityCalculator.CrowdednessIndicator crowdedness(RouteTimetable rt, Stop stop) throws RuntimeException {
+    Map<Stop, CapacityCalculator.CrowdednessIndicator> tripEstimates = estimates.get(rt);
+    if (tripEstimates == null) {
+      tripEstimates = new HashMap<>();
+      estimates.put(rt, tripEstimates);
+    }
+    CapacityCalculator.CrowdednessIndicator estimate = tripEstimates.get(stop);
+    if (estimate == null) {
+      try {
+        // If trip is taken today, try getting real-time capacity data
+        boolean realTime = date.equals(LocalDate.now());
+        estimate = new CapacityCalculator(rt, stop, realTime).crowdedness();
+      } catch (IOException e) {
+        String msg = "unable to access capacity calculator datastore: " + e.getMessage();
+        throw new RuntimeException(msg);
+      }
+      tripEstimates.put(stop, estimate);
+    }
+    return estimate;
+  }
+}
@@ -11,5 +11,11 @@
  * Algorithm Solving the Least-Time Itinerary Planning Problem in Urban 
  * Scheduled Public Transport Network. Mathematical Problems in Engineering,
  * 2014. http://dx.doi.org/10.1155/2014/185383.
+ *
+ * Alternative engines based on the RAPTOR and Connection Scan algorithms are
+ * also provided. Each engine implements the JourneyPlanner interface, and the
+ * engine to be used may be chosen for each deployment using RoutingEngine.
+ * These engines apply the crowdedness filter during the search, and the
+ * RaptorItineraryFinder can also treat crowdedness as a search criterion.
  */
 package main.routeplanner;
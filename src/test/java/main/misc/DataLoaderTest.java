@@ -2,10 +2,18 @@ package main.misc;
 
 import org.junit.*;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import main.model.*;
 
@@ -14,6 +22,12 @@ import main.model.*;
  */
 public class DataLoaderTest {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   @Before
   public void setUp() {
     for (Bus b : new ArrayList<Bus>(Bus.getAllBuses())) {
@@ -60,4 +74,182 @@ public class DataLoaderTest {
       assertEquals(expectedMessage, e.getMessage());
     }
   }
+
+  /**
+   * Test the reload method.
+   *
+   * Reloading should replace the stops, routes, buses and schedules loaded
+   * previously with new ones, without duplicating them, and keep model data
+   * which was not loaded from the data files.
+   */
+  @Test
+  public void testReload() {
+    DataLoader loader = new DataLoader("data/mock");
+    Bus otherBus = new Bus(1, new BusType("Volvo", "100", 50, 30), new Date());
+    Stop oldStop = Stop.getAllStops().get(0);
+    Schedule oldSchedule = Schedule.getAllSchedules().get(0);
+    int stops = Stop.getAllStops().size();
+    int paths = Path.getAllPaths().size();
+    int buses = Bus.getAllBuses().size();
+    long generation = ModelLock.getGeneration();
+
+    loader.reload();
+    assertEquals(stops, Stop.getAllStops().size());
+    assertEquals(paths, Path.getAllPaths().size());
+    assertEquals(4, Route.getAllRoutes().size());
+    assertEquals(buses, Bus.getAllBuses().size());
+    assertEquals(3, Schedule.getAllSchedules().size());
+    assertEquals(generation + 1, ModelLock.getGeneration());
+
+    assertFalse(Stop.getAllStops().contains(oldStop));
+    assertNotSame(oldStop, Stop.findStop(oldStop.getID()));
+    assertFalse(Schedule.getAllSchedules().contains(oldSchedule));
+    assertSame(otherBus, Bus.findBus(1));
+  }
+
+  /**
+   * Test the reload method with inconsistent data files.
+   *
+   * The reload should be rejected before the model is changed, leaving the
+   * data loaded previously in place.
+   */
+  @Test
+  public void testReloadWithInconsistentData() throws IOException {
+    File dataFolder = folder.newFolder("data");
+    for (String name : new String[] {"stops.csv", "routes.csv", "frequencies.csv"}) {
+      Files.copy(new File("data/mock", name).toPath(), new File(dataFolder, name).toPath());
+    }
+    DataLoader loader = new DataLoader(dataFolder.getPath());
+    List<Stop> stops = new ArrayList<>(Stop.getAllStops());
+    long generation = ModelLock.getGeneration();
+
+    try (FileWriter writer = new FileWriter(new File(dataFolder, "routes.csv"), true)) {
+      writer.write("99,Nowhere,\"851052700,123\",\"0,2\"\r\n");
+    }
+    try {
+      loader.reload();
+      fail("expected exception to be thrown due to unknown stop");
+    } catch (IllegalArgumentException e) {
+      assertEquals("route 99 calls at unknown stop ID# 123", e.getMessage());
+    }
+    assertEquals(stops, Stop.getAllStops());
+    assertEquals(4, Route.getAllRoutes().size());
+    assertEquals(generation, ModelLock.getGeneration());
+  }
+
+  /**
+   * Test the reload method with data which fails to load part way through.
+   *
+   * The new data should be discarded, leaving the data loaded previously in
+   * place and the generation unchanged, and a later reload should succeed.
+   */
+  @Test
+  public void testReloadFailingToLoad() throws IOException {
+    File dataFolder = folder.newFolder("data");
+    for (String name : new String[] {"stops.csv", "routes.csv", "frequencies.csv"}) {
+      Files.copy(new File("data/mock", name).toPath(), new File(dataFolder, name).toPath());
+    }
+    DataLoader loader = new DataLoader(dataFolder.getPath());
+    // The new stop clashes with a stop not created by the loader
+    Stop otherStop = new Stop(999999999, "Other Stop", 56.0, 9.0);
+    List<Stop> stops = new ArrayList<>(Stop.getAllStops());
+    List<Path> paths = new ArrayList<>(Path.getAllPaths());
+    List<Schedule> schedules = new ArrayList<>(Schedule.getAllSchedules());
+    long generation = ModelLock.getGeneration();
+
+    try (FileWriter writer = new FileWriter(new File(dataFolder, "stops.csv"), true)) {
+      writer.write("New Stop,999999999,57000000,10000000\r\n");
+    }
+    try {
+      loader.reload();
+      fail("expected exception to be thrown due to duplicate stop");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Stop with ID #999999999 already exists", e.getMessage());
+    }
+    assertEquals(stops, Stop.getAllStops());
+    assertEquals(paths, Path.getAllPaths());
+    assertEquals(schedules, Schedule.getAllSchedules());
+    assertEquals(generation, ModelLock.getGeneration());
+    assertSame(stops.get(0), Stop.findStop(stops.get(0).getID()));
+
+    Stop.removeStop(otherStop);
+    loader.reload();
+    assertEquals(stops.size(), Stop.getAllStops().size());
+    assertEquals(4, Route.getAllRoutes().size());
+    assertEquals(3, Schedule.getAllSchedules().size());
+    assertEquals(generation + 1, ModelLock.getGeneration());
+  }
+
+  /**
+   * Test the reloadInBackground method.
+   */
+  @Test
+  public void testReloadInBackground() throws Exception {
+    DataLoader loader = new DataLoader("data/mock");
+    Stop oldStop = Stop.getAllStops().get(0);
+    Future<?> reload = loader.reloadInBackground();
+    reload.get();
+    assertEquals(76, Stop.getAllStops().size());
+    assertFalse(Stop.getAllStops().contains(oldStop));
+  }
+
+  /**
+   * Test the compile method.
+   *
+   * Data loaded from the network file should equal that loaded from the
+   * data files, until the data files change.
+   */
+  @Test
+  public void testCompile() throws IOException {
+    File dataFolder = folder.newFolder("data");
+    for (String name : new String[] {"stops.csv", "routes.csv", "frequencies.csv"}) {
+      Files.copy(new File("data/mock", name).toPath(), new File(dataFolder, name).toPath());
+    }
+    DataLoader loader = new DataLoader(dataFolder.getPath());
+    List<String> stops = describeStops();
+    List<String> routes = describeRoutes();
+    int buses = Bus.getAllBuses().size();
+    int routeTimetables = Schedule.getAllSchedules().get(0).getRouteTimetables().size();
+    File file = loader.compile();
+    assertEquals(new File(dataFolder, DataLoader.NETWORK_FILE_NAME), file);
+    assertTrue(file.isFile());
+
+    setUp();
+    new DataLoader(dataFolder.getPath());
+    assertEquals(stops, describeStops());
+    assertEquals(routes, describeRoutes());
+    assertEquals(buses, Bus.getAllBuses().size());
+    assertEquals(3, Schedule.getAllSchedules().size());
+    assertEquals(routeTimetables, Schedule.getAllSchedules().get(0).getRouteTimetables().size());
+
+    // Once the data files change, the network file is no longer used
+    try (FileWriter writer = new FileWriter(new File(dataFolder, "stops.csv"), true)) {
+      writer.write("New Stop,999999999,57000000,10000000\r\n");
+    }
+    setUp();
+    new DataLoader(dataFolder.getPath());
+    assertEquals(stops.size() + 1, Stop.getAllStops().size());
+  }
+
+  /**
+   * Describes the ID, name and coordinates of every stop.
+   */
+  private static List<String> describeStops() {
+    List<String> descriptions = new ArrayList<>();
+    for (Stop s : Stop.getAllStops()) {
+      descriptions.add(s + " " + s.getLatitude() + " " + s.getLongitude());
+    }
+    return descriptions;
+  }
+
+  /**
+   * Describes the number, description, stops and timings of every route.
+   */
+  private static List<String> describeRoutes() {
+    List<String> descriptions = new ArrayList<>();
+    for (Route r : Route.getAllRoutes()) {
+      descriptions.add(r.getNumber() + " " + r.getDescription() + " " + r.getStops() + " " + r.getStopTiming(false, true) + " " + r.getStopTiming(true, true));
+    }
+    return descriptions;
+  }
 }
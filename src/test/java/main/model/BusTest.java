@@ -406,6 +406,21 @@ public class BusTest {
     assertEquals(Bus.findBus(399488572), null);
   }
 
+  /**
+   * Test findBus() after a bus is removed.
+   *
+   * A removed bus should no longer be found, and its fleet number should be
+   * free to be used again.
+   */
+  @Test
+  public void testFindBusAfterRemoval() {
+    Bus.removeBus(emptyBus);
+    assertEquals(null, Bus.findBus(emptyFleetNumber));
+
+    emptyBus = new Bus(emptyFleetNumber, anotherMockedBusType, emptyAcquisitionDate);
+    assertEquals(emptyBus, Bus.findBus(emptyFleetNumber));
+  }
+
   /**
    * testGetAcquisitionDate() tests the existence of a getter method.
    */
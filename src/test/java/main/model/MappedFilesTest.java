@@ -0,0 +1,95 @@
+package main.model;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+/**
+ * MappedFilesTest class contains a series of unit tests for the MappedFiles
+ * class.
+ *
+ * The MappedFiles class saves and maps the files built from the data and
+ * saved between runs. These tests ensure that a saved file is mapped intact,
+ * and that values are hashed as specified by FNV-1a.
+ */
+public class MappedFilesTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Test that a file saved through a stream is mapped intact, and that no
+   * temporary file is left behind.
+   */
+  @Test
+  public void testSaveStream() throws IOException {
+    File file = new File(folder.getRoot(), "network.bin");
+    MappedFiles.save(file, new MappedFiles.StreamWriter() {
+      @Override
+      public void write(DataOutputStream out) throws IOException {
+        out.writeInt(7);
+        out.writeUTF("N1");
+      }
+    });
+    MappedByteBuffer buffer = MappedFiles.map(file, 4);
+    assertEquals(8, buffer.capacity());
+    assertEquals(7, buffer.getInt());
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  /**
+   * Test that a file saved by mapping it is mapped intact, replacing any
+   * earlier file, and that no temporary file is left behind.
+   */
+  @Test
+  public void testSaveAndMap() throws IOException {
+    File file = new File(folder.getRoot(), "table.bin");
+    for (final int value : new int[] {1, 2}) {
+      MappedFiles.save(file, 12, new MappedFiles.BufferWriter() {
+        @Override
+        public void write(MappedByteBuffer buffer) {
+          buffer.putLong(42);
+          buffer.putInt(value);
+        }
+      });
+    }
+    MappedByteBuffer buffer = MappedFiles.map(file, 8);
+    assertEquals(12, buffer.capacity());
+    assertEquals(42, buffer.getLong());
+    assertEquals(2, buffer.getInt());
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  /**
+   * Test that a missing file, or one too short to hold the header, is not
+   * mapped.
+   */
+  @Test
+  public void testMapShortFile() throws IOException {
+    File file = new File(folder.getRoot(), "table.bin");
+    assertNull(MappedFiles.map(file, 8));
+    assertTrue(file.createNewFile());
+    assertNull(MappedFiles.map(file, 8));
+  }
+
+  /**
+   * Test the MappedFiles#hash method.
+   *
+   * Each int value is hashed low byte first, so the hash of an int below 256
+   * matches the published FNV-1a hash of the byte followed by three zeros.
+   */
+  @Test
+  public void testHash() {
+    long expected = MappedFiles.HASH_BASIS;
+    for (int b : new int[] {0x61, 0, 0, 0}) {
+      expected = (expected ^ b) * 0x100000001b3L;
+    }
+    assertEquals(expected, MappedFiles.hash(MappedFiles.HASH_BASIS, 0x61));
+    assertEquals(0xaf63dc4c8601ec8cL, (MappedFiles.HASH_BASIS ^ 0x61) * 0x100000001b3L);
+  }
+}
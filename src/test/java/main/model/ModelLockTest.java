@@ -0,0 +1,134 @@
+package main.model;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class contains a suite of unit tests for the ModelLock class.
+ */
+public class ModelLockTest {
+
+  /**
+   * Removes all model data before each test.
+   */
+  @Before
+  public void setUp() {
+    tearDown();
+  }
+
+  /**
+   * Removes all model data created for the tests.
+   */
+  @After
+  public void tearDown() {
+    for (Stop s : new ArrayList<Stop>(Stop.getAllStops())) {
+      Stop.removeStop(s);
+    }
+    for (Path p : new ArrayList<Path>(Path.getAllPaths())) {
+      Path.removePath(p);
+    }
+  }
+
+  /**
+   * Test the update method.
+   *
+   * The update should be seen by the thread making it while it is made, and
+   * by every thread once complete, and advance the generation.
+   */
+  @Test
+  public void testUpdate() {
+    long generation = ModelLock.getGeneration();
+    final Stop[] added = new Stop[1];
+    ModelLock.update(new Runnable() {
+      @Override
+      public void run() {
+        added[0] = new Stop(1, "A", 57.01, 9.91);
+        assertTrue(Stop.getAllStops().contains(added[0]));
+      }
+    });
+    assertTrue(Stop.getAllStops().contains(added[0]));
+    assertSame(added[0], Stop.findStop(1));
+    assertEquals(generation + 1, ModelLock.getGeneration());
+  }
+
+  /**
+   * Test the update method with an update which fails part way through.
+   *
+   * The model should be left as it was, with its generation unchanged.
+   */
+  @Test
+  public void testFailedUpdate() {
+    final Stop a = new Stop(1, "A", 57.01, 9.91);
+    long generation = ModelLock.getGeneration();
+    long version = ModelLock.getVersion();
+    try {
+      ModelLock.update(new Runnable() {
+        @Override
+        public void run() {
+          Stop.removeStop(a);
+          new Stop(2, "B", 57.02, 9.92);
+          throw new IllegalStateException("update failed");
+        }
+      });
+      fail("expected exception to be thrown by update");
+    } catch (IllegalStateException e) {
+      assertEquals("update failed", e.getMessage());
+    }
+    assertEquals(1, Stop.getAllStops().size());
+    assertSame(a, Stop.findStop(1));
+    assertEquals(1, Stop.findStopsWithin(57.01, 9.91, 10).size());
+    assertEquals(generation, ModelLock.getGeneration());
+    assertEquals(version, ModelLock.getVersion());
+  }
+
+  /**
+   * Test the read lock while the model is updated.
+   *
+   * An update should not wait for a thread holding the read lock, which
+   * should see the model as it was until it releases the lock.
+   */
+  @Test
+  public void testReadLockDuringUpdate() throws Exception {
+    final Stop a = new Stop(1, "A", 57.01, 9.91);
+    ModelLock.readLock().lock();
+    try {
+      Thread updater = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          ModelLock.update(new Runnable() {
+            @Override
+            public void run() {
+              Stop.removeStop(a);
+              new Stop(2, "B", 57.02, 9.92);
+            }
+          });
+        }
+      });
+      updater.start();
+      updater.join(TimeUnit.SECONDS.toMillis(10));
+      assertFalse(updater.isAlive());
+
+      assertEquals(1, Stop.getAllStops().size());
+      assertSame(a, Stop.findStop(1));
+      // The lock is reentrant, and keeps the same model
+      ModelLock.readLock().lock();
+      ModelLock.readLock().unlock();
+      assertSame(a, Stop.findStop(1));
+    } finally {
+      ModelLock.readLock().unlock();
+    }
+    assertEquals(1, Stop.getAllStops().size());
+    assertEquals(2, Stop.getAllStops().get(0).getID());
+  }
+
+  /**
+   * Test unlocking the read lock when it is not held.
+   */
+  @Test(expected = IllegalMonitorStateException.class)
+  public void testUnlockWithoutLock() {
+    ModelLock.readLock().unlock();
+  }
+}
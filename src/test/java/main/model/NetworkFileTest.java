@@ -0,0 +1,288 @@
+package main.model;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * NetworkFileTest class contains a series of unit tests for the NetworkFile
+ * class.
+ *
+ * A small network is saved, removed from the model, and loaded again; the
+ * loaded network is checked against the network saved.
+ */
+public class NetworkFileTest {
+
+  private static final long SOURCE_HASH = 0x1234_5678_9abcL;
+
+  private Stop a;
+  private Stop b;
+  private Stop c;
+  private Route outbound;
+  private Route inbound;
+  private Bus bus;
+  private Schedule schedule;
+  private File file;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  /**
+   * Creates a schedule of two routes between three stops, the first and
+   * last of which are within walking distance, and saves it.
+   */
+  @Before
+  public void setUp() throws IOException {
+    tearDown();
+    a = new Stop(1, "N\u00f8rresundby", 57.0500, 9.9200);
+    b = new Stop(2, "B", 57.0600, 9.9300);
+    c = new Stop(3, "C", 57.0505, 9.9200);
+
+    outbound = new Route("T1", "A - C", a);
+    outbound.addStop(b, 5, 7);
+    outbound.addStop(c, 4, 6);
+    inbound = new Route("T2", "C - A", c);
+    inbound.addStop(a, 10, 12);
+    bus = new Bus(1000, new BusType("Volvo", "100", 50, 30), new Date(1420070400000L));
+
+    schedule = new Schedule(
+        LocalDate.of(2015, Month.JANUARY, 1),
+        LocalDate.of(2015, Month.DECEMBER, 31),
+        Schedule.DayOption.WEEKDAYS
+        );
+    new RouteTimetable(outbound, schedule, 8 * 60 + 10, false);
+    schedule.allocateBus(new RouteTimetable(outbound, schedule, 8 * 60, true), bus);
+    new RouteTimetable(inbound, schedule, 9 * 60, false);
+
+    file = new File(folder.getRoot(), "network.bin");
+    NetworkFile.save(file, SOURCE_HASH, Arrays.asList(a, b, c), Arrays.asList(outbound, inbound), Arrays.asList(bus), Arrays.asList(schedule));
+  }
+
+  /**
+   * Removes all model data created for the tests.
+   */
+  @After
+  public void tearDown() {
+    for (Schedule s : new ArrayList<Schedule>(Schedule.getAllSchedules())) {
+      Schedule.removeSchedule(s);
+    }
+    for (Bus b : new ArrayList<Bus>(Bus.getAllBuses())) {
+      Bus.removeBus(b);
+    }
+    for (Path p : new ArrayList<Path>(Path.getAllPaths())) {
+      Path.removePath(p);
+    }
+    for (Stop s : new ArrayList<Stop>(Stop.getAllStops())) {
+      Stop.removeStop(s);
+    }
+  }
+
+  /**
+   * Test the read and load methods.
+   *
+   * The loaded network should hold new stops, routes, buses and schedules
+   * equal to those saved, and nothing should be created until it is loaded.
+   */
+  @Test
+  public void testLoad() throws IOException {
+    tearDown();
+    NetworkFile network = NetworkFile.read(file, SOURCE_HASH);
+    assertEquals(0, Stop.numberOfStops());
+    network.load();
+
+    assertEquals(3, Stop.numberOfStops());
+    List<Stop> stops = network.getStops();
+    Stop[] saved = {a, b, c};
+    for (int i = 0; i < saved.length; i++) {
+      assertNotSame(saved[i], stops.get(i));
+      assertSame(stops.get(i), Stop.findStop(saved[i].getID()));
+      assertEquals(saved[i].getName(), stops.get(i).getName());
+      assertEquals(saved[i].getLatitude(), stops.get(i).getLatitude(), 0);
+      assertEquals(saved[i].getLongitude(), stops.get(i).getLongitude(), 0);
+    }
+    assertEquals(2, Walk.getAllWalks().size());
+
+    List<Route> routes = network.getRoutes();
+    Route[] savedRoutes = {outbound, inbound};
+    assertEquals(2, Route.getAllRoutes().size());
+    for (int i = 0; i < savedRoutes.length; i++) {
+      Route route = routes.get(i);
+      assertEquals(savedRoutes[i].getNumber(), route.getNumber());
+      assertEquals(savedRoutes[i].getDescription(), route.getDescription());
+      assertEquals(savedRoutes[i].getStops().size(), route.getStops().size());
+      for (int j = 0; j < route.getStops().size(); j++) {
+        assertEquals(savedRoutes[i].getStops().get(j).getID(), route.getStops().get(j).getID());
+      }
+      assertEquals(savedRoutes[i].getStopTiming(false, false), route.getStopTiming(false, false));
+      assertEquals(savedRoutes[i].getStopTiming(true, false), route.getStopTiming(true, false));
+    }
+
+    Bus loadedBus = network.getBuses().get(0);
+    assertSame(loadedBus, Bus.findBus(1000));
+    assertEquals("Volvo", loadedBus.getMake());
+    assertEquals("100", loadedBus.getModel());
+    assertEquals(80, loadedBus.getTotalCapacity());
+    assertEquals(bus.getAcquisitionDate(), loadedBus.getAcquisitionDate());
+
+    Schedule loaded = network.getSchedules().get(0);
+    assertSame(loaded, Schedule.findSchedule(LocalDate.of(2015, Month.JUNE, 1)));
+    assertEquals(schedule.getValidToDate(), loaded.getValidToDate());
+    List<RouteTimetable> trips = loaded.getRouteTimetables();
+    assertEquals(3, trips.size());
+    for (int i = 0; i < trips.size(); i++) {
+      RouteTimetable savedTrip = schedule.getRouteTimetables().get(i);
+      assertSame(routes.get(i < 2 ? 0 : 1), trips.get(i).getRoute());
+      assertEquals(savedTrip.getStartTime(), trips.get(i).getStartTime());
+      assertEquals(savedTrip.isRushHour(), trips.get(i).isRushHour());
+      assertEquals(savedTrip.getStopTimes(), trips.get(i).getStopTimes());
+    }
+    assertNull(trips.get(0).getAllocatedBus());
+    assertSame(loadedBus, trips.get(1).getAllocatedBus());
+  }
+
+  /**
+   * Test the load method for schedules whose route timetables were created
+   * alternately.
+   *
+   * Route timetables should be created in the order in which they were
+   * created when saved, so that their ID numbers differ just as before.
+   */
+  @Test
+  public void testLoadKeepsRouteTimetableOrder() throws IOException {
+    Schedule saturday = new Schedule(
+        LocalDate.of(2015, Month.JANUARY, 1),
+        LocalDate.of(2015, Month.DECEMBER, 31),
+        Schedule.DayOption.SATURDAY
+        );
+    new RouteTimetable(inbound, saturday, 7 * 60, false);
+    new RouteTimetable(outbound, schedule, 10 * 60, false);
+    new RouteTimetable(outbound, saturday, 11 * 60, false);
+    NetworkFile.save(file, SOURCE_HASH, Arrays.asList(a, b, c), Arrays.asList(outbound, inbound), Arrays.asList(bus), Arrays.asList(schedule, saturday));
+    int firstId = schedule.getRouteTimetables().get(0).getID();
+
+    tearDown();
+    NetworkFile network = NetworkFile.read(file, SOURCE_HASH);
+    network.load();
+    int loadedFirstId = network.getSchedules().get(0).getRouteTimetables().get(0).getID();
+    for (int i = 0; i < 2; i++) {
+      Schedule saved = i == 0 ? schedule : saturday;
+      List<RouteTimetable> loaded = network.getSchedules().get(i).getRouteTimetables();
+      assertEquals(saved.getRouteTimetables().size(), loaded.size());
+      for (int t = 0; t < loaded.size(); t++) {
+        RouteTimetable savedTrip = saved.getRouteTimetables().get(t);
+        assertEquals(savedTrip.getStartTime(), loaded.get(t).getStartTime());
+        assertEquals(savedTrip.getID() - firstId, loaded.get(t).getID() - loadedFirstId);
+      }
+    }
+  }
+
+  /**
+   * Test the TransitNetwork installed by the load method.
+   *
+   * The network of the loaded schedule should be read from the file rather
+   * than compiled, and match the network compiled from the loaded model.
+   */
+  @Test
+  public void testLoadInstallsTransitNetwork() throws IOException {
+    tearDown();
+    NetworkFile network = NetworkFile.read(file, SOURCE_HASH);
+    network.load();
+    assertEquals(1, network.numberOfNetworksInstalled());
+    Schedule loaded = network.getSchedules().get(0);
+    TransitNetwork installed = TransitNetwork.forSchedule(loaded);
+    TransitNetwork compiled = TransitNetwork.compile(loaded);
+    assertSame(installed, TransitNetwork.forSchedule(loaded));
+
+    assertEquals(compiled.numberOfStops(), installed.numberOfStops());
+    for (int s = 0; s < compiled.numberOfStops(); s++) {
+      assertSame(compiled.stop(s), installed.stop(s));
+      assertEquals(compiled.stopIndex(compiled.stop(s)), installed.stopIndex(compiled.stop(s)));
+      assertEquals(compiled.endStopPatterns(s), installed.endStopPatterns(s));
+      assertEquals(compiled.endFootpaths(s), installed.endFootpaths(s));
+    }
+    for (int f = 0; f < compiled.endFootpaths(compiled.numberOfStops() - 1); f++) {
+      assertSame(compiled.footpathWalk(f), installed.footpathWalk(f));
+      assertEquals(compiled.footpathDuration(f), installed.footpathDuration(f));
+    }
+    assertEquals(compiled.numberOfPatterns(), installed.numberOfPatterns());
+    for (int p = 0; p < compiled.numberOfPatterns(); p++) {
+      assertSame(compiled.patternRoute(p), installed.patternRoute(p));
+      assertEquals(compiled.isRushHourPattern(p), installed.isRushHourPattern(p));
+      assertEquals(compiled.patternLength(p), installed.patternLength(p));
+    }
+    assertEquals(compiled.numberOfTrips(), installed.numberOfTrips());
+    for (int t = 0; t < compiled.numberOfTrips(); t++) {
+      assertSame(compiled.tripRouteTimetable(t), installed.tripRouteTimetable(t));
+      for (int pos = 0; pos < compiled.patternLength(compiled.tripPattern(t)); pos++) {
+        assertEquals(compiled.tripTime(t, pos), installed.tripTime(t, pos));
+      }
+    }
+
+    // The installed network is recompiled once the schedule changes
+    new RouteTimetable(network.getRoutes().get(1), loaded, 10 * 60, false);
+    assertNotSame(installed, TransitNetwork.forSchedule(loaded));
+  }
+
+  /**
+   * Test the load method where the model holds stops besides those of the
+   * network.
+   *
+   * The network of the schedule may not then be that saved, so should be
+   * left to be compiled.
+   */
+  @Test
+  public void testLoadWithOtherStops() throws IOException {
+    tearDown();
+    new Stop(4, "D", 56, 10);
+    NetworkFile network = NetworkFile.read(file, SOURCE_HASH);
+    network.load();
+    assertEquals(0, network.numberOfNetworksInstalled());
+    assertEquals(4, TransitNetwork.forSchedule(network.getSchedules().get(0)).numberOfStops());
+  }
+
+  /**
+   * Test the read method for a file built from other data.
+   */
+  @Test
+  public void testReadWithOtherSourceHash() throws IOException {
+    assertNull(NetworkFile.read(file, SOURCE_HASH + 1));
+    assertNull(NetworkFile.read(new File(folder.getRoot(), "missing.bin"), SOURCE_HASH));
+  }
+
+  /**
+   * Test the read method for a truncated file.
+   */
+  @Test
+  public void testReadTruncatedFile() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(raf.length() - 10);
+    }
+    thrown.expect(IOException.class);
+    thrown.expectMessage("is corrupt");
+    NetworkFile.read(file, SOURCE_HASH);
+  }
+
+  /**
+   * Test the save method for a network referring to a stop it does not hold.
+   */
+  @Test
+  public void testSaveWithMissingStop() throws IOException {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("is not within the network");
+    NetworkFile.save(file, SOURCE_HASH, Arrays.asList(a, b), Arrays.asList(outbound, inbound), Arrays.asList(bus), Arrays.asList(schedule));
+  }
+}
@@ -115,6 +115,23 @@ public class RouteTest {
     assertEquals(Arrays.asList(route, invertedRoute), Route.findRouteByNumber(routeNumber));
   }
 
+  /**
+   * Test findRoute method.
+   *
+   * Routes should be found by their number and description, and should no
+   * longer be found once removed.
+   */
+  @Test
+  public void testFindRoute() {
+    assertEquals(invertedRoute, Route.findRoute(routeNumber, invertedRouteDescription));
+    assertEquals(routeWithStops, Route.findRoute(routeWithStopsNumber, routeWithStopsDescription));
+    assertEquals(null, Route.findRoute(routeWithStopsNumber, routeDescription));
+
+    route.remove();
+    assertEquals(null, Route.findRoute(routeNumber, routeDescription));
+    assertEquals(Arrays.asList(invertedRoute), Route.findRouteByNumber(routeNumber));
+  }
+
   /**
    * Test has number.
    *
@@ -267,6 +284,39 @@ public class RouteTest {
     }
   }
 
+  /**
+   * Test cumulativeTime method.
+   *
+   * The cumulative time to each stop should match the cumulative timings,
+   * and a position beyond the route should be rejected.
+   */
+  @Test
+  public void testCumulativeTime() {
+    int[] expected = new int[] {0, 3, 8, 19, 23};
+    int[] expectedRushHour = new int[] {0, 4, 10, 23, 29};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], routeWithStops.cumulativeTime(i, false));
+      assertEquals(expectedRushHour[i], routeWithStops.cumulativeTime(i, true));
+    }
+    thrown.expect(IndexOutOfBoundsException.class);
+    thrown.expectMessage("no stop at position 5 on route");
+    routeWithStops.cumulativeTime(5, false);
+  }
+
+  /**
+   * Test stopIndex method with a stop visited twice.
+   *
+   * A stop visited more than once should be found at its first visit.
+   */
+  @Test
+  public void testStopIndexWithRepeatedStop() {
+    routeWithStops.addStop(stop1, 2, 2);
+    assertEquals(1, routeWithStops.stopIndex(stop1));
+    assertEquals(4, routeWithStops.stopIndex(routeWithStopsEnd));
+    assertEquals(-1, routeWithStops.stopIndex(routeEnd));
+    assertEquals(routeWithStops.journeyTimeBetweenStops(stop1, routeWithStopsEnd, false), 20);
+  }
+
   /**
    * Test includesStop method.
    *
@@ -402,6 +452,37 @@ public class RouteTest {
     assertNull(routeWithStops.findInverted());
   }
 
+  /**
+   * Test findInverted method once the inverted route has been removed.
+   */
+  @Test
+  public void testFindInvertedAfterRemove() {
+    invertedRoute.remove();
+    assertNull(route.findInverted());
+    assertEquals(Route.findRoutesIncludingStop(routeStart), Arrays.asList(route));
+  }
+
+  /**
+   * Test findIncidences method.
+   *
+   * Stops added to a route after its creation should be indexed, along with
+   * their positions on the route.
+   */
+  @Test
+  public void testFindIncidences() {
+    List<Path.Incidence> incidences = Path.findIncidences(routeStart);
+    assertEquals(2, incidences.size());
+    assertEquals(route, incidences.get(0).getPath());
+    assertEquals(0, incidences.get(0).getPosition());
+    assertEquals(invertedRoute, incidences.get(1).getPath());
+    assertEquals(1, incidences.get(1).getPosition());
+
+    incidences = Path.findIncidences(stop2);
+    assertEquals(1, incidences.size());
+    assertEquals(routeWithStops, incidences.get(0).getPath());
+    assertEquals(2, incidences.get(0).getPosition());
+  }
+
   /**
    * Test findRoutesIncludingStop method.
    */
@@ -62,8 +62,11 @@ public class RouteTimetableTest {
       mock(Stop.class)
     });
     when(mockedRoute.getStops()).thenReturn(mockedStops);
-    for (Stop s : mockedStops) {
-      when(mockedRoute.includesStop(s)).thenReturn(true);
+    for (int i = 0; i < mockedStops.size(); i++) {
+      when(mockedRoute.includesStop(mockedStops.get(i))).thenReturn(true);
+      when(mockedRoute.stopIndex(mockedStops.get(i))).thenReturn(i);
+      when(mockedRoute.cumulativeTime(i, false)).thenReturn(stopTiming.get(i));
+      when(mockedRoute.cumulativeTime(i, true)).thenReturn(rushHourStopTiming.get(i));
     }
 
     mockedSchedule = mock(Schedule.class);
@@ -110,6 +113,23 @@ public class RouteTimetableTest {
     }
   }
 
+  /**
+   * Test timeAtStopIndex method.
+   *
+   * The timeAtStopIndex method gets the time at which the bus operating a
+   * RouteTimetable is due at the stop at a position, and should agree with
+   * getStopTimes.
+   */
+  @Test
+  public void testTimeAtStopIndex() {
+    List<Integer> stopTimes = routeTimetable.getStopTimes();
+    assertEquals(mockedStops.size(), stopTimes.size());
+    for (int i = 0; i < mockedStops.size(); i++) {
+      assertEquals(startTime + stopTiming.get(i), routeTimetable.timeAtStopIndex(i));
+      assertEquals((int) stopTimes.get(i), routeTimetable.timeAtStopIndex(i));
+    }
+  }
+
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
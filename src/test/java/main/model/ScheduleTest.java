@@ -52,8 +52,10 @@ public class ScheduleTest {
 
     mockedRoute1 = mock(Route.class);
     when(mockedRoute1.equals(mockedRoute1)).thenReturn(true);
+    when(mockedRoute1.stopIndex(any(Stop.class))).thenReturn(-1);
     mockedRoute2 = mock(Route.class);
     when(mockedRoute2.equals(mockedRoute2)).thenReturn(true);
+    when(mockedRoute2.stopIndex(any(Stop.class))).thenReturn(-1);
 
     mockedRouteTimetable = mock(RouteTimetable.class);
     when(mockedRouteTimetable.getRoute()).thenReturn(mockedRoute1);
@@ -225,6 +227,39 @@ public class ScheduleTest {
     assertEquals(null, Schedule.findSchedule(weekday2015));
   }
 
+  /**
+   * Test the findSchedule static method across consecutive schedules.
+   *
+   * Where several schedules follow one another on the same operating day,
+   * the schedule covering each date should be found, including on the first
+   * and last days of each. Removed schedules should no longer be found.
+   */
+  @Test
+  public void testFindScheduleAcrossConsecutiveSchedules() {
+    Schedule earlierSunday = new Schedule(
+        LocalDate.of(2013, Month.JANUARY, 1),
+        LocalDate.of(2013, Month.DECEMBER, 31),
+        DayOption.SUNDAY
+        );
+    Schedule laterSunday = new Schedule(
+        LocalDate.of(2015, Month.MARCH, 1),
+        LocalDate.of(2015, Month.DECEMBER, 31),
+        DayOption.SUNDAY
+        );
+
+    assertEquals(earlierSunday, Schedule.findSchedule(LocalDate.of(2013, Month.DECEMBER, 29)));
+    assertEquals(sundaySchedule, Schedule.findSchedule(LocalDate.of(2014, Month.JANUARY, 5)));
+    assertEquals(sundaySchedule, Schedule.findSchedule(LocalDate.of(2014, Month.DECEMBER, 28)));
+    // Between the end of one schedule and the start of the next
+    assertEquals(null, Schedule.findSchedule(LocalDate.of(2015, Month.FEBRUARY, 22)));
+    assertEquals(laterSunday, Schedule.findSchedule(LocalDate.of(2015, Month.MARCH, 1)));
+    assertEquals(saturdaySchedule, Schedule.findSchedule(LocalDate.of(2015, Month.FEBRUARY, 28)));
+
+    Schedule.removeSchedule(sundaySchedule);
+    assertEquals(null, Schedule.findSchedule(LocalDate.of(2014, Month.JANUARY, 5)));
+    assertEquals(earlierSunday, Schedule.findSchedule(LocalDate.of(2013, Month.DECEMBER, 29)));
+  }
+
   /**
    * Test scheduleExists method.
    *
@@ -582,6 +617,46 @@ public class ScheduleTest {
     assertEquals(saturdaySchedule.nextDepartureRouteTimetable(10 * 60 + 18, mock(Stop.class), mockedRoute2), busRouteTimetables.get(4));
   }
 
+  /**
+   * Test the nextDepartureRouteTimetable method for stops along a route.
+   *
+   * Departures from stops along a route are found within the departure
+   * index, which should give the same route timetables as a scan, choosing
+   * the route timetable added first where two depart at the same time, and
+   * which should reflect route timetables added after it was built.
+   */
+  @Test
+  public void testNextDepartureRouteTimetableWithIndex() {
+    Stop s1 = new Stop(1, "S1", 0, 0, false);
+    Stop s2 = new Stop(2, "S2", 0, 0, false);
+    Route route = new Route("1", "S1 - S2", s1);
+    route.addStop(s2, 5, 7);
+    try {
+      RouteTimetable late = new RouteTimetable(route, saturdaySchedule, 10 * 60 + 30, false);
+      RouteTimetable early = new RouteTimetable(route, saturdaySchedule, 10 * 60, false);
+      RouteTimetable rushHour = new RouteTimetable(route, saturdaySchedule, 10 * 60 + 28, true);
+      // Departs at the same time as early, so should never be chosen
+      new RouteTimetable(route, saturdaySchedule, 10 * 60, false);
+      saturdaySchedule.indexDepartures();
+
+      assertEquals(early, saturdaySchedule.nextDepartureRouteTimetable(9 * 60, s1, route));
+      assertEquals(early, saturdaySchedule.nextDepartureRouteTimetable(10 * 60, s1, route));
+      assertEquals(rushHour, saturdaySchedule.nextDepartureRouteTimetable(10 * 60 + 1, s1, route));
+      assertEquals(late, saturdaySchedule.nextDepartureRouteTimetable(10 * 60 + 29, s1, route));
+      assertEquals(early, saturdaySchedule.nextDepartureRouteTimetable(10 * 60 + 5, s2, route));
+      // The rush hour departure reaches S2 at 10:35, as does the later
+      // departure, which was added first
+      assertEquals(late, saturdaySchedule.nextDepartureRouteTimetable(10 * 60 + 6, s2, route));
+      assertEquals(10 * 60 + 35, saturdaySchedule.nextDepartureTime(10 * 60 + 35, s2, route));
+
+      RouteTimetable added = new RouteTimetable(route, saturdaySchedule, 11 * 60, false);
+      assertEquals(added, saturdaySchedule.nextDepartureRouteTimetable(10 * 60 + 31, s1, route));
+      assertEquals(early, saturdaySchedule.nextDepartureRouteTimetable(10 * 60, s2, route));
+    } finally {
+      Path.removePath(route);
+    }
+  }
+
   /**
    * Test the nextDepartureRouteTimetable method when no further departures
    * are available on a given day.
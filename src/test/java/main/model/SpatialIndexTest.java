@@ -0,0 +1,151 @@
+package main.model;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SpatialIndexTest class contains a series of unit tests for the
+ * SpatialIndex class.
+ *
+ * Queries of the index are checked against a comparison of the point
+ * queried with every stop.
+ */
+public class SpatialIndexTest {
+
+  private SpatialIndex index;
+  private List<Stop> stops;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  /**
+   * Creates an index of stops scattered around Aalborg, some of which share
+   * coordinates, without adding them to the list of all stops.
+   */
+  @Before
+  public void setUp() {
+    index = new SpatialIndex();
+    stops = new ArrayList<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      double latitude = 57.0 + random.nextDouble() * 0.1;
+      double longitude = 9.9 + random.nextDouble() * 0.15;
+      if (i % 50 == 49) {
+        // Share the coordinates of an earlier stop
+        latitude = stops.get(i - 1).getLatitude();
+        longitude = stops.get(i - 1).getLongitude();
+      }
+      Stop stop = new Stop(i, "Stop " + i, latitude, longitude, false);
+      stops.add(stop);
+      index.add(stop);
+    }
+  }
+
+  /**
+   * Finds the stops within a distance of a point by comparing the point
+   * with every stop.
+   */
+  private List<Stop> bruteForceWithin(double latitude, double longitude, int radius) {
+    List<Stop> within = new ArrayList<>();
+    for (Stop s : stops) {
+      if (Stop.getDistanceBetweenPoints(latitude, longitude, s.getLatitude(), s.getLongitude()) <= radius) {
+        within.add(s);
+      }
+    }
+    return within;
+  }
+
+  /**
+   * Test the findWithin method.
+   *
+   * The stops found should be exactly those within the radius, in the order
+   * in which they were added, for a range of radii.
+   */
+  @Test
+  public void testFindWithin() {
+    for (int radius : new int[] {0, 100, 450, 2000, 20_000}) {
+      for (int i = 0; i < stops.size(); i += 7) {
+        Stop s = stops.get(i);
+        assertEquals(bruteForceWithin(s.getLatitude(), s.getLongitude(), radius),
+            index.findWithin(s.getLatitude(), s.getLongitude(), radius));
+      }
+    }
+  }
+
+  /**
+   * Test the findNearest method.
+   *
+   * The distances of the stops found should be the k smallest distances, in
+   * increasing order, including where k exceeds the number of stops.
+   */
+  @Test
+  public void testFindNearest() {
+    Random random = new Random(7);
+    for (int i = 0; i < 100; i++) {
+      double latitude = 56.95 + random.nextDouble() * 0.2;
+      double longitude = 9.85 + random.nextDouble() * 0.25;
+      List<Integer> distances = new ArrayList<>();
+      for (Stop s : stops) {
+        distances.add(Stop.getDistanceBetweenPoints(latitude, longitude, s.getLatitude(), s.getLongitude()));
+      }
+      distances.sort(null);
+      for (int k : new int[] {0, 1, 5, 40}) {
+        List<Stop> nearest = index.findNearest(latitude, longitude, k);
+        assertEquals(k, nearest.size());
+        for (int j = 0; j < k; j++) {
+          Stop s = nearest.get(j);
+          assertEquals((int) distances.get(j),
+              Stop.getDistanceBetweenPoints(latitude, longitude, s.getLatitude(), s.getLongitude()));
+        }
+      }
+    }
+    assertEquals(stops.size(), index.findNearest(0, 0, stops.size() + 10).size());
+  }
+
+  /**
+   * Test the remove method.
+   *
+   * Removed stops should no longer be found; stops sharing their
+   * coordinates should be unaffected.
+   */
+  @Test
+  public void testRemove() {
+    Stop removed = stops.get(48);
+    Stop sharing = stops.get(49);
+    assertTrue(index.remove(removed));
+    assertFalse(index.remove(removed));
+    assertEquals(stops.size() - 1, index.size());
+    assertEquals(Arrays.asList(sharing), index.findWithin(sharing.getLatitude(), sharing.getLongitude(), 0));
+    assertEquals(sharing, index.findNearest(removed.getLatitude(), removed.getLongitude(), 1).get(0));
+  }
+
+  /**
+   * Test that stops either side of the antimeridian are found together.
+   */
+  @Test
+  public void testFindWithinAcrossAntimeridian() {
+    SpatialIndex pacific = new SpatialIndex();
+    Stop west = new Stop(1, "West", 0, 179.9995, false);
+    Stop east = new Stop(2, "East", 0, -179.9995, false);
+    pacific.add(west);
+    pacific.add(east);
+    assertEquals(Arrays.asList(west, east), pacific.findWithin(0, 179.9995, 200));
+    assertEquals(Arrays.asList(east, west), pacific.findNearest(0, -179.9999, 2));
+  }
+
+  /**
+   * Test the findWithin method with a negative radius.
+   */
+  @Test
+  public void testFindWithinWithNegativeRadius() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("radius must not be negative");
+    index.findWithin(57, 10, -1);
+  }
+}
@@ -0,0 +1,139 @@
+package main.model;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * StopNameIndexTest class contains a series of unit tests for the
+ * StopNameIndex class.
+ *
+ * Searches of the index are checked against a comparison of the text
+ * searched for with every name.
+ */
+public class StopNameIndexTest {
+
+  private StopNameIndex index;
+  private List<Stop> stops;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  /**
+   * Creates an index of stops with Danish names, without adding them to the
+   * list of all stops.
+   */
+  @Before
+  public void setUp() {
+    index = new StopNameIndex();
+    stops = new ArrayList<>();
+    String[] names = {
+      "N\u00f8rresundby Torv",
+      "Godth\u00e5b Skole (Godth\u00e5b/Aalborg)",
+      "Vestre Fjordvej",
+      "Aalborg Busterminal",
+      "V\u00e6nget",
+      "\u00d8stre All\u00e9",
+      "N\u00f8rresundby",
+      "Skolevej (N\u00f8rresundby)",
+      "\u00c5lborg Lufthavn",
+      "N\u00f8rresundby"
+    };
+    for (int i = 0; i < names.length; i++) {
+      Stop stop = new Stop(i, names[i], 57, 10, false);
+      stops.add(stop);
+      index.add(stop);
+    }
+  }
+
+  /**
+   * Test the normalise method.
+   *
+   * Case, accents and the Danish letters and their digraphs should be
+   * ignored.
+   */
+  @Test
+  public void testNormalise() {
+    assertEquals("norresundby", StopNameIndex.normalise("N\u00f8rresundby"));
+    assertEquals("norresundby", StopNameIndex.normalise("Noerresundby"));
+    assertEquals("norresundby", StopNameIndex.normalise("NORRESUNDBY"));
+    assertEquals("alborg", StopNameIndex.normalise("\u00c5lborg"));
+    assertEquals("alborg", StopNameIndex.normalise("Aalborg"));
+    assertEquals("vanget", StopNameIndex.normalise("V\u00e6nget"));
+    assertEquals("vanget", StopNameIndex.normalise("Vaenget"));
+    assertEquals("ostre alle", StopNameIndex.normalise("\u00d8stre All\u00e9"));
+  }
+
+  /**
+   * Test the findContaining method.
+   *
+   * The stops found should be exactly those whose normalised names contain
+   * the normalised text, in the order in which they were added, for text
+   * both shorter and longer than the sequences indexed.
+   */
+  @Test
+  public void testFindContaining() {
+    String[] queries = {"", "o", "No", "sko", "Noerre", "\u00e5lborg", "aalb", "borg", "ej", "(", "xyz", "Vestre Fjordvej"};
+    for (String query : queries) {
+      List<Stop> expected = new ArrayList<>();
+      for (Stop s : stops) {
+        if (StopNameIndex.normalise(s.getName()).contains(StopNameIndex.normalise(query))) {
+          expected.add(s);
+        }
+      }
+      assertEquals(query, expected, index.findContaining(query));
+    }
+    assertEquals(Arrays.asList(stops.get(1), stops.get(3), stops.get(8)), index.findContaining("alborg"));
+  }
+
+  /**
+   * Test the complete method.
+   *
+   * Exact matches should be given first, then names beginning with the
+   * text, then names with a word beginning with the text, then names only
+   * containing the text; shorter names first within each.
+   */
+  @Test
+  public void testComplete() {
+    assertEquals(
+        Arrays.asList(stops.get(6), stops.get(9), stops.get(0), stops.get(7)),
+        index.complete("norresundby", 10)
+        );
+    assertEquals(Arrays.asList(stops.get(6), stops.get(9)), index.complete("N\u00f8rresundby", 2));
+    assertEquals(
+        Arrays.asList(stops.get(8), stops.get(3), stops.get(1)),
+        index.complete("Aalborg", 10)
+        );
+    assertEquals(Arrays.asList(stops.get(7), stops.get(1)), index.complete("skole", 10));
+    assertEquals(new ArrayList<Stop>(), index.complete("sko", 0));
+  }
+
+  /**
+   * Test the remove method.
+   *
+   * Removed stops should no longer be found; stops sharing their names
+   * should be unaffected.
+   */
+  @Test
+  public void testRemove() {
+    assertTrue(index.remove(stops.get(6)));
+    assertFalse(index.remove(stops.get(6)));
+    assertEquals(stops.size() - 1, index.size());
+    assertEquals(Arrays.asList(stops.get(9), stops.get(0)), index.complete("N\u00f8rresundby", 2));
+    assertEquals(Arrays.asList(stops.get(0), stops.get(7), stops.get(9)), index.findContaining("n\u00f8rre"));
+  }
+
+  /**
+   * Test the complete method with a negative limit.
+   */
+  @Test
+  public void testCompleteWithNegativeLimit() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("limit must not be negative");
+    index.complete("sko", -1);
+  }
+}
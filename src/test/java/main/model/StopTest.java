@@ -191,6 +191,22 @@ public class StopTest {
     assertEquals(Arrays.asList(stops.get(1), stops.get(2)), Stop.findStop("b"));
   }
 
+  /**
+   * Test findStopsByName method.
+   *
+   * Stops whose names begin with the text should be given before those
+   * only containing it, ignoring case and accents; removed stops should not
+   * be found.
+   */
+  @Test
+  public void testFindStopsByName() {
+    assertEquals(Arrays.asList(stops.get(2), stops.get(1)), Stop.findStopsByName("b", 5));
+    assertEquals(Arrays.asList(stops.get(2)), Stop.findStopsByName("b", 1));
+    assertEquals(Arrays.asList(stops.get(1)), Stop.findStopsByName("\u00c5U busterminal", 5));
+    Stop.removeStop(stops.get(2));
+    assertEquals(Arrays.asList(stops.get(1)), Stop.findStopsByName("b", 5));
+  }
+
   /**
    * Test distanceTo method.
    */
@@ -202,6 +218,45 @@ public class StopTest {
       }
     }
   }
+  /**
+   * Test distanceTo method where distances are kept in a matrix.
+   *
+   * Distances between stops held within the matrix should match those
+   * calculated on demand, including for stops not held within it.
+   */
+  @Test
+  public void testDistanceToWithDistanceMatrix() {
+    tearDown();
+    System.setProperty(Stop.DISTANCE_MATRIX_PROPERTY, "true");
+    try {
+      setUp();
+    } finally {
+      System.clearProperty(Stop.DISTANCE_MATRIX_PROPERTY);
+    }
+    testDistanceTo();
+    Stop unlisted = new Stop(4, "Unlisted", stopLatitudes.get(1), stopLongitudes.get(1), false);
+    for (int i = 0; i < 3; i++) {
+      assertEquals((int) stopDistances.get(1).get(i), unlisted.distanceTo(stops.get(i)));
+      assertEquals((int) stopDistances.get(i).get(1), stops.get(i).distanceTo(unlisted));
+    }
+  }
+
+  /**
+   * Test findStopsWithin and findNearestStops methods.
+   *
+   * These search all stops within the system, so should not find stops once
+   * removed.
+   */
+  @Test
+  public void testFindNearbyStops() {
+    double latitude = stopLatitudes.get(0);
+    double longitude = stopLongitudes.get(0);
+    assertEquals(Arrays.asList(stops.get(0), stops.get(1), stops.get(2)), Stop.findNearestStops(latitude, longitude, 3));
+    assertEquals(Arrays.asList(stops.get(0), stops.get(1)), Stop.findStopsWithin(latitude, longitude, 3000));
+    Stop.removeStop(stops.get(0));
+    assertEquals(Arrays.asList(stops.get(1)), Stop.findNearestStops(latitude, longitude, 1));
+  }
+
   /**
    * Test getLatitude method.
    *
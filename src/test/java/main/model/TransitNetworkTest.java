@@ -0,0 +1,273 @@
+package main.model;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+
+/**
+ * TransitNetworkTest class contains a series of unit tests for the
+ * TransitNetwork class.
+ *
+ * The network compiled from a small schedule is checked against the model
+ * objects from which it was compiled.
+ */
+public class TransitNetworkTest {
+
+  private Stop a;
+  private Stop b;
+  private Stop c;
+  private Route outbound;
+  private Route inbound;
+  private Walk walk;
+  private Schedule schedule;
+  private RouteTimetable[] trips;
+
+  /**
+   * Creates a schedule of two routes between three stops, with a walk
+   * between the first and last stops.
+   *
+   * The outbound route has two non-rush hour trips, created out of order,
+   * and one rush hour trip; the inbound route has a single trip.
+   */
+  @Before
+  public void setUp() {
+    tearDown();
+    a = new Stop(1, "A", 57.01, 9.91);
+    b = new Stop(2, "B", 57.02, 9.92);
+    c = new Stop(3, "C", 57.03, 9.93);
+    // Creating stops creates walks, so remove all walks before continuing
+    for (Path p : new ArrayList<>(Path.getAllPaths())) {
+      Path.removePath(p);
+    }
+
+    outbound = new Route("T1", "A - C", a);
+    outbound.addStop(b, 5, 7);
+    outbound.addStop(c, 4, 6);
+    inbound = new Route("T2", "C - A", c);
+    inbound.addStop(a, 10, 12);
+    walk = new Walk(a, c);
+
+    schedule = new Schedule(
+        LocalDate.of(2015, Month.JANUARY, 1),
+        LocalDate.of(2015, Month.DECEMBER, 31),
+        Schedule.DayOption.WEEKDAYS
+        );
+    trips = new RouteTimetable[] {
+      new RouteTimetable(outbound, schedule, 8 * 60 + 10, false),
+      new RouteTimetable(outbound, schedule, 8 * 60, false),
+      new RouteTimetable(outbound, schedule, 17 * 60, true),
+      new RouteTimetable(inbound, schedule, 9 * 60, false)
+    };
+  }
+
+  /**
+   * Removes all model data created for the tests.
+   */
+  @After
+  public void tearDown() {
+    for (Schedule s : new ArrayList<Schedule>(Schedule.getAllSchedules())) {
+      Schedule.removeSchedule(s);
+    }
+    for (Stop s : new ArrayList<Stop>(Stop.getAllStops())) {
+      Stop.removeStop(s);
+    }
+    for (Path p : new ArrayList<Path>(Path.getAllPaths())) {
+      Path.removePath(p);
+    }
+  }
+
+  /**
+   * Test the stops of a compiled network.
+   *
+   * Every stop should have a dense index mapping back to the stop, with its
+   * ID and coordinates.
+   */
+  @Test
+  public void testStops() {
+    TransitNetwork network = TransitNetwork.compile(schedule);
+    assertEquals(3, network.numberOfStops());
+    for (Stop s : new Stop[] {a, b, c}) {
+      int index = network.stopIndex(s);
+      assertSame(s, network.stop(index));
+      assertEquals(s.getID(), network.stopId(index));
+      assertEquals(s.getLatitude(), network.stopLatitude(index), 0);
+      assertEquals(s.getLongitude(), network.stopLongitude(index), 0);
+    }
+    assertEquals(-1, network.stopIndex(new Stop(4, "D", 57, 10, false)));
+  }
+
+  /**
+   * Test the patterns and trips of a compiled network.
+   *
+   * Rush hour and non-rush hour trips of a route should form separate
+   * patterns, with the trips of each pattern sorted by departure time and
+   * holding the times of their RouteTimetables.
+   */
+  @Test
+  public void testPatternsAndTrips() {
+    TransitNetwork network = TransitNetwork.compile(schedule);
+    assertSame(schedule, network.getSchedule());
+    assertEquals(3, network.numberOfPatterns());
+    assertEquals(trips.length, network.numberOfTrips());
+
+    int rushHourPatterns = 0;
+    for (int p = 0; p < network.numberOfPatterns(); p++) {
+      Route route = network.patternRoute(p);
+      assertEquals(route.getStops().size(), network.patternLength(p));
+      for (int pos = 0; pos < network.patternLength(p); pos++) {
+        assertSame(route.getStops().get(pos), network.stop(network.patternStop(p, pos)));
+      }
+      if (network.isRushHourPattern(p)) {
+        rushHourPatterns++;
+      }
+      for (int t = network.firstTrip(p); t < network.endTrip(p); t++) {
+        RouteTimetable rt = network.tripRouteTimetable(t);
+        assertEquals(p, network.tripPattern(t));
+        assertSame(route, rt.getRoute());
+        assertEquals(network.isRushHourPattern(p), rt.isRushHour());
+        for (int pos = 0; pos < network.patternLength(p); pos++) {
+          assertEquals(rt.timeAtStopIndex(pos), network.tripTime(t, pos));
+        }
+        if (t > network.firstTrip(p)) {
+          assertTrue(network.tripTime(t - 1, 0) <= network.tripTime(t, 0));
+        }
+      }
+    }
+    assertEquals(1, rushHourPatterns);
+  }
+
+  /**
+   * Test the earliestTrip method.
+   */
+  @Test
+  public void testEarliestTrip() {
+    TransitNetwork network = TransitNetwork.compile(schedule);
+    int pattern = network.stopPattern(network.firstStopPattern(network.stopIndex(b)));
+    int position = network.stopPatternPosition(network.firstStopPattern(network.stopIndex(b)));
+    if (network.isRushHourPattern(pattern)) {
+      pattern = network.stopPattern(network.firstStopPattern(network.stopIndex(b)) + 1);
+      position = network.stopPatternPosition(network.firstStopPattern(network.stopIndex(b)) + 1);
+    }
+    assertSame(trips[1], network.tripRouteTimetable(network.earliestTrip(pattern, position, 8 * 60)));
+    assertSame(trips[1], network.tripRouteTimetable(network.earliestTrip(pattern, position, 8 * 60 + 5)));
+    assertSame(trips[0], network.tripRouteTimetable(network.earliestTrip(pattern, position, 8 * 60 + 6)));
+    assertEquals(-1, network.earliestTrip(pattern, position, 8 * 60 + 16));
+  }
+
+  /**
+   * Test the adjacency lists of a compiled network.
+   *
+   * Each stop should list exactly the patterns serving it, with its position
+   * on each, and the walks from it.
+   */
+  @Test
+  public void testAdjacency() {
+    TransitNetwork network = TransitNetwork.compile(schedule);
+    int[] expectedPatterns = {3, 2, 3};
+    Stop[] stops = {a, b, c};
+    for (int i = 0; i < stops.length; i++) {
+      int s = network.stopIndex(stops[i]);
+      assertEquals(expectedPatterns[i], network.endStopPatterns(s) - network.firstStopPattern(s));
+      for (int e = network.firstStopPattern(s); e < network.endStopPatterns(s); e++) {
+        assertEquals(s, network.patternStop(network.stopPattern(e), network.stopPatternPosition(e)));
+      }
+    }
+
+    int from = network.stopIndex(a);
+    assertEquals(1, network.endFootpaths(from) - network.firstFootpath(from));
+    int footpath = network.firstFootpath(from);
+    assertEquals(network.stopIndex(c), network.footpathTarget(footpath));
+    assertEquals(walk.walkingTime(), network.footpathDuration(footpath));
+    assertSame(walk, network.footpathWalk(footpath));
+    assertEquals(0, network.endFootpaths(network.stopIndex(b)) - network.firstFootpath(network.stopIndex(b)));
+  }
+
+  /**
+   * Test the forSchedule method.
+   *
+   * The same network should be returned until the schedule changes, and a
+   * network should be unaffected by changes made after it was compiled.
+   */
+  @Test
+  public void testForSchedule() {
+    TransitNetwork network = TransitNetwork.forSchedule(schedule);
+    assertSame(network, TransitNetwork.forSchedule(schedule));
+
+    new RouteTimetable(inbound, schedule, 10 * 60, false);
+    TransitNetwork recompiled = TransitNetwork.forSchedule(schedule);
+    assertNotSame(network, recompiled);
+    assertEquals(trips.length, network.numberOfTrips());
+    assertEquals(trips.length + 1, recompiled.numberOfTrips());
+  }
+
+  /**
+   * Test the forSchedule method when called by several threads at once.
+   *
+   * The network should be compiled once, and the same network returned to
+   * every thread.
+   */
+  @Test
+  public void testForScheduleConcurrently() throws Exception {
+    final TransitNetwork[] networks = new TransitNetwork[4];
+    Thread[] threads = new Thread[networks.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int thread = i;
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          networks[thread] = TransitNetwork.forSchedule(schedule);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (TransitNetwork network : networks) {
+      assertSame(networks[0], network);
+    }
+    assertSame(networks[0], TransitNetwork.forSchedule(schedule));
+  }
+
+  /**
+   * Test the forSchedule method once a path has been replaced by another.
+   *
+   * The number of paths is unchanged, but the network should nonetheless be
+   * recompiled with the footpath of the new walk.
+   */
+  @Test
+  public void testForScheduleAfterPathReplaced() {
+    TransitNetwork network = TransitNetwork.forSchedule(schedule);
+    walk.remove();
+    new Walk(b, c);
+    TransitNetwork recompiled = TransitNetwork.forSchedule(schedule);
+    assertNotSame(network, recompiled);
+    assertEquals(1, recompiled.endFootpaths(recompiled.stopIndex(b)) - recompiled.firstFootpath(recompiled.stopIndex(b)));
+    assertEquals(0, recompiled.endFootpaths(recompiled.stopIndex(a)) - recompiled.firstFootpath(recompiled.stopIndex(a)));
+  }
+
+  /**
+   * Test the forSchedule method once the model has been replaced.
+   *
+   * The network of a schedule replaced by an update of the model should be
+   * kept for queries begun against it, rather than being recompiled against
+   * the new model.
+   */
+  @Test
+  public void testForScheduleAfterModelUpdate() {
+    TransitNetwork network = TransitNetwork.forSchedule(schedule);
+    ModelLock.update(new Runnable() {
+      @Override
+      public void run() {
+        Schedule.removeSchedule(schedule);
+        outbound.remove();
+        new Walk(b, c);
+      }
+    });
+    assertSame(network, TransitNetwork.forSchedule(schedule));
+    assertEquals(3, TransitNetwork.compile(schedule).numberOfPatterns());
+  }
+}
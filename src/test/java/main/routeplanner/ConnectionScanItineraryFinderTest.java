@@ -0,0 +1,159 @@
+package main.routeplanner;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.time.*;
+
+import main.capacitytracker.CapacityCalculator.CrowdednessIndicator;
+import main.model.*;
+
+import static main.routeplanner.ExampleNetwork.*;
+
+/**
+ * ConnectionScanItineraryFinderTest class contains a series of unit tests for
+ * the ConnectionScanItineraryFinder class.
+ *
+ * These tests use the example network described in {@link ExampleNetwork}.
+ */
+public class ConnectionScanItineraryFinderTest {
+
+  private ConnectionScanItineraryFinder finder;
+
+  @BeforeClass
+  public static void setUpClass() {
+    ExampleNetwork.setUp();
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    ExampleNetwork.tearDown();
+  }
+
+  @Before
+  public void setUp() {
+    // Create finder between N1 -> N5, at 6:02am on Weds 2nd December 2015
+    finder = new ConnectionScanItineraryFinder(nodes[0], nodes[4], LocalDateTime.of(DATE, LocalTime.of(6, 2)));
+  }
+
+  /**
+   * Test the findBestItinerary method.
+   *
+   * The earliest arrival at N5 is by L1 from N1 at 6:02am to N3 at 6:25am,
+   * then walking from N3 to N5, arriving 6:27am.
+   */
+  @Test
+  public void testFindBestItinerary() {
+    Itinerary expected = new Itinerary(DATE, Arrays.asList(
+          busLeg(routes[0], 6 * 60 + 2, nodes[0], nodes[2]),
+          walkLeg(walks[2], 6 * 60 + 25)
+          ));
+    assertEquals(expected, finder.findBestItinerary());
+  }
+
+  /**
+   * Test the findBestItineraries method.
+   *
+   * After the 6:02am departure, the next itinerary departs on L5 at 6:03am,
+   * walks from N7 to N4 and takes L3 at 6:20am. The following itinerary
+   * departs on L5 at 6:06am, also catching L3 at 6:20am.
+   */
+  @Test
+  public void testFindBestItineraries() {
+    List<Itinerary> expected = Arrays.asList(
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[0], 6 * 60 + 2, nodes[0], nodes[2]),
+            walkLeg(walks[2], 6 * 60 + 25)
+            )),
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 3, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 15),
+            busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+            )),
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 6, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 18),
+            busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+            ))
+        );
+    assertEquals(expected, finder.findBestItineraries(3));
+  }
+
+  /**
+   * Test an itinerary beginning with a walk from the starting stop.
+   *
+   * From N3 at 6:00am to N7, the traveller walks to N6 and takes L4 at
+   * 6:10am, arriving 6:24am.
+   */
+  @Test
+  public void testInitialWalk() {
+    finder = new ConnectionScanItineraryFinder(nodes[2], nodes[6], LocalDateTime.of(DATE, LocalTime.of(6, 0)));
+    Itinerary expected = new Itinerary(DATE, Arrays.asList(
+          walkLeg(walks[4], 6 * 60),
+          busLeg(routes[3], 6 * 60 + 10, nodes[5], nodes[6])
+          ));
+    assertEquals(expected, finder.findBestItinerary());
+  }
+
+  /**
+   * Test that the Connection Scan and RAPTOR engines find itineraries with
+   * the same arrival times between every pair of stops.
+   */
+  @Test
+  public void testArrivalTimesMatchRaptor() {
+    for (Stop origin : nodes) {
+      for (Stop destination : nodes) {
+        if (origin == destination) {
+          continue;
+        }
+        for (int minute = 0; minute < 40; minute += 3) {
+          LocalDateTime time = LocalDateTime.of(DATE, LocalTime.of(6, minute));
+          Itinerary csa = new ConnectionScanItineraryFinder(origin, destination, time).findBestItinerary();
+          Itinerary raptor = new RaptorItineraryFinder(origin, destination, time).findBestItinerary();
+          String query = origin.getName() + " - " + destination.getName() + " at " + time;
+          assertEquals(query, raptor == null, csa == null);
+          if (raptor != null) {
+            assertEquals(query, lastLegEnd(raptor), lastLegEnd(csa));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Test that the crowdedness filter prunes crowded trips during the scan.
+   *
+   * With every trip on L1 crowded, a GREEN filter finds the itinerary taking
+   * L5 and then L3.
+   */
+  @Test
+  public void testFilterPrunesCrowdedTrips() {
+    finder.setTripCrowdedness(crowdedRoute(routes[0]));
+    finder.setFilter(CrowdednessIndicator.GREEN);
+    Itinerary expected = new Itinerary(DATE, Arrays.asList(
+          busLeg(routes[4], 6 * 60 + 3, nodes[0], nodes[6]),
+          walkLeg(walks[1], 6 * 60 + 15),
+          busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+          ));
+    assertEquals(expected, finder.findBestItinerary());
+  }
+
+  /**
+   * Test that no itinerary is returned when there are no further departures.
+   */
+  @Test
+  public void testNoFurtherDepartures() {
+    finder = new ConnectionScanItineraryFinder(nodes[0], nodes[4], LocalDateTime.of(DATE, LocalTime.of(20, 0)));
+    assertNull(finder.findBestItinerary());
+    assertTrue(finder.findBestItineraries(3).isEmpty());
+  }
+
+  /**
+   * Gets the end time of the last leg of an itinerary.
+   */
+  private static int lastLegEnd(Itinerary itinerary) {
+    List<ItineraryLeg> legs = itinerary.getLegs();
+    return legs.get(legs.size() - 1).getEndTime();
+  }
+}
@@ -99,4 +99,41 @@ public class CostEstimatorTest {
     assertFalse(sp5.equals(sp1));
     assertFalse(sp1.equals(o));
   }
+
+  /**
+   * Test the CostEstimator#shortestPaths method.
+   *
+   * The blocked calculation must give the same costs as the plain
+   * Floyd-Warshall algorithm, including where the number of stops is not a
+   * multiple of the tile size.
+   */
+  @Test
+  public void testShortestPaths() {
+    int n = 2 * CostEstimator.BLOCK_SIZE + 13;
+    Random random = new Random(1);
+    int[] costs = new int[n * n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        if (i == j) {
+          costs[i * n + j] = 0;
+        } else if (random.nextInt(20) == 0) {
+          costs[i * n + j] = 1 + random.nextInt(60);
+        } else {
+          costs[i * n + j] = CostEstimator.UNCONNECTED;
+        }
+      }
+    }
+    int[] expected = costs.clone();
+    for (int k = 0; k < n; k++) {
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          if (expected[i * n + j] > expected[i * n + k] + expected[k * n + j]) {
+            expected[i * n + j] = expected[i * n + k] + expected[k * n + j];
+          }
+        }
+      }
+    }
+    CostEstimator.shortestPaths(costs, n);
+    assertArrayEquals(expected, costs);
+  }
 }
@@ -0,0 +1,125 @@
+package main.routeplanner;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.*;
+
+import main.model.*;
+
+/**
+ * CostsTableTest class contains a series of unit tests for the CostsTable
+ * class.
+ *
+ * The CostsTable persists the costs generated by the CostEstimator. These
+ * tests ensure that saved tables are loaded intact, and that tables saved
+ * for a different network are never loaded.
+ */
+public class CostsTableTest {
+
+  private Stop s1;
+  private Stop s2;
+  private Stop s3;
+  private CostsTable table;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Before
+  public void setUp() {
+    s1 = new Stop(1, "Stop 1", 0, 0);
+    s2 = new Stop(2, "Stop 2", 0, 0);
+    s3 = new Stop(3, "Stop 3", 0, 0);
+    table = new CostsTable(42, new int[] {2, 1}, IntBuffer.wrap(new int[] {0, 5, 7, 0}));
+  }
+
+  @After
+  public void tearDown() {
+    for (Stop s : new ArrayList<Stop>(Stop.getAllStops())) {
+      Stop.removeStop(s);
+    }
+    for (Path p : new ArrayList<Path>(Path.getAllPaths())) {
+      Path.removePath(p);
+    }
+  }
+
+  /**
+   * Test the CostsTable#cost method.
+   *
+   * Costs are looked up by stop ID, and stops not within the table are
+   * unconnected.
+   */
+  @Test
+  public void testCost() {
+    assertEquals(0, table.cost(s1, s1));
+    assertEquals(7, table.cost(s1, s2));
+    assertEquals(5, table.cost(s2, s1));
+    assertEquals(CostEstimator.UNCONNECTED, table.cost(s1, s3));
+    assertEquals(CostEstimator.UNCONNECTED, table.cost(s3, s2));
+  }
+
+  /**
+   * Test that a table of the wrong size is rejected.
+   */
+  @Test
+  public void testWrongSize() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("costs table must hold 2 x 2 costs");
+    new CostsTable(42, new int[] {1, 2}, IntBuffer.wrap(new int[] {0, 5, 7}));
+  }
+
+  /**
+   * Test that a saved table is loaded intact.
+   */
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    File file = new File(folder.getRoot(), "costs.bin");
+    table.save(file);
+    CostsTable loaded = CostsTable.load(file, 42);
+    assertNotNull(loaded);
+    assertEquals(42, loaded.getNetworkHash());
+    assertEquals(0, loaded.cost(s2, s2));
+    assertEquals(7, loaded.cost(s1, s2));
+    assertEquals(5, loaded.cost(s2, s1));
+    assertEquals(CostEstimator.UNCONNECTED, loaded.cost(s1, s3));
+  }
+
+  /**
+   * Test that tables are not loaded for a different network, or from files
+   * which are missing or do not hold a table.
+   */
+  @Test
+  public void testLoadRejected() throws IOException {
+    File file = new File(folder.getRoot(), "costs.bin");
+    assertNull(CostsTable.load(file, 42));
+    table.save(file);
+    assertNull(CostsTable.load(file, 43));
+    assertNull(CostsTable.load(folder.newFile("empty.bin"), 42));
+  }
+
+  /**
+   * Test the CostsTable#networkHash method.
+   *
+   * The hash must change whenever the stops or the journey times of the
+   * network change.
+   */
+  @Test
+  public void testNetworkHash() {
+    int[] stopIDs = new int[] {1, 2, 3};
+    Route route = new Route("R1", "Stop 1 - Stop 3", s1);
+    route.addStop(s2, 5, 6);
+    long hash = CostsTable.networkHash(stopIDs, Path.getAllPaths());
+    assertEquals(hash, CostsTable.networkHash(stopIDs, Path.getAllPaths()));
+    assertNotEquals(hash, CostsTable.networkHash(new int[] {1, 2}, Path.getAllPaths()));
+    route.addStop(s3, 4, 4);
+    assertNotEquals(hash, CostsTable.networkHash(stopIDs, Path.getAllPaths()));
+  }
+}
@@ -0,0 +1,216 @@
+package main.routeplanner;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+
+import main.capacitytracker.CapacityCalculator.CrowdednessIndicator;
+import main.model.*;
+
+/**
+ * ExampleNetwork sets-up the small example network used to test the route
+ * planning engines.
+ *
+ * This is the same network as is used within ItineraryFinderTest. It consists
+ * of a weekday schedule for the period 1st January 2015 to 31st December 2015
+ * with the following entries:-
+ *
+ * Route L1
+ * --------
+ *   N1    N2    N3
+ *  6:02  6:14  6:25
+ *  6:08  6:20  6:31
+ *  6:13  6:25  6:36
+ *  6:18  6:30  6:41
+ *  6:22  6:34  6:45
+ *
+ * Route L2
+ * --------
+ *   N4    N1    N2
+ *  6:05  6:18  6:30
+ *  6:15  6:28  6:40
+ *  6:25  6:38  6:50
+ *  6:33  6:46  6:58
+ *  6:41  6:54  7:06
+ *
+ * Route L3
+ * --------
+ *   N4    N5
+ *  6:05  6:15
+ *  6:10  6:20
+ *  6:15  6:25
+ *  6:20  6:30
+ *  6:23  6:33
+ *  6:26  6:36
+ *
+ * Route L4
+ * --------
+ *   N6    N7
+ *  6:02  6:16
+ *  6:10  6:24
+ *  6:18  6:32
+ *  6:26  6:40
+ *  6:30  6:44
+ *
+ * Route L5
+ * --------
+ *   N1    N7
+ *  6:00  6:12
+ *  6:03  6:15
+ *  6:06  6:18
+ *  6:09  6:21
+ *  6:12  6:24
+ *
+ * Walking paths are also created between:
+ *
+ *  N4 - N7: 1 minute (walks 0, 1)
+ *  N3 - N5: 2 minutes (walks 2, 3)
+ *  N3 - N6: 3 minutes (walks 4, 5)
+ *  N5 - N6: 1 minute (walks 6, 7)
+ */
+class ExampleNetwork {
+
+  static Schedule schedule;
+  static Stop[] nodes;
+  static Route[] routes;
+  static Walk[] walks;
+
+  /**
+   * The date used for queries against the example network, Weds 2nd
+   * December 2015.
+   */
+  static final LocalDate DATE = LocalDate.of(2015, Month.DECEMBER, 2);
+
+  /**
+   * Clears all existing model data and creates the example network.
+   */
+  static void setUp() {
+    tearDown();
+    // Define stops/nodes
+    nodes = new Stop[] {
+      new Stop(1, "N1", 0, 0),
+      new Stop(2, "N2", 0, 0),
+      new Stop(3, "N3", 0, 0),
+      new Stop(4, "N4", 0, 0),
+      new Stop(5, "N5", 0, 0),
+      new Stop(6, "N6", 0, 0),
+      new Stop(7, "N7", 0, 0)
+    };
+    // Creating stops creates walks, so remove all walks before
+    // continuing - walks are manually created for testing purposes
+    for (Path p : new ArrayList<>(Path.getAllPaths())) {
+      Path.removePath(p);
+    }
+
+    routes = new Route[5];
+
+    routes[0] = new Route("L1", "N1 - N3", nodes[0]);
+    routes[0].addStop(nodes[1], 12, 12);
+    routes[0].addStop(nodes[2], 11, 11);
+
+    routes[1] = new Route("L2", "N4 - N2", nodes[3]);
+    routes[1].addStop(nodes[0], 13, 13);
+    routes[1].addStop(nodes[1], 12, 12);
+
+    routes[2] = new Route("L3", "N4 - N5", nodes[3]);
+    routes[2].addStop(nodes[4], 10, 10);
+
+    routes[3] = new Route("L4", "N6 - N7", nodes[5]);
+    routes[3].addStop(nodes[6], 14, 14);
+
+    routes[4] = new Route("L5", "N1 - N7", nodes[0]);
+    routes[4].addStop(nodes[6], 12, 12);
+
+    walks = new Walk[] {
+      walk(nodes[3], nodes[6], 1),
+      walk(nodes[6], nodes[3], 1),
+      walk(nodes[2], nodes[4], 2),
+      walk(nodes[4], nodes[2], 2),
+      walk(nodes[2], nodes[5], 3),
+      walk(nodes[5], nodes[2], 3),
+      walk(nodes[4], nodes[5], 1),
+      walk(nodes[5], nodes[4], 1)
+    };
+
+    schedule = new Schedule(
+        LocalDate.of(2015, Month.JANUARY, 1),
+        LocalDate.of(2015, Month.DECEMBER, 31),
+        Schedule.DayOption.WEEKDAYS
+        );
+
+    int[][] startTimes = new int[][] {
+      {2, 8, 13, 18, 22},
+      {5, 15, 25, 33, 41},
+      {5, 10, 15, 20, 23, 26},
+      {2, 10, 18, 26, 30},
+      {0, 3, 6, 9, 12}
+    };
+    for (int r = 0; r < routes.length; r++) {
+      for (int startTime : startTimes[r]) {
+        new RouteTimetable(routes[r], schedule, 6 * 60 + startTime, false);
+      }
+    }
+  }
+
+  /**
+   * Removes all model data created for the example network.
+   */
+  static void tearDown() {
+    for (Schedule s : new ArrayList<Schedule>(Schedule.getAllSchedules())) {
+      Schedule.removeSchedule(s);
+    }
+    for (Stop s : new ArrayList<Stop>(Stop.getAllStops())) {
+      Stop.removeStop(s);
+    }
+    for (Path p : new ArrayList<Path>(Path.getAllPaths())) {
+      Path.removePath(p);
+    }
+    for (Bus b : new ArrayList<Bus>(Bus.getAllBuses())) {
+      Bus.removeBus(b);
+    }
+  }
+
+  /**
+   * Creates a walk with a fixed walking time.
+   */
+  private static Walk walk(Stop from, Stop to, final int minutes) {
+    return new Walk(from, to) {
+      @Override
+      public int walkingTime() {
+        return minutes;
+      }
+    };
+  }
+
+  /**
+   * Creates a bus leg on the trip of a route departing a stop at a time.
+   */
+  static ItineraryLeg busLeg(Route route, int departure, Stop origin, Stop destination) {
+    return new ItineraryLeg(
+        DATE,
+        schedule.nextDepartureRouteTimetable(departure, origin, route),
+        origin,
+        destination
+        );
+  }
+
+  /**
+   * Creates a walk leg starting at a time.
+   */
+  static ItineraryLeg walkLeg(Walk walk, int startTime) {
+    return new ItineraryLeg(DATE, walk, startTime);
+  }
+
+  /**
+   * Creates trip crowdedness estimates in which every trip on a route is RED
+   * and all other trips are GREEN.
+   */
+  static TripCrowdedness crowdedRoute(final Route crowded) {
+    return new TripCrowdedness(DATE) {
+      @Override
+      CrowdednessIndicator crowdedness(RouteTimetable rt, Stop stop) {
+        return rt.getRoute() == crowded ? CrowdednessIndicator.RED : CrowdednessIndicator.GREEN;
+      }
+    };
+  }
+}
@@ -0,0 +1,117 @@
+package main.routeplanner;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+import java.util.NoSuchElementException;
+
+/**
+ * IndexedMinHeapTest class contains a series of unit tests for the
+ * IndexedMinHeap class.
+ *
+ * The IndexedMinHeap holds the open nodes used within the ItineraryFinder,
+ * and must always return the node with the lowest priority first.
+ */
+public class IndexedMinHeapTest {
+
+  private IndexedMinHeap heap;
+
+  @Before
+  public void setUp() {
+    heap = new IndexedMinHeap(4);
+  }
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  /**
+   * Test nodes are polled in order of priority.
+   */
+  @Test
+  public void testPollMinOrdering() {
+    int[] keys = new int[] {50, 10, 40, 30, 20, 60};
+    for (int i = 0; i < keys.length; i++) {
+      heap.insert(i, keys[i]);
+    }
+    assertEquals(6, heap.size());
+    int[] expected = new int[] {1, 4, 3, 2, 0, 5};
+    for (int node : expected) {
+      assertEquals(node, heap.pollMin());
+    }
+    assertTrue(heap.isEmpty());
+  }
+
+  /**
+   * Test nodes with equal priority are polled in insertion order.
+   */
+  @Test
+  public void testTiesPolledInInsertionOrder() {
+    heap.insert(7, 5);
+    heap.insert(3, 5);
+    heap.insert(9, 5);
+    heap.insert(1, 6);
+    heap.decreaseKey(1, 5);
+    assertEquals(7, heap.pollMin());
+    assertEquals(3, heap.pollMin());
+    assertEquals(9, heap.pollMin());
+    assertEquals(1, heap.pollMin());
+  }
+
+  /**
+   * Test decreaseKey moves a node ahead of nodes with higher priorities,
+   * and ignores attempts to increase priority.
+   */
+  @Test
+  public void testDecreaseKey() {
+    heap.insert(0, 10);
+    heap.insert(1, 20);
+    heap.insert(2, 30);
+    heap.decreaseKey(2, 5);
+    assertEquals(5, heap.getKey(2));
+    heap.decreaseKey(0, 50);
+    assertEquals(10, heap.getKey(0));
+    assertEquals(2, heap.pollMin());
+    assertEquals(0, heap.pollMin());
+    assertEquals(1, heap.pollMin());
+  }
+
+  /**
+   * Test contains reflects insertion and removal, and that the heap grows
+   * beyond its initial capacity.
+   */
+  @Test
+  public void testContainsAndGrowth() {
+    heap.insert(100, 1);
+    assertTrue(heap.contains(100));
+    assertFalse(heap.contains(99));
+    assertFalse(heap.contains(1000));
+    heap.pollMin();
+    assertFalse(heap.contains(100));
+    heap.insert(100, 2);
+    heap.clear();
+    assertTrue(heap.isEmpty());
+    assertFalse(heap.contains(100));
+  }
+
+  /**
+   * Test inserting a node twice throws IllegalArgumentException.
+   */
+  @Test
+  public void testInsertDuplicate() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("node 1 is already in heap");
+    heap.insert(1, 1);
+    heap.insert(1, 2);
+  }
+
+  /**
+   * Test polling an empty heap throws NoSuchElementException.
+   */
+  @Test
+  public void testPollEmpty() {
+    thrown.expect(NoSuchElementException.class);
+    thrown.expectMessage("cannot poll an empty heap");
+    heap.pollMin();
+  }
+}
@@ -323,6 +323,22 @@ public class ItineraryFinderTest {
     assertEquals(expected, actual);
   }
 
+  /**
+   * Test the findBestItinerary method using the LANDMARKS heuristic.
+   *
+   * The heuristic only changes the order in which nodes are explored, so the
+   * same itinerary as for the COSTS_TABLE heuristic is expected.
+   */
+  @Test
+  public void testFindBestItineraryWithLandmarks() {
+    LocalDateTime time = LocalDateTime.of(2015, Month.DECEMBER, 2, 6, 2, 0);
+    ItineraryFinder costsTableFinder = new ItineraryFinder(nodes[0], nodes[4], time);
+    ItineraryFinder landmarksFinder = new ItineraryFinder(nodes[0], nodes[4], time);
+    landmarksFinder.setCostHeuristic(CostHeuristic.LANDMARKS);
+    assertEquals(CostHeuristic.LANDMARKS, landmarksFinder.getCostHeuristic());
+    assertEquals(costsTableFinder.findBestItinerary(), landmarksFinder.findBestItinerary());
+  }
+
   /**
    * Test the findBestItineraries method.
    *
@@ -486,6 +502,70 @@ public class ItineraryFinderTest {
     }
   }
 
+  /**
+   * Test that searches do not change the state of an ItineraryFinder.
+   *
+   * Finding several itineraries searches from successively later times, so
+   * a later search must still begin from the time of the query.
+   */
+  @Test
+  public void testRepeatedSearches() {
+    ItineraryFinder finder = new ItineraryFinder(nodes[0], nodes[4], LocalDateTime.of(2015, Month.DECEMBER, 2, 6, 2, 0));
+    Itinerary first = finder.findBestItinerary();
+    assertEquals(5, finder.findBestItineraries(5).size());
+    assertEquals(6 * 60 + 2, finder.getTime());
+    assertEquals(first, finder.findBestItinerary());
+  }
+
+  /**
+   * Test that one ItineraryFinder may be used by many threads at once.
+   */
+  @Test
+  public void testConcurrentSearches() throws InterruptedException {
+    final ItineraryFinder finder = new ItineraryFinder(nodes[0], nodes[4], LocalDateTime.of(2015, Month.DECEMBER, 2, 6, 2, 0));
+    final List<Itinerary> expected = finder.findBestItineraries(5);
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int j = 0; j < 20; j++) {
+              assertEquals(expected, finder.findBestItineraries(5));
+            }
+          } catch (Throwable t) {
+            failures.add(t);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(Collections.emptyList(), failures);
+  }
+
+  /**
+   * Test the getQuery method.
+   *
+   * The filter and cost heuristic set on the ItineraryFinder are held by its
+   * query.
+   */
+  @Test
+  public void testGetQuery() {
+    JourneyQuery query = new JourneyQuery(nodes[0], nodes[4], LocalDateTime.of(2015, Month.DECEMBER, 2, 6, 2, 0));
+    ItineraryFinder finder = new ItineraryFinder(query);
+    assertSame(query, finder.getQuery());
+    finder.setFilter(CapacityCalculator.CrowdednessIndicator.GREEN);
+    assertEquals(CapacityCalculator.CrowdednessIndicator.GREEN, finder.getQuery().getFilter());
+    assertEquals(CapacityCalculator.CrowdednessIndicator.RED, query.getFilter());
+    assertEquals(nodes[0], finder.getStartingStop());
+    assertEquals(nodes[4], finder.getEndingStop());
+    assertEquals(6 * 60 + 2, finder.getTime());
+  }
+
   /**
    * Test setFilter method.
    */
@@ -496,6 +576,31 @@ public class ItineraryFinderTest {
     assertEquals(CapacityCalculator.CrowdednessIndicator.ORANGE, itineraryFinder.getFilter());
   }
 
+  /**
+   * Test that the filter prunes crowded trips during the search.
+   *
+   * With every trip on L1 crowded, a GREEN filter finds Option 3 (see
+   * testFindBestItinerary) rather than discarding Option 1 once found.
+   */
+  @Test
+  public void testFilterPrunesCrowdedTrips() {
+    ItineraryFinder finder = new ItineraryFinder(nodes[0], nodes[4], LocalDateTime.of(2015, Month.DECEMBER, 2, 6, 2, 0)) {
+      @Override
+      TripCrowdedness createTripCrowdedness(LocalDate date) {
+        return ExampleNetwork.crowdedRoute(routes[0]);
+      }
+    };
+    finder.setFilter(CapacityCalculator.CrowdednessIndicator.GREEN);
+    LocalDate date = LocalDate.of(2015, Month.DECEMBER, 2);
+    Itinerary expected = new Itinerary(date, Arrays.asList(
+          new ItineraryLeg(date, schedule.nextDepartureRouteTimetable(60 * 6 + 3, nodes[0], routes[4]), nodes[0], nodes[6]),
+          new ItineraryLeg(date, walks[1], 60 * 6 + 15),
+          new ItineraryLeg(date, schedule.nextDepartureRouteTimetable(60 * 6 + 16, nodes[3], routes[2]), nodes[3], nodes[4])
+          ));
+    assertEquals(expected, finder.findBestItinerary());
+    assertEquals(3, finder.findBestItineraries(3).size());
+  }
+
   /**
    * Test the getDate method.
    */
@@ -610,4 +715,38 @@ public class ItineraryFinderTest {
     assertEquals(20, tArc.pi());
     assertEquals(20, midnightTArc.pi());
   }
+
+  /**
+   * Test the DepartureCache#nextDeparture method.
+   *
+   * Each departure should be resolved from the schedule only once, including
+   * the absence of a departure, until the cache is cleared.
+   */
+  @Test
+  public void testDepartureCache() {
+    Schedule mockSchedule = mock(Schedule.class);
+    RouteTimetable rt = schedule.nextDepartureRouteTimetable(60 * 6, nodes[0], routes[0]);
+    when(mockSchedule.nextDepartureRouteTimetable(60 * 6, nodes[0], routes[0])).thenReturn(rt);
+    when(mockSchedule.nextDepartureRouteTimetable(60 * 20, nodes[0], routes[0]))
+      .thenThrow(new IllegalArgumentException("no next departures available today"));
+    ItineraryFinder.DepartureCache departures = new ItineraryFinder.DepartureCache();
+
+    assertSame(rt, departures.nextDeparture(mockSchedule, routes[0], nodes[0], 60 * 6));
+    assertSame(rt, departures.nextDeparture(mockSchedule, routes[0], nodes[0], 60 * 6));
+    assertNull(departures.nextDeparture(mockSchedule, routes[0], nodes[0], 60 * 20));
+    assertNull(departures.nextDeparture(mockSchedule, routes[0], nodes[0], 60 * 20));
+    verify(mockSchedule, times(1)).nextDepartureRouteTimetable(60 * 6, nodes[0], routes[0]);
+    verify(mockSchedule, times(1)).nextDepartureRouteTimetable(60 * 20, nodes[0], routes[0]);
+
+    // Entries should survive growth of the cache
+    for (int time = 0; time < 1000; time++) {
+      departures.nextDeparture(mockSchedule, routes[1], nodes[1], time);
+    }
+    assertSame(rt, departures.nextDeparture(mockSchedule, routes[0], nodes[0], 60 * 6));
+    verify(mockSchedule, times(1)).nextDepartureRouteTimetable(60 * 6, nodes[0], routes[0]);
+
+    departures.clear();
+    assertSame(rt, departures.nextDeparture(mockSchedule, routes[0], nodes[0], 60 * 6));
+    verify(mockSchedule, times(2)).nextDepartureRouteTimetable(60 * 6, nodes[0], routes[0]);
+  }
 }
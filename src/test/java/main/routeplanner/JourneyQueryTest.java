@@ -0,0 +1,88 @@
+package main.routeplanner;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.time.*;
+import java.util.ArrayList;
+
+import main.capacitytracker.CapacityCalculator;
+import main.model.*;
+
+/**
+ * JourneyQueryTest class contains a series of unit tests for the JourneyQuery
+ * class.
+ *
+ * Queries are immutable, so these tests ensure that each method creating a
+ * changed query leaves the original query unchanged.
+ */
+public class JourneyQueryTest {
+
+  private Stop s1;
+  private Stop s2;
+  private JourneyQuery query;
+
+  @Before
+  public void setUp() {
+    s1 = new Stop(1, "Stop 1", 0, 0);
+    s2 = new Stop(2, "Stop 2", 0, 0);
+    query = new JourneyQuery(s1, s2, LocalDateTime.of(2015, Month.DECEMBER, 2, 6, 2, 0));
+  }
+
+  @After
+  public void tearDown() {
+    for (Stop s : new ArrayList<Stop>(Stop.getAllStops())) {
+      Stop.removeStop(s);
+    }
+    for (Path p : new ArrayList<Path>(Path.getAllPaths())) {
+      Path.removePath(p);
+    }
+  }
+
+  /**
+   * Test the values held by a new query.
+   */
+  @Test
+  public void testConstructor() {
+    assertEquals(s1, query.getStartingStop());
+    assertEquals(s2, query.getEndingStop());
+    assertEquals(LocalDate.of(2015, Month.DECEMBER, 2), query.getDate());
+    assertEquals(6 * 60 + 2, query.getTime());
+    assertEquals(CapacityCalculator.CrowdednessIndicator.RED, query.getFilter());
+    assertEquals(CostHeuristic.getDefault(), query.getCostHeuristic());
+  }
+
+  /**
+   * Test the withTime method.
+   */
+  @Test
+  public void testWithTime() {
+    JourneyQuery later = query.withTime(7 * 60);
+    assertEquals(7 * 60, later.getTime());
+    assertEquals(6 * 60 + 2, query.getTime());
+    assertEquals(s1, later.getStartingStop());
+    assertEquals(query.getDate(), later.getDate());
+  }
+
+  /**
+   * Test the withFilter method.
+   */
+  @Test
+  public void testWithFilter() {
+    JourneyQuery filtered = query.withFilter(CapacityCalculator.CrowdednessIndicator.GREEN);
+    assertEquals(CapacityCalculator.CrowdednessIndicator.GREEN, filtered.getFilter());
+    assertEquals(CapacityCalculator.CrowdednessIndicator.RED, query.getFilter());
+    assertEquals(query.getTime(), filtered.getTime());
+  }
+
+  /**
+   * Test the withCostHeuristic method.
+   */
+  @Test
+  public void testWithCostHeuristic() {
+    JourneyQuery landmarks = query.withCostHeuristic(CostHeuristic.LANDMARKS);
+    assertEquals(CostHeuristic.LANDMARKS, landmarks.getCostHeuristic());
+    assertEquals(CostHeuristic.getDefault(), query.getCostHeuristic());
+    assertEquals(s2, landmarks.getEndingStop());
+  }
+}
@@ -0,0 +1,96 @@
+package main.routeplanner;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+
+import main.model.*;
+
+import static main.routeplanner.ExampleNetwork.*;
+
+/**
+ * LandmarksTest class contains a series of unit tests for the Landmarks
+ * class.
+ *
+ * These tests use the example network described in {@link ExampleNetwork}.
+ */
+public class LandmarksTest {
+
+  @BeforeClass
+  public static void setUpClass() {
+    ExampleNetwork.setUp();
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    ExampleNetwork.tearDown();
+  }
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  /**
+   * Test that the lower bound is exact where the ending stop is a landmark.
+   *
+   * With every stop chosen as a landmark, the bound from N1 to N5 is the
+   * travel time on L5 to N7, walking to N4, and L3 to N5, which is 23
+   * minutes.
+   */
+  @Test
+  public void testExactAtLandmarks() {
+    Landmarks landmarks = Landmarks.build(nodes.length);
+    assertEquals(nodes.length, landmarks.numberOfLandmarks());
+    assertEquals(23, landmarks.lowerBound(nodes[0], nodes[4]));
+    assertEquals(0, landmarks.lowerBound(nodes[4], nodes[4]));
+  }
+
+  /**
+   * Test that the lower bounds given by fewer landmarks never exceed the
+   * exact travel times.
+   */
+  @Test
+  public void testLowerBounds() {
+    Landmarks exact = Landmarks.build(nodes.length);
+    for (int count = 0; count < nodes.length; count++) {
+      Landmarks landmarks = Landmarks.build(count);
+      assertEquals(count, landmarks.numberOfLandmarks());
+      for (Stop s1 : nodes) {
+        for (Stop s2 : nodes) {
+          int bound = landmarks.lowerBound(s1, s2);
+          assertTrue(bound >= 0);
+          assertTrue(s1 + " - " + s2, bound <= exact.lowerBound(s1, s2));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test that stops which cannot be reached are unconnected.
+   *
+   * An extra stop without paths cannot reach, or be reached from, any stop
+   * within the network.
+   */
+  @Test
+  public void testUnconnected() {
+    HashMap<Integer, Integer> stopIndices = CostEstimator.indexStops();
+    Stop isolated = mock(Stop.class);
+    when(isolated.getID()).thenReturn(99);
+    stopIndices.put(99, stopIndices.size());
+    Landmarks landmarks = new Landmarks(stopIndices, Path.getAllPaths(), 2);
+    assertEquals(CostEstimator.UNCONNECTED, landmarks.lowerBound(isolated, nodes[0]));
+    assertEquals(CostEstimator.UNCONNECTED, landmarks.lowerBound(nodes[0], isolated));
+  }
+
+  /**
+   * Test that a negative number of landmarks is rejected.
+   */
+  @Test
+  public void testNegativeCount() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("number of landmarks cannot be negative");
+    Landmarks.build(-1);
+  }
+}
@@ -0,0 +1,345 @@
+package main.routeplanner;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.time.*;
+
+import main.capacitytracker.CapacityCalculator.CrowdednessIndicator;
+import main.model.*;
+
+import static main.routeplanner.ExampleNetwork.*;
+
+/**
+ * RaptorItineraryFinderTest class contains a series of unit tests for the
+ * RaptorItineraryFinder class.
+ *
+ * These tests use the example network described in {@link ExampleNetwork}.
+ */
+public class RaptorItineraryFinderTest {
+
+  private RaptorItineraryFinder finder;
+
+  @BeforeClass
+  public static void setUpClass() {
+    ExampleNetwork.setUp();
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    ExampleNetwork.tearDown();
+  }
+
+  @Before
+  public void setUp() {
+    // Create finder between N1 -> N5, at 6:02am on Weds 2nd December 2015
+    finder = new RaptorItineraryFinder(nodes[0], nodes[4], LocalDateTime.of(DATE, LocalTime.of(6, 2)));
+  }
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  /**
+   * Test the findBestItinerary method.
+   *
+   * The earliest arrival at N5 is by L1 from N1 at 6:02am to N3 at 6:25am,
+   * then walking from N3 to N5, arriving 6:27am.
+   */
+  @Test
+  public void testFindBestItinerary() {
+    Itinerary expected = new Itinerary(DATE, Arrays.asList(
+          busLeg(routes[0], 6 * 60 + 2, nodes[0], nodes[2]),
+          walkLeg(walks[2], 6 * 60 + 25)
+          ));
+    assertEquals(expected, finder.findBestItinerary());
+  }
+
+  /**
+   * Test the findBestItineraries method.
+   *
+   * After the 6:02am departure, the next itinerary departs on L5 at 6:03am,
+   * walks from N7 to N4 and takes L3 at 6:20am. The following itinerary
+   * departs on L5 at 6:06am, also catching L3 at 6:20am.
+   */
+  @Test
+  public void testFindBestItineraries() {
+    List<Itinerary> expected = Arrays.asList(
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[0], 6 * 60 + 2, nodes[0], nodes[2]),
+            walkLeg(walks[2], 6 * 60 + 25)
+            )),
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 3, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 15),
+            busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+            )),
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 6, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 18),
+            busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+            ))
+        );
+    assertEquals(expected, finder.findBestItineraries(3));
+  }
+
+  /**
+   * Test the maximum number of transfers limits the itineraries found.
+   *
+   * Departing at 6:03am, the earliest arrival requires a transfer from L5 to
+   * L3. With no transfers permitted, L1 and a walk must be taken instead.
+   */
+  @Test
+  public void testMaxTransfers() {
+    finder = new RaptorItineraryFinder(nodes[0], nodes[4], LocalDateTime.of(DATE, LocalTime.of(6, 3)));
+    assertEquals(6 * 60 + 30, lastLegEnd(finder.findBestItinerary()));
+    finder.setMaxTransfers(0);
+    Itinerary expected = new Itinerary(DATE, Arrays.asList(
+          busLeg(routes[0], 6 * 60 + 8, nodes[0], nodes[2]),
+          walkLeg(walks[2], 6 * 60 + 31)
+          ));
+    assertEquals(expected, finder.findBestItinerary());
+  }
+
+  /**
+   * Test that setting a negative maximum number of transfers is rejected.
+   */
+  @Test
+  public void testSetNegativeMaxTransfers() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("maximum number of transfers cannot be negative");
+    finder.setMaxTransfers(-1);
+  }
+
+  /**
+   * Test the findProfileItineraries method.
+   *
+   * Between 6:02am and 6:10am, the 6:03am departure on L5 is dominated by the
+   * 6:06am departure, which arrives at the same time. Similarly, the 6:08am
+   * departure on L1 is dominated by the 6:09am departure on L5.
+   */
+  @Test
+  public void testFindProfileItineraries() {
+    List<Itinerary> expected = Arrays.asList(
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[0], 6 * 60 + 2, nodes[0], nodes[2]),
+            walkLeg(walks[2], 6 * 60 + 25)
+            )),
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 6, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 18),
+            busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+            )),
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 9, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 21),
+            busLeg(routes[2], 6 * 60 + 23, nodes[3], nodes[4])
+            ))
+        );
+    assertEquals(expected, finder.findProfileItineraries(LocalTime.of(6, 10)));
+  }
+
+  /**
+   * Test that the profile search finds the same itineraries as repeated
+   * searches from each minute within the window.
+   *
+   * Itineraries departing after the window are not expected, and itineraries
+   * made only by walking are expected only at the start of the window.
+   */
+  @Test
+  public void testProfileMatchesRepeatedSearches() {
+    LocalDateTime start = LocalDateTime.of(DATE, LocalTime.of(6, 0));
+    for (Stop origin : nodes) {
+      for (Stop destination : nodes) {
+        if (origin == destination) {
+          continue;
+        }
+        List<Integer> expected = new ArrayList<>();
+        int laterArrival = Integer.MAX_VALUE;
+        for (int minute = 40; minute >= 0; minute--) {
+          Itinerary itinerary = new RaptorItineraryFinder(origin, destination, start.plusMinutes(minute)).findBestItinerary();
+          if (itinerary == null || lastLegEnd(itinerary) >= laterArrival) {
+            continue;
+          }
+          laterArrival = lastLegEnd(itinerary);
+          int departure = TimetableJourneyPlanner.latestDepartureTime(itinerary.getLegs());
+          if (departure <= 6 * 60 + 40 && (departure != Integer.MIN_VALUE || minute == 0)) {
+            expected.add(0, laterArrival);
+          }
+        }
+        List<Integer> actual = new ArrayList<>();
+        finder = new RaptorItineraryFinder(origin, destination, start);
+        for (Itinerary itinerary : finder.findProfileItineraries(LocalTime.of(6, 40))) {
+          actual.add(lastLegEnd(itinerary));
+        }
+        assertEquals(origin.getName() + " - " + destination.getName(), expected, actual);
+      }
+    }
+  }
+
+  /**
+   * Test that the crowdedness filter prunes crowded trips during the search.
+   *
+   * With every trip on L1 crowded, a GREEN filter still finds two
+   * itineraries, each taking L5 and then L3.
+   */
+  @Test
+  public void testFilterPrunesCrowdedTrips() {
+    finder.setTripCrowdedness(crowdedRoute(routes[0]));
+    finder.setFilter(CrowdednessIndicator.GREEN);
+    List<Itinerary> expected = Arrays.asList(
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 3, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 15),
+            busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+            )),
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 6, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 18),
+            busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+            ))
+        );
+    assertEquals(expected, finder.findBestItineraries(2));
+  }
+
+  /**
+   * Test the findParetoItineraries method.
+   *
+   * With every trip on L1 crowded, the earliest arrival on L1 is RED but
+   * needs no transfer, while the GREEN itinerary on L5 and L3 arrives later
+   * with one transfer. Neither dominates the other.
+   */
+  @Test
+  public void testFindParetoItineraries() {
+    finder.setTripCrowdedness(crowdedRoute(routes[0]));
+    List<Itinerary> expected = Arrays.asList(
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[0], 6 * 60 + 2, nodes[0], nodes[2]),
+            walkLeg(walks[2], 6 * 60 + 25)
+            )),
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 3, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 15),
+            busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+            ))
+        );
+    assertEquals(expected, finder.findParetoItineraries());
+  }
+
+  /**
+   * Test that the findParetoItineraries method boards no trip more crowded
+   * than the filter.
+   */
+  @Test
+  public void testParetoItinerariesSatisfyFilter() {
+    finder.setTripCrowdedness(crowdedRoute(routes[0]));
+    finder.setFilter(CrowdednessIndicator.ORANGE);
+    List<Itinerary> expected = Arrays.asList(
+        new Itinerary(DATE, Arrays.asList(
+            busLeg(routes[4], 6 * 60 + 3, nodes[0], nodes[6]),
+            walkLeg(walks[1], 6 * 60 + 15),
+            busLeg(routes[2], 6 * 60 + 20, nodes[3], nodes[4])
+            ))
+        );
+    assertEquals(expected, finder.findParetoItineraries());
+  }
+
+  /**
+   * Test that the findParetoItineraries method returns only the earliest
+   * arriving itinerary where all trips are equally crowded.
+   */
+  @Test
+  public void testParetoItinerariesUniformCrowdedness() {
+    finder.setTripCrowdedness(crowdedRoute(null));
+    List<Itinerary> expected = Arrays.asList(finder.findBestItinerary());
+    assertEquals(expected, finder.findParetoItineraries());
+  }
+
+  /**
+   * Test that a profile window ending before the search time is rejected.
+   */
+  @Test
+  public void testProfileWindowBeforeSearchTime() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("latest departure cannot be before search time");
+    finder.findProfileItineraries(LocalTime.of(6, 1));
+  }
+
+  /**
+   * Test that no itinerary is returned when there are no further departures.
+   */
+  @Test
+  public void testNoFurtherDepartures() {
+    finder = new RaptorItineraryFinder(nodes[0], nodes[4], LocalDateTime.of(DATE, LocalTime.of(20, 0)));
+    assertNull(finder.findBestItinerary());
+    assertTrue(finder.findBestItineraries(3).isEmpty());
+  }
+
+  /**
+   * Test the findBestItinerary method for a journey between points.
+   *
+   * Stops P1 and P2 are 111m and 222m from the starting point, and stops Q1
+   * and Q2 are 133m and 200m from the ending point. L6 runs from P1 at 7:00am
+   * to Q1 at 7:20am, and L7 from P2 at 7:05am to Q2 at 7:15am. Departing at
+   * 6:55am, all four stops are within the access distance, so L7 is taken.
+   * With an access distance of 150m, only P1 and Q1 may be walked to and
+   * from, so L6 is taken; with an access distance of 0m, these are the
+   * nearest stops, so L6 is still taken.
+   */
+  @Test
+  public void testFindBestItineraryBetweenPoints() {
+    try {
+      Stop p1 = new Stop(11, "P1", 1, 0);
+      Stop p2 = new Stop(12, "P2", 1, 0.003);
+      Stop q1 = new Stop(13, "Q1", 1, 0.1);
+      Stop q2 = new Stop(14, "Q2", 1, 0.103);
+      Route l6 = new Route("L6", "P1 - Q1", p1);
+      l6.addStop(q1, 20, 20);
+      Route l7 = new Route("L7", "P2 - Q2", p2);
+      l7.addStop(q2, 10, 10);
+      new RouteTimetable(l6, schedule, 7 * 60, false);
+      new RouteTimetable(l7, schedule, 7 * 60 + 5, false);
+
+      finder = new RaptorItineraryFinder(1, 0.001, 1, 0.1012, LocalDateTime.of(DATE, LocalTime.of(6, 55)));
+      assertTrue(finder.isBetweenPoints());
+      Itinerary expected = new Itinerary(DATE, Arrays.asList(
+            walkLeg(new Walk(finder.getStartingStop(), p2, false), 6 * 60 + 55),
+            busLeg(l7, 7 * 60 + 5, p2, q2),
+            walkLeg(new Walk(q2, finder.getEndingStop(), false), 7 * 60 + 15)
+            ));
+      assertEquals(expected, finder.findBestItinerary());
+
+      expected = new Itinerary(DATE, Arrays.asList(
+            walkLeg(new Walk(finder.getStartingStop(), p1, false), 6 * 60 + 55),
+            busLeg(l6, 7 * 60, p1, q1),
+            walkLeg(new Walk(q1, finder.getEndingStop(), false), 7 * 60 + 20)
+            ));
+      finder.setAccessDistance(150);
+      assertEquals(expected, finder.findBestItinerary());
+      finder.setAccessDistance(0);
+      assertEquals(expected, finder.findBestItinerary());
+    } finally {
+      // Restore the example network
+      ExampleNetwork.setUp();
+    }
+  }
+
+  /**
+   * Test that setting a negative access distance is rejected.
+   */
+  @Test
+  public void testSetNegativeAccessDistance() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("access distance cannot be negative");
+    finder.setAccessDistance(-1);
+  }
+
+  /**
+   * Gets the end time of the last leg of an itinerary.
+   */
+  private static int lastLegEnd(Itinerary itinerary) {
+    List<ItineraryLeg> legs = itinerary.getLegs();
+    return legs.get(legs.size() - 1).getEndTime();
+  }
+}
@@ -0,0 +1,75 @@
+package main.routeplanner;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+import java.time.*;
+
+import static main.routeplanner.ExampleNetwork.*;
+
+/**
+ * RoutingEngineTest class contains a series of unit tests for the
+ * RoutingEngine enum.
+ */
+public class RoutingEngineTest {
+
+  @BeforeClass
+  public static void setUpClass() {
+    ExampleNetwork.setUp();
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    ExampleNetwork.tearDown();
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(RoutingEngine.ENGINE_PROPERTY);
+    RoutingEngine.setDefault(null);
+  }
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  /**
+   * Test each engine creates the appropriate type of JourneyPlanner.
+   */
+  @Test
+  public void testCreatePlanner() {
+    LocalDateTime time = LocalDateTime.of(DATE, LocalTime.of(6, 2));
+    assertTrue(RoutingEngine.RAPTOR.createPlanner(nodes[0], nodes[4], time) instanceof RaptorItineraryFinder);
+    assertTrue(RoutingEngine.CONNECTION_SCAN.createPlanner(nodes[0], nodes[4], time) instanceof ConnectionScanItineraryFinder);
+    assertTrue(RoutingEngine.TRANSFER_PATTERNS.createPlanner(nodes[0], nodes[4], time) instanceof TransferPatternItineraryFinder);
+    JourneyPlanner planner = RoutingEngine.CONNECTION_SCAN.createPlanner(nodes[0], nodes[4], time);
+    assertEquals(nodes[0], planner.getStartingStop());
+    assertEquals(nodes[4], planner.getEndingStop());
+    assertEquals(DATE, planner.getDate());
+    assertEquals(6 * 60 + 2, planner.getTime());
+  }
+
+  /**
+   * Test the default engine is read from the system property, and may be
+   * overridden.
+   */
+  @Test
+  public void testDefaultEngine() {
+    assertEquals(RoutingEngine.FLOYD_A_STAR, RoutingEngine.getDefault());
+    RoutingEngine.setDefault(null);
+    System.setProperty(RoutingEngine.ENGINE_PROPERTY, "connection_scan");
+    assertEquals(RoutingEngine.CONNECTION_SCAN, RoutingEngine.getDefault());
+    RoutingEngine.setDefault(RoutingEngine.RAPTOR);
+    assertEquals(RoutingEngine.RAPTOR, RoutingEngine.getDefault());
+  }
+
+  /**
+   * Test an unknown engine name throws IllegalArgumentException.
+   */
+  @Test
+  public void testUnknownEngine() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("unknown routing engine dijkstra");
+    RoutingEngine.fromName("dijkstra");
+  }
+}
@@ -0,0 +1,177 @@
+package main.routeplanner;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.*;
+import java.time.*;
+
+import main.capacitytracker.CapacityCalculator;
+import main.model.*;
+
+import static main.routeplanner.ExampleNetwork.*;
+
+/**
+ * TransferPatternItineraryFinderTest class contains a series of unit tests
+ * for the TransferPatternItineraryFinder and TransferPatterns classes.
+ *
+ * These tests use the example network described in {@link ExampleNetwork},
+ * and check that evaluating transfer patterns finds itineraries arriving as
+ * early as those found by the RaptorItineraryFinder.
+ */
+public class TransferPatternItineraryFinderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Before
+  public void setUp() {
+    System.setProperty(TransferPatterns.DIRECTORY_PROPERTY, folder.getRoot().getPath());
+    ExampleNetwork.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    ExampleNetwork.tearDown();
+    System.clearProperty(TransferPatterns.DIRECTORY_PROPERTY);
+  }
+
+  /**
+   * Test the findBestItinerary method.
+   *
+   * The earliest arrival at N5 from N1 at 6:02am is at 6:27am, by L1 to N3
+   * then walking.
+   */
+  @Test
+  public void testFindBestItinerary() {
+    TransferPatternItineraryFinder finder = new TransferPatternItineraryFinder(nodes[0], nodes[4], LocalDateTime.of(DATE, LocalTime.of(6, 2)));
+    Itinerary itinerary = finder.findBestItinerary();
+    assertNotNull(itinerary);
+    List<ItineraryLeg> legs = itinerary.getLegs();
+    assertEquals(nodes[0], legs.get(0).getOrigin());
+    assertEquals(nodes[4], legs.get(legs.size() - 1).getDestination());
+    assertEquals(6 * 60 + 27, legs.get(legs.size() - 1).getEndTime());
+  }
+
+  /**
+   * Test that itineraries between every pair of stops arrive as early as
+   * those found by the RaptorItineraryFinder, for a range of departure times
+   * and numbers of transfers.
+   */
+  @Test
+  public void testItinerariesMatchRaptor() {
+    for (int maxTransfers = 0; maxTransfers <= RaptorItineraryFinder.DEFAULT_MAX_TRANSFERS; maxTransfers++) {
+      for (LocalTime departure = LocalTime.of(5, 30); departure.isBefore(LocalTime.of(7, 30)); departure = departure.plusMinutes(7)) {
+        LocalDateTime searchTime = LocalDateTime.of(DATE, departure);
+        for (int i = 0; i < nodes.length; i++) {
+          for (int j = 0; j < nodes.length; j++) {
+            if (i == j) {
+              continue;
+            }
+            RaptorItineraryFinder raptor = new RaptorItineraryFinder(nodes[i], nodes[j], searchTime);
+            raptor.setMaxTransfers(maxTransfers);
+            TransferPatternItineraryFinder finder = new TransferPatternItineraryFinder(nodes[i], nodes[j], searchTime);
+            finder.setMaxTransfers(maxTransfers);
+            String msg = nodes[i] + " to " + nodes[j] + " at " + departure + " with " + maxTransfers + " transfers";
+            Itinerary expected = raptor.findBestItinerary();
+            Itinerary actual = finder.findBestItinerary();
+            if (expected == null) {
+              assertNull(msg, actual);
+              continue;
+            }
+            assertNotNull(msg, actual);
+            List<ItineraryLeg> expectedLegs = expected.getLegs();
+            List<ItineraryLeg> actualLegs = actual.getLegs();
+            assertEquals(msg, expectedLegs.get(expectedLegs.size() - 1).getEndTime(),
+                actualLegs.get(actualLegs.size() - 1).getEndTime());
+            assertEquals(nodes[i], actualLegs.get(0).getOrigin());
+            assertEquals(nodes[j], actualLegs.get(actualLegs.size() - 1).getDestination());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Test that crowded trips are still avoided, by falling back to the RAPTOR
+   * algorithm where a filter is set.
+   */
+  @Test
+  public void testFilterFallsBackToRaptor() {
+    LocalDateTime searchTime = LocalDateTime.of(DATE, LocalTime.of(6, 2));
+    RaptorItineraryFinder raptor = new RaptorItineraryFinder(nodes[0], nodes[4], searchTime);
+    raptor.setFilter(CapacityCalculator.CrowdednessIndicator.ORANGE);
+    raptor.setTripCrowdedness(crowdedRoute(routes[0]));
+    TransferPatternItineraryFinder finder = new TransferPatternItineraryFinder(nodes[0], nodes[4], searchTime);
+    finder.setFilter(CapacityCalculator.CrowdednessIndicator.ORANGE);
+    finder.setTripCrowdedness(crowdedRoute(routes[0]));
+    assertEquals(raptor.findBestItinerary(), finder.findBestItinerary());
+  }
+
+  /**
+   * Test that patterns are saved when first computed, and that saved
+   * patterns are loaded intact.
+   */
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    TransferPatterns patterns = TransferPatterns.forSchedule(schedule);
+    File file = TransferPatterns.patternsFile(patterns.getTimetableHash());
+    assertTrue(file.isFile());
+    TransitNetwork timetable = TransitNetwork.forSchedule(schedule);
+    TransferPatterns loaded = TransferPatterns.load(file, timetable, patterns.getTimetableHash());
+    assertNotNull(loaded);
+    assertEquals(patterns.getMaxTransfers(), loaded.getMaxTransfers());
+    assertEquals(patterns.numberOfPatterns(), loaded.numberOfPatterns());
+    for (int i = 0; i < nodes.length; i++) {
+      for (int j = 0; j < nodes.length; j++) {
+        assertEquals(patterns.numberOfPatterns(i, j), loaded.numberOfPatterns(i, j));
+      }
+    }
+    assertNull(TransferPatterns.load(file, timetable, patterns.getTimetableHash() + 1));
+  }
+
+  /**
+   * Test that callers requiring the patterns of a schedule at once share
+   * the patterns computed for the first of them.
+   */
+  @Test
+  public void testConcurrentCallersShareComputation() throws Exception {
+    final TransferPatterns[] results = new TransferPatterns[4];
+    Thread[] threads = new Thread[results.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int caller = i;
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          results[caller] = TransferPatterns.forSchedule(schedule);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (TransferPatterns patterns : results) {
+      assertNotNull(patterns);
+      assertSame(results[0], patterns);
+    }
+    assertSame(results[0], TransferPatterns.forSchedule(schedule));
+  }
+
+  /**
+   * Test that more transfers than the patterns hold are rejected.
+   */
+  @Test
+  public void testTooManyTransfers() {
+    TransferPatterns patterns = TransferPatterns.forSchedule(schedule);
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("transfer patterns only hold " + patterns.getMaxTransfers() + " transfers");
+    patterns.findEarliestArrival(nodes[0], nodes[4], DATE, 6 * 60, patterns.getMaxTransfers() + 1);
+  }
+}
@@ -0,0 +1,185 @@
+package main.routeplanner;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.time.*;
+
+import main.model.*;
+
+import static main.routeplanner.ExampleNetwork.*;
+
+/**
+ * TravelTimeMatrixTest class contains a series of unit tests for the
+ * TravelTimeMatrix class.
+ *
+ * These tests use the example network described in {@link ExampleNetwork},
+ * and check travel times against the itineraries found by the
+ * RaptorItineraryFinder, and isochrones against travel times.
+ */
+public class TravelTimeMatrixTest {
+
+  @BeforeClass
+  public static void setUpClass() {
+    ExampleNetwork.setUp();
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    ExampleNetwork.tearDown();
+  }
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  /**
+   * Test the travelTimes method for one origin.
+   *
+   * The earliest arrival at N5 from N1 at 6:02am is at 6:27am, by L1 to N3
+   * then walking. A stop is always reached from itself without travelling.
+   */
+  @Test
+  public void testTravelTimesFromOrigin() {
+    TravelTimeMatrix matrix = new TravelTimeMatrix(LocalDateTime.of(DATE, LocalTime.of(6, 2)));
+    int[] travelTimes = matrix.travelTimes(nodes[0], Arrays.asList(nodes[4], nodes[0]));
+    assertArrayEquals(new int[] {25, 0}, travelTimes);
+  }
+
+  /**
+   * Test that travel times between every pair of stops match the
+   * itineraries found by the RaptorItineraryFinder, for a range of
+   * departure times and numbers of transfers.
+   */
+  @Test
+  public void testTravelTimesMatchItineraries() {
+    List<Stop> stops = Arrays.asList(nodes);
+    for (int maxTransfers = 0; maxTransfers <= 2; maxTransfers++) {
+      for (LocalTime departure = LocalTime.of(5, 50); departure.isBefore(LocalTime.of(7, 0)); departure = departure.plusMinutes(7)) {
+        LocalDateTime searchTime = LocalDateTime.of(DATE, departure);
+        TravelTimeMatrix matrix = new TravelTimeMatrix(searchTime);
+        matrix.setMaxTransfers(maxTransfers);
+        int[][] travelTimes = matrix.travelTimes(stops, stops);
+        for (int i = 0; i < nodes.length; i++) {
+          for (int j = 0; j < nodes.length; j++) {
+            if (i == j) {
+              assertEquals(0, travelTimes[i][j]);
+              continue;
+            }
+            RaptorItineraryFinder finder = new RaptorItineraryFinder(nodes[i], nodes[j], searchTime);
+            finder.setMaxTransfers(maxTransfers);
+            Itinerary itinerary = finder.findBestItinerary();
+            int expected = TravelTimeMatrix.UNREACHABLE;
+            if (itinerary != null) {
+              List<ItineraryLeg> legs = itinerary.getLegs();
+              expected = legs.get(legs.size() - 1).getEndTime() - matrix.getTime();
+            }
+            String msg = nodes[i] + " to " + nodes[j] + " at " + departure + " with " + maxTransfers + " transfers";
+            assertEquals(msg, expected, travelTimes[i][j]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Test that no stop is reached on a date without a schedule.
+   */
+  @Test
+  public void testNoSchedule() {
+    TravelTimeMatrix matrix = new TravelTimeMatrix(LocalDateTime.of(2016, Month.DECEMBER, 2, 6, 2));
+    int[][] travelTimes = matrix.travelTimes(Arrays.asList(nodes[0], nodes[1]), Arrays.asList(nodes[4], nodes[1]));
+    assertArrayEquals(new int[] {TravelTimeMatrix.UNREACHABLE, TravelTimeMatrix.UNREACHABLE}, travelTimes[0]);
+    assertArrayEquals(new int[] {TravelTimeMatrix.UNREACHABLE, 0}, travelTimes[1]);
+  }
+
+  /**
+   * Test the isochrone method.
+   *
+   * Within 25 minutes of 6:02am, N5 is reached from N1 at 6:27am. The
+   * origin is always reached first, at the departure time.
+   */
+  @Test
+  public void testIsochrone() {
+    TravelTimeMatrix matrix = new TravelTimeMatrix(LocalDateTime.of(DATE, LocalTime.of(6, 2)));
+    Isochrone isochrone = matrix.isochrone(nodes[0], 25);
+    assertEquals(nodes[0], isochrone.getOrigin());
+    assertEquals(25, isochrone.getMinutes());
+    assertEquals(nodes[0], isochrone.getStop(0));
+    assertEquals(6 * 60 + 2, isochrone.getArrivalTime(0));
+    assertEquals(25, isochrone.travelTime(nodes[4]));
+    assertEquals(TravelTimeMatrix.UNREACHABLE, matrix.isochrone(nodes[0], 24).travelTime(nodes[4]));
+    int[] arrivalTimes = isochrone.getArrivalTimes();
+    for (int i = 1; i < arrivalTimes.length; i++) {
+      assertTrue(arrivalTimes[i - 1] <= arrivalTimes[i]);
+    }
+  }
+
+  /**
+   * Test the isochrone method with a limit beyond the end of the day.
+   *
+   * The isochrone should report the limit asked for, and hold every stop
+   * reached at any time.
+   */
+  @Test
+  public void testIsochroneUnbounded() {
+    TravelTimeMatrix matrix = new TravelTimeMatrix(LocalDateTime.of(DATE, LocalTime.of(6, 2)));
+    Isochrone isochrone = matrix.isochrone(nodes[0], Integer.MAX_VALUE);
+    assertEquals(Integer.MAX_VALUE, isochrone.getMinutes());
+    int[] travelTimes = matrix.travelTimes(nodes[0], Arrays.asList(nodes));
+    for (int j = 0; j < nodes.length; j++) {
+      assertEquals(travelTimes[j], isochrone.travelTime(nodes[j]));
+    }
+  }
+
+  /**
+   * Test that isochrones hold exactly those stops with a travel time within
+   * the limit, for a range of limits.
+   */
+  @Test
+  public void testIsochronesMatchTravelTimes() {
+    List<Stop> stops = Arrays.asList(nodes);
+    TravelTimeMatrix matrix = new TravelTimeMatrix(LocalDateTime.of(DATE, LocalTime.of(6, 2)));
+    int[][] travelTimes = matrix.travelTimes(stops, stops);
+    for (int minutes = 0; minutes <= 60; minutes += 5) {
+      List<Isochrone> isochrones = matrix.isochrones(stops, minutes);
+      assertEquals(nodes.length, isochrones.size());
+      for (int i = 0; i < nodes.length; i++) {
+        Isochrone isochrone = isochrones.get(i);
+        assertEquals(nodes[i], isochrone.getOrigin());
+        int reached = 0;
+        for (int j = 0; j < nodes.length; j++) {
+          int travelTime = travelTimes[i][j];
+          if (travelTime != TravelTimeMatrix.UNREACHABLE && travelTime <= minutes) {
+            assertEquals(travelTime, isochrone.travelTime(nodes[j]));
+            reached++;
+          } else {
+            assertEquals(TravelTimeMatrix.UNREACHABLE, isochrone.travelTime(nodes[j]));
+          }
+        }
+        assertEquals(reached, isochrone.size());
+      }
+    }
+  }
+
+  /**
+   * Test that a negative number of minutes is rejected.
+   */
+  @Test
+  public void testNegativeMinutes() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("minutes cannot be negative");
+    new TravelTimeMatrix(LocalDateTime.of(DATE, LocalTime.of(6, 2))).isochrone(nodes[0], -1);
+  }
+
+  /**
+   * Test that a negative maximum number of transfers is rejected.
+   */
+  @Test
+  public void testNegativeMaxTransfers() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("maximum number of transfers cannot be negative");
+    new TravelTimeMatrix(LocalDateTime.of(DATE, LocalTime.of(6, 2))).setMaxTransfers(-1);
+  }
+}